@@ -190,6 +190,23 @@ public abstract class AbstractCannedQuery<R> implements CannedQuery<R>
             {
                 return hasMoreItems;
             }
+            
+            @Override
+            public String getContinuationToken()
+            {
+                if (!hasMoreItems || finalPages.isEmpty())
+                {
+                    return null;
+                }
+                // The query may have returned extra results beyond the page, to determine if there are more items
+                List<R> lastPage = finalPages.get(finalPages.size() - 1);
+                int lastIndex = Math.min(lastPage.size(), pagingDetails.getPageSize()) - 1;
+                if (lastIndex < 0)
+                {
+                    return null;
+                }
+                return AbstractCannedQuery.this.getContinuationToken(lastPage.get(lastIndex));
+            }
         };
         return results;
     }
@@ -277,6 +294,20 @@ public abstract class AbstractCannedQuery<R> implements CannedQuery<R>
         return new Pair<Integer, Integer>(size, size);
     }
     
+    /**
+     * Override to support keyset paging.  The implementation must then start its results after the position given by
+     * the {@link CannedQueryPageDetails#getContinuationToken() continuation token} of the page details, if present,
+     * ideally without walking the earlier results.
+     * 
+     * @param lastResult            the last result of the page
+     * @return                      an encoded {@link ContinuationToken} for the position after the result
+     *                              or <tt>null</tt> if keyset paging is not supported (default)
+     */
+    protected String getContinuationToken(R lastResult)
+    {
+        return null;
+    }
+    
     /**
      * Override to get post-query calls to do pull out paged results.
      * 
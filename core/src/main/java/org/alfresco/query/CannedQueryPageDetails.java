@@ -39,6 +39,7 @@ public class CannedQueryPageDetails
     private final int pageSize;
     private final int pageNumber;
     private final int pageCount;
+    private final String continuationToken;
     
     /**
      * Construct with defaults
@@ -81,11 +82,29 @@ public class CannedQueryPageDetails
      *                                  (default <b>{@link #DEFAULT_PAGE_COUNT}</b>)
      */
     public CannedQueryPageDetails(int skipResults, int pageSize, int pageNumber, int pageCount)
+    {
+        this(skipResults, pageSize, pageNumber, pageCount, null);
+    }
+    
+    /**
+     * @param skipResults               results to skip before <i>page one</i>
+     *                                  (default <b>{@link #DEFAULT_SKIP_RESULTS}</b>)
+     * @param pageSize                  the size of each page
+     *                                  (default <b>{@link #DEFAULT_PAGE_SIZE}</b>)
+     * @param pageNumber                the first page number to return
+     *                                  (default <b>{@link #DEFAULT_PAGE_NUMBER}</b>)
+     * @param pageCount                 the number of pages to return
+     *                                  (default <b>{@link #DEFAULT_PAGE_COUNT}</b>)
+     * @param continuationToken         the {@link ContinuationToken token} of the result after which
+     *                                  results are counted (default <tt>null</tt> i.e. from the start)
+     */
+    public CannedQueryPageDetails(int skipResults, int pageSize, int pageNumber, int pageCount, String continuationToken)
     {
         this.skipResults = skipResults;
         this.pageSize = pageSize;
         this.pageNumber = pageNumber;
         this.pageCount = pageCount;
+        this.continuationToken = continuationToken;
         
         // Do some checks
         if (skipResults < 0)
@@ -113,7 +132,8 @@ public class CannedQueryPageDetails
      */
     public CannedQueryPageDetails(PagingRequest pagingRequest)
     {
-        this(pagingRequest.getSkipCount(), pagingRequest.getMaxItems());
+        this(pagingRequest.getSkipCount(), pagingRequest.getMaxItems(), DEFAULT_PAGE_NUMBER, DEFAULT_PAGE_COUNT,
+             pagingRequest.getContinuationToken());
     }
     
     @Override
@@ -125,6 +145,7 @@ public class CannedQueryPageDetails
           .append(", pageSize=").append(pageSize)
           .append(", pageCount=").append(pageCount)
           .append(", pageNumber=").append(pageNumber)
+          .append(", continuationToken=").append(continuationToken)
           .append("]");
         return sb.toString();
     }
@@ -165,6 +186,15 @@ public class CannedQueryPageDetails
         return pageCount;
     }
     
+    /**
+     * Get the token of the result after which results are counted, for queries that support keyset paging
+     * @return                          the continuation token or <tt>null</tt> to count from the start
+     */
+    public String getContinuationToken()
+    {
+        return continuationToken;
+    }
+    
     /**
      * Calculate the number of results that would be required to satisy this paging request.
      * Note that the skip size can significantly increase this number even if the page sizes
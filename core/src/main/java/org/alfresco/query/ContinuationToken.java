@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2005-2020 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.query;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The position after the last result of a page, used for keyset (seek) paging.
+ * <p/>
+ * The token holds the sort key values of the last result, as strings, followed by its ID.  Queries that
+ * support it start their results after that position rather than walking and skipping all the earlier
+ * results, so that deep pages cost no more than the first one.  Clients only see the {@link #encode() encoded}
+ * form, which they should treat as opaque.
+ * 
+ * @see PagingRequest#setContinuationToken(String)
+ * @see PagingResults#getContinuationToken()
+ * @since 7.0
+ */
+public class ContinuationToken
+{
+    private static final String NULL_VALUE = "~";
+    private static final String SEPARATOR = ",";
+    
+    private final List<String> values;
+    private final Long id;
+    
+    /**
+     * @param values                the sort key values of the last result, in sort order (values may be <tt>null</tt>)
+     * @param id                    the unique ID of the last result, to order results with the same sort key
+     */
+    public ContinuationToken(List<String> values, Long id)
+    {
+        this.values = (values == null ? Collections.<String>emptyList() : Collections.unmodifiableList(values));
+        this.id = id;
+    }
+    
+    public List<String> getValues()
+    {
+        return values;
+    }
+    
+    public Long getId()
+    {
+        return id;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "ContinuationToken [values=" + values + ", id=" + id + "]";
+    }
+    
+    /**
+     * @return                      the token in its opaque, URL-safe form
+     */
+    public String encode()
+    {
+        StringBuilder sb = new StringBuilder(64);
+        try
+        {
+            for (String value : values)
+            {
+                // URL encoding never produces the null marker or the separator
+                sb.append(value == null ? NULL_VALUE : URLEncoder.encode(value, "UTF-8")).append(SEPARATOR);
+            }
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+        sb.append(id == null ? NULL_VALUE : id.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * @param token                 a token previously {@link #encode() encoded}
+     * @return                      the decoded token
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static ContinuationToken decode(String token)
+    {
+        try
+        {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(SEPARATOR, -1);
+            List<String> values = new ArrayList<String>(parts.length - 1);
+            for (int i = 0; i < parts.length - 1; i++)
+            {
+                values.add(parts[i].equals(NULL_VALUE) ? null : URLDecoder.decode(parts[i], "UTF-8"));
+            }
+            String id = parts[parts.length - 1];
+            return new ContinuationToken(values, (id.equals(NULL_VALUE) ? null : Long.valueOf(id)));
+        }
+        catch (RuntimeException | UnsupportedEncodingException e)
+        {
+            throw new IllegalArgumentException("Invalid continuation token: " + token, e);
+        }
+    }
+}
@@ -34,6 +34,7 @@ public class PagingRequest
     
     private int requestTotalCountMax = 0; // request total count up to a given max (0 => do not request total count)
     private String queryExecutionId;
+    private String continuationToken;
 
     /**
      * Construct a page request
@@ -158,4 +159,28 @@ public class PagingRequest
     {
         this.queryExecutionId = queryExecutionId; 
     }
+    
+    /**
+     * Get the token, from the {@link PagingResults#getContinuationToken() results of the previous page},
+     * after which the page starts.
+     * 
+     * @return                      the continuation token or <tt>null</tt> to page from the start
+     */
+    public String getContinuationToken()
+    {
+        return continuationToken;
+    }
+    
+    /**
+     * Start the page after the last result of a previous page, rather than counting from the start.
+     * Any skip count is applied from that position.  Must be called before the paging query is run.
+     * <p/>
+     * The query must support keyset paging, otherwise no token will have been returned.
+     * 
+     * @param continuationToken     the continuation token returned with the previous page
+     */
+    public void setContinuationToken(String continuationToken)
+    {
+        this.continuationToken = continuationToken;
+    }
 }
@@ -76,4 +76,16 @@ public interface PagingResults<R>
      * @return                      a unique ID associated with the query execution results
      */
     public String getQueryExecutionId();
+    
+    /**
+     * Get a token marking the end of this page.  Passing it back with {@link PagingRequest#setContinuationToken(String)}
+     * gets the following page without the query having to walk all the earlier results again.
+     * 
+     * @return                      the continuation token or <tt>null</tt> if there are no more items
+     *                              or the query does not support keyset paging (default)
+     */
+    default String getContinuationToken()
+    {
+        return null;
+    }
 }
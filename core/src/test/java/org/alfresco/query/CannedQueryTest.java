@@ -19,6 +19,7 @@
 package org.alfresco.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -265,6 +266,46 @@ public class CannedQueryTest extends TestCase
         assertTrue("Should have more pages/items", qrOne.hasMoreItems());
     }
     
+    @SuppressWarnings("unchecked")
+    public void testQueryKeysetPagedResults() throws Exception
+    {
+        CannedQueryFactory<String> qfOne = namedQueryFactoryRegistry.getNamedObject(QUERY_TEST_ONE);
+        CannedQueryParameters params = new CannedQueryParameters(null, new CannedQueryPageDetails(0, 3, 1, 1, null), null);
+        CannedQueryResults<String> qrOne = qfOne.getCannedQuery(params).execute();
+        assertEquals("Incorrect results on page", Arrays.asList("ONE_0", "ONE_1", "ONE_2"), qrOne.getPage());
+        String token = qrOne.getContinuationToken();
+        assertNotNull("Expected a continuation token", token);
+        
+        // The next page starts after the token, skipping the missing result
+        params = new CannedQueryParameters(null, new CannedQueryPageDetails(0, 3, 1, 1, token), null);
+        qrOne = qfOne.getCannedQuery(params).execute();
+        assertEquals("Incorrect results on page", Arrays.asList("ONE_3", "ONE_4", "ONE_6"), qrOne.getPage());
+        token = qrOne.getContinuationToken();
+        
+        params = new CannedQueryParameters(null, new CannedQueryPageDetails(0, 3, 1, 1, token), null);
+        qrOne = qfOne.getCannedQuery(params).execute();
+        assertEquals("Incorrect results on page", Arrays.asList("ONE_7", "ONE_8", "ONE_9"), qrOne.getPage());
+        assertFalse("Should NOT have any more pages/items", qrOne.hasMoreItems());
+        assertNull("No token expected for the last page", qrOne.getContinuationToken());
+    }
+    
+    public void testContinuationTokenEncoding() throws Exception
+    {
+        ContinuationToken token = new ContinuationToken(Arrays.asList("a,b ~c", null, "", "\u00e9t\u00e9"), 42L);
+        ContinuationToken decoded = ContinuationToken.decode(token.encode());
+        assertEquals(token.getValues(), decoded.getValues());
+        assertEquals(Long.valueOf(42L), decoded.getId());
+        try
+        {
+            ContinuationToken.decode("not a token!");
+            fail("Expected invalid token to be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Expected
+        }
+    }
+    
     /**
      * Test factory to generate "queries" that just return a list of <tt>String</tt>s.
      *
@@ -313,8 +354,22 @@ public class CannedQueryTest extends TestCase
         @Override
         protected List<T> queryAndFilter(CannedQueryParameters parameters)
         {
+            String token = parameters.getPageDetails().getContinuationToken();
+            if (token != null)
+            {
+                // Seek to the result after the last one of the previous page
+                int lastIndex = ContinuationToken.decode(token).getId().intValue();
+                return results.subList(lastIndex + 1, results.size());
+            }
             return results;
         }
+        
+        @Override
+        protected String getContinuationToken(T lastResult)
+        {
+            long lastIndex = results.indexOf(lastResult);
+            return new ContinuationToken(Collections.singletonList(String.valueOf(lastResult)), lastIndex).encode();
+        }
 
         @Override
         protected boolean isApplyPostQuerySorting()
@@ -25,6 +25,11 @@
  */
 package org.alfresco.repo.dictionary;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.tenant.TenantService;
@@ -45,6 +50,24 @@ public class CompiledModelsCache extends AbstractAsynchronouslyRefreshedCache<Di
     private DictionaryDAOImpl dictionaryDAO;
     private TenantService tenantService;
 
+    // The last time each tenant's dictionary was used, recorded to the nearest second
+    private final Map<String, Long> lastAccessTimes = new ConcurrentHashMap<String, Long>();
+
+    @Override
+    public DictionaryRegistry get(String key)
+    {
+        if (key != null)
+        {
+            long now = System.currentTimeMillis();
+            Long lastAccessTime = lastAccessTimes.get(key);
+            if (lastAccessTime == null || now - lastAccessTime > 1000L)
+            {
+                lastAccessTimes.put(key, now);
+            }
+        }
+        return super.get(key);
+    }
+
     @Override
     protected DictionaryRegistry buildCache(String tenantId)
     {
@@ -74,6 +97,7 @@ public class CompiledModelsCache extends AbstractAsynchronouslyRefreshedCache<Di
         try
         {
             DictionaryRegistry dictionaryRegistry = live.get(tenantId);
+            lastAccessTimes.remove(tenantId);
             if (dictionaryRegistry != null)
             {
                 live.remove(tenantId);
@@ -91,6 +115,70 @@ public class CompiledModelsCache extends AbstractAsynchronouslyRefreshedCache<Di
         }
     }
 
+    /**
+     * Drop a tenant's dictionary so that it is built again when next used. Unlike {@link #remove(String)}
+     * the dictionary itself is left intact for any thread still using it.
+     * 
+     * @param tenantId the tenantId of cache that will be evicted from live cache
+     * @return <tt>true</tt> if the tenant's dictionary was live
+     */
+    public boolean evict(final String tenantId)
+    {
+        liveLock.writeLock().lock();
+        try
+        {
+            lastAccessTimes.remove(tenantId);
+            return (live.remove(tenantId) != null);
+        }
+        finally
+        {
+            liveLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param idleTime the time, in milliseconds, that a dictionary must not have been used for
+     * @return the tenants with a live dictionary that has not been used for the given time
+     */
+    public Set<String> getIdleTenants(long idleTime)
+    {
+        long idleSince = System.currentTimeMillis() - idleTime;
+        Set<String> idleTenants = new TreeSet<String>();
+        liveLock.readLock().lock();
+        try
+        {
+            for (String tenantId : live.keySet())
+            {
+                Long lastAccessTime = lastAccessTimes.get(tenantId);
+                if (lastAccessTime == null || lastAccessTime < idleSince)
+                {
+                    idleTenants.add(tenantId);
+                }
+            }
+        }
+        finally
+        {
+            liveLock.readLock().unlock();
+        }
+        return idleTenants;
+    }
+
+    /**
+     * @return the number of tenants with a live dictionary
+     */
+    public int getLiveCount()
+    {
+        liveLock.readLock().lock();
+        try
+        {
+            return live.size();
+        }
+        finally
+        {
+            liveLock.readLock().unlock();
+        }
+    }
+
     /**
      * @param dictionaryDAO the dictionaryDAOImpl to set
      */
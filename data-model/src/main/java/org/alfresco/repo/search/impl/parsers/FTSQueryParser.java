@@ -26,6 +26,7 @@
 package org.alfresco.repo.search.impl.parsers;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -54,6 +55,7 @@ import org.alfresco.repo.search.impl.querymodel.impl.functions.FTSWildTerm;
 import org.alfresco.repo.search.impl.querymodel.impl.functions.PropertyAccessor;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.util.ISO9075;
+import org.alfresco.util.MaxSizeMap;
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
@@ -79,6 +81,26 @@ public class FTSQueryParser
     static final String KEY_REPLACELONESTAR = "KEY_REPLACELONESTAR";
     static final String VALUE_REPLACELONESTAR = "ISNODE:T";
     
+    private static final int DEFAULT_PARSE_CACHE_SIZE = 1000;
+    
+    private static volatile Map<ParseKey, CommonTree> parseCache = newParseCache(DEFAULT_PARSE_CACHE_SIZE);
+    
+    /**
+     * Set the number of parsed expressions and templates kept for reuse, from <tt>system.fts.parseCacheSize</tt> in the
+     * repository
+     * 
+     * @param parseCacheSize the number of parse trees to keep (default 1000) or <tt>0</tt> to parse every time
+     */
+    public static void setParseCacheSize(int parseCacheSize)
+    {
+        parseCache = newParseCache(parseCacheSize);
+    }
+    
+    private static Map<ParseKey, CommonTree> newParseCache(int parseCacheSize)
+    {
+        return (parseCacheSize > 0 ? Collections.synchronizedMap(new MaxSizeMap<ParseKey, CommonTree>(parseCacheSize, true)) : null);
+    }
+    
     @SuppressWarnings("unused")
     static public Constraint buildFTS(String ftsExpression, QueryModelFactory factory, FunctionEvaluationContext functionEvaluationContext, Selector selector,
             Map<String, Column> columnMap, FTSParser.Mode mode, Connective defaultFieldConnective, Map<String, String> templates, String defaultField, RerankPhase rerankPhase)
@@ -97,68 +119,107 @@ public class FTSQueryParser
         
         for (String name : templates.keySet())
         {
-            FTSParser parser = null;
-
-            try
-            {
-                String templateDefinition = templates.get(name);
-                CharStream cs = new ANTLRStringStream(templateDefinition);
-                FTSLexer lexer = new FTSLexer(cs);
-                CommonTokenStream tokens = new CommonTokenStream(lexer);
-                parser = new FTSParser(tokens);
-                parser.setMode(mode);
-                parser.setDefaultFieldConjunction(defaultFieldConnective == Connective.AND ? true : false);
-                CommonTree ftsNode = (CommonTree) parser.ftsQuery().getTree();
-                //Check for duplicate template of properties e.g. NAME, name and NaMe.
-                if (templateTrees.containsKey(name.toLowerCase()))
-                {
-                    throw new FTSQueryException("Duplicate template of property: " + name);
-                }
-
-                templateTrees.put(name.toLowerCase(), ftsNode);
-            }
-            catch (RecognitionException e)
+            String templateDefinition = templates.get(name);
+            CommonTree ftsNode = parse(templateDefinition, mode, defaultFieldConnective);
+            //Check for duplicate template of properties e.g. NAME, name and NaMe.
+            if (templateTrees.containsKey(name.toLowerCase()))
             {
-                if (parser != null)
-                {
-                    String[] tokenNames = parser.getTokenNames();
-                    String hdr = parser.getErrorHeader(e);
-                    String msg = parser.getErrorMessage(e, tokenNames);
-                    throw new FTSQueryException(hdr + "\n" + msg, e);
-                 }
-                 return null;
+                throw new FTSQueryException("Duplicate template of property: " + name);
             }
+
+            templateTrees.put(name.toLowerCase(), ftsNode);
+        }
+
+        CommonTree ftsNode = parse(ftsExpression, mode, defaultFieldConnective);
+        // Rewrite for auto phrase
+        if(rerankPhase != RerankPhase.RERANK_PHASE.SINGLE_PASS)
+        {
+            ftsNode = autoPhraseReWrite(ftsNode, defaultFieldConnective == Connective.AND ? true : false, rerankPhase);
+        }
+        return buildFTSConnective(null, ftsNode, factory, functionEvaluationContext, selector, columnMap, templateTrees, defaultField);
+    }
+
+    /**
+     * Parse an FTS expression, reusing the tree of the same expression parsed earlier with the same options.
+     * <p>
+     * The trees are shared between searches so they must not be changed: building the query model only reads them and
+     * copies any part that it rewrites.
+     * 
+     * @return the parse tree of the expression
+     */
+    static CommonTree parse(String ftsExpression, FTSParser.Mode mode, Connective defaultFieldConnective)
+    {
+        boolean defaultFieldConjunction = (defaultFieldConnective == Connective.AND);
+        // Surrounding white space is skipped by the lexer
+        ParseKey key = new ParseKey(ftsExpression.trim(), mode, defaultFieldConjunction);
+        Map<ParseKey, CommonTree> cache = parseCache;
+        CommonTree ftsNode = (cache == null ? null : cache.get(key));
+        if (ftsNode != null)
+        {
+            return ftsNode;
         }
 
         FTSParser parser = null;
         try
         {
-            CharStream cs = new ANTLRStringStream(ftsExpression);
+            CharStream cs = new ANTLRStringStream(key.expression);
             FTSLexer lexer = new FTSLexer(cs);
             CommonTokenStream tokens = new CommonTokenStream(lexer);
             parser = new FTSParser(tokens);
             parser.setMode(mode);
-            parser.setDefaultFieldConjunction(defaultFieldConnective == Connective.AND ? true : false);
-            CommonTree ftsNode = (CommonTree) parser.ftsQuery().getTree();
-            // Rewrite for auto phrase
-            if(rerankPhase != RerankPhase.RERANK_PHASE.SINGLE_PASS)
-            {
-                ftsNode = autoPhraseReWrite(ftsNode, defaultFieldConnective == Connective.AND ? true : false, rerankPhase);
-            }
-            return buildFTSConnective(null, ftsNode, factory, functionEvaluationContext, selector, columnMap, templateTrees, defaultField);
+            parser.setDefaultFieldConjunction(defaultFieldConjunction);
+            ftsNode = (CommonTree) parser.ftsQuery().getTree();
         }
         catch (RecognitionException e)
         {
-            if (parser != null)
+            String[] tokenNames = parser.getTokenNames();
+            String hdr = parser.getErrorHeader(e);
+            String msg = parser.getErrorMessage(e, tokenNames);
+            throw new FTSQueryException(hdr + "\n" + msg, e);
+        }
+        if (cache != null)
+        {
+            cache.put(key, ftsNode);
+        }
+        return ftsNode;
+    }
+
+    /**
+     * Identifies a parse tree: the same text parsed with different options gives a different tree
+     */
+    private static class ParseKey
+    {
+        private final String expression;
+        private final FTSParser.Mode mode;
+        private final boolean defaultFieldConjunction;
+
+        private ParseKey(String expression, FTSParser.Mode mode, boolean defaultFieldConjunction)
+        {
+            this.expression = expression;
+            this.mode = mode;
+            this.defaultFieldConjunction = defaultFieldConjunction;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof ParseKey))
             {
-                String[] tokenNames = parser.getTokenNames();
-                String hdr = parser.getErrorHeader(e);
-                String msg = parser.getErrorMessage(e, tokenNames);
-                throw new FTSQueryException(hdr + "\n" + msg, e);
+                return false;
             }
-            return null;
+            ParseKey other = (ParseKey) obj;
+            return expression.equals(other.expression) && (mode == other.mode) && (defaultFieldConjunction == other.defaultFieldConjunction);
         }
 
+        @Override
+        public int hashCode()
+        {
+            return (expression.hashCode() * 31 + (mode == null ? 0 : mode.hashCode())) * 31 + (defaultFieldConjunction ? 1 : 0);
+        }
     }
 
     private static CommonTree autoPhraseReWrite(CommonTree node, boolean defaultConjunction, RerankPhase rerankPhase) {
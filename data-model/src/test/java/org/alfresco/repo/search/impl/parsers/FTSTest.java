@@ -170,4 +170,55 @@ public class FTSTest extends TestCase
         }
     }
 
+    public void testParseCache() throws Exception
+    {
+        final String ftsExpression = "cm:name:alpha AND (beta OR \"gamma delta\")";
+        CommonTree tree = FTSQueryParser.parse(ftsExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR);
+        String treeString = tree.toStringTree();
+
+        // The same expression, with the same options, is only parsed once
+        assertSame(tree, FTSQueryParser.parse(ftsExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR));
+        assertSame(tree, FTSQueryParser.parse("  " + ftsExpression + " ", FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR));
+
+        // Other options give other trees
+        assertNotSame(tree, FTSQueryParser.parse(ftsExpression, FTSParser.Mode.DEFAULT_DISJUNCTION, Connective.OR));
+        assertNotSame(tree, FTSQueryParser.parse(ftsExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.AND));
+
+        // Without the cache the same tree is built again
+        FTSQueryParser.setParseCacheSize(0);
+        try
+        {
+            CommonTree uncached = FTSQueryParser.parse(ftsExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR);
+            assertNotSame(tree, uncached);
+            assertEquals(treeString, uncached.toStringTree());
+        }
+        finally
+        {
+            FTSQueryParser.setParseCacheSize(1000);
+        }
+        assertEquals(treeString, tree.toStringTree());
+
+        // Building the query model with auto phrase and templates leaves the cached trees as they were
+        final String keywordsTemplate = "%(cm:name cm:title cm:description)";
+        final String phraseExpression = "alpha beta gamma AND keywords:delta";
+        CommonTree templateTree = FTSQueryParser.parse(keywordsTemplate, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR);
+        String templateTreeString = templateTree.toStringTree();
+        CommonTree phraseTree = FTSQueryParser.parse(phraseExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR);
+        String phraseTreeString = phraseTree.toStringTree();
+
+        AlfrescoFunctionEvaluationContext functionContext = new AlfrescoFunctionEvaluationContext(null, null, NamespaceService.CONTENT_MODEL_1_0_URI);
+        for (int i = 0; i < 2; i++)
+        {
+            Map<String, String> templates = new HashMap<String, String>();
+            templates.put("keywords", keywordsTemplate);
+            assertNotNull(FTSQueryParser.buildFTS(phraseExpression, new LuceneQueryModelFactory(), functionContext, null, null,
+                    FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR, templates, "keywords", FTSQueryParser.RerankPhase.SINGLE_PASS_WITH_AUTO_PHRASE));
+
+            assertSame(templateTree, FTSQueryParser.parse(keywordsTemplate, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR));
+            assertEquals(templateTreeString, templateTree.toStringTree());
+            assertSame(phraseTree, FTSQueryParser.parse(phraseExpression, FTSParser.Mode.DEFAULT_CONJUNCTION, Connective.OR));
+            assertEquals(phraseTreeString, phraseTree.toStringTree());
+        }
+    }
+
 }
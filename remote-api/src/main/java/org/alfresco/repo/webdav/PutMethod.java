@@ -266,6 +266,7 @@ public class PutMethod extends WebDAVMethod implements ActivityPostProducer
             if(extract != null)
             {
                extract.setExecuteAsynchronously(false);
+               extract.setParameterValue(ContentMetadataExtracter.PARAM_SKIP_UNCHANGED_CONTENT, Boolean.TRUE);
                getActionService().executeAction(extract, contentNodeInfo.getNodeRef());
             }
 
@@ -1325,6 +1325,16 @@ public class NodesImpl implements Nodes
         final Map<String, UserInfo> mapUserInfo = new HashMap<>(10);
 
         final List<FileInfo> page = pagingResults.getPage();
+
+        // look up the creators and modifiers of the page together
+        Set<String> userNames = new HashSet<>(page.size());
+        for (FileInfo fInfo : page)
+        {
+            Map<QName, Serializable> props = fInfo.getProperties();
+            userNames.add((String)props.get(ContentModel.PROP_CREATOR));
+            userNames.add((String)props.get(ContentModel.PROP_MODIFIER));
+        }
+        Node.cacheUserInfo(userNames, mapUserInfo, sr.getPersonService());
         List<Node> nodes = new AbstractList<Node>()
         {
             @Override
@@ -1390,7 +1400,9 @@ public class NodesImpl implements Nodes
             sourceEntity = getFolderOrDocumentFullInfo(parentNodeRef, null, null, null, mapUserInfo);
         }
  
-        return CollectionWithPagingInfo.asPaged(paging, nodes, pagingResults.hasMoreItems(), pagingResults.getTotalResultCount().getFirst(), sourceEntity);
+        // the total only counts from the token when paging on from a continuation token, so it is left out
+        Integer totalItems = (paging.getContinuationToken() == null ? pagingResults.getTotalResultCount().getFirst() : null);
+        return CollectionWithPagingInfo.asPaged(paging, nodes, pagingResults.hasMoreItems(), totalItems, sourceEntity, null, pagingResults.getContinuationToken());
     }
 
     /**
@@ -3244,6 +3256,7 @@ public class NodesImpl implements Nodes
         if (actionDef != null)
         {
             Action action = actionService.createAction(actionName);
+            action.setParameterValue(ContentMetadataExtracter.PARAM_SKIP_UNCHANGED_CONTENT, Boolean.TRUE);
             actionService.executeAction(action, nodeRef);
         }
     }
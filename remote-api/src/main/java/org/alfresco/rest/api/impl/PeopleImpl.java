@@ -452,7 +452,8 @@ public class PeopleImpl implements People
         final PagingResults<PersonService.PersonInfo> pagingResult = personService.getPeople(null, null, sortProps, pagingRequest);
 
         final List<PersonService.PersonInfo> page = pagingResult.getPage();
-        int totalItems = pagingResult.getTotalResultCount().getFirst();
+        // the total only counts from the token when paging on from a continuation token, so it is left out
+        Integer totalItems = (paging.getContinuationToken() == null ? pagingResult.getTotalResultCount().getFirst() : null);
         final String personId = AuthenticationUtil.getFullyAuthenticatedUser();
         List<Person> people = new AbstractList<Person>()
         {
@@ -471,7 +472,7 @@ public class PeopleImpl implements People
             }
         };
 
-        return CollectionWithPagingInfo.asPaged(paging, people, pagingResult.hasMoreItems(), totalItems);
+        return CollectionWithPagingInfo.asPaged(paging, people, pagingResult.hasMoreItems(), totalItems, null, null, pagingResult.getContinuationToken());
     }
 
     private List<Pair<QName, Boolean>> getSortProps(Parameters parameters)
@@ -48,6 +48,7 @@ public class Util
     public static PagingRequest getPagingRequest(Paging paging)
     {
         PagingRequest pagingRequest = new PagingRequest(paging.getSkipCount(), paging.getMaxItems());
+        pagingRequest.setContinuationToken(paging.getContinuationToken());
         pagingRequest.setRequestTotalCountMax(CannedQueryPageDetails.DEFAULT_PAGE_SIZE);
         return pagingRequest;
     }
@@ -27,6 +27,8 @@ package org.alfresco.rest.api.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -144,6 +146,35 @@ public class Node implements Comparable<Node>
         this.modifiedByUser = lookupUserInfo((String)nodeProps.get(ContentModel.PROP_MODIFIER), mapUserInfo, personService);
     }
 
+    /**
+     * Look up the user info of many users at once, so that {@link #lookupUserInfo} finds them in the given map
+     * rather than looking up each user in turn. Users that can't be found are left to {@link #lookupUserInfo}.
+     */
+    public static void cacheUserInfo(Collection<String> userNames, Map<String, UserInfo> mapUserInfo, PersonService personService)
+    {
+        Map<String, String> lookupUserNames = new HashMap<>(userNames.size() * 2);
+        for (String userName : userNames)
+        {
+            if ((userName != null) && !mapUserInfo.containsKey(userName))
+            {
+                lookupUserNames.put(userName.toLowerCase(), userName);
+            }
+        }
+        if (lookupUserNames.isEmpty())
+        {
+            return;
+        }
+
+        for (PersonService.PersonInfo pInfo : personService.getPeople(new ArrayList<>(lookupUserNames.values())))
+        {
+            String userName = lookupUserNames.get(pInfo.getUserName().toLowerCase());
+            if (userName != null)
+            {
+                mapUserInfo.put(userName, new UserInfo(userName, pInfo.getFirstName(), pInfo.getLastName()));
+            }
+        }
+    }
+
     public static UserInfo lookupUserInfo(String userName, Map<String, UserInfo> mapUserInfo, PersonService personService)
     {
         return lookupUserInfo(userName, mapUserInfo, personService, false);
@@ -102,6 +102,10 @@ public class SerializerOfCollectionWithPaging extends StdSerializer<Serializable
             jgen.writeNumberField(RecognizedParamsExtractor.PARAM_PAGING_SKIP, pagedCol.getPaging().getSkipCount());
             jgen.writeNumberField(RecognizedParamsExtractor.PARAM_PAGING_MAX, pagedCol.getPaging().getMaxItems());
         }
+        if (pagedCol.getContinuationToken() != null)
+        {
+            jgen.writeStringField(RecognizedParamsExtractor.PARAM_PAGING_CONTINUATION, pagedCol.getContinuationToken());
+        }
         jgen.writeEndObject();
     }
 }
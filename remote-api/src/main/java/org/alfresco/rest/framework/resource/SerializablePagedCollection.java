@@ -71,4 +71,9 @@ public interface SerializablePagedCollection<T>
      * The search context for the collection
      */
     SearchContext getContext();
+
+    /**
+     * The token to pass back for the next page (keyset paging) or null
+     */
+    String getContinuationToken();
 }
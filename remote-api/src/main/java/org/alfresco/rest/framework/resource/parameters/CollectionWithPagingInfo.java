@@ -40,6 +40,7 @@ import java.util.Collections;
  * collection - The collection
  * hasMoreItems - Indicates the total number of items available. Can be greater than the number of items returned in the list.
  * totalItems - Indicates the total number of items available. Can be greater than the number of items returned in the list.
+ * continuationToken - Token to pass back with the paging request for the next page, if the collection supports keyset paging.
  * 
  * @author Gethin James.
  */
@@ -52,6 +53,7 @@ public class CollectionWithPagingInfo<T> implements SerializablePagedCollection
     private final Paging paging;
     private final Object sourceEntity;
     private final SearchContext context;
+    private final String continuationToken;
         
     /**
      * Constructs a new CollectionWithPagingInfo.
@@ -61,6 +63,19 @@ public class CollectionWithPagingInfo<T> implements SerializablePagedCollection
      * @param totalItems - The total number of items available.
      */
     protected CollectionWithPagingInfo(Collection<T> collection, Paging paging, boolean hasMoreItems, Integer totalItems, Object sourceEntity, SearchContext context)
+    {
+        this(collection, paging, hasMoreItems, totalItems, sourceEntity, context, null);
+    }
+
+    /**
+     * Constructs a new CollectionWithPagingInfo.
+     * @param collection - the collection that needs to be paged.
+     * @param paging - Paging request info
+     * @param hasMoreItems - Are there more items after this Collection?
+     * @param totalItems - The total number of items available.
+     * @param continuationToken - The token for the next page.
+     */
+    protected CollectionWithPagingInfo(Collection<T> collection, Paging paging, boolean hasMoreItems, Integer totalItems, Object sourceEntity, SearchContext context, String continuationToken)
     {
         super();
         this.hasMoreItems = hasMoreItems;
@@ -78,6 +93,7 @@ public class CollectionWithPagingInfo<T> implements SerializablePagedCollection
         }
         this.sourceEntity = sourceEntity;
         this.context = context;
+        this.continuationToken = (hasMoreItems ? continuationToken : null);
     }
 
     /**
@@ -153,6 +169,23 @@ public class CollectionWithPagingInfo<T> implements SerializablePagedCollection
     {
         return new CollectionWithPagingInfo<T>(aCollection, paging, hasMoreItems, totalItems, sourceEntity, context);
     }
+
+    /**
+     * Constructs a new CollectionWithPagingInfo. Not for public use.
+     *
+     * @param paging - Paging request info
+     * @param aCollection - the collection that needs to be paged.
+     * @param hasMoreItems - Are there more items after this Collection?
+     * @param totalItems - The total number of items available.
+     * @param sourceEntity - The parent/source entity responsible for the collection
+     * @param context - The search context
+     * @param continuationToken - The token for the next page (keyset paging)
+     * @return CollectionWithPagingInfo
+     */
+    public static <T> CollectionWithPagingInfo<T> asPaged(Paging paging, Collection<T> aCollection, boolean hasMoreItems, Integer totalItems, Object sourceEntity, SearchContext context, String continuationToken)
+    {
+        return new CollectionWithPagingInfo<T>(aCollection, paging, hasMoreItems, totalItems, sourceEntity, context, continuationToken);
+    }
     
     /**
      * Returns the Collection object
@@ -209,4 +242,13 @@ public class CollectionWithPagingInfo<T> implements SerializablePagedCollection
         return context;
     }
 
+    /**
+     * The token to pass back for the next page, if there are more items and the collection supports keyset paging
+     */
+    @Override
+    public String getContinuationToken()
+    {
+        return continuationToken;
+    }
+
 }
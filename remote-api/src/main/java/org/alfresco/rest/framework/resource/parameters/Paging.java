@@ -32,7 +32,8 @@ import org.alfresco.rest.framework.core.exceptions.InvalidArgumentException;
 /**
  * Represents paging of collections of resources. Set by the client request.<br/>
  * skipCount - How many entries exist in the entire collection before those included in the list<br/>
- * maxItems - The maximum number of items the client requires. Defaults to 100.
+ * maxItems - The maximum number of items the client requires. Defaults to 100.<br/>
+ * continuationToken - Optional token, returned with the previous page, after which the page starts.
  * 
  * @author Gethin James, Martin Muller (mmuller)
  */
@@ -45,8 +46,14 @@ public class Paging
         
     private final int skipCount;
     private final int maxItems;
+    private final String continuationToken;
 
     private Paging(int skipCount, int maxItems)
+    {
+        this(skipCount, maxItems, null);
+    }
+
+    private Paging(int skipCount, int maxItems, String continuationToken)
     {
         super();
         if(skipCount < 0)
@@ -59,6 +66,7 @@ public class Paging
         }
         this.skipCount = skipCount;
         this.maxItems = maxItems;
+        this.continuationToken = continuationToken;
     }
 
     /**
@@ -79,12 +87,26 @@ public class Paging
         return this.maxItems;
     }
 
+    /**
+     * The token, returned with the previous page, after which this page starts (keyset paging)
+     * @return String or null to page from the start of the collection
+     */
+    public String getContinuationToken()
+    {
+        return this.continuationToken;
+    }
+
     @JsonCreator
     public static Paging valueOf(@JsonProperty("skipCount") int skipCount, @JsonProperty("maxItems") int maxItems)
     {
         return new Paging(skipCount,maxItems);
     }
 
+    public static Paging valueOf(int skipCount, int maxItems, String continuationToken)
+    {
+        return new Paging(skipCount, maxItems, continuationToken);
+    }
+
     @Override
     public String toString()
     {
@@ -93,6 +115,11 @@ public class Paging
         builder.append(this.skipCount);
         builder.append(", maxItems=");
         builder.append(this.maxItems);
+        if (this.continuationToken != null)
+        {
+            builder.append(", continuationToken=");
+            builder.append(this.continuationToken);
+        }
         builder.append("]");
         return builder.toString();
     }
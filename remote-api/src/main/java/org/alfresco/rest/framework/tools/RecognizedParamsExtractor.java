@@ -70,13 +70,14 @@ public interface RecognizedParamsExtractor
 
     public static final String PARAM_PAGING_SKIP = "skipCount";
     public static final String PARAM_PAGING_MAX = "maxItems";
+    public static final String PARAM_PAGING_CONTINUATION = "continuationToken";
     public static final String PARAM_ORDERBY = "orderBy";
     public static final String PARAM_WHERE = "where";
     public static final String PARAM_SELECT = "select";
     public static final String PARAM_INCLUDE = "include";
     public static final String PARAM_INCLUDE_SOURCE_ENTITY = "includeSource";
     public static final List<String> KNOWN_PARAMS = Arrays
-                .asList(PARAM_RELATIONS, PARAM_FILTER_PROPERTIES, PARAM_FILTER_FIELDS, PARAM_PAGING_SKIP, PARAM_PAGING_MAX, PARAM_ORDERBY,
+                .asList(PARAM_RELATIONS, PARAM_FILTER_PROPERTIES, PARAM_FILTER_FIELDS, PARAM_PAGING_SKIP, PARAM_PAGING_MAX, PARAM_PAGING_CONTINUATION, PARAM_ORDERBY,
                             PARAM_WHERE, PARAM_SELECT, PARAM_INCLUDE_SOURCE_ENTITY);
 
     default Log rpeLogger()
@@ -344,8 +345,14 @@ public interface RecognizedParamsExtractor
     {
         String skip = req.getParameter(PARAM_PAGING_SKIP);
         String maxItems = req.getParameter(PARAM_PAGING_MAX);
+        String continuationToken = req.getParameter(PARAM_PAGING_CONTINUATION);
 
-        return getPaging(skip,maxItems);
+        Paging paging = getPaging(skip,maxItems);
+        if ((continuationToken != null) && (! continuationToken.isEmpty()))
+        {
+            paging = Paging.valueOf(paging.getSkipCount(), paging.getMaxItems(), continuationToken);
+        }
+        return paging;
     }
 
     /**
@@ -148,7 +148,8 @@ public class ResourceWebScriptHelper
                 }
             }
             return CollectionWithPagingInfo.asPaged(collectionToWrap.getPaging(), resultCollection, collectionToWrap.hasMoreItems(),
-                                                    collectionToWrap.getTotalItems(), sourceEntity, collectionToWrap.getContext());
+                                                    collectionToWrap.getTotalItems(), sourceEntity, collectionToWrap.getContext(),
+                                                    collectionToWrap.getContinuationToken());
         }
         else
         {           
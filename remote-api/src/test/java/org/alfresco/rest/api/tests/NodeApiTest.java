@@ -291,6 +291,35 @@ public class NodeApiTest extends AbstractSingleNetworkSiteTest
         assertEquals(100, expectedPaging.getMaxItems().intValue());
         assertFalse(expectedPaging.getHasMoreItems().booleanValue());
 
+        // Page through with the continuation token returned with each page
+        List<String> tokenPaged = new ArrayList<>(4);
+        String continuationToken = null;
+        boolean hasMoreItems = true;
+        while (hasMoreItems)
+        {
+            Map<String, String> params = new HashMap<>(orderBy);
+            if (continuationToken != null)
+            {
+                params.put("continuationToken", continuationToken);
+            }
+            response = getAll(getNodeChildrenUrl(f0Id), getPaging(null, 1), params, 200);
+            nodes = RestApiUtil.parseRestApiEntries(response.getJsonResponse(), Node.class);
+            assertEquals(1, nodes.size());
+            tokenPaged.add(nodes.get(0).getName());
+
+            JSONObject pagination = (JSONObject) ((JSONObject) response.getJsonResponse().get("list")).get("pagination");
+            assertEquals("Total only expected for the first page", (continuationToken == null), pagination.containsKey("totalItems"));
+            hasMoreItems = (Boolean) pagination.get("hasMoreItems");
+            continuationToken = (String) pagination.get("continuationToken");
+            assertEquals(hasMoreItems, (continuationToken != null));
+        }
+        assertEquals(Arrays.asList(folder2, folder1, content2, content1), tokenPaged);
+
+        // -ve test - invalid continuation token
+        Map<String, String> params = new HashMap<>(orderBy);
+        params.put("continuationToken", "not*a*token");
+        getAll(getNodeChildrenUrl(f0Id), getPaging(null, 1), params, 400);
+
         setRequestContext(user2);
 
         // user2 tries to access user1's folder in a private docLib
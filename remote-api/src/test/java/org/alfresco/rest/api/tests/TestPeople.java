@@ -1739,6 +1739,60 @@ public class TestPeople extends AbstractBaseApiTest
         checkList(expectedList, paging.getExpectedPaging(), resp);
     }
 
+    /**
+     * Tests paging through the list of people with the continuationToken returned with each page, which must
+     * give the same people (including those with tied sort values) as a single page. The total is left out of
+     * the pages after the first, since it would only count the people after the token.
+     */
+    @Test
+    public void testPagingWithContinuationToken() throws Exception
+    {
+        publicApiClient.setRequestContext(new RequestContext(account4.getId(), account4Admin, "admin"));
+
+        for (String orderBy : new String[] {"firstName ASC", "firstName DESC", "lastName ASC", "firstName DESC,lastName ASC"})
+        {
+            Map<String, String> params = new HashMap<>();
+            params.put("orderBy", orderBy);
+            params.put("maxItems", "100");
+            List<String> expected = getPersonIds(listPeople(params, 200));
+            assertTrue(expected.size() > 2);
+
+            List<String> tokenPaged = new ArrayList<>();
+            String continuationToken = null;
+            boolean hasMoreItems = true;
+            while (hasMoreItems)
+            {
+                params = new HashMap<>();
+                params.put("orderBy", orderBy);
+                params.put("maxItems", "2");
+                if (continuationToken != null)
+                {
+                    params.put("continuationToken", continuationToken);
+                }
+                HttpResponse response = people.getAll("people", null, null, null, params, "Failed to get people", 200);
+                JSONObject pagination = (JSONObject) ((JSONObject) response.getJsonResponse().get("list")).get("pagination");
+                assertEquals("Total only expected for the first page", (continuationToken == null), pagination.containsKey("totalItems"));
+
+                tokenPaged.addAll(getPersonIds(Person.parsePeople(response.getJsonResponse())));
+                hasMoreItems = (Boolean) pagination.get("hasMoreItems");
+                continuationToken = (String) pagination.get("continuationToken");
+                assertEquals(hasMoreItems, (continuationToken != null));
+            }
+            assertEquals(orderBy, expected, tokenPaged);
+        }
+
+        // invalid token
+        Map<String, String> params = new HashMap<>();
+        params.put("orderBy", "firstName ASC");
+        params.put("continuationToken", "not*a*token");
+        people.getAll("people", null, null, null, params, "Expected 400 for an invalid continuation token", 400);
+    }
+
+    private List<String> getPersonIds(PublicApiClient.ListResponse<Person> resp)
+    {
+        return resp.getList().stream().map(Person::getId).collect(Collectors.toList());
+    }
+
     /**
      * Tests reset password.
      * <p>POST:</p>
@@ -66,6 +66,7 @@ import org.alfresco.rest.framework.resource.parameters.Params;
 import org.alfresco.rest.framework.tests.api.mocks.Farmer;
 import org.alfresco.rest.framework.tests.api.mocks.GrassEntityResource;
 import org.alfresco.rest.framework.tools.ApiAssistant;
+import org.alfresco.rest.framework.tools.RecognizedParamsExtractor;
 import org.alfresco.rest.framework.webscripts.ParamsExtractor;
 import org.alfresco.rest.framework.webscripts.ResourceWebScriptDelete;
 import org.alfresco.rest.framework.webscripts.ResourceWebScriptGet;
@@ -461,6 +462,32 @@ public class ParamsExtractorTests
         testExtractAddressedParams(templateVars, request, extractor);
     }
     
+    @Test
+    public void testContinuationTokenExtractor()
+    {
+        ResourceWebScriptGet extractor = new ResourceWebScriptGet();
+        extractor.setLocator(locator);
+
+        Map<String, String> templateVars = new HashMap<String, String>();
+        WebScriptRequest request = mock(WebScriptRequest.class);
+        when(request.getServiceMatch()).thenReturn(new Match(null, templateVars, null));
+        when(request.getParameter(RecognizedParamsExtractor.PARAM_PAGING_MAX)).thenReturn("5");
+
+        Params params = extractor.extractParams(mockEntity(), request);
+        assertEquals(5, params.getPaging().getMaxItems());
+        assertNull(params.getPaging().getContinuationToken());
+
+        when(request.getParameter(RecognizedParamsExtractor.PARAM_PAGING_CONTINUATION)).thenReturn("");
+        params = extractor.extractParams(mockEntity(), request);
+        assertNull("An empty token is no token", params.getPaging().getContinuationToken());
+
+        when(request.getParameter(RecognizedParamsExtractor.PARAM_PAGING_CONTINUATION)).thenReturn("abc_123-");
+        params = extractor.extractParams(mockEntity(), request);
+        assertEquals(Paging.DEFAULT_SKIP_COUNT, params.getPaging().getSkipCount());
+        assertEquals(5, params.getPaging().getMaxItems());
+        assertEquals("abc_123-", params.getPaging().getContinuationToken());
+    }
+
     @Test
     public void testHeaderParsing() throws IOException
     {
@@ -281,6 +281,25 @@ public class SerializeTests extends AbstractContextTest implements RecognizedPar
        
     }
   
+    @SuppressWarnings({ "rawtypes" })
+    @Test
+    public void testSerializePagedCollectionWithContinuationToken() throws IOException
+    {
+        assertNotNull(helper);
+        Paging pageRequest = Paging.valueOf(0, 2, "previousToken");
+        
+        // paging on from a token - no total
+        CollectionWithPagingInfo paged = CollectionWithPagingInfo.asPaged(pageRequest, Arrays.asList(new Sheep("ABCD"), new Sheep("XYZ")), true, null, null, null, "nextToken");
+        String out = writeResponse(helper.processAdditionsToTheResponse(mock(WebScriptResponse.class), api,null, Params.valueOf("notUsed", null, null), paged));
+        assertTrue("There must be json output as List with pagination", StringUtils.startsWith(out, "{\"list\":{\"pagination\":{\"count\":2,\"hasMoreItems\":true,\"skipCount\":0,\"maxItems\":2,\"continuationToken\":\"nextToken\"}"));
+        assertFalse("There must be no total when paging on from a token", out.contains("totalItems"));
+        
+        // last page - no token
+        paged = CollectionWithPagingInfo.asPaged(pageRequest, Arrays.asList(new Sheep("ABCD"), new Sheep("XYZ")), false, null, null, null, "nextToken");
+        out = writeResponse(helper.processAdditionsToTheResponse(mock(WebScriptResponse.class), api,null, Params.valueOf("notUsed", null, null), paged));
+        assertFalse("There must be no token for the last page", out.contains("continuationToken"));
+    }
+  
     @Test
     public void testSerializeMap() throws IOException
     {
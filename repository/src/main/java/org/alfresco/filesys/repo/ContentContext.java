@@ -83,6 +83,12 @@ public class ContentContext extends AlfrescoContext
     
     private NodeMonitor m_nodeMonitor;
     
+    // Folder snapshot cache, requires the node monitor, disabled by default
+    
+    private int m_folderSnapshotCacheSize;
+    private long m_folderSnapshotMaxAge = FolderSnapshotCache.DefaultMaxAge;
+    private FolderSnapshotCache m_folderSnapshotCache;
+    
     // Thread pool
     
     private ThreadRequestPool m_threadPool;
@@ -146,6 +152,26 @@ public class ContentContext extends AlfrescoContext
         m_disableNodeMonitor = disableNodeMonitor;
     }        
 
+    /**
+     * Set the maximum number of folders to keep snapshots for, zero (the default) disables the folder snapshot cache
+     * 
+     * @param folderSnapshotCacheSize int
+     */
+    public void setFolderSnapshotCacheSize(int folderSnapshotCacheSize)
+    {
+        m_folderSnapshotCacheSize = folderSnapshotCacheSize;
+    }
+
+    /**
+     * Set the maximum age of a folder snapshot, in milliseconds
+     * 
+     * @param folderSnapshotMaxAge long
+     */
+    public void setFolderSnapshotMaxAge(long folderSnapshotMaxAge)
+    {
+        m_folderSnapshotMaxAge = folderSnapshotMaxAge;
+    }
+
     /**
      * Disable change notifications
      * 
@@ -331,6 +357,36 @@ public class ContentContext extends AlfrescoContext
         return m_rootNodeRef;
     }
 
+    /**
+     * Return the maximum number of folders to keep snapshots for
+     * 
+     * @return int
+     */
+    public int getFolderSnapshotCacheSize()
+    {
+        return m_folderSnapshotCacheSize;
+    }
+
+    /**
+     * Return the maximum age of a folder snapshot, in milliseconds
+     * 
+     * @return long
+     */
+    public long getFolderSnapshotMaxAge()
+    {
+        return m_folderSnapshotMaxAge;
+    }
+
+    /**
+     * Return the folder snapshot cache, or null if folder snapshots are not enabled
+     * 
+     * @return FolderSnapshotCache
+     */
+    public final FolderSnapshotCache getFolderSnapshotCache()
+    {
+        return m_folderSnapshotCache;
+    }
+
     /**
      * Return the thread pool
      * 
@@ -385,6 +441,15 @@ public class ContentContext extends AlfrescoContext
         m_nodeMonitor = nodeMonitor;
     }
 
+    /**
+     * Set the folder snapshot cache
+     * 
+     * @param folderSnapshotCache folder snapshot cache
+     */
+    protected void setFolderSnapshotCache( FolderSnapshotCache folderSnapshotCache) {
+        m_folderSnapshotCache = folderSnapshotCache;
+    }
+
     /**
      * Start the filesystem
      * 
@@ -34,6 +34,7 @@ import java.io.InputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -96,6 +97,7 @@ import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.MimetypeService;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
@@ -570,6 +572,13 @@ public class ContentDiskDriver2 extends  AlfrescoDiskDriver implements ExtendedD
          {     
                 NodeMonitor nodeMonitor = m_nodeMonitorFactory.createNodeMonitor(context);
                 context.setNodeMonitor( nodeMonitor);
+                
+                // Folder snapshots are invalidated by the node monitor, so can only be enabled with it
+                if ( context.getFolderSnapshotCacheSize() > 0)
+                {
+                    context.setFolderSnapshotCache( new FolderSnapshotCache( context.getFolderSnapshotCacheSize(), context.getFolderSnapshotMaxAge()));
+                    logger.info("Folder snapshot cache enabled, " + context.getFolderSnapshotCache());
+                }
          }
          
          logger.debug("initialise the file state lock manager");
@@ -766,7 +775,42 @@ public class ContentDiskDriver2 extends  AlfrescoDiskDriver implements ExtendedD
             
             logger.debug("Call repo to do search");
             
-            List<NodeRef> results = getCifsHelper().getNodeRefs(searchRootNodeRef, searchFileSpec);
+            // Full folder listings can be served from, and are loaded into, the folder snapshot cache
+            
+            FolderSnapshotCache snapshotCache = ctx.getFolderSnapshotCache();
+            boolean snapshotSearch = snapshotCache != null && searchFileSpec.equals( "*");
+            String userName = AuthenticationUtil.getRunAsUser();
+            
+            List<FolderSnapshotCache.SnapshotEntry> snapshot = null;
+            List<NodeRef> results = null;
+            
+            if ( snapshotSearch)
+            {
+                snapshot = snapshotCache.getSnapshot(searchRootNodeRef, userName);
+            }
+            
+            if ( snapshot != null)
+            {
+                results = FolderSnapshotCache.getNodeRefs(snapshot);
+                
+                logger.debug("Search served from folder snapshot");
+            }
+            else
+            {
+                long generation = snapshotSearch ? snapshotCache.getGeneration() : 0L;
+                
+                results = getCifsHelper().getNodeRefs(searchRootNodeRef, searchFileSpec);
+                
+                if ( snapshotSearch)
+                {
+                    // Resolve the file information now, within the transaction, and keep it for later searches
+                    
+                    snapshot = loadFolderSnapshot(results);
+                    results = FolderSnapshotCache.getNodeRefs(snapshot);
+                    snapshotCache.putSnapshot(searchRootNodeRef, userName, snapshot, generation);
+                }
+            }
+            
             // Debug
             if ( logger.isDebugEnabled()) 
             {
@@ -779,6 +823,7 @@ public class ContentDiskDriver2 extends  AlfrescoDiskDriver implements ExtendedD
             }
 
             DotDotContentSearchContext searchCtx = new DotDotContentSearchContext(getCifsHelper(), results, searchFileSpec, paths[0], isLockedFilesAsOffline);
+            searchCtx.setSnapshot(snapshot);
 
             FileInfo dotInfo = getCifsHelper().getFileInformation(searchRootNodeRef, false, isLockedFilesAsOffline);
             
@@ -813,6 +858,7 @@ public class ContentDiskDriver2 extends  AlfrescoDiskDriver implements ExtendedD
             
             // TODO -- 
             // Need to resolve the file info here so it's within the transaction boundary.
+            // This is done for full folder listings when the folder snapshot cache is enabled.
                        
             return searchCtx;
         }
@@ -844,6 +890,36 @@ public class ContentDiskDriver2 extends  AlfrescoDiskDriver implements ExtendedD
         }
     }
 
+    /**
+     * Load the compact file information for the nodes returned by a folder search, skipping any
+     * nodes that are no longer valid.
+     * 
+     * @param results List of file/folder nodes returned by the search
+     * @return List<FolderSnapshotCache.SnapshotEntry>
+     */
+    private List<FolderSnapshotCache.SnapshotEntry> loadFolderSnapshot(List<NodeRef> results)
+    {
+        List<FolderSnapshotCache.SnapshotEntry> snapshot = new ArrayList<FolderSnapshotCache.SnapshotEntry>(results.size());
+        
+        for (NodeRef nodeRef : results)
+        {
+            try
+            {
+                ContentFileInfo fileInfo = getCifsHelper().getFileInformation(nodeRef, false, isLockedFilesAsOffline);
+                snapshot.add(new FolderSnapshotCache.SnapshotEntry(fileInfo));
+            }
+            catch (FileNotFoundException | InvalidNodeRefException e)
+            {
+                if ( logger.isDebugEnabled())
+                {
+                    logger.debug("Noderef " + nodeRef + " no longer valid, ignoring");
+                }
+            }
+        }
+        
+        return snapshot;
+    }
+
     /**
      * Check if the specified file exists, and whether it is a file or directory.
      * 
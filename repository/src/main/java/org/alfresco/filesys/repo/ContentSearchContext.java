@@ -85,6 +85,11 @@ public class ContentSearchContext extends SearchContext
     
     private String m_lastFileName;
     
+    // Compact file information for the results, when the search is served from the folder snapshot
+    // cache. Entries are in the same order as the results list.
+    
+    private List<FolderSnapshotCache.SnapshotEntry> m_snapshot;
+    
     /**
      * Class constructor
      * 
@@ -124,6 +129,8 @@ public class ContentSearchContext extends SearchContext
         sb.append(getSearchString());
         sb.append(", resultCount=");
         sb.append(results.size());
+        if ( m_snapshot != null)
+            sb.append(", snapshot");
         sb.append("]");
         
         return sb.toString();
@@ -178,8 +185,26 @@ public class ContentSearchContext extends SearchContext
 
         	ContentFileInfo nextInfo = null;
         	NodeRef nextNodeRef = null;
+        	boolean linkNode = false;
+        	
+        	if ( m_snapshot != null)
+        	{
+        		// Use the file information from the folder snapshot, no need to go to the repository
+        		
+        		FolderSnapshotCache.SnapshotEntry entry = m_snapshot.get(index);
+        		entry.copyTo(info);
+        		linkNode = entry.isLinkNode();
+        		
+        		/**
+        		 * Apply in flight correction
+        		 */
+        		if(corrector != null)
+        		{
+        			corrector.correct(info, m_relPath);
+        		}
+        	}
         	
-        	while ( nextInfo == null && index < results.size())
+        	while ( m_snapshot == null && nextInfo == null && index < results.size())
         	{
         		//	Get the next node from the search
         	
@@ -191,6 +216,7 @@ public class ContentSearchContext extends SearchContext
     	            
 		            nextInfo = cifsHelper.getFileInformation(nextNodeRef, "", false, lockedFilesAsOffline);
 		            info.copyFrom(nextInfo);
+		            linkNode = nextInfo.isLinkNode();
 
 		            /**
 		             * Apply in flight correction
@@ -219,7 +245,7 @@ public class ContentSearchContext extends SearchContext
         	
         	// Check if we have finished returning file info
         	
-        	if ( nextInfo == null)
+        	if ( m_snapshot == null && nextInfo == null)
         	{
         		return false;
         	}
@@ -230,7 +256,7 @@ public class ContentSearchContext extends SearchContext
         	pathStr.append ( info.getFileName());
         	
         	// Check if this is a link node
-        	if ( nextInfo.isLinkNode())
+        	if ( linkNode)
         	{
         		// Set a dummy file size for the link data that will be generated if/when the file is opened
         		
@@ -283,6 +309,14 @@ public class ContentSearchContext extends SearchContext
         index++;
         resumeId++;
 
+        // Check if the file name is available from the folder snapshot
+        
+        if ( m_snapshot != null)
+        {
+            m_lastFileName = m_snapshot.get(index).getFileName();
+            return m_lastFileName;
+        }
+        
         // Get the next file info from the node search
             
         NodeRef nextNodeRef = results.get(index);
@@ -346,7 +380,7 @@ public class ContentSearchContext extends SearchContext
             {
                 // Get the file name for the node
                 
-                String fname = cifsHelper.getFileName( results.get( idx));
+                String fname = m_snapshot != null ? m_snapshot.get( idx).getFileName() : cifsHelper.getFileName( results.get( idx));
                 if ( fname != null && fname.equals( info.getFileName()))
                 {
                     index = idx - 1;
@@ -392,6 +426,31 @@ public class ContentSearchContext extends SearchContext
         return false;
     }
 
+    /**
+     * Set the folder snapshot entries for the search results, the entries must be in the same order
+     * as the results list
+     * 
+     * @param snapshot List<FolderSnapshotCache.SnapshotEntry>
+     */
+    protected void setSnapshot(List<FolderSnapshotCache.SnapshotEntry> snapshot)
+    {
+        if ( snapshot != null && snapshot.size() != getResultsSize())
+        {
+            throw new IllegalArgumentException("Snapshot does not match the search results");
+        }
+        m_snapshot = snapshot;
+    }
+    
+    /**
+     * Check if the search results are served from a folder snapshot
+     * 
+     * @return boolean
+     */
+    protected boolean hasSnapshot()
+    {
+        return m_snapshot != null;
+    }
+    
     /**
      * Return the relative path that is being searched
      * 
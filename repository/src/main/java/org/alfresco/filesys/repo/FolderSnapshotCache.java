@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.filesys.repo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.jlan.server.filesys.FileInfo;
+import org.alfresco.jlan.server.filesys.FileType;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Folder Snapshot Cache Class
+ * 
+ * <p>Holds a compact snapshot of the contents of recently listed folders so that repeated full folder
+ * searches can be served without going back to the node service. Snapshots are held per user, as the
+ * visible children and the read-only attribute depend on the user's permissions.
+ * 
+ * <p>Snapshots are invalidated by the {@link NodeMonitor} when a child of the folder is created, updated,
+ * moved or deleted, and expire after a maximum age to pick up changes the node monitor does not see,
+ * such as permission changes.
+ * 
+ * @since 7.0
+ */
+public class FolderSnapshotCache
+{
+    // Debug logging
+    
+    private static final Log logger = LogFactory.getLog(FolderSnapshotCache.class);
+    
+    // Defaults
+    
+    public static final int DefaultMaxFolders = 500;
+    public static final long DefaultMaxAge    = 30000L;
+    
+    // Maximum number of folders to hold snapshots for, and maximum snapshot age in milliseconds
+    
+    private final int m_maxFolders;
+    private final long m_maxAge;
+    
+    // Snapshots by folder node and user name, in least recently used order
+    
+    private final LinkedHashMap<NodeRef, Map<String, FolderSnapshot>> m_snapshots;
+    
+    // Invalidation counter, used to discard snapshots that were loaded while a folder was being changed
+    
+    private long m_generation;
+    
+    // Statistics
+    
+    private long m_hits;
+    private long m_misses;
+    
+    /**
+     * Default constructor
+     */
+    public FolderSnapshotCache()
+    {
+        this(DefaultMaxFolders, DefaultMaxAge);
+    }
+    
+    /**
+     * Class constructor
+     * 
+     * @param maxFolders maximum number of folders to hold snapshots for
+     * @param maxAge maximum age of a snapshot, in milliseconds
+     */
+    public FolderSnapshotCache(final int maxFolders, long maxAge)
+    {
+        m_maxFolders = maxFolders;
+        m_maxAge = maxAge;
+        
+        m_snapshots = new LinkedHashMap<NodeRef, Map<String, FolderSnapshot>>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<NodeRef, Map<String, FolderSnapshot>> eldest)
+            {
+                return size() > m_maxFolders;
+            }
+        };
+    }
+    
+    /**
+     * Return the current invalidation generation. The value should be obtained before loading the
+     * folder contents that will be passed to {@link #putSnapshot(NodeRef, String, List, long)}.
+     * 
+     * @return long
+     */
+    public synchronized long getGeneration()
+    {
+        return m_generation;
+    }
+    
+    /**
+     * Return the snapshot entries for a folder, or null if there is no current snapshot for the user
+     * 
+     * @param folderNodeRef NodeRef
+     * @param userName String
+     * @return List<SnapshotEntry>
+     */
+    public synchronized List<SnapshotEntry> getSnapshot(NodeRef folderNodeRef, String userName)
+    {
+        Map<String, FolderSnapshot> userSnapshots = m_snapshots.get(folderNodeRef);
+        FolderSnapshot snapshot = userSnapshots != null ? userSnapshots.get(userName) : null;
+        
+        if ( snapshot != null && System.currentTimeMillis() - snapshot.getCreatedAt() > m_maxAge)
+        {
+            // Snapshot has expired
+            
+            userSnapshots.remove(userName);
+            if ( userSnapshots.isEmpty())
+                m_snapshots.remove(folderNodeRef);
+            snapshot = null;
+        }
+        
+        if ( snapshot == null)
+        {
+            m_misses++;
+            return null;
+        }
+        
+        m_hits++;
+        return snapshot.getEntries();
+    }
+    
+    /**
+     * Store the snapshot entries for a folder. The snapshot is discarded if any folder has been
+     * invalidated since the specified generation was obtained.
+     * 
+     * @param folderNodeRef NodeRef
+     * @param userName String
+     * @param entries List<SnapshotEntry>
+     * @param generation invalidation generation obtained before the folder contents were loaded
+     * @return true if the snapshot was stored
+     */
+    public synchronized boolean putSnapshot(NodeRef folderNodeRef, String userName, List<SnapshotEntry> entries, long generation)
+    {
+        if ( generation != m_generation || userName == null)
+        {
+            // DEBUG
+            
+            if ( logger.isDebugEnabled())
+                logger.debug("Discarding snapshot for " + folderNodeRef + ", invalidated during load");
+            return false;
+        }
+        
+        Map<String, FolderSnapshot> userSnapshots = m_snapshots.get(folderNodeRef);
+        if ( userSnapshots == null)
+        {
+            userSnapshots = new HashMap<String, FolderSnapshot>(4);
+            m_snapshots.put(folderNodeRef, userSnapshots);
+        }
+        userSnapshots.put(userName, new FolderSnapshot(entries));
+        
+        return true;
+    }
+    
+    /**
+     * Invalidate all snapshots of a folder
+     * 
+     * @param folderNodeRef NodeRef
+     */
+    public synchronized void invalidate(NodeRef folderNodeRef)
+    {
+        m_generation++;
+        m_snapshots.remove(folderNodeRef);
+    }
+    
+    /**
+     * Invalidate all snapshots
+     */
+    public synchronized void clear()
+    {
+        m_generation++;
+        m_snapshots.clear();
+    }
+    
+    /**
+     * Return the number of folders that have snapshots
+     * 
+     * @return int
+     */
+    public synchronized int size()
+    {
+        return m_snapshots.size();
+    }
+    
+    /**
+     * Return the cache details as a string
+     * 
+     * @return String
+     */
+    public synchronized String toString()
+    {
+        StringBuilder sb = new StringBuilder(80);
+        
+        sb.append("[FolderSnapshotCache folders=");
+        sb.append(m_snapshots.size());
+        sb.append("/");
+        sb.append(m_maxFolders);
+        sb.append(", maxAge=");
+        sb.append(m_maxAge);
+        sb.append(", hits=");
+        sb.append(m_hits);
+        sb.append(", misses=");
+        sb.append(m_misses);
+        sb.append("]");
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Return the node refs for a list of snapshot entries
+     * 
+     * @param entries List<SnapshotEntry>
+     * @return List<NodeRef>
+     */
+    public static List<NodeRef> getNodeRefs(List<SnapshotEntry> entries)
+    {
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(entries.size());
+        for (SnapshotEntry entry : entries)
+        {
+            nodeRefs.add(entry.getNodeRef());
+        }
+        return nodeRefs;
+    }
+    
+    /**
+     * Snapshot of a single folder for a single user
+     */
+    private static final class FolderSnapshot
+    {
+        private final List<SnapshotEntry> entries;
+        private final long createdAt;
+        
+        private FolderSnapshot(List<SnapshotEntry> entries)
+        {
+            this.entries = Collections.unmodifiableList(new ArrayList<SnapshotEntry>(entries));
+            this.createdAt = System.currentTimeMillis();
+        }
+        
+        private List<SnapshotEntry> getEntries()
+        {
+            return entries;
+        }
+        
+        private long getCreatedAt()
+        {
+            return createdAt;
+        }
+    }
+    
+    /**
+     * Snapshot Entry Class
+     * 
+     * <p>Compact, immutable copy of the file information for a single file or folder.
+     */
+    public static final class SnapshotEntry
+    {
+        private final NodeRef nodeRef;
+        private final String fileName;
+        private final long size;
+        private final long allocationSize;
+        private final long createDate;
+        private final long modifyDate;
+        private final long accessDate;
+        private final long changeDate;
+        private final int attributes;
+        private final int fileId;
+        private final boolean directory;
+        private final boolean linkNode;
+        
+        /**
+         * Class constructor
+         * 
+         * @param info ContentFileInfo
+         */
+        public SnapshotEntry(ContentFileInfo info)
+        {
+            this.nodeRef = info.getNodeRef();
+            this.fileName = info.getFileName();
+            this.size = info.getSize();
+            this.allocationSize = info.getAllocationSize();
+            this.createDate = info.getCreationDateTime();
+            this.modifyDate = info.getModifyDateTime();
+            this.accessDate = info.getAccessDateTime();
+            this.changeDate = info.getChangeDateTime();
+            this.attributes = info.getFileAttributes();
+            this.fileId = info.getFileId();
+            this.directory = info.isDirectory();
+            this.linkNode = info.isLinkNode();
+        }
+        
+        /**
+         * Copy the snapshot details to a file information object
+         * 
+         * @param info FileInfo
+         */
+        public void copyTo(FileInfo info)
+        {
+            info.resetInfo();
+            
+            info.setFileName(fileName);
+            info.setSize(size);
+            info.setAllocationSize(allocationSize);
+            info.setCreationDateTime(createDate);
+            info.setModifyDateTime(modifyDate);
+            info.setAccessDateTime(accessDate);
+            info.setChangeDateTime(changeDate);
+            info.setFileAttributes(attributes);
+            info.setFileId(fileId);
+            info.setFileType(directory ? FileType.Directory : FileType.RegularFile);
+        }
+        
+        public NodeRef getNodeRef()
+        {
+            return nodeRef;
+        }
+        
+        public String getFileName()
+        {
+            return fileName;
+        }
+        
+        public boolean isLinkNode()
+        {
+            return linkNode;
+        }
+    }
+}
@@ -29,6 +29,7 @@ package org.alfresco.filesys.repo;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.alfresco.jlan.server.filesys.FileStatus;
 import org.alfresco.jlan.server.filesys.NotifyChange;
@@ -40,6 +41,7 @@ import org.alfresco.repo.policy.JavaBehaviour;
 import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.repo.transaction.TransactionalResourceHelper;
 import org.alfresco.service.cmr.model.FileFolderService;
@@ -81,6 +83,7 @@ public class NodeMonitor extends TransactionListenerAdapter
     
     public static final String FileSysNodeEvent  = "FileSysNodeEvent";
     public static final String FileSysNodeEvent2 = "FileSysNodeEvent2";
+    public static final String FileSysSnapshotInvalidate = "FileSysSnapshotInvalidate";
     
     // Services/components
 	
@@ -256,6 +259,9 @@ public class NodeMonitor extends TransactionListenerAdapter
     		
     		// Store the event in the transaction until committed, and register the transaction listener
     		fireNodeEvent(nodeEvent);
+    		
+    		// The parent folder listing has changed
+    		invalidateFolderSnapshot(childAssocRef.getParentRef());
     	}
     }
 
@@ -280,6 +286,15 @@ public class NodeMonitor extends TransactionListenerAdapter
     	
     	if ( fType != FileFolderServiceType.INVALID) 
     	{
+    		// Any property change may change the file information in the parent folder listing
+    		
+    		if ( m_filesysCtx.getFolderSnapshotCache() != null)
+    		{
+    			ChildAssociationRef parentAssocRef = m_nodeService.getPrimaryParent(nodeRef);
+    			if ( parentAssocRef != null)
+    				invalidateFolderSnapshot(parentAssocRef.getParentRef());
+    		}
+    		
     		// Check if there has been a lock change
     		
     		String beforeLock = (String) before.get( ContentModel.PROP_LOCK_TYPE);
@@ -330,6 +345,10 @@ public class NodeMonitor extends TransactionListenerAdapter
     	
     	if ( fType != FileFolderServiceType.INVALID) 
     	{
+    		// Both the old and new parent folder listings have changed
+    		
+    		invalidateFolderSnapshot(oldChildAssocRef.getParentRef());
+    		invalidateFolderSnapshot(newChildAssocRef.getParentRef());
     		
     		// Get the full path to the file/folder node
 
@@ -377,6 +396,16 @@ public class NodeMonitor extends TransactionListenerAdapter
     	
     	if ( fType != FileFolderServiceType.INVALID) {
     		
+    		// The parent folder listing has changed, and the folder itself is going away
+    		
+    		if ( m_filesysCtx.getFolderSnapshotCache() != null)
+    		{
+    			ChildAssociationRef parentAssocRef = m_nodeService.getPrimaryParent(nodeRef);
+    			if ( parentAssocRef != null)
+    				invalidateFolderSnapshot(parentAssocRef.getParentRef());
+    			invalidateFolderSnapshot(nodeRef);
+    		}
+    		
             StringBuilder pathStr = calculateDisplayPath(nodeRef);
             String relPath = (null != pathStr) ? (pathStr.toString()):("");
     		
@@ -460,6 +489,39 @@ public class NodeMonitor extends TransactionListenerAdapter
 		// Store the event in the transaction until committed, and register the transaction listener
     }
 	
+	/**
+	 * Invalidate the folder snapshot for a folder whose contents have changed. The snapshot is
+	 * invalidated immediately and again after the transaction commits, as another session may
+	 * have reloaded it from the previously committed state in the meantime.
+	 * 
+	 * @param folderNodeRef the folder that has changed
+	 */
+	private void invalidateFolderSnapshot(NodeRef folderNodeRef) {
+		
+		final FolderSnapshotCache snapshotCache = m_filesysCtx.getFolderSnapshotCache();
+		if ( snapshotCache == null || folderNodeRef == null)
+			return;
+		
+		snapshotCache.invalidate( folderNodeRef);
+		
+		final Set<NodeRef> folders = TransactionalResourceHelper.getSet( FileSysSnapshotInvalidate + "_" + m_filesysCtx.getDeviceName());
+		if ( folders.isEmpty())
+		{
+			AlfrescoTransactionSupport.bindListener( new TransactionListenerAdapter()
+			{
+				@Override
+				public void afterCommit()
+				{
+					for ( NodeRef folder : folders)
+					{
+						snapshotCache.invalidate( folder);
+					}
+				}
+			});
+		}
+		folders.add( folderNodeRef);
+	}
+	
 	/**
 	 * Request the node monitor thread to shut down
 	 */
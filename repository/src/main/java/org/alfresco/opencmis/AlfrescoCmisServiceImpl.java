@@ -503,6 +503,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
 
         if (max > 0)
         {
+            Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>(2);
             for (FileInfo child : pageOfNodeInfos.getPage())
             {
                 try
@@ -527,7 +528,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                     }
 
                     ObjectData object = connector.createCMISObject(ni, filter, includeAllowableActions,
-                            includeRelationships, renditionFilter, false, false/*, getContext().getCmisVersion()*/);
+                            includeRelationships, renditionFilter, false, false/*, getContext().getCmisVersion()*/, parsedFilters);
 
                 	boolean isObjectInfoRequired = getContext().isObjectInfoRequired();
                     if (isObjectInfoRequired)
@@ -597,7 +598,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                 depth.intValue(),
                 filter,
                 includeAllowableActions, includeRelationships, renditionFilter, includePathSegment, false,
-                result);
+                result, new HashMap<String, Set<String>>(2));
 
         logGetObjectsCall("getDescendants", start, folderId, countDescendantsTree(result), filter, includeAllowableActions, includeRelationships,
                 renditionFilter, includePathSegment, extension, null, null, null, depth);
@@ -622,7 +623,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                 getOrCreateFolderInfo(folderId, "Folder").getNodeRef(),
                 depth.intValue(),
                 filter, includeAllowableActions, includeRelationships, renditionFilter, includePathSegment, true,
-                result);
+                result, new HashMap<String, Set<String>>(2));
 
         logGetObjectsCall("getFolderTree", start, folderId, countDescendantsTree(result), filter, includeAllowableActions, includeRelationships,
                 renditionFilter, includePathSegment, extension, null, null, null, depth);
@@ -710,7 +711,8 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
     private void getDescendantsTree(
             String repositoryId, NodeRef folderNodeRef, int depth, String filter,
             Boolean includeAllowableActions, IncludeRelationships includeRelationships, String renditionFilter,
-            Boolean includePathSegment, boolean foldersOnly, List<ObjectInFolderContainer> list)
+            Boolean includePathSegment, boolean foldersOnly, List<ObjectInFolderContainer> list,
+            Map<String, Set<String>> parsedFilters)
     {
         // get the children references
         List<ChildAssociationRef> childrenList = connector.getNodeService().getChildAssocs(folderNodeRef);
@@ -753,7 +755,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                 CMISNodeInfo ni = createNodeInfo(child.getChildRef(), null, false); // note: checkExists=false (don't need to check again)
                 object.setObject(connector.createCMISObject(
                         ni, filter, includeAllowableActions, includeRelationships,
-                        renditionFilter, false, false));
+                        renditionFilter, false, false, parsedFilters));
                 if (isObjectInfoRequired)
                 {
                     getObjectInfo(repositoryId, ni.getObjectId(), includeRelationships);
@@ -776,7 +778,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                             child.getChildRef(),
                             depth - 1, filter, includeAllowableActions,
                             includeRelationships, renditionFilter, includePathSegment, foldersOnly,
-                            container.getChildren());
+                            container.getChildren(), parsedFilters);
                 }
 
                 // add it
@@ -1023,6 +1025,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
         int skipCounter = skip;
         if (max > 0)
         {
+            Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>(2);
             for (NodeRef nodeRef : nodeRefs)
             {
                 // TODO - perhaps filter by path in the query instead?
@@ -1048,7 +1051,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                     CMISNodeInfo ni = createNodeInfo(nodeRef);
                     ObjectData object = connector.createCMISObject(
                             ni, filter, includeAllowableActions,
-                            includeRelationships, renditionFilter, false, false);
+                            includeRelationships, renditionFilter, false, false, parsedFilters);
 
                 	boolean isObjectInfoRequired = getContext().isObjectInfoRequired();
                     if (isObjectInfoRequired)
@@ -2410,6 +2413,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
         }
         else
         {
+            Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>(2);
             if (info.hasPWC())
             {
                 CMISNodeInfo pwcInfo = createNodeInfo(connector.getCheckOutCheckInService().getWorkingCopy(nodeRef));
@@ -2417,7 +2421,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                 result.add(
                         connector.createCMISObject(
                                 pwcInfo, filter, includeAllowableActions,
-                                IncludeRelationships.NONE, CMISConnector.RENDITION_NONE, false, false));
+                                IncludeRelationships.NONE, CMISConnector.RENDITION_NONE, false, false, parsedFilters));
 
             	boolean isObjectInfoRequired = getContext().isObjectInfoRequired();
                 if (isObjectInfoRequired)
@@ -2439,7 +2443,7 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                 result.add(
                         connector.createCMISObject(
                                 versionInfo, filter, includeAllowableActions,
-                                IncludeRelationships.NONE, CMISConnector.RENDITION_NONE, false, false));
+                                IncludeRelationships.NONE, CMISConnector.RENDITION_NONE, false, false, parsedFilters));
 
             	boolean isObjectInfoRequired = getContext().isObjectInfoRequired();
                 if (isObjectInfoRequired)
@@ -2828,9 +2832,9 @@ public class AlfrescoCmisServiceImpl extends AbstractCmisService implements Alfr
                         filter = filter + "," + MIN_FILTER;
                     }
 
-                    // get the object and its info
+                    // get the object and its info - rendition infos are looked up separately
                     ObjectData object = connector.createCMISObject(
-                            nodeInfo, filter, false, includeRelationships, null, false, false);
+                            nodeInfo, filter, false, includeRelationships, CMISConnector.RENDITION_NONE, false, false);
 
                     info = getObjectInfoIntern(repositoryId, object);
 
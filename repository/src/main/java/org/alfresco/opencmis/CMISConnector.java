@@ -1544,22 +1544,36 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
     public ObjectData createCMISObject(CMISNodeInfo info, String filter, boolean includeAllowableActions,
             IncludeRelationships includeRelationships, String renditionFilter, boolean includePolicyIds,
             boolean includeAcl)
+    {
+        return createCMISObject(info, filter, includeAllowableActions, includeRelationships, renditionFilter,
+                includePolicyIds, includeAcl, new HashMap<String, Set<String>>(2));
+    }
+
+    /**
+     * Creates the CMIS object for a node of a listing.
+     * 
+     * @param parsedFilters     the property filters parsed so far by the listing, keyed by filter - a listing
+     *                          usually applies the same filter to all of its objects
+     */
+    public ObjectData createCMISObject(CMISNodeInfo info, String filter, boolean includeAllowableActions,
+            IncludeRelationships includeRelationships, String renditionFilter, boolean includePolicyIds,
+            boolean includeAcl, Map<String, Set<String>> parsedFilters)
     {
         if (info.getType() == null)
         {
             throw new CmisObjectNotFoundException("No corresponding type found! Not a CMIS object?");
         }
 
-        Properties nodeProps = (info.isRelationship() ? getAssocProperties(info, filter) : getNodeProperties(info, filter));
+        Properties nodeProps = (info.isRelationship() ? getAssocProperties(info, filter, parsedFilters) : getNodeProperties(info, filter, parsedFilters));
 
         return createCMISObjectImpl(info, nodeProps, filter, includeAllowableActions, includeRelationships,
-                renditionFilter, includePolicyIds, includeAcl);
+                renditionFilter, includePolicyIds, includeAcl, parsedFilters);
     }
 
     @SuppressWarnings("unchecked")
     private ObjectData createCMISObjectImpl(final CMISNodeInfo info, Properties nodeProps, String filter,
             boolean includeAllowableActions, IncludeRelationships includeRelationships, String renditionFilter,
-            boolean includePolicyIds, boolean includeAcl)
+            boolean includePolicyIds, boolean includeAcl, Map<String, Set<String>> parsedFilters)
     {
         final ObjectDataImpl result = new ObjectDataImpl();
 
@@ -1578,7 +1592,7 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
         if (info.isRelationship())
         {
             // set properties
-            result.setProperties(getAssocProperties(info, filter));
+            result.setProperties(nodeProps);
 
             // set ACL
             if (includeAcl)
@@ -1634,7 +1648,7 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
 
             // add aspects
             List<CmisExtensionElement> extensions = getAspectExtensions(info, filter, result.getProperties()
-                    .getProperties().keySet());
+                    .getProperties().keySet(), parsedFilters);
 
             if (!extensions.isEmpty())
             {
@@ -1891,12 +1905,12 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
         }
     }
 
-    private void addAspectProperties(CMISNodeInfo info, String filter, PropertiesImpl result)
+    private void addAspectProperties(CMISNodeInfo info, String filter, PropertiesImpl result, Map<String, Set<String>> parsedFilters)
     {
         if (getRequestCmisVersion().equals(CmisVersion.CMIS_1_1))
         {
             Set<String> propertyIds = new HashSet<>();
-            Set<String> filterSet = splitFilter(filter);
+            Set<String> filterSet = splitFilter(filter, parsedFilters);
 
             Set<QName> aspects = info.getNodeAspects();
             for (QName aspect : aspects)
@@ -1932,10 +1946,15 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
     }
 
     public Properties getNodeProperties(CMISNodeInfo info, String filter)
+    {
+        return getNodeProperties(info, filter, null);
+    }
+
+    private Properties getNodeProperties(CMISNodeInfo info, String filter, Map<String, Set<String>> parsedFilters)
     {
         PropertiesImpl result = new PropertiesImpl();
 
-        Set<String> filterSet = splitFilter(filter);
+        Set<String> filterSet = splitFilter(filter, parsedFilters);
 
         for (PropertyDefinitionWrapper propDef : info.getType().getProperties())
         {
@@ -1953,16 +1972,21 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
             result.addProperty(getProperty(propDef.getPropertyDefinition().getPropertyType(), propDef, value));
         }
 
-        addAspectProperties(info, filter, result);
+        addAspectProperties(info, filter, result, parsedFilters);
 
         return result;
     }
 
     public Properties getAssocProperties(CMISNodeInfo info, String filter)
+    {
+        return getAssocProperties(info, filter, null);
+    }
+
+    private Properties getAssocProperties(CMISNodeInfo info, String filter, Map<String, Set<String>> parsedFilters)
     {
         PropertiesImpl result = new PropertiesImpl();
 
-        Set<String> filterSet = splitFilter(filter);
+        Set<String> filterSet = splitFilter(filter, parsedFilters);
 
         for (PropertyDefinitionWrapper propDefWrap : info.getType().getProperties())
         {
@@ -1987,11 +2011,17 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
      * Builds aspect extension.
      */
     public List<CmisExtensionElement> getAspectExtensions(CMISNodeInfo info, String filter, Set<String> alreadySetProperties)
+    {
+        return getAspectExtensions(info, filter, alreadySetProperties, null);
+    }
+
+    private List<CmisExtensionElement> getAspectExtensions(CMISNodeInfo info, String filter, Set<String> alreadySetProperties,
+            Map<String, Set<String>> parsedFilters)
     {
         List<CmisExtensionElement> extensions = new ArrayList<CmisExtensionElement>();
         Set<String> propertyIds = new HashSet<String>(alreadySetProperties);
         List<CmisExtensionElement> propertyExtensionList = new ArrayList<CmisExtensionElement>();
-        Set<String> filterSet = splitFilter(filter);
+        Set<String> filterSet = splitFilter(filter, parsedFilters);
 
         Set<QName> aspects = info.getNodeAspects();
         for (QName aspect : aspects)
@@ -2301,13 +2331,32 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
         return sb.toString();
     }
 
-    private Set<String> splitFilter(String filter)
+    /**
+     * @param parsedFilters     the filters already parsed by the caller, keyed by filter - may be <tt>null</tt>
+     * @return                  the query names of the properties in the filter or <tt>null</tt> for all properties
+     */
+    /* package */ Set<String> splitFilter(String filter, Map<String, Set<String>> parsedFilters)
     {
         if (filter == null)
         {
             return null;
         }
+        if (parsedFilters == null)
+        {
+            return parseFilter(filter);
+        }
+
+        Set<String> result = parsedFilters.get(filter);
+        if ((result == null) && !parsedFilters.containsKey(filter))
+        {
+            result = parseFilter(filter);
+            parsedFilters.put(filter, result);
+        }
+        return result;
+    }
 
+    private Set<String> parseFilter(String filter)
+    {
         if (filter.trim().length() == 0)
         {
             return null;
@@ -2332,7 +2381,7 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
         result.add(QUERY_NAME_OBJECT_TYPE_ID);
         result.add(QUERY_NAME_BASE_TYPE_ID);
 
-        return result;
+        return Collections.unmodifiableSet(result);
     }
 
     public AllowableActions getAllowableActions(CMISNodeInfo info)
@@ -2441,6 +2490,8 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
 
         if (max > 0)
         {
+            Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>(2);
+
             // filter relationships that not map the CMIS domain model
             for (AssociationRef assocRef : assocs)
             {
@@ -2471,7 +2522,7 @@ public class CMISConnector implements ApplicationContextAware, ApplicationListen
                 	{
 	                    result.getObjects().add(
 	                            createCMISObject(createNodeInfo(assocRef), filter, includeAllowableActions,
-	                                    IncludeRelationships.NONE, RENDITION_NONE, false, false/*, cmisVersion*/));
+	                                    IncludeRelationships.NONE, RENDITION_NONE, false, false/*, cmisVersion*/, parsedFilters));
                     }
                     catch(CmisObjectNotFoundException e)
                     {
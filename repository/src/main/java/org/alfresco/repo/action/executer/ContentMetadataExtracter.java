@@ -90,6 +90,14 @@ public class ContentMetadataExtracter extends ActionExecuterAbstractBase
 
     public static final String EXECUTOR_NAME = "extract-metadata";
 
+    /**
+     * Set to <tt>true</tt> when metadata is extracted because the content of a node was
+     * updated, so that content whose metadata is already on the node (e.g. a new version with
+     * unchanged content) is not extracted again.  Not offered for rules, where an explicit
+     * extraction is always done.
+     */
+    public static final String PARAM_SKIP_UNCHANGED_CONTENT = "skip-unchanged-content";
+
     private NodeService nodeService;
     private ContentService contentService;
     private DictionaryService dictionaryService;
@@ -400,6 +408,16 @@ public class ContentMetadataExtracter extends ActionExecuterAbstractBase
             // There is no extracter to use
             return;
         }
+        if (Boolean.TRUE.equals(ruleAction.getParameterValue(PARAM_SKIP_UNCHANGED_CONTENT)) &&
+                (extracter instanceof AsynchronousExtractor) &&
+                ((AsynchronousExtractor) extracter).isExtracted(actionedUponNodeRef, reader.getContentUrl()))
+        {
+            if(logger.isDebugEnabled())
+            {
+                logger.debug("metadata already extracted from unchanged content - do nothing");
+            }
+            return;
+        }
         if (enableStringTagging && (extracter instanceof AbstractMappingMetadataExtracter))
         {
             ((AbstractMappingMetadataExtracter) extracter).setEnableStringTagging(enableStringTagging);
@@ -27,6 +27,8 @@ package org.alfresco.repo.activities;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +40,8 @@ import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
 import org.alfresco.sync.repo.Client;
 import org.alfresco.repo.activities.feed.cleanup.FeedCleaner;
+import org.alfresco.repo.activities.post.lookup.PostLookup;
+import org.alfresco.repo.domain.activities.ActivitiesDAO;
 import org.alfresco.repo.domain.activities.ActivityFeedDAO;
 import org.alfresco.repo.domain.activities.ActivityFeedEntity;
 import org.alfresco.repo.domain.activities.FeedControlDAO;
@@ -52,12 +56,16 @@ import org.alfresco.service.cmr.model.FileInfo;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.security.AccessStatus;
 import org.alfresco.service.cmr.security.AuthorityService;
 import org.alfresco.service.cmr.security.NoSuchPersonException;
+import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.cmr.security.PersonService;
 import org.alfresco.service.cmr.site.SiteInfo;
 import org.alfresco.service.cmr.site.SiteService;
 import org.alfresco.service.namespace.QName;
+import org.alfresco.util.MaxSizeMap;
+import org.alfresco.util.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
@@ -83,10 +91,28 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
     private ActivityPostService activityPostService;
     private PersonService personService;
     private NodeService nodeService;
+    private PermissionService permissionService;
     
     private int maxFeedItems = 100;
     
     private boolean userNamesAreCaseSensitive = false;
+    
+    private boolean fanOutOnRead = false;
+    private int siteStreamCacheSize = 1000;
+    private int siteStreamCacheTimeToLiveSeconds = 30;
+    
+    /** user -> recent site stream entries that the user may see (when feeds are fanned out on read) */
+    private Map<String, SiteStreamFeed> siteStreamCache;
+    
+    /** newest entries first */
+    private static final Comparator<ActivityFeedEntity> FEED_ORDER = new Comparator<ActivityFeedEntity>()
+    {
+        public int compare(ActivityFeedEntity feed1, ActivityFeedEntity feed2)
+        {
+            int compare = feed2.getPostDate().compareTo(feed1.getPostDate());
+            return (compare != 0 ? compare : feed2.getId().compareTo(feed1.getId()));
+        }
+    };
 
     public void setMaxFeedItems(int maxFeedItems)
     {
@@ -143,6 +169,40 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
         this.nodeService = nodeService;
     }
     
+    public void setPermissionService(PermissionService permissionService)
+    {
+        this.permissionService = permissionService;
+    }
+    
+    /**
+     * Set whether site activities are read from the streams of the user's sites, as written by a feed
+     * generator that fans out on read, rather than from entries written for each site member.
+     * 
+     * @param fanOutOnRead          <tt>true</tt> to merge the user's site streams when reading the user's feed
+     *                              (default <tt>false</tt>)
+     */
+    public void setFanOutOnRead(boolean fanOutOnRead)
+    {
+        this.fanOutOnRead = fanOutOnRead;
+    }
+    
+    /**
+     * @param siteStreamCacheSize   the number of users whose merged site streams are cached (default <tt>1000</tt>)
+     */
+    public void setSiteStreamCacheSize(int siteStreamCacheSize)
+    {
+        this.siteStreamCacheSize = siteStreamCacheSize;
+    }
+    
+    /**
+     * @param siteStreamCacheTimeToLiveSeconds  how long a user's merged site streams are reused before new
+     *                                          site activities are picked up (default <tt>30</tt>)
+     */
+    public void setSiteStreamCacheTimeToLiveSeconds(int siteStreamCacheTimeToLiveSeconds)
+    {
+        this.siteStreamCacheTimeToLiveSeconds = siteStreamCacheTimeToLiveSeconds;
+    }
+    
     
     /*(non-Javadoc)
      * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
@@ -155,6 +215,7 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
             logger.warn("Cannot retrieve more items than feed cleaner max items (overriding "+maxFeedItems+" to "+feedCleanerMaxFeedItems+")");
             maxFeedItems = feedCleanerMaxFeedItems;
         }
+        siteStreamCache = Collections.synchronizedMap(new MaxSizeMap<String, SiteStreamFeed>(siteStreamCacheSize, true));
     }
     
     
@@ -294,6 +355,12 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
 
             String networkId = tenantService.getCurrentUserDomain();
 
+            if (fanOutOnRead)
+            {
+                return getPagingResults(networkId, siteId, pagingRequest,
+                        selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, minFeedId));
+            }
+
             PagingResults<ActivityFeedEntity> activityFeedEntries = feedDAO.selectPagedUserFeedEntries(feedUserId, networkId, siteId, excludeThisUser, excludeOtherUsers, minFeedId, pagingRequest);
             return activityFeedEntries;
         }
@@ -418,7 +485,7 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
                 siteId = tenantService.getName(siteId);
             }
             
-            List<ActivityFeedEntity> activityFeeds = feedDAO.selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, minFeedId, maxFeedItems);
+            List<ActivityFeedEntity> activityFeeds = selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, minFeedId);
 
             // Create a local cache just for this method to map IDs of users to their avatar NodeRef. This
             // is local to the method because we only want to cache per request - there is not point in keeping
@@ -519,6 +586,253 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
         return result;
     }
     
+    /**
+     * Select the user's feed entries, merged with the entries of the streams of the user's sites if feeds are
+     * fanned out on read.
+     */
+    private List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId) throws SQLException
+    {
+        List<ActivityFeedEntity> activityFeeds = feedDAO.selectUserFeedEntries(feedUserId, siteId, excludeThisUser, excludeOtherUsers, minFeedId, maxFeedItems);
+        if ((! fanOutOnRead) || (excludeThisUser && excludeOtherUsers))
+        {
+            return activityFeeds;
+        }
+        
+        List<ActivityFeedEntity> merged = new ArrayList<ActivityFeedEntity>(activityFeeds);
+        for (ActivityFeedEntity activityFeed : getSiteStreamEntries(feedUserId))
+        {
+            boolean thisUser = feedUserId.equals(activityFeed.getPostUserId());
+            if ((activityFeed.getId() < minFeedId) ||
+                ((siteId != null) && (! siteId.equals(activityFeed.getSiteNetwork()))) ||
+                (excludeThisUser && thisUser) ||
+                (excludeOtherUsers && (! thisUser)))
+            {
+                continue;
+            }
+            activityFeed.setFeedUserId(feedUserId);
+            merged.add(activityFeed);
+        }
+        Collections.sort(merged, FEED_ORDER);
+        
+        if ((maxFeedItems > -1) && (merged.size() > maxFeedItems))
+        {
+            merged = new ArrayList<ActivityFeedEntity>(merged.subList(0, maxFeedItems));
+        }
+        return merged;
+    }
+    
+    /**
+     * Get the recent entries of the streams of the sites that the user is a member of, newest first, filtered
+     * by the user's feed controls and read permissions.  The entries are cached per user for a short time and
+     * copies are returned.
+     */
+    private List<ActivityFeedEntity> getSiteStreamEntries(final String feedUserId) throws SQLException
+    {
+        long now = System.currentTimeMillis();
+        SiteStreamFeed siteStreamFeed = siteStreamCache.get(feedUserId);
+        if ((siteStreamFeed == null) || (siteStreamFeed.expiryTime < now))
+        {
+            List<FeedControlEntity> feedControls = feedControlDAO.selectFeedControls(feedUserId);
+            List<ActivityFeedEntity> entries = new ArrayList<ActivityFeedEntity>();
+            for (SiteInfo siteInfo : siteService.listSites(feedUserId))
+            {
+                String siteNetwork = tenantService.getName(siteInfo.getShortName());
+                for (ActivityFeedEntity activityFeed : feedDAO.selectSiteStreamEntries(siteNetwork, -1L, maxFeedItems))
+                {
+                    if (acceptActivity(activityFeed, feedControls) && canRead(feedUserId, activityFeed))
+                    {
+                        entries.add(activityFeed);
+                    }
+                }
+            }
+            Collections.sort(entries, FEED_ORDER);
+            if ((maxFeedItems > -1) && (entries.size() > maxFeedItems))
+            {
+                entries = new ArrayList<ActivityFeedEntity>(entries.subList(0, maxFeedItems));
+            }
+            
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Merged " + entries.size() + " site stream entries for user : '" + feedUserId + "'");
+            }
+            
+            siteStreamFeed = new SiteStreamFeed(entries, now + (siteStreamCacheTimeToLiveSeconds * 1000L));
+            siteStreamCache.put(feedUserId, siteStreamFeed);
+        }
+        
+        // the callers update the entries, so give them their own
+        List<ActivityFeedEntity> entries = new ArrayList<ActivityFeedEntity>(siteStreamFeed.entries.size());
+        for (ActivityFeedEntity activityFeed : siteStreamFeed.entries)
+        {
+            entries.add(copy(activityFeed));
+        }
+        return entries;
+    }
+    
+    /**
+     * Filter based on the user's opt-out feed controls, as done for each recipient when feeds are fanned out on write
+     */
+    private boolean acceptActivity(ActivityFeedEntity activityFeed, List<FeedControlEntity> feedControls)
+    {
+        for (FeedControlEntity feedControl : feedControls)
+        {
+            if (ActivitiesDAO.KEY_ACTIVITY_NULL_VALUE.equals(feedControl.getSiteNetwork()) && (feedControl.getAppTool() != null))
+            {
+                if (feedControl.getAppTool().equals(activityFeed.getAppTool()))
+                {
+                    // exclude this appTool (across sites)
+                    return false;
+                }
+            }
+            else if (((feedControl.getAppTool() == null) || (feedControl.getAppTool().length() == 0)) && (feedControl.getSiteNetwork() != null))
+            {
+                if (feedControl.getSiteNetwork().equals(activityFeed.getSiteNetwork()))
+                {
+                    // exclude this site (across appTools)
+                    return false;
+                }
+            }
+            else if (((feedControl.getSiteNetwork() != null) && (feedControl.getSiteNetwork().length() > 0)) &&
+                     ((feedControl.getAppTool() != null) && (feedControl.getAppTool().length() > 0)))
+            {
+                if ((feedControl.getSiteNetwork().equals(activityFeed.getSiteNetwork())) &&
+                    (feedControl.getAppTool().equals(activityFeed.getAppTool())))
+                {
+                    // exclude this appTool for this site
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Node read permission check (if a nodeRef, or else parent nodeRef, is present and still exists)
+     */
+    private boolean canRead(String feedUserId, ActivityFeedEntity activityFeed)
+    {
+        if (permissionService == null)
+        {
+            return true;
+        }
+        
+        NodeRef nodeRef = null;
+        NodeRef parentNodeRef = null;
+        try
+        {
+            JSONObject summary = new JSONObject(activityFeed.getActivitySummary());
+            String nodeRefStr = summary.optString(PostLookup.JSON_NODEREF, null);
+            String parentNodeRefStr = summary.optString(PostLookup.JSON_NODEREF_PARENT, null);
+            nodeRef = (nodeRefStr != null && NodeRef.isNodeRef(nodeRefStr)) ? new NodeRef(nodeRefStr) : null;
+            parentNodeRef = (parentNodeRefStr != null && NodeRef.isNodeRef(parentNodeRefStr)) ? new NodeRef(parentNodeRefStr) : null;
+        }
+        catch (JSONException e)
+        {
+            // not JSON - hence no nodeRef
+        }
+        
+        if ((nodeRef == null) && (parentNodeRef == null))
+        {
+            return true;
+        }
+        
+        final NodeRef checkNodeRef;
+        if ((nodeRef != null) && nodeService.exists(nodeRef))
+        {
+            checkNodeRef = nodeRef;
+        }
+        else if ((parentNodeRef != null) && nodeService.exists(parentNodeRef))
+        {
+            // eg. deleted node
+            checkNodeRef = parentNodeRef;
+        }
+        else
+        {
+            return false;
+        }
+        
+        return AuthenticationUtil.runAs(new AuthenticationUtil.RunAsWork<Boolean>()
+        {
+            public Boolean doWork() throws Exception
+            {
+                return (permissionService.hasPermission(checkNodeRef, PermissionService.READ) == AccessStatus.ALLOWED);
+            }
+        }, feedUserId);
+    }
+    
+    private static ActivityFeedEntity copy(ActivityFeedEntity activityFeed)
+    {
+        ActivityFeedEntity copy = new ActivityFeedEntity();
+        copy.setId(activityFeed.getId());
+        copy.setActivityType(activityFeed.getActivityType());
+        copy.setActivitySummary(activityFeed.getActivitySummary());
+        copy.setPostUserId(activityFeed.getPostUserId());
+        copy.setSiteNetwork(activityFeed.getSiteNetwork());
+        copy.setAppTool(activityFeed.getAppTool());
+        copy.setPostDate(activityFeed.getPostDate());
+        copy.setPostId(activityFeed.getPostId());
+        copy.setFeedDate(activityFeed.getFeedDate());
+        return copy;
+    }
+    
+    /**
+     * Page through the given user feed entries, filtering out those that do not belong to the network if no site is given
+     */
+    private PagingResults<ActivityFeedEntity> getPagingResults(String networkId, String siteId, PagingRequest pagingRequest, List<ActivityFeedEntity> feedEntries)
+    {
+        final List<ActivityFeedEntity> page = new ArrayList<ActivityFeedEntity>();
+        boolean more = false;
+        int skipCount = pagingRequest.getSkipCount();
+        for (ActivityFeedEntity activityFeed : feedEntries)
+        {
+            if ((siteId == null) && (! networkId.equals(tenantService.getDomain(activityFeed.getSiteNetwork()))))
+            {
+                continue;
+            }
+            if (skipCount > 0)
+            {
+                skipCount--;
+            }
+            else if (page.size() < pagingRequest.getMaxItems())
+            {
+                page.add(activityFeed);
+            }
+            else
+            {
+                more = true;
+                break;
+            }
+        }
+        
+        final boolean hasMoreItems = more;
+        return new PagingResults<ActivityFeedEntity>()
+        {
+            @Override
+            public List<ActivityFeedEntity> getPage()
+            {
+                return page;
+            }
+
+            @Override
+            public boolean hasMoreItems()
+            {
+                return hasMoreItems;
+            }
+
+            @Override
+            public Pair<Integer, Integer> getTotalResultCount()
+            {
+                return new Pair<Integer, Integer>(null, null);
+            }
+
+            @Override
+            public String getQueryExecutionId()
+            {
+                return null;
+            }
+        };
+    }
+    
     /* (non-Javadoc)
      * @see org.alfresco.service.cmr.activities.ActivityService#getSiteFeedEntries(java.lang.String, java.lang.String)
      */
@@ -653,6 +967,7 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
                     userId = userId.toLowerCase();
                 }
                 feedControlDAO.insertFeedControl(new FeedControlEntity(userId, feedControl));
+                invalidateSiteStreamFeed(userId);
             }
         }
         catch (SQLException e) 
@@ -761,6 +1076,7 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
             }
 
             feedControlDAO.deleteFeedControl(new FeedControlEntity(userId, feedControl));
+            invalidateSiteStreamFeed(userId);
         }
         catch (SQLException e) 
         {
@@ -814,6 +1130,29 @@ public class ActivityServiceImpl implements ActivityService, InitializingBean
         }
     }
     
+    private void invalidateSiteStreamFeed(String userId)
+    {
+        if (siteStreamCache != null)
+        {
+            siteStreamCache.remove(userId);
+        }
+    }
+    
+    /**
+     * A user's merged site stream entries and when they are to be refreshed
+     */
+    private static class SiteStreamFeed
+    {
+        private final List<ActivityFeedEntity> entries;
+        private final long expiryTime;
+        
+        private SiteStreamFeed(List<ActivityFeedEntity> entries, long expiryTime)
+        {
+            this.entries = entries;
+            this.expiryTime = expiryTime;
+        }
+    }
+    
     private String getCurrentUser()
     {
         String userId = AuthenticationUtil.getFullyAuthenticatedUser();
@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.activities.feed;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State shared by the feed jobs of one feed generator run, which may be processed concurrently:
+ * the site members looked up by any of the jobs and the totals for the run.
+ *
+ * @since 7.0
+ */
+public class FeedRunContext
+{
+    private final long startTime = System.currentTimeMillis();
+    private final Map<String, Set<String>> siteConnectedUsers = new ConcurrentHashMap<String, Set<String>>();
+    private final AtomicInteger postCount = new AtomicInteger();
+    private final AtomicInteger feedEntryCount = new AtomicInteger();
+
+    /**
+     * @return          site -> site members (including the empty user for the site feed), to be treated as read-only
+     */
+    public Map<String, Set<String>> getSiteConnectedUsers()
+    {
+        return siteConnectedUsers;
+    }
+
+    public void addProcessed(int posts, int feedEntries)
+    {
+        postCount.addAndGet(posts);
+        feedEntryCount.addAndGet(feedEntries);
+    }
+
+    public int getPostCount()
+    {
+        return postCount.get();
+    }
+
+    public int getFeedEntryCount()
+    {
+        return feedEntryCount.get();
+    }
+
+    /**
+     * @return          a summary of the work done so far, with rates per second
+     */
+    public String getSummary()
+    {
+        long elapsed = Math.max(System.currentTimeMillis() - startTime, 1L);
+        int posts = postCount.get();
+        int feedEntries = feedEntryCount.get();
+        return String.format(
+                "Generated %d activity feed entries for %d activity posts in %d msecs (%.1f posts/s, %.1f entries/s)",
+                feedEntries, posts, elapsed, posts * 1000.0 / elapsed, feedEntries * 1000.0 / elapsed);
+    }
+}
@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -92,13 +93,48 @@ public abstract class FeedTaskProcessor
     private static final String URL_SERVICE_TEMPLATE  = "/api/activities/template";
     
     private boolean userNamesAreCaseSensitive = false;
+    private boolean fanOutOnRead = false;
+    private int feedInsertBatchSize = 100;
     
     public void setUserNamesAreCaseSensitive(boolean userNamesAreCaseSensitive)
     {
         this.userNamesAreCaseSensitive = userNamesAreCaseSensitive;
     }
     
+    /**
+     * When set, a site activity is stored once in the site's stream rather than once for each site member,
+     * and the members' feeds are assembled from the streams of their sites when read.  Followers that are
+     * not site members, and posting users that are not site members, are still given their own entries.
+     * 
+     * @param fanOutOnRead          <tt>true</tt> to write site activities to the site stream only
+     *                              (default <tt>false</tt>)
+     */
+    public void setFanOutOnRead(boolean fanOutOnRead)
+    {
+        this.fanOutOnRead = fanOutOnRead;
+    }
+    
+    /**
+     * @param feedInsertBatchSize   the number of feed entries (or activity posts) to collect, across the activity posts
+     *                              of a job, before inserting them together (default <tt>100</tt>).  The entries are
+     *                              inserted in the same transaction that marks their posts as processed, and no more
+     *                              than this number of entries are inserted by any one statement - even when a single
+     *                              post fans out to more recipients.
+     */
+    public void setFeedInsertBatchSize(int feedInsertBatchSize)
+    {
+        this.feedInsertBatchSize = feedInsertBatchSize;
+    }
+    
     public void process(int jobTaskNode, long minSeq, long maxSeq, RepoCtx ctx) throws Exception
+    {
+        process(jobTaskNode, minSeq, maxSeq, ctx, new FeedRunContext());
+    }
+    
+    /**
+     * Process the activity posts of a feed job, sharing site members with, and adding to the totals of, the other jobs of the run
+     */
+    public void process(int jobTaskNode, long minSeq, long maxSeq, RepoCtx ctx, FeedRunContext runCtx) throws Exception
     {
         long startTime = System.currentTimeMillis();
         
@@ -123,13 +159,18 @@ public abstract class FeedTaskProcessor
             if (logger.isDebugEnabled()) { logger.debug("Process: " + activityPosts.size() + " activity posts"); }
             
             // local caches for this run of activity posts
-            Map<String, Set<String>> siteConnectedUsers = new HashMap<String, Set<String>>();                                 // site -> site members
+            Map<String, Set<String>> siteConnectedUsers = runCtx.getSiteConnectedUsers();                                     // site -> site members (shared by the run)
             Map<Pair<String, String>, Set<String>> followerConnectedUsers = new HashMap<Pair<String, String>, Set<String>>(); // user -> followers
             Map<Pair<String, String>, Boolean> canUserReadSite = new HashMap<Pair<String, String>, Boolean>();                // <user, site> -> true/false (note: used when following, implied as true for site members)
             Map<String, List<FeedControlEntity>> userFeedControls = new HashMap<String, List<FeedControlEntity>>();
             
             List<String> fmTemplates = Arrays.asList(new String[]{"activities/org/alfresco/generic.json.ftl"});
             
+            // feed entries waiting to be inserted together, and the posts they were generated for - a post is only
+            // marked as processed in the transaction that inserts its feed entries
+            List<ActivityFeedEntity> pendingFeeds = new ArrayList<ActivityFeedEntity>(feedInsertBatchSize);
+            List<Long> pendingPostIds = new ArrayList<Long>();
+            
             // for each activity post ...
             for (ActivityPostEntity activityPost : activityPosts)
             {
@@ -216,112 +257,112 @@ public abstract class FeedTaskProcessor
                     continue;
                 }
                 
-                try 
-                { 
-                    startTransaction();
-                    
-                    if (logger.isTraceEnabled())
+                if (logger.isTraceEnabled())
+                {
+                    logger.trace("Process: " + recipients.size() + " candidate connections for activity post " + activityPost.getId());
+                }
+                
+                int excludedConnections = 0;
+                
+                for (String recipient : recipients)
+                {
+                    boolean siteStream = recipient.equals(ActivitiesDAO.KEY_ACTIVITY_SITE_STREAM_VALUE);
+                    List<FeedControlEntity> feedControls = null;
+                    if (! (recipient.equals("") || siteStream))
                     {
-                        logger.trace("Process: " + recipients.size() + " candidate connections for activity post " + activityPost.getId());
+                        // Get user's feed controls
+                        feedControls = userFeedControls.get(recipient);
+                        if (feedControls == null)
+                        {
+                            feedControls = getFeedControls(recipient);
+                            userFeedControls.put(recipient, feedControls);
+                        }
                     }
                     
-                    int excludedConnections = 0;
-                    
-                    for (String recipient : recipients)
+                    // filter based on opt-out feed controls (if any)
+                    if (! acceptActivity(activityPost, feedControls))
                     {
-                        List<FeedControlEntity> feedControls = null;
-                        if (! recipient.equals(""))
-                        {
-                            // Get user's feed controls
-                            feedControls = userFeedControls.get(recipient);
-                            if (feedControls == null)
-                            {
-                                feedControls = getFeedControls(recipient);
-                                userFeedControls.put(recipient, feedControls);
-                            }
-                        }
-                        
-                        // filter based on opt-out feed controls (if any)
-                        if (! acceptActivity(activityPost, feedControls))
+                        excludedConnections++;
+                    }
+                    else
+                    {
+                        // node read permission check (if nodeRef is present) - site stream is checked by its readers
+                        if ((! siteStream) && (! canRead(ctx, recipient, model)))
                         {
                             excludedConnections++;
+                            continue;
                         }
-                        else
+                        
+                        for (String fmTemplate : fmTemplates)
                         {
-                            // node read permission check (if nodeRef is present)
-                            if (! canRead(ctx, recipient, model))
-                            {
-                                excludedConnections++;
-                                continue;
-                            }
+                            String formatFound = FeedTaskProcessor.FEED_FORMAT_JSON;
                             
-                            for (String fmTemplate : fmTemplates)
+                            ActivityFeedEntity feed = new ActivityFeedEntity();
+                            
+                            // Generate activity feed summary 
+                            //MNT-9104 If username contains uppercase letters the action of joining a site will not be displayed in "My activities" 
+                            if (! userNamesAreCaseSensitive)
                             {
-                                String formatFound = FeedTaskProcessor.FEED_FORMAT_JSON;
-                                
-                                ActivityFeedEntity feed = new ActivityFeedEntity();
-                                
-                                // Generate activity feed summary 
-                                //MNT-9104 If username contains uppercase letters the action of joining a site will not be displayed in "My activities" 
-                                if (! userNamesAreCaseSensitive)
+                                if (! siteStream)
                                 {
                                     recipient = recipient.toLowerCase();
-                                    postingUserId = postingUserId.toLowerCase();
                                 }
-                                feed.setFeedUserId(recipient);
-                                feed.setPostUserId(postingUserId);
-                                feed.setActivityType(activityType);
-                                
-                                String activitySummary = null;
-                                    // allows JSON to simply pass straight through
-                                    activitySummary = activityPost.getActivityData();
-                                
-                                if (! activitySummary.equals(""))
+                                postingUserId = postingUserId.toLowerCase();
+                            }
+                            feed.setFeedUserId(recipient);
+                            feed.setPostUserId(postingUserId);
+                            feed.setActivityType(activityType);
+                            
+                            String activitySummary = null;
+                                // allows JSON to simply pass straight through
+                                activitySummary = activityPost.getActivityData();
+                            
+                            if (! activitySummary.equals(""))
+                            {
+                                if (activitySummary.length() > ActivityFeedDAO.MAX_LEN_ACTIVITY_SUMMARY)
                                 {
-                                    if (activitySummary.length() > ActivityFeedDAO.MAX_LEN_ACTIVITY_SUMMARY)
-                                    {
-                                        logger.warn("Skip feed entry (activity post " + activityPost.getId() + ") since activity summary - exceeds " + ActivityFeedDAO.MAX_LEN_ACTIVITY_SUMMARY + " chars: " + activitySummary);
-                                    }
-                                    else
-                                    {
-                                        feed.setActivitySummary(activitySummary);
-                                        feed.setSiteNetwork(thisSite);
-                                        feed.setAppTool(activityPost.getAppTool());
-                                        feed.setPostDate(activityPost.getPostDate());
-                                        feed.setPostId(activityPost.getId());
-                                        feed.setFeedDate(new Date());
-                                        
-                                        // Insert activity feed
-                                        insertFeedEntry(feed); // ignore returned feedId
-                                        
-                                        totalGenerated++;
-                                    }
+                                    logger.warn("Skip feed entry (activity post " + activityPost.getId() + ") since activity summary - exceeds " + ActivityFeedDAO.MAX_LEN_ACTIVITY_SUMMARY + " chars: " + activitySummary);
                                 }
                                 else
                                 {
-                                    if (logger.isDebugEnabled())
-                                    {
-                                        logger.debug("Empty template result for activityType '" + activityType + "' using format '" + formatFound + "' hence skip feed entry (activity post " + activityPost.getId() + ")");
-                                    }
+                                    feed.setActivitySummary(activitySummary);
+                                    feed.setSiteNetwork(thisSite);
+                                    feed.setAppTool(activityPost.getAppTool());
+                                    feed.setPostDate(activityPost.getPostDate());
+                                    feed.setPostId(activityPost.getId());
+                                    feed.setFeedDate(new Date());
+                                    
+                                    // Insert activity feed (with others)
+                                    pendingFeeds.add(feed);
+                                    
+                                    totalGenerated++;
+                                }
+                            }
+                            else
+                            {
+                                if (logger.isDebugEnabled())
+                                {
+                                    logger.debug("Empty template result for activityType '" + activityType + "' using format '" + formatFound + "' hence skip feed entry (activity post " + activityPost.getId() + ")");
                                 }
                             }
                         }
                     }
-                    
-                    updatePostStatus(activityPost.getId(), ActivityPostEntity.STATUS.PROCESSED);
-                    
-                    commitTransaction();
-                    
-                    if (logger.isDebugEnabled())
-                    {
-                        logger.debug("Processed: " + (recipients.size() - excludedConnections) + " connections for activity post " + activityPost.getId() + " (excluded " + excludedConnections + ")");
-                    }
-                } 
-                finally 
-                { 
-                    endTransaction();
-                } 
+                }
+                
+                pendingPostIds.add(activityPost.getId());
+                
+                if ((pendingFeeds.size() >= feedInsertBatchSize) || (pendingPostIds.size() >= feedInsertBatchSize))
+                {
+                    processPosts(pendingFeeds, pendingPostIds);
+                }
+                
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Processed: " + (recipients.size() - excludedConnections) + " connections for activity post " + activityPost.getId() + " (excluded " + excludedConnections + ")");
+                }
             }
+            
+            processPosts(pendingFeeds, pendingPostIds);
         }
         catch(SQLException se)
         {
@@ -331,6 +372,7 @@ public abstract class FeedTaskProcessor
         finally
         {
             int postCnt = activityPosts == null ? 0 : activityPosts.size();
+            runCtx.addProcessed(postCnt, totalGenerated);
             
             // TODO i18n info message
             StringBuilder sb = new StringBuilder();
@@ -340,17 +382,54 @@ public abstract class FeedTaskProcessor
         }
     }
     
+    /**
+     * Insert the pending feed entries and mark the posts they were generated for as processed, in one transaction, so
+     * that a failure leaves the posts to be processed again rather than losing their entries.  The entries are inserted
+     * in chunks of the batch size, as a post to a large site may alone generate thousands of them: a single multi-row
+     * insert would exceed the bind parameter or packet size limits of the database.
+     */
+    private void processPosts(List<ActivityFeedEntity> pendingFeeds, List<Long> pendingPostIds) throws SQLException
+    {
+        if (pendingPostIds.isEmpty())
+        {
+            return;
+        }
+        int chunkSize = Math.max(1, feedInsertBatchSize);
+        try
+        {
+            startTransaction();
+            
+            for (int i = 0; i < pendingFeeds.size(); i += chunkSize)
+            {
+                insertFeedEntries(pendingFeeds.subList(i, Math.min(i + chunkSize, pendingFeeds.size())));
+            }
+            for (Long postId : pendingPostIds)
+            {
+                updatePostStatus(postId, ActivityPostEntity.STATUS.PROCESSED);
+            }
+            
+            commitTransaction();
+        }
+        finally
+        {
+            endTransaction();
+        }
+        pendingFeeds.clear();
+        pendingPostIds.clear();
+    }
+    
     private Set<String> getRecipients(RepoCtx ctx, String siteId, String postUserId, String tenantDomain,
                                       Map<String, Set<String>> siteConnectedUsers, Map<Pair<String, String>, Set<String>> followerConnectedUsers, Map<Pair<String, String>, Boolean> canUserReadSite) throws Exception
     {
         // Recipients of this post
         Set<String> recipients = new HashSet<String>();
+        Set<String> connectedUsers = null;
         
         // Add site members to recipient list
         if ((null != siteId) && (siteId.length() > 0))
         {
             // Get the members of this site - save hammering the repository by reusing cached site members
-            Set<String> connectedUsers = siteConnectedUsers.get(siteId);
+            connectedUsers = siteConnectedUsers.get(siteId);
             if (connectedUsers == null)
             {
                 try
@@ -428,6 +507,22 @@ public abstract class FeedTaskProcessor
         // Add the originator to recipients
         recipients.add(postUserId);
         
+        if (fanOutOnRead && (connectedUsers != null))
+        {
+            // Site members (including the site feed) read the post from the site stream
+            boolean caseSensitive = ctx.isUserNamesAreCaseSensitive();
+            for (Iterator<String> it = recipients.iterator(); it.hasNext(); )
+            {
+                String recipient = it.next();
+                if (connectedUsers.contains(recipient) || (!caseSensitive && connectedUsers.contains(recipient.toLowerCase())))
+                {
+                    it.remove();
+                }
+            }
+            recipients.add("");
+            recipients.add(ActivitiesDAO.KEY_ACTIVITY_SITE_STREAM_VALUE);
+        }
+        
         return recipients;
     }
     
@@ -444,6 +539,17 @@ public abstract class FeedTaskProcessor
     public abstract List<FeedControlEntity> selectUserFeedControls(String userId) throws SQLException;
 
     public abstract long insertFeedEntry(ActivityFeedEntity feed) throws SQLException;
+    
+    /**
+     * Insert feed entries together - by default one at a time
+     */
+    public void insertFeedEntries(List<ActivityFeedEntity> feeds) throws SQLException
+    {
+        for (ActivityFeedEntity feed : feeds)
+        {
+            insertFeedEntry(feed);
+        }
+    }
 
     public abstract int updatePostStatus(long id, ActivityPostEntity.STATUS status) throws SQLException;
 
@@ -313,7 +313,8 @@ public class FeedCleaner implements NodeServicePolicies.BeforeDeleteNodePolicy
                     String feedUserId = userFeedTooMany.getFeedUserId();
                     // Rather than filter out the two usernames that indicate site-specific
                     // feed entries, we can just filter them out now.
-                    if (ActivitiesDAO.KEY_ACTIVITY_NULL_VALUE.equals(feedUserId))
+                    if (ActivitiesDAO.KEY_ACTIVITY_NULL_VALUE.equals(feedUserId) ||
+                        ActivitiesDAO.KEY_ACTIVITY_SITE_STREAM_VALUE.equals(feedUserId))
                     {
                         if (logger.isTraceEnabled())
                         {
@@ -385,6 +386,11 @@ public class FeedCleaner implements NodeServicePolicies.BeforeDeleteNodePolicy
                         logger.trace("Get the feeds to keep for site.");
                     }
                     List<ActivityFeedEntity> feedsToKeep = feedDAO.selectSiteFeedEntries(siteId, maxFeedSize);
+                    if (feedsToKeep.size() < maxFeedSize)
+                    {
+                        // the site stream (if feeds are fanned out on read) holds all of the site's entries
+                        feedsToKeep = feedDAO.selectSiteStreamEntries(siteId, -1L, maxFeedSize);
+                    }
                     if (logger.isTraceEnabled())
                     {
                         for(ActivityFeedEntity feedToKeep : feedsToKeep)
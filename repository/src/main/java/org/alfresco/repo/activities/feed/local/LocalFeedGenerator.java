@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.alfresco.repo.activities.feed.AbstractFeedGenerator;
+import org.alfresco.repo.activities.feed.FeedRunContext;
 import org.alfresco.repo.activities.feed.FeedTaskProcessor;
 import org.alfresco.repo.activities.feed.JobSettings;
 import org.alfresco.repo.activities.feed.RepoCtx;
@@ -102,6 +103,9 @@ public class LocalFeedGenerator extends AbstractFeedGenerator
             }
         }, AuthenticationUtil.getSystemUserName()); // need web scripts to support System-level authentication ... see RepositoryContainer !
         
+        // site members and totals shared by the jobs of this run
+        final FeedRunContext runCtx = new FeedRunContext();
+        
         // process the activity posts using the batch processor {@link BatchProcessor}
         BatchProcessor.BatchProcessWorker<JobSettings> worker = new BatchProcessor.BatchProcessWorker<JobSettings>()
         {
@@ -140,7 +144,7 @@ public class LocalFeedGenerator extends AbstractFeedGenerator
                         RepoCtx webScriptsCtx = js.getWebScriptsCtx();
                         
                         // FeedTaskProcessor takes JobSettings parameters instead collection of ActivityPost. FeedTaskProcessor can be refactored.
-                        feedTaskProcessor.process(jobTaskNode , minSeq , maxSeq , webScriptsCtx );
+                        feedTaskProcessor.process(jobTaskNode , minSeq , maxSeq , webScriptsCtx, runCtx);
                         return null;
                     }
                 }, false, true);
@@ -148,7 +152,36 @@ public class LocalFeedGenerator extends AbstractFeedGenerator
         };
         
         // provides a JobSettings object
-        BatchProcessWorkProvider<JobSettings> provider = new BatchProcessWorkProvider<JobSettings>()
+        BatchProcessWorkProvider<JobSettings> provider = getJobSettingsProvider(minSequence, maxSequence, maxNodeHash);
+        
+        final RetryingTransactionHelper txHelper = getTransactionService().getRetryingTransactionHelper();
+        txHelper.setMaxRetries(0);
+
+        // batchSize and loggingInterval parameters are equal 1 because provider always will provide collection with one JobSettings object. 
+        // FeedTaskProcessor fetches list activity posts by itself before processing. It needs only JobSettings parameters. FeedTaskProcessor can be refactored.
+        new BatchProcessor<JobSettings>(
+                "LocalFeedGenerator",
+                txHelper,
+                provider,
+                numThreads, 1,
+                null,
+                logger, 1).process(worker, true);
+        
+        if (runCtx.getPostCount() > 0)
+        {
+            logger.info(runCtx.getSummary() + " using " + numThreads + " threads");
+        }
+        
+        return true;
+    }
+        
+    /**
+     * Hand out the sequence ranges of a run, one range per job.  The ranges get smaller as the remaining range shrinks,
+     * so that the tail of the run is spread across the threads rather than left to one of them.
+     */
+    /* package */ BatchProcessWorkProvider<JobSettings> getJobSettingsProvider(final long minSequence, final long maxSequence, final int maxNodeHash)
+    {
+        return new BatchProcessWorkProvider<JobSettings>()
         {
             private Long skip = minSequence;
             private boolean hasMore = true;
@@ -170,13 +203,17 @@ public class LocalFeedGenerator extends AbstractFeedGenerator
                     return Collections.emptyList();
                 }
                 
+                // Guided sizing: an even share of the remaining range for each thread, up to the batch size
+                long remaining = maxSequence - skip + 1;
+                long size = Math.max(1L, Math.min(batchSize, (remaining + numThreads - 1) / numThreads));
+                
                 JobSettings js = new JobSettings();
                 js.setMinSeq(skip);
-                js.setMaxSeq(skip + batchSize - 1);
+                js.setMaxSeq(skip + size - 1);
                 js.setJobTaskNode(maxNodeHash);
                 js.setWebScriptsCtx(getWebScriptsCtx());
                 
-                skip += batchSize;
+                skip += size;
                 hasMore = skip > maxSequence ? false : true;
                 
                 // One JobSettings object will be returned. Because FeedTaskProcessor fetches list activity posts by itself before processing.
@@ -186,21 +223,5 @@ public class LocalFeedGenerator extends AbstractFeedGenerator
                 return result;
             }
         };
-        
-        final RetryingTransactionHelper txHelper = getTransactionService().getRetryingTransactionHelper();
-        txHelper.setMaxRetries(0);
-
-        // batchSize and loggingInterval parameters are equal 1 because provider always will provide collection with one JobSettings object. 
-        // FeedTaskProcessor fetches list activity posts by itself before processing. It needs only JobSettings parameters. FeedTaskProcessor can be refactored.
-        new BatchProcessor<JobSettings>(
-                "LocalFeedGenerator",
-                txHelper,
-                provider,
-                numThreads, 1,
-                null,
-                logger, 1).process(worker, true);
-        
-        return true;
     }
-        
 }
@@ -26,9 +26,15 @@
 package org.alfresco.repo.content.cleanup;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.alfresco.error.AlfrescoRuntimeException;
@@ -44,6 +50,7 @@ import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.TraceableThreadFactory;
 import org.alfresco.util.VmShutdownListener;
 import org.alfresco.util.VmShutdownListener.VmShutdownException;
 import org.apache.commons.logging.Log;
@@ -126,11 +133,18 @@ public class ContentStoreCleaner
     private TransactionService transactionService;
     private int protectDays;
     private DeleteFailureAction deletionFailureAction;
+    private int deletionThreads;
+    
+    /** Metrics of the last cleanup run */
+    private volatile long lastRunDeletedCount;
+    private volatile long lastRunFailedCount;
+    private volatile long lastRunDurationMs;
     
     public ContentStoreCleaner()
     {
         this.protectDays = 7;
         this.deletionFailureAction = DeleteFailureAction.IGNORE;
+        this.deletionThreads = 1;
     }
 
     /**
@@ -203,6 +217,41 @@ public class ContentStoreCleaner
         this.deletionFailureAction = deletionFailureAction;
     }
 
+    /**
+     * Set the number of threads that physically delete the orphaned binaries of each batch.
+     * The default is 1, deleting the binaries one after the other.
+     * 
+     * @param deletionThreads           the number of deletion threads
+     */
+    public void setDeletionThreads(int deletionThreads)
+    {
+        this.deletionThreads = deletionThreads;
+    }
+
+    /**
+     * @return                          the number of orphaned URLs removed by the last cleanup run
+     */
+    public long getLastRunDeletedCount()
+    {
+        return lastRunDeletedCount;
+    }
+
+    /**
+     * @return                          the number of orphaned binaries that failed to be deleted by the last cleanup run
+     */
+    public long getLastRunFailedCount()
+    {
+        return lastRunFailedCount;
+    }
+
+    /**
+     * @return                          the duration of the last cleanup run (ms)
+     */
+    public long getLastRunDurationMs()
+    {
+        return lastRunDurationMs;
+    }
+
     /**
      * Initializes the cleaner.
      */
@@ -324,30 +373,63 @@ public class ContentStoreCleaner
     private void executeInternal()
     {
         final long maxOrphanTime = System.currentTimeMillis() - (protectDays * 24 * 3600 * 1000L);
+        final long startTime = System.currentTimeMillis();
+        lastRunDeletedCount = 0L;
+        lastRunFailedCount = 0L;
+        lastRunDurationMs = 0L;
+        
+        ExecutorService executorService = null;
+        if (deletionThreads > 1)
+        {
+            TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+            threadFactory.setNamePrefix("ContentStoreCleaner");
+            threadFactory.setThreadDaemon(true);
+            executorService = Executors.newFixedThreadPool(deletionThreads, threadFactory);
+        }
+        final ExecutorService deletionExecutor = executorService;
+        
         // execute in READ-WRITE txn
         RetryingTransactionCallback<Long> getAndDeleteWork = new RetryingTransactionCallback<Long>()
         {
             public Long execute() throws Exception
             {
-                return cleanBatch(maxOrphanTime, 1000);
+                return cleanBatch(maxOrphanTime, 1000, deletionExecutor);
             };
         };
-        while (true)
+        try
         {
-            Long lastProcessedOrphanId = transactionService.getRetryingTransactionHelper().doInTransaction(getAndDeleteWork);
-            if (vmShutdownListener.isVmShuttingDown())
+            while (true)
             {
-                throw new VmShutdownException();
+                Long lastProcessedOrphanId = transactionService.getRetryingTransactionHelper().doInTransaction(getAndDeleteWork);
+                if (vmShutdownListener.isVmShuttingDown())
+                {
+                    throw new VmShutdownException();
+                }
+                if (lastProcessedOrphanId == null)
+                {
+                    // There is no more to process
+                    break;
+                }
+                // There is still more to delete, so continue
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("   Removed orphaned content URLs up orphan time " + new Date(lastProcessedOrphanId));
+                }
             }
-            if (lastProcessedOrphanId == null)
+        }
+        finally
+        {
+            if (deletionExecutor != null)
             {
-                // There is no more to process
-                break;
+                deletionExecutor.shutdown();
             }
-            // There is still more to delete, so continue
-            if (logger.isDebugEnabled())
+            lastRunDurationMs = System.currentTimeMillis() - startTime;
+            if (logger.isDebugEnabled() && lastRunDeletedCount > 0)
             {
-                logger.debug("   Removed orphaned content URLs up orphan time " + new Date(lastProcessedOrphanId));
+                logger.debug(
+                        "   Removed " + lastRunDeletedCount + " orphaned content URLs in " + lastRunDurationMs + " ms (" +
+                        (lastRunDeletedCount * 1000L / Math.max(1L, lastRunDurationMs)) + " URLs/s, " +
+                        lastRunFailedCount + " binary deletion failures)");
             }
         }
         // Done
@@ -378,9 +460,11 @@ public class ContentStoreCleaner
      * 
      * @param maxTimeExclusive      the max orphan time (exclusive)
      * @param batchSize             the maximum number of orphans to process
+     * @param deletionExecutor      the executor to spread physical deletes over (may be <tt>null</tt>)
      * @return                      Returns the last processed orphan ID or <tt>null</tt> if nothing was processed
      */
-    private Long cleanBatch(final long maxTimeExclusive, final int batchSize)
+    private Long cleanBatch(final long maxTimeExclusive, final int batchSize, ExecutorService deletionExecutor)
+        throws InterruptedException
     {
         // Get a bunch of cleanable URLs
         final TreeMap<Long, String> urlsById = new TreeMap<Long, String>();
@@ -408,27 +492,85 @@ public class ContentStoreCleaner
         // No problems, so far (ALF-1998: contentStoreCleanerJob leads to foreign key exception)
 
         // Now attempt to physically delete the URLs
-        for (Long id : ids)
+        List<String> contentUrls = new ArrayList<String>(urlsById.values());
+        List<String> failedUrls;
+        if (deletionExecutor == null || contentUrls.size() < 2)
         {
-            String contentUrl = urlsById.get(id);
-            // Handle failures
-            boolean deleted = eagerContentStoreCleaner.deleteFromStores(contentUrl);
-            if (!deleted)
+            failedUrls = deleteFromStores(contentUrls);
+        }
+        else
+        {
+            // Split the URLs evenly over the deletion threads; the stores themselves are shared
+            int sliceCount = Math.min(deletionThreads, contentUrls.size());
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>(sliceCount);
+            for (int i = 0; i < sliceCount; i++)
             {
-                switch (deletionFailureAction)
+                final List<String> slice = contentUrls.subList(
+                        i * contentUrls.size() / sliceCount,
+                        (i + 1) * contentUrls.size() / sliceCount);
+                futures.add(deletionExecutor.submit(new Callable<List<String>>()
                 {
-                    case KEEP_URL:
-                        // Keep the URL, but with an orphan time of 0 so that it is recorded
-                        contentDataDAO.createContentUrlOrphaned(contentUrl, new Date(0L));
-                    case IGNORE:
-                        break;
-                    default:
-                        throw new IllegalStateException("Unknown deletion failure action: " + deletionFailureAction);
+                    public List<String> call() throws Exception
+                    {
+                        return deleteFromStores(slice);
+                    }
+                }));
+            }
+            failedUrls = new ArrayList<String>();
+            for (Future<List<String>> future : futures)
+            {
+                try
+                {
+                    failedUrls.addAll(future.get());
+                }
+                catch (ExecutionException e)
+                {
+                    throw new AlfrescoRuntimeException("Failed to delete orphaned content", e.getCause());
                 }
             }
         }
         
+        // Handle failures, back in the transaction's thread
+        for (String contentUrl : failedUrls)
+        {
+            switch (deletionFailureAction)
+            {
+                case KEEP_URL:
+                    // Keep the URL, but with an orphan time of 0 so that it is recorded
+                    contentDataDAO.createContentUrlOrphaned(contentUrl, new Date(0L));
+                case IGNORE:
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown deletion failure action: " + deletionFailureAction);
+            }
+        }
+        lastRunDeletedCount += ids.size();
+        lastRunFailedCount += failedUrls.size();
+        
         // Done
         return lastId;
     }
+    
+    /**
+     * Physically delete the binaries from all the stores
+     * 
+     * @return                      Returns the URLs that failed to be deleted
+     */
+    private List<String> deleteFromStores(List<String> contentUrls)
+    {
+        List<String> failedUrls = Collections.emptyList();
+        for (String contentUrl : contentUrls)
+        {
+            boolean deleted = eagerContentStoreCleaner.deleteFromStores(contentUrl);
+            if (!deleted)
+            {
+                if (failedUrls.isEmpty())
+                {
+                    failedUrls = new ArrayList<String>();
+                }
+                failedUrls.add(contentUrl);
+            }
+        }
+        return failedUrls;
+    }
 }
@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.filestore.DeduplicatingFileContentStore;
 import org.alfresco.repo.content.filestore.FileContentReader;
 import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
@@ -129,6 +130,16 @@ public class FileWipingContentCleanerListener implements ContentStoreCleanerList
         {
             throw new ContentIOException("Unable to write to file: " + file);
         }
+        // Overwriting a deduplicated blob would destroy the content of every URL sharing it, so it
+        // is only shredded along with the last URL referencing it
+        if (!DeduplicatingFileContentStore.releaseForOverwrite(file))
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Not shredding content shared with other content URLs: " + file);
+            }
+            return;
+        }
         long bytes = file.length();
         OutputStream fos = null;
         OutputStream bos = null;
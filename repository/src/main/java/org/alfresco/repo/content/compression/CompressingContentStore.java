@@ -0,0 +1,223 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.compression;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Implementation of ContentStore that wraps any other ContentStore (the backing store)
+ * and transparently compresses content of selected mimetypes.
+ * <p>
+ * Compressed content is stored in the backing store as a GZIP stream.  Its content URL is
+ * the backing store's URL followed by <b>#gzip=</b> and the original size, so that readers
+ * know to decompress, and what size to report, without looking at the stored bytes.  Content
+ * URLs without the marker, including those of content of other mimetypes and content written
+ * to the backing store before this store was introduced, are passed through untouched.
+ * <p>
+ * The mimetype of content is only known once the writer's channel is opened, so the writer
+ * decides whether to compress at that point and gives the content its marked URL when the
+ * channel is closed.
+ * <p>
+ * Direct access URLs are not supported as they would expose the compressed bytes.
+ *
+ * @see org.alfresco.repo.content.caching.CachingContentStore
+ * @since 7.0
+ */
+public class CompressingContentStore implements ContentStore
+{
+    /** Appended, with the original size, to the content URLs of content compressed by this store */
+    static final String COMPRESSED_URL_MARKER = "#gzip=";
+
+    private ContentStore backingStore;
+    private Set<String> mimetypes = Collections.emptySet();
+
+    public CompressingContentStore()
+    {
+    }
+
+    public CompressingContentStore(ContentStore backingStore, List<String> mimetypes)
+    {
+        this.backingStore = backingStore;
+        setMimetypes(mimetypes);
+    }
+
+    @Required
+    public void setBackingStore(ContentStore backingStore)
+    {
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * Set the mimetypes that will be compressed.  A mimetype may end in <b>/*</b> to match all
+     * subtypes e.g. <b>text/*</b>.
+     *
+     * @param mimetypes             the mimetypes to compress
+     */
+    public void setMimetypes(List<String> mimetypes)
+    {
+        this.mimetypes = new HashSet<String>(mimetypes);
+    }
+
+    /**
+     * @param mimetype              the mimetype of the content, which may be <tt>null</tt>
+     * @return                      Returns <tt>true</tt> if content of the given mimetype is compressed
+     */
+    public boolean isCompressed(String mimetype)
+    {
+        if (mimetype == null)
+        {
+            return false;
+        }
+        if (mimetypes.contains(mimetype))
+        {
+            return true;
+        }
+        int slash = mimetype.indexOf('/');
+        return slash > 0 && mimetypes.contains(mimetype.substring(0, slash) + "/*");
+    }
+
+    /**
+     * @param contentUrl            a content URL of this store
+     * @return                      Returns the URL of the content in the backing store
+     */
+    static String getBackingContentUrl(String contentUrl)
+    {
+        int index = contentUrl.lastIndexOf(COMPRESSED_URL_MARKER);
+        return (index < 0) ? contentUrl : contentUrl.substring(0, index);
+    }
+
+    /**
+     * @param contentUrl            a content URL of this store
+     * @return                      Returns the original size of the content or <tt>-1</tt>
+     *                              if the content is not compressed
+     */
+    static long getOriginalSize(String contentUrl)
+    {
+        int index = contentUrl.lastIndexOf(COMPRESSED_URL_MARKER);
+        if (index < 0)
+        {
+            return -1L;
+        }
+        try
+        {
+            return Long.parseLong(contentUrl.substring(index + COMPRESSED_URL_MARKER.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1L;
+        }
+    }
+
+    @Override
+    public boolean isContentUrlSupported(String contentUrl)
+    {
+        return backingStore.isContentUrlSupported(getBackingContentUrl(contentUrl));
+    }
+
+    @Override
+    public boolean isWriteSupported()
+    {
+        return backingStore.isWriteSupported();
+    }
+
+    @Override
+    public long getSpaceFree()
+    {
+        return backingStore.getSpaceFree();
+    }
+
+    @Override
+    public long getSpaceTotal()
+    {
+        return backingStore.getSpaceTotal();
+    }
+
+    @Override
+    public String getRootLocation()
+    {
+        return backingStore.getRootLocation();
+    }
+
+    @Override
+    public boolean exists(String contentUrl)
+    {
+        return backingStore.exists(getBackingContentUrl(contentUrl));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The backing store's reader is returned as is unless the content URL marks the content
+     * as compressed by this store.
+     */
+    @Override
+    public ContentReader getReader(String contentUrl)
+    {
+        long size = getOriginalSize(contentUrl);
+        if (size < 0)
+        {
+            return backingStore.getReader(contentUrl);
+        }
+        ContentReader backingStoreReader = backingStore.getReader(getBackingContentUrl(contentUrl));
+        DecompressingContentReader reader = new DecompressingContentReader(contentUrl, backingStoreReader, size);
+        reader.setMimetype(backingStoreReader.getMimetype());
+        reader.setEncoding(backingStoreReader.getEncoding());
+        reader.setLocale(backingStoreReader.getLocale());
+        return reader;
+    }
+
+    @Override
+    public ContentWriter getWriter(ContentContext context)
+    {
+        ContentWriter backingStoreWriter = backingStore.getWriter(context);
+        return new CompressingContentWriter(this, backingStoreWriter, context.getExistingContentReader());
+    }
+
+    @Override
+    public boolean delete(String contentUrl)
+    {
+        return backingStore.delete(getBackingContentUrl(contentUrl));
+    }
+
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("CompressingContentStore")
+          .append("[ backingStore=").append(backingStore)
+          .append(", mimetypes=").append(mimetypes)
+          .append("]");
+        return sb.toString();
+    }
+}
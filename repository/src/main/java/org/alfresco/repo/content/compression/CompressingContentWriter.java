@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.compression;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPOutputStream;
+
+import org.alfresco.repo.content.AbstractContentWriter;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writer for the {@link CompressingContentStore}.  Content of a mimetype that is not compressed
+ * goes straight to the backing store's writer.  Other content is compressed as it is written
+ * and gets a content URL that records the original size when the channel is closed.
+ *
+ * @since 7.0
+ */
+class CompressingContentWriter extends AbstractContentWriter
+{
+    private static final Log logger = LogFactory.getLog(CompressingContentWriter.class);
+
+    private final CompressingContentStore store;
+    private final ContentWriter backingStoreWriter;
+    private boolean compressed;
+    private long size;
+
+    CompressingContentWriter(CompressingContentStore store, ContentWriter backingStoreWriter, ContentReader existingContentReader)
+    {
+        super(backingStoreWriter.getContentUrl(), existingContentReader);
+        this.store = store;
+        this.backingStoreWriter = backingStoreWriter;
+    }
+
+    /**
+     * @return                      Returns the uncompressed size of the content
+     */
+    @Override
+    public long getSize()
+    {
+        return compressed ? size : backingStoreWriter.getSize();
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return store.getReader(getContentUrl());
+    }
+
+    @Override
+    protected WritableByteChannel getDirectWritableChannel() throws ContentIOException
+    {
+        backingStoreWriter.setMimetype(getMimetype());
+        backingStoreWriter.setEncoding(getEncoding());
+        backingStoreWriter.setLocale(getLocale());
+        compressed = store.isCompressed(getMimetype());
+        if (!compressed)
+        {
+            return backingStoreWriter.getWritableChannel();
+        }
+        return new CompressingChannel();
+    }
+
+    /**
+     * Compresses everything written into the backing store and marks the content URL with the
+     * original size when closed.
+     */
+    private class CompressingChannel implements WritableByteChannel
+    {
+        private final OutputStream gzipOutputStream;
+        private final WritableByteChannel gzipChannel;
+        private boolean open = true;
+
+        private CompressingChannel() throws ContentIOException
+        {
+            OutputStream os = backingStoreWriter.getContentOutputStream();
+            try
+            {
+                gzipOutputStream = new GZIPOutputStream(new BufferedOutputStream(os), 8192);
+            }
+            catch (IOException e)
+            {
+                try { os.close(); } catch (IOException ee) {}
+                throw new ContentIOException("Failed to open compressing channel: " + CompressingContentWriter.this, e);
+            }
+            gzipChannel = Channels.newChannel(gzipOutputStream);
+        }
+
+        public int write(ByteBuffer src) throws IOException
+        {
+            int count = gzipChannel.write(src);
+            size += count;
+            return count;
+        }
+
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        public void close() throws IOException
+        {
+            if (!open)
+            {
+                return;
+            }
+            open = false;
+            gzipOutputStream.close();
+            setContentUrl(backingStoreWriter.getContentUrl() + CompressingContentStore.COMPRESSED_URL_MARKER + size);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Compressed content from " + size + " to " + backingStoreWriter.getSize() + " bytes: " + getContentUrl());
+            }
+        }
+    }
+}
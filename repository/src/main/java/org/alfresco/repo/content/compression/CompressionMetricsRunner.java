@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Compares write and read throughput, and disk usage, of a {@link FileContentStore} with and
+ * without a {@link CompressingContentStore} in front of it.
+ */
+public class CompressionMetricsRunner
+{
+    private ApplicationContext ctx = ApplicationContextHelper.getApplicationContext();
+
+    private final int numDocuments = 1000;
+    private final String content;
+
+    public CompressionMetricsRunner()
+    {
+        // XML-like text typical of the content that is worth compressing
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        while (sb.length() < 64 * 1024)
+        {
+            sb.append("<entry id=\"").append(GUID.generate()).append("\"><name>Document</name><status>ACTIVE</status></entry>\n");
+        }
+        content = sb.toString();
+    }
+
+    public static void main(String[] args)
+    {
+        CompressionMetricsRunner metrics = new CompressionMetricsRunner();
+        metrics.run();
+    }
+
+    public void run()
+    {
+        time("Uncompressed", false);
+        time("Compressed", true);
+    }
+
+    private void time(String description, boolean compress)
+    {
+        File root = new File(TempFileProvider.getTempDir(), "CompressionMetricsRunner-" + GUID.generate());
+        ContentStore store = new FileContentStore(ctx, root);
+        if (compress)
+        {
+            store = new CompressingContentStore(store, Collections.singletonList(MimetypeMap.MIMETYPE_XML));
+        }
+        try
+        {
+            long beforeWrite = System.currentTimeMillis();
+            List<String> contentUrls = new ArrayList<String>(numDocuments);
+            for (int i = 0; i < numDocuments; i++)
+            {
+                ContentWriter writer = store.getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+                writer.setMimetype(MimetypeMap.MIMETYPE_XML);
+                writer.putContent(content);
+                contentUrls.add(writer.getContentUrl());
+            }
+            long writeTime = System.currentTimeMillis() - beforeWrite;
+
+            long beforeRead = System.currentTimeMillis();
+            long bytesRead = 0L;
+            for (String contentUrl : contentUrls)
+            {
+                try (InputStream is = store.getReader(contentUrl).getContentInputStream())
+                {
+                    bytesRead += IOUtils.copyLarge(is, NullOutputStream.NULL_OUTPUT_STREAM);
+                }
+            }
+            long readTime = System.currentTimeMillis() - beforeRead;
+
+            double megabytes = bytesRead / (1024.0 * 1024.0);
+            System.out.println(String.format(
+                    "%s: wrote %d documents in %dms (%.1f MB/s), read in %dms (%.1f MB/s), %d KB on disk",
+                    description, numDocuments,
+                    writeTime, megabytes * 1000 / Math.max(writeTime, 1),
+                    readTime, megabytes * 1000 / Math.max(readTime, 1),
+                    FileUtils.sizeOfDirectory(root) / 1024));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+}
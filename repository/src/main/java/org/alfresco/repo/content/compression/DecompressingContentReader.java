@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.GZIPInputStream;
+
+import org.alfresco.repo.content.AbstractContentReader;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+
+/**
+ * Reader onto content compressed by the {@link CompressingContentStore}.  The content is
+ * decompressed as it is streamed from the backing store's reader.
+ *
+ * @since 7.0
+ */
+class DecompressingContentReader extends AbstractContentReader
+{
+    private final ContentReader backingStoreReader;
+    private final long size;
+
+    /**
+     * @param contentUrl            the content URL, marked as compressed
+     * @param backingStoreReader    reader onto the compressed content
+     * @param size                  the uncompressed size of the content
+     */
+    DecompressingContentReader(String contentUrl, ContentReader backingStoreReader, long size)
+    {
+        super(contentUrl);
+        this.backingStoreReader = backingStoreReader;
+        this.size = size;
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return new DecompressingContentReader(getContentUrl(), backingStoreReader.getReader(), size);
+    }
+
+    @Override
+    public boolean exists()
+    {
+        return backingStoreReader.exists();
+    }
+
+    @Override
+    public long getLastModified()
+    {
+        return backingStoreReader.getLastModified();
+    }
+
+    /**
+     * @return                      Returns the uncompressed size of the content
+     */
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    @Override
+    protected ReadableByteChannel getDirectReadableChannel() throws ContentIOException
+    {
+        InputStream is = backingStoreReader.getReader().getContentInputStream();
+        try
+        {
+            return Channels.newChannel(new GZIPInputStream(is, 8192));
+        }
+        catch (IOException e)
+        {
+            try { is.close(); } catch (IOException ee) {}
+            throw new ContentIOException("Failed to open decompressing channel: " + this, e);
+        }
+    }
+}
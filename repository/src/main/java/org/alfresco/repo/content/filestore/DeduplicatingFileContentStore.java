@@ -0,0 +1,501 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.filestore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentStreamListener;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.Deleter;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * A {@link FileContentStore} that keeps a single copy of each distinct binary.
+ * <p>
+ * Content URLs are generated exactly as for the file store, so readers, writers and the
+ * {@link org.alfresco.repo.content.cleanup.ContentStoreCleaner cleaner} see ordinary files.
+ * The SHA-256 digest of the content is calculated while it is written.  When the stream is
+ * closed, the file is hard-linked to a <b>blob</b> named after the digest below the
+ * {@link #setBlobDirectory(String) blob directory}.  If the blob already exists, the new
+ * file is replaced by another link to it and the duplicate bytes are released.
+ * <p>
+ * The file system's link count is the reference count for a blob: each content URL holds one
+ * link and the blob directory holds the last one.  The path of the blob is recorded in a
+ * user-defined attribute of the blob, which every link shares, so that deleting a URL finds
+ * its blob without reading the content.  When the cleaner deletes the last URL referencing a
+ * blob, the blob is deleted as well.
+ * <p>
+ * Hard links require the blob directory to be on the same file system as the store root.
+ * Where the file system does not expose link counts or user-defined attributes, the store
+ * behaves exactly like a plain {@link FileContentStore}.  Files shared with other URLs are
+ * never overwritten in place: the
+ * {@link org.alfresco.repo.content.cleanup.FileWipingContentCleanerListener file wiper}
+ * leaves them alone and wipes the blob's data when the last URL referencing it goes.
+ *
+ * @see FileContentStore
+ * @since 7.0
+ */
+public class DeduplicatingFileContentStore extends FileContentStore
+{
+    private static final Log logger = LogFactory.getLog(DeduplicatingFileContentStore.class);
+
+    /** The default name of the blob directory below the store root */
+    public static final String DEFAULT_BLOB_DIRECTORY = "blobs";
+
+    private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+    private static final String BLOB_ATTRIBUTE = "alfresco.blob";
+    private static final String LINK_SUFFIX = ".link";
+    private static final boolean LINK_COUNT_SUPPORTED = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+    /** Guards the link counts of blobs, which may be shared by stores using the same blob directory */
+    private static final Object BLOB_LOCK = new Object();
+    private File blobDirectory;
+
+    /**
+     * Private: for Spring-constructed instances only.
+     *
+     * @param rootDirectoryStr
+     *            the root under which files will be stored. The directory will be created if it does not exist.
+     */
+    /*package*/ DeduplicatingFileContentStore(String rootDirectoryStr)
+    {
+        super(rootDirectoryStr);
+        blobDirectory = new File(rootDirectoryStr, DEFAULT_BLOB_DIRECTORY).getAbsoluteFile();
+    }
+
+    /**
+     * Public constructor for programmatic use.
+     *
+     * @param context
+     *            application context through which events can be published
+     * @param rootDirectoryStr
+     *            the root under which files will be stored. The directory will be created if it does not exist.
+     */
+    public DeduplicatingFileContentStore(ApplicationContext context, String rootDirectoryStr)
+    {
+        this(context, new File(rootDirectoryStr));
+    }
+
+    /**
+     * Public constructor for programmatic use.
+     *
+     * @param context
+     *            application context through which events can be published
+     * @param rootDirectory
+     *            the root under which files will be stored. The directory will be created if it does not exist.
+     */
+    public DeduplicatingFileContentStore(ApplicationContext context, File rootDirectory)
+    {
+        this(context, rootDirectory, Collections.<String, Serializable> emptyMap());
+    }
+
+    public DeduplicatingFileContentStore(ApplicationContext context, File rootDirectory, Map<String, Serializable> extendedEventParams)
+    {
+        super(context, rootDirectory, extendedEventParams);
+        blobDirectory = new File(rootDirectory, DEFAULT_BLOB_DIRECTORY).getAbsoluteFile();
+    }
+
+    /**
+     * Set the directory holding the shared blobs.  It must be on the same file system as the
+     * store root and should not be shared with any other store.
+     *
+     * @param blobDirectory         the blob directory, defaulting to <b>blobs</b> below the root
+     */
+    public void setBlobDirectory(String blobDirectory)
+    {
+        this.blobDirectory = new File(blobDirectory).getAbsoluteFile();
+    }
+
+    /**
+     * @return                      Returns the directory holding the shared blobs
+     */
+    public File getBlobDirectory()
+    {
+        return blobDirectory;
+    }
+
+    /**
+     * Determine whether a file shares its data with the files of other content URLs.  Such files
+     * must not be modified in place as the change would be visible through every URL sharing the blob.
+     *
+     * @param file                  the file to check
+     * @return                      Returns <tt>true</tt> if other content URLs share the file's data
+     */
+    public static boolean isShared(File file)
+    {
+        synchronized (BLOB_LOCK)
+        {
+            return getLinkCount(file) > (getLinkedBlob(file) == null ? 1 : 2);
+        }
+    }
+
+    /**
+     * Prepare the file of a content URL that is about to be deleted to be overwritten in place.  If
+     * it is the last URL referencing its blob, the blob is deleted first so that new content can no
+     * longer be matched to it, leaving the file holding the only link to the data.
+     *
+     * @param file                  the file that is about to be deleted
+     * @return                      Returns <tt>true</tt> if the file can be overwritten or <tt>false</tt>
+     *                              if other content URLs share its data
+     */
+    public static boolean releaseForOverwrite(File file)
+    {
+        synchronized (BLOB_LOCK)
+        {
+            File blob = getLinkedBlob(file);
+            int links = getLinkCount(file);
+            if (blob == null)
+            {
+                return links <= 1;
+            }
+            if (links > 2)
+            {
+                return false;
+            }
+            if (!blob.delete())
+            {
+                logger.warn("Failed to release blob before overwriting content: " + blob);
+                return false;
+            }
+            // Blobs are two directories below the blob directory
+            Deleter.deleteEmptyParents(blob, blob.getParentFile().getParentFile().getParent());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Released blob before overwriting content: " + file);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gives a writer that calculates the content digest as the bytes go past.  The content is
+     * {@link #deduplicate(File, String) deduplicated} as soon as the writer's stream is closed.
+     */
+    @Override
+    public ContentWriter getWriterInternal(ContentReader existingContentReader, String newContentUrl)
+    {
+        ContentWriter writer = super.getWriterInternal(existingContentReader, newContentUrl);
+        if (!LINK_COUNT_SUPPORTED || !(writer instanceof FileContentWriter))
+        {
+            return writer;
+        }
+        FileContentWriter fileWriter = (FileContentWriter) writer;
+        final DigestingFileContentWriter digestingWriter = new DigestingFileContentWriter(
+                fileWriter.getFile(),
+                fileWriter.getContentUrl(),
+                existingContentReader);
+        if (contentLimitProvider != null)
+        {
+            digestingWriter.setContentLimitProvider(contentLimitProvider);
+        }
+        // Our listener goes in first so that later listeners see the final file
+        digestingWriter.addListener(new ContentStreamListener()
+        {
+            public void contentStreamClosed() throws ContentIOException
+            {
+                deduplicate(digestingWriter.getFile(), digestingWriter.getDigest());
+            }
+        });
+        return digestingWriter;
+    }
+
+    /**
+     * Deletes the content URL and, if it held the last reference, the blob behind it.
+     */
+    @Override
+    public boolean delete(String contentUrl)
+    {
+        if (!LINK_COUNT_SUPPORTED || !isWriteSupported() || contentUrl.startsWith(SPOOF_PROTOCOL))
+        {
+            return super.delete(contentUrl);
+        }
+        // The decision is made under the lock so that concurrent deletes of URLs sharing a blob
+        // cannot both leave the blob behind
+        synchronized (BLOB_LOCK)
+        {
+            File blob = getLinkedBlob(makeFile(contentUrl));
+            boolean deleted = super.delete(contentUrl);
+            if (deleted && blob != null)
+            {
+                releaseBlob(blob);
+            }
+            return deleted;
+        }
+    }
+
+    /**
+     * Make the newly written file share the blob holding the same content, or make it that blob.
+     * Failures leave the file as an ordinary, unshared file.
+     *
+     * @param file                  the file that has just been written
+     * @param digest                the SHA-256 digest of its content
+     */
+    private void deduplicate(File file, String digest)
+    {
+        if (file.length() == 0L)
+        {
+            // Nothing to save
+            return;
+        }
+        Path path = file.toPath();
+        Path blob = getBlobFile(digest).toPath();
+        try
+        {
+            Files.createDirectories(blob.getParent());
+            synchronized (BLOB_LOCK)
+            {
+                try
+                {
+                    // The first copy of the content becomes the blob
+                    Files.createLink(blob, path);
+                    if (!setLinkedBlob(path, blob))
+                    {
+                        // Deleting the URL would not find the blob, so leave the file unshared
+                        Files.delete(blob);
+                        return;
+                    }
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug("Stored new blob " + digest + " for file " + file);
+                    }
+                    return;
+                }
+                catch (FileAlreadyExistsException e)
+                {
+                    // Duplicate content
+                }
+                if (Files.size(blob) != file.length())
+                {
+                    logger.warn("Blob " + blob + " does not match content of the same digest; keeping " + file);
+                    return;
+                }
+                if (!setLinkedBlob(blob, blob))
+                {
+                    return;
+                }
+                // Link to the blob under a temporary name and swap it in so that the URL never goes missing
+                Path link = path.resolveSibling(path.getFileName() + LINK_SUFFIX);
+                Files.createLink(link, blob);
+                Files.move(link, path, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Linked duplicate content to blob " + digest + ": " + file);
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to deduplicate content, keeping " + file, e);
+        }
+    }
+
+    /**
+     * Delete the blob if no content URLs reference it any more.  Called with the blob lock held.
+     */
+    private void releaseBlob(File blob)
+    {
+        if (!blob.exists() || getLinkCount(blob) != 1)
+        {
+            return;
+        }
+        if (blob.delete())
+        {
+            Deleter.deleteEmptyParents(blob, blobDirectory.getPath());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Deleted unreferenced blob: " + blob);
+            }
+        }
+        else
+        {
+            logger.warn("Failed to delete unreferenced blob: " + blob);
+        }
+    }
+
+    /**
+     * Record the blob that a file is linked to.  The attribute belongs to the data, so every link
+     * to the blob sees it.
+     *
+     * @return                      Returns <tt>false</tt> if the file system cannot record it
+     */
+    private static boolean setLinkedBlob(Path path, Path blob)
+    {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null)
+        {
+            return false;
+        }
+        try
+        {
+            view.write(BLOB_ATTRIBUTE, StandardCharsets.UTF_8.encode(blob.toAbsolutePath().toString()));
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Unable to record the blob of " + path + ": " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return                      Returns the blob that the file is linked to or <tt>null</tt> if it
+     *                              is not linked to one
+     */
+    private static File getLinkedBlob(File file)
+    {
+        if (getLinkCount(file) < 2)
+        {
+            return null;
+        }
+        Path path = file.toPath();
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null)
+        {
+            return null;
+        }
+        try
+        {
+            if (!view.list().contains(BLOB_ATTRIBUTE))
+            {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(BLOB_ATTRIBUTE));
+            view.read(BLOB_ATTRIBUTE, buffer);
+            buffer.flip();
+            File blob = new File(StandardCharsets.UTF_8.decode(buffer).toString());
+            // The blob may have been released already
+            return (blob.exists() && Files.isSameFile(blob.toPath(), path)) ? blob : null;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Blobs are spread over two levels of directories taken from the start of the digest.
+     */
+    private File getBlobFile(String digest)
+    {
+        File dir = new File(new File(blobDirectory, digest.substring(0, 2)), digest.substring(2, 4));
+        return new File(dir, digest);
+    }
+
+    /**
+     * @return                      Returns the number of hard links to the file or <tt>0</tt> if
+     *                              it does not exist or link counts are not available
+     */
+    private static int getLinkCount(File file)
+    {
+        if (!LINK_COUNT_SUPPORTED || !file.exists())
+        {
+            return 0;
+        }
+        try
+        {
+            return (Integer) Files.getAttribute(file.toPath(), LINK_COUNT_ATTRIBUTE);
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * A file writer that passes everything written through a digest.
+     * <p>
+     * The channel is never a {@link java.nio.channels.FileChannel}, which forces random-access
+     * writes through a temporary file so that the content always arrives in order.
+     */
+    private static class DigestingFileContentWriter extends FileContentWriter
+    {
+        private final MessageDigest digest;
+
+        private DigestingFileContentWriter(File file, String url, ContentReader existingContentReader)
+        {
+            super(file, url, existingContentReader);
+            digest = DigestUtils.getSha256Digest();
+        }
+
+        @Override
+        protected WritableByteChannel getDirectWritableChannel() throws ContentIOException
+        {
+            final WritableByteChannel channel = super.getDirectWritableChannel();
+            return new WritableByteChannel()
+            {
+                public int write(ByteBuffer src) throws IOException
+                {
+                    ByteBuffer written = src.duplicate();
+                    int count = channel.write(src);
+                    written.limit(written.position() + count);
+                    digest.update(written);
+                    return count;
+                }
+
+                public boolean isOpen()
+                {
+                    return channel.isOpen();
+                }
+
+                public void close() throws IOException
+                {
+                    channel.close();
+                }
+            };
+        }
+
+        /**
+         * @return                  Returns the hex-encoded digest of everything written
+         */
+        private String getDigest()
+        {
+            return Hex.encodeHexString(digest.digest());
+        }
+    }
+}
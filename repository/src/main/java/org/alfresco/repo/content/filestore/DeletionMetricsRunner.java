@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.content.ContentStore;
@@ -69,7 +70,7 @@ public class DeletionMetricsRunner
     private EagerContentStoreCleaner eagerCleaner;
     private FileContentStore store;
     private ContentStoreCleanerListener listener;
-    private int deletedUrls;
+    private final AtomicInteger deletedUrls = new AtomicInteger();
 
     private final int numOrphans = 1000;
     
@@ -120,29 +121,37 @@ public class DeletionMetricsRunner
     
     public void run()
     {
-        setUp(true);
+        setUp(true, 1);
         time("Deleting empty parent dirs");
         tearDown();
         
-        setUp(false);
+        setUp(false, 1);
         time("Ignoring empty parent dirs");
         tearDown();
+        
+        setUp(true, 4);
+        time("Deleting empty parent dirs with 4 deletion threads");
+        tearDown();
     }
     
     
     
-    private void setUp(boolean deleteEmptyDirs)
+    private void setUp(boolean deleteEmptyDirs, int deletionThreads)
     {
         AuthenticationUtil.setRunAsUserSystem();
         store.setDeleteEmptyDirs(deleteEmptyDirs);
-        deletedUrls = 0;
+        cleaner.setDeletionThreads(deletionThreads);
+        deletedUrls.set(0);
     }
     
     
     private void tearDown()
     {
         AuthenticationUtil.clearCurrentSecurityContext();    
-        System.out.println("Deleted " + deletedUrls + " URLs.");
+        System.out.println("Deleted " + deletedUrls.get() + " URLs.");
+        System.out.println(String.format(
+                "Cleaner removed %d URLs in %dms (%d failed)",
+                cleaner.getLastRunDeletedCount(), cleaner.getLastRunDurationMs(), cleaner.getLastRunFailedCount()));
     }
  
     
@@ -211,7 +220,7 @@ public class DeletionMetricsRunner
         cleaner.setProtectDays(0);
         cleaner.execute();
         
-        if (deletedUrls < numOrphans)
+        if (deletedUrls.get() < numOrphans)
             throw new IllegalStateException("Not all the orphans were cleaned.");
     }
     
@@ -220,7 +229,7 @@ public class DeletionMetricsRunner
     {
         public void beforeDelete(ContentStore store, String contentUrl) throws ContentIOException
         {
-            deletedUrls++;
+            deletedUrls.incrementAndGet();
         }
     }
     
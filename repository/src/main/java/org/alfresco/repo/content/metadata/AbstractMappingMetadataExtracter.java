@@ -42,6 +42,8 @@ import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
 import org.alfresco.service.cmr.repository.datatype.TypeConversionException;
 import org.alfresco.service.namespace.InvalidQNameException;
 import org.alfresco.service.namespace.QName;
+import org.alfresco.util.MaxSizeMap;
+import org.alfresco.util.TraceableThreadFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
@@ -123,6 +125,7 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
     public static final String NAMESPACE_PROPERTY_PREFIX = "namespace.prefix.";
     private static final String ERR_TYPE_CONVERSION = "metadata.extraction.err.type_conversion";
     private static final String PROP_DEFAULT_TIMEOUT = "content.metadataExtracter.default.timeoutMs";
+    private static final String PROP_DEFAULT_CACHE_SIZE = "content.metadataExtracter.default.cacheSize";
     public static final String PROPERTY_PREFIX_METADATA = "metadata.";
     public static final String PROPERTY_COMPONENT_EXTRACT = ".extract.";
     public static final String PROPERTY_COMPONENT_EMBED = ".embed.";
@@ -150,7 +153,11 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
     private Properties properties;
     private Map<String, MetadataExtracterLimits> mimetypeLimits;
     private ExecutorService executorService;
+    private int extractedMetadataCacheSize = -1;
+    private Map<String, Map<String, Serializable>> extractedMetadataCache;
     
+    /** The extractions in progress, keyed by the mimetype (or "*") of the limits that apply to them */
+    private static final Map<String, ConcurrentExtractions> CONCURRENT_EXTRACTIONS = new HashMap<String, ConcurrentExtractions>();
     private static final AtomicInteger CONCURRENT_EXTRACTIONS_COUNT = new AtomicInteger(0);
 
     /**
@@ -471,6 +478,30 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
         this.executorService = executorService;
     }
 
+    /**
+     * Sets the number of raw extraction results to keep, keyed by content URL, so that
+     * unchanged content (e.g. a new version of a node with the same content) is not extracted
+     * again.  Content URLs are never reused for different content, so cached results do
+     * not go stale.
+     * <p>
+     * If not set the <code>content.metadataExtracter.default.cacheSize</code> property is
+     * used, and <tt>0</tt> disables the cache.
+     * 
+     * @param extractedMetadataCacheSize the maximum number of results to keep
+     */
+    public void setExtractedMetadataCacheSize(int extractedMetadataCacheSize)
+    {
+        this.extractedMetadataCacheSize = extractedMetadataCacheSize;
+    }
+
+    /**
+     * @return the maximum number of extraction results to keep, once {@link #init() initialised}
+     */
+    protected int getExtractedMetadataCacheSize()
+    {
+        return extractedMetadataCacheSize;
+    }
+
     /**
      * Set the mapping from document metadata to system metadata.  It is possible to direct
      * an extracted document property to several system properties.  The conversion between
@@ -1032,7 +1063,28 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
 
         if (executorService == null)
         {
-            executorService = Executors.newCachedThreadPool();
+            TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+            threadFactory.setNamePrefix("MetadataExtracter");
+            threadFactory.setThreadDaemon(true);
+            executorService = Executors.newCachedThreadPool(threadFactory);
+        }
+        
+        if (extractedMetadataCacheSize < 0)
+        {
+            extractedMetadataCacheSize = 0;
+            if (properties != null)
+            {
+                String property = properties.getProperty(PROP_DEFAULT_CACHE_SIZE);
+                if (property != null)
+                {
+                    extractedMetadataCacheSize = Integer.parseInt(property.trim());
+                }
+            }
+        }
+        if (extractedMetadataCacheSize > 0 && isRawMetadataCacheable())
+        {
+            extractedMetadataCache = Collections.synchronizedMap(
+                    new MaxSizeMap<String, Map<String, Serializable>>(extractedMetadataCacheSize, true));
         }
         
         if (mimetypeLimits == null)
@@ -2045,6 +2097,43 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
         return limits;
     }
 
+    /**
+     * Gets the key of the limits that {@link #getLimits(String)} applies to a mimetype,
+     * which is the key that concurrent extractions are counted against.
+     * 
+     * @param mimetype String
+     * @return the mimetype if it has its own limits, otherwise "*"
+     */
+    private String getLimitsKey(String mimetype)
+    {
+        if (mimetypeLimits != null && mimetype != null && mimetypeLimits.containsKey(mimetype))
+        {
+            return mimetype;
+        }
+        return "*";
+    }
+
+    /**
+     * The number and total size of the documents being extracted against a set of limits.
+     */
+    private static class ConcurrentExtractions
+    {
+        private int count;
+        private long size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the results of {@link #extractRaw(ContentReader)} only depend
+     * on the content, so may be reused for content with the same URL.  Override to return
+     * <tt>false</tt> if this is not the case.
+     * 
+     * @return <tt>true</tt> by default
+     */
+    protected boolean isRawMetadataCacheable()
+    {
+        return true;
+    }
+
     /**
      * <code>Callable</code> wrapper for the 
      * {@link AbstractMappingMetadataExtracter#extractRaw(ContentReader)} method
@@ -2103,9 +2192,15 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
      * Calls the {@link AbstractMappingMetadataExtracter#extractRaw(ContentReader)} method
      * using the given limits.
      * <p>
-     * Currently the only limit supported by {@link MetadataExtracterLimits} is a timeout
-     * so this method uses {@link AbstractMappingMetadataExtracter#getExecutorService()}
-     * to execute a {@link FutureTask} with any timeout defined.
+     * Documents larger than the maximum document size are rejected, as are documents that
+     * would take the extractions of the same mimetype (or of all mimetypes without their
+     * own limits) over the maximum concurrent count or size.  A document is always admitted
+     * if there is no other extraction of its mimetype in progress, so that the concurrent
+     * size does not need to be larger than the maximum document size.
+     * <p>
+     * The extraction itself uses {@link AbstractMappingMetadataExtracter#getExecutorService()}
+     * to execute a {@link FutureTask} with any timeout defined.  Results are cached by
+     * content URL if {@link #setExtractedMetadataCacheSize(int) enabled}.
      * <p>
      * If no timeout limit is defined or is unlimited (-1),
      * the <code>extractRaw</code> method is called directly.
@@ -2120,32 +2215,63 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
     private Map<String, Serializable> extractRaw(NodeRef nodeRef,
             ContentReader reader, MetadataExtracterLimits limits) throws Throwable
     {
-        if (reader.getSize() > limits.getMaxDocumentSizeMB() * MEGABYTE_SIZE)
+        String cacheKey = null;
+        if (extractedMetadataCache != null && reader.getContentUrl() != null)
+        {
+            cacheKey = reader.getContentUrl() + "|" + reader.getMimetype();
+            Map<String, Serializable> rawMetadata = extractedMetadataCache.get(cacheKey);
+            if (rawMetadata != null)
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Using previously extracted metadata for " + reader.getContentUrl());
+                }
+                return new HashMap<String, Serializable>(rawMetadata);
+            }
+        }
+
+        long size = reader.getSize();
+        if (size > limits.getMaxDocumentSizeMB() * MEGABYTE_SIZE)
         {
             throw new LimitExceededException("Max doc size exceeded " + limits.getMaxDocumentSizeMB() + " MB");
         }
         
-        synchronized (CONCURRENT_EXTRACTIONS_COUNT)
+        String limitsKey = getLimitsKey(reader.getMimetype());
+        synchronized (CONCURRENT_EXTRACTIONS)
         {
-            if (logger.isDebugEnabled())
+            ConcurrentExtractions extractions = CONCURRENT_EXTRACTIONS.get(limitsKey);
+            if (extractions == null)
             {
-                logger.debug("Concurrent extractions : " + CONCURRENT_EXTRACTIONS_COUNT.get());
+                extractions = new ConcurrentExtractions();
+                CONCURRENT_EXTRACTIONS.put(limitsKey, extractions);
             }
-            if (CONCURRENT_EXTRACTIONS_COUNT.get() < limits.getMaxConcurrentExtractionsCount())
+            if (logger.isDebugEnabled())
             {
-                int totalDocCount = CONCURRENT_EXTRACTIONS_COUNT.incrementAndGet();
-                if (logger.isDebugEnabled())
-                {
-                    logger.debug("New extraction accepted. Concurrent extractions : " + totalDocCount);
-                }
+                logger.debug("Concurrent extractions of " + limitsKey + " : " + extractions.count);
             }
-            else
+            if (extractions.count >= limits.getMaxConcurrentExtractionsCount())
             {
                 throw new LimitExceededException("Reached concurrent extractions limit - " + limits.getMaxConcurrentExtractionsCount());
             }
+            if (extractions.count > 0 && extractions.size + size > limits.getMaxConcurrentDocumentsSizeMB() * MEGABYTE_SIZE)
+            {
+                throw new LimitExceededException("Reached concurrent extractions size limit - " + limits.getMaxConcurrentDocumentsSizeMB() + " MB");
+            }
+            extractions.count++;
+            extractions.size += size;
+            CONCURRENT_EXTRACTIONS_COUNT.incrementAndGet();
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("New extraction accepted. Concurrent extractions of " + limitsKey + " : " + extractions.count);
+            }
         }
 
-        return extractRawInThread(nodeRef, reader, limits);
+        Map<String, Serializable> rawMetadata = extractRawInThread(nodeRef, reader, limits);
+        if (cacheKey != null && rawMetadata != null)
+        {
+            extractedMetadataCache.put(cacheKey, new HashMap<String, Serializable>(rawMetadata));
+        }
+        return rawMetadata;
     }
 
     protected Map<String, Serializable> extractRawInThread(NodeRef nodeRef, ContentReader reader,
@@ -2188,10 +2314,43 @@ abstract public class AbstractMappingMetadataExtracter implements MetadataExtrac
         }
         finally
         {
-            extractRawThreadFinished();
+            extractRawThreadFinished(reader);
+        }
+    }
+
+    /**
+     * Releases the concurrent extraction limits taken by the extraction of a document.  Must
+     * be called once for each call to {@link #extractRawInThread}, when the extraction ends.
+     * Calls {@link #extractRawThreadFinished()} once the limits are released.
+     * 
+     * @param reader        the document that was being extracted
+     */
+    protected void extractRawThreadFinished(ContentReader reader)
+    {
+        String limitsKey = getLimitsKey(reader.getMimetype());
+        synchronized (CONCURRENT_EXTRACTIONS)
+        {
+            ConcurrentExtractions extractions = CONCURRENT_EXTRACTIONS.get(limitsKey);
+            if (extractions == null || extractions.count == 0)
+            {
+                return;
+            }
+            extractions.count--;
+            extractions.size = (extractions.count == 0) ? 0 : Math.max(0, extractions.size - reader.getSize());
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Extraction finalized. Remaining concurrent extractions of " + limitsKey + " : " + extractions.count);
+            }
         }
+        extractRawThreadFinished();
     }
 
+    /**
+     * Called when an extraction ends, after {@link #extractRawThreadFinished(ContentReader)}
+     * has released the limits of its mimetype.  Subclasses should call the
+     * {@link #extractRawThreadFinished(ContentReader) ContentReader} variant, which knows
+     * which limits to release.
+     */
     protected void extractRawThreadFinished()
     {
         int totalDocCount = CONCURRENT_EXTRACTIONS_COUNT.decrementAndGet();
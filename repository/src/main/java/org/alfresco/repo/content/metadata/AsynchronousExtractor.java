@@ -39,6 +39,7 @@ import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.repo.tenant.TenantUtil.TenantRunAsWork;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.ContentWriter;
@@ -50,6 +51,7 @@ import org.alfresco.service.namespace.NamespacePrefixResolver;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.transform.client.registry.TransformServiceRegistry;
+import org.alfresco.util.MaxSizeMap;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -108,6 +110,9 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
     private TaggingService taggingService;
     private List<MetadataExtractorPropertyMappingOverride> metadataExtractorPropertyMappingOverrides = Collections.emptyList();
 
+    /** Node and content URL pairs whose metadata has been applied, if enabled by the extracted metadata cache size */
+    private Map<String, Boolean> extractedContent;
+
     public void setNodeService(NodeService nodeService)
     {
         this.nodeService = nodeService;
@@ -260,6 +265,38 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
         return null;
     }
 
+    @Override
+    // The raw metadata is applied to the node when the remote transform completes.
+    protected boolean isRawMetadataCacheable()
+    {
+        return false;
+    }
+
+    @Override
+    protected void init()
+    {
+        super.init();
+        if (getExtractedMetadataCacheSize() > 0)
+        {
+            extractedContent = Collections.synchronizedMap(
+                    new MaxSizeMap<String, Boolean>(getExtractedMetadataCacheSize(), true));
+        }
+    }
+
+    /**
+     * Indicates if the metadata of the given content has already been applied to the node, so
+     * need not be extracted again when the node is versioned with unchanged content.  Always
+     * <tt>false</tt> unless the extracted metadata cache is enabled.
+     *
+     * @param nodeRef       the node
+     * @param contentUrl    the URL of the node's content
+     * @return <tt>true</tt> if the metadata of the content has been applied to the node
+     */
+    public boolean isExtracted(NodeRef nodeRef, String contentUrl)
+    {
+        return extractedContent != null && extractedContent.containsKey(getExtractedContentKey(nodeRef, contentUrl));
+    }
+
     @Override
     protected Map<String, Serializable> extractRawInThread(NodeRef nodeRef, ContentReader reader, MetadataExtracterLimits limits)
             throws Throwable
@@ -269,6 +306,11 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
         return EMPTY_METADATA;
     }
 
+    private String getExtractedContentKey(NodeRef nodeRef, String contentUrl)
+    {
+        return nodeRef + "|" + contentUrl;
+    }
+
     private Map<String, String> getExtractOptions(NodeRef nodeRef, ContentReader reader, MetadataExtracterLimits limits)
     {
         long timeoutMs = limits.getTimeoutMs();
@@ -332,7 +374,11 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
                                 }
                                 finally
                                 {
-                                    extractRawThreadFinished();
+                                    // Only extracts are counted against the concurrent extraction limits
+                                    if (EXTRACT.equals(embedOrExtract))
+                                    {
+                                        extractRawThreadFinished(reader);
+                                    }
                                 }
                                 return null;
                             }, false);
@@ -407,11 +453,13 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
             return; // Error state.
         }
 
-        AuthenticationUtil.runAsSystem((AuthenticationUtil.RunAsWork<Void>) () ->
+        String contentUrl = AuthenticationUtil.runAsSystem((AuthenticationUtil.RunAsWork<String>) () ->
                 transactionService.getRetryingTransactionHelper().doInTransaction(() ->
                 {
                     // Based on: AbstractMappingMetadataExtracter.extract
                     Map<QName, Serializable> nodeProperties = nodeService.getProperties(nodeRef);
+                    Serializable contentData = nodeProperties.get(ContentModel.PROP_CONTENT);
+                    String extractedContentUrl = (contentData instanceof ContentData) ? ((ContentData) contentData).getContentUrl() : null;
                     // Convert to system properties (standalone)
                     Map<QName, Serializable> systemProperties = convertKeysToQNames(metadata);
                     // Convert the properties according to the dictionary types
@@ -424,7 +472,7 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
                     // If none of the properties where changed, then there is nothing more to do
                     if (changedProperties.size() == 0)
                     {
-                        return null;
+                        return extractedContentUrl;
                     }
                     boolean transformerDebugEnabled = transformerDebug.isEnabled();
                     boolean debugEnabled = logger.isDebugEnabled();
@@ -455,8 +503,13 @@ public class AsynchronousExtractor extends AbstractMappingMetadataExtracter
                         logger.trace("Extraction of Metadata from " + nodeRef + " complete " + changedProperties);
                     }
 
-                    return null;
+                    return extractedContentUrl;
                 }, false, true));
+
+        if (extractedContent != null && contentUrl != null)
+        {
+            extractedContent.put(getExtractedContentKey(nodeRef, contentUrl), Boolean.TRUE);
+        }
     }
 
     private Map<String, Serializable> readMetadata(InputStream transformInputStream)
@@ -30,7 +30,7 @@ import org.alfresco.api.AlfrescoPublicApi;
 /**
  * Represents maximum values (that result in exceptions if exceeded) or
  * limits on values (that result in EOF (End Of File) being returned early).
- * The current options are elapsed time, document size and concurrent extractions limit.
+ * The current options are elapsed time, document size and concurrent extractions limits.
  * 
  * @author Ray Gauss II
  */
@@ -40,6 +40,7 @@ public class MetadataExtracterLimits
     private long timeoutMs = Long.MAX_VALUE;
     private double maxDocumentSizeMB = Double.MAX_VALUE;
     private int maxConcurrentExtractionsCount = Integer.MAX_VALUE;
+    private double maxConcurrentDocumentsSizeMB = Double.MAX_VALUE;
     
     /**
      * Gets the time in milliseconds after which the metadata extracter will be stopped.
@@ -98,5 +99,26 @@ public class MetadataExtracterLimits
     public int getMaxConcurrentExtractionsCount()
     {
         return maxConcurrentExtractionsCount;
+    }
+
+    /**
+     * Sets the maximum total size(MB) of the documents being extracted at the same time.
+     * A document is still extracted if nothing else is.
+     * 
+     * @param maxConcurrentDocumentsSizeMB
+     */
+    public void setMaxConcurrentDocumentsSizeMB(double maxConcurrentDocumentsSizeMB)
+    {
+        this.maxConcurrentDocumentsSizeMB = maxConcurrentDocumentsSizeMB;
+    }
+
+    /**
+     * Gets the maximum total size(MB) of the documents being extracted at the same time
+     * 
+     * @return maximum size
+     */
+    public double getMaxConcurrentDocumentsSizeMB()
+    {
+        return maxConcurrentDocumentsSizeMB;
     }
 }
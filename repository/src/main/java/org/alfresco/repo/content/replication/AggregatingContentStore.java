@@ -67,8 +67,8 @@ public class AggregatingContentStore extends AbstractContentStore
 {    
     private static Log logger = LogFactory.getLog(AggregatingContentStore.class);
     
-    private ContentStore primaryStore;
-    private List<ContentStore> secondaryStores;
+    protected ContentStore primaryStore;
+    protected List<ContentStore> secondaryStores;
     
     private Lock readLock;
 
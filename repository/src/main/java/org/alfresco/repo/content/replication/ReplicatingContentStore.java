@@ -0,0 +1,225 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.TraceableThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <h1><u>Replicating Content Store</u></h1>
+ * <p>
+ * An {@link AggregatingContentStore} that, when <b>outbound</b> replication is on, writes new
+ * content to the primary store and all secondary stores at the same time.
+ * <p>
+ * The incoming stream is passed to every store by its own thread through a bounded
+ * number of buffers, so the slowest store holds back the writer rather than buffering the
+ * content in memory.  The writer's channel is closed once the primary store and enough
+ * other stores to make up the configured number of
+ * {@link #setWriteAcknowledgements(int) acknowledgements} have the content; the remaining
+ * stores complete in the background.  Stores that fail to take the content are caught up
+ * from the primary store asynchronously.
+ * <p>
+ * Reads are served as for the {@link AggregatingContentStore}.
+ *
+ * @see AggregatingContentStore
+ * @since 7.0
+ */
+public class ReplicatingContentStore extends AggregatingContentStore
+{
+    private static Log logger = LogFactory.getLog(ReplicatingContentStore.class);
+
+    private boolean outbound = true;
+    private int writeAcknowledgements = 1;
+    private int bufferCount = 16;
+    private final ExecutorService executorService;
+
+    public ReplicatingContentStore()
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setNamePrefix("ReplicatingContentStore");
+        threadFactory.setThreadDaemon(true);
+        executorService = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * @param outbound              <tt>true</tt> (default) to write new content to all stores or
+     *                              <tt>false</tt> to write to the primary store only
+     */
+    public void setOutbound(boolean outbound)
+    {
+        this.outbound = outbound;
+    }
+
+    /**
+     * Set the number of stores, including the primary store, that must have the content before
+     * a write completes.  Values larger than the number of stores wait for all of them.
+     *
+     * @param writeAcknowledgements the number of stores to wait for (default <tt>1</tt>)
+     */
+    public void setWriteAcknowledgements(int writeAcknowledgements)
+    {
+        this.writeAcknowledgements = writeAcknowledgements;
+    }
+
+    /**
+     * @param bufferCount           the number of buffers that each store may fall behind the
+     *                              incoming stream by (default <tt>16</tt>)
+     */
+    public void setBufferCount(int bufferCount)
+    {
+        this.bufferCount = bufferCount;
+    }
+
+    /**
+     * Shuts down the replication threads, abandoning any outstanding catch-up.
+     */
+    public void shutdown()
+    {
+        executorService.shutdownNow();
+    }
+
+    @Override
+    public ContentWriter getWriter(ContentContext ctx)
+    {
+        ContentWriter primaryWriter = primaryStore.getWriter(ctx);
+        if (!outbound || secondaryStores == null || secondaryStores.isEmpty())
+        {
+            return primaryWriter;
+        }
+        String contentUrl = primaryWriter.getContentUrl();
+        List<ContentWriter> secondaryWriters = new ArrayList<ContentWriter>(secondaryStores.size());
+        for (ContentStore store : secondaryStores)
+        {
+            ContentWriter writer = null;
+            try
+            {
+                writer = store.getWriter(new ContentContext(null, contentUrl));
+            }
+            catch (Throwable e)
+            {
+                logger.warn("Unable to replicate content to store, it will be caught up later: \n" +
+                        "   URL:   " + contentUrl + "\n" +
+                        "   Store: " + store + "\n" +
+                        "   Error: " + e.getMessage());
+            }
+            // Null writers are caught up once the primary store has the content
+            secondaryWriters.add(writer);
+        }
+        return new ReplicatingContentWriter(
+                this,
+                primaryWriter,
+                secondaryWriters,
+                ctx.getExistingContentReader(),
+                Math.min(writeAcknowledgements, secondaryWriters.size() + 1),
+                bufferCount);
+    }
+
+    /**
+     * Deletes the content from the primary store and, if outbound replication is on, from the
+     * secondary stores too.
+     *
+     * @return Returns the value returned by the delete on the primary store.
+     */
+    @Override
+    public boolean delete(String contentUrl) throws ContentIOException
+    {
+        boolean deleted = super.delete(contentUrl);
+        if (outbound && secondaryStores != null)
+        {
+            for (ContentStore store : secondaryStores)
+            {
+                try
+                {
+                    store.delete(contentUrl);
+                }
+                catch (Throwable e)
+                {
+                    logger.warn("Failed to delete replicated content: \n" +
+                            "   URL:   " + contentUrl + "\n" +
+                            "   Store: " + store, e);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Execute work on the replication threads.
+     */
+    /*package*/ void execute(Runnable runnable)
+    {
+        executorService.execute(runnable);
+    }
+
+    /**
+     * Asynchronously copy content from the primary store to a secondary store that failed to
+     * take it during the write.
+     *
+     * @param contentUrl            the URL of the content now in the primary store
+     * @param storeIndex            the index of the secondary store
+     */
+    /*package*/ void catchUp(final String contentUrl, int storeIndex)
+    {
+        final ContentStore store = secondaryStores.get(storeIndex);
+        execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    // Clear out anything left by the failed write
+                    store.delete(contentUrl);
+                    ContentReader reader = primaryStore.getReader(contentUrl);
+                    ContentWriter writer = store.getWriter(new ContentContext(null, contentUrl));
+                    writer.putContent(reader);
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug("Caught up replicated content: \n" +
+                                "   URL:   " + contentUrl + "\n" +
+                                "   Store: " + store);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    logger.error("Failed to catch up replicated content: \n" +
+                            "   URL:   " + contentUrl + "\n" +
+                            "   Store: " + store, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.replication;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.content.AbstractContentWriter;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writer for the {@link ReplicatingContentStore} that tees the content written to it to the
+ * writers of the primary and secondary stores, each fed by its own thread.
+ *
+ * @since 7.0
+ */
+class ReplicatingContentWriter extends AbstractContentWriter
+{
+    private static final Log logger = LogFactory.getLog(ReplicatingContentWriter.class);
+
+    /** Marks the end of the content in a target's queue */
+    private static final ByteBuffer END_OF_CONTENT = ByteBuffer.allocate(0);
+
+    private final ReplicatingContentStore store;
+    private final ContentWriter primaryWriter;
+    private final List<ContentWriter> secondaryWriters;
+    private final int writeAcknowledgements;
+    private final int bufferCount;
+
+    /** Guards the state of the targets */
+    private final Object lock = new Object();
+    /** The primary store's target followed by those of the secondary stores */
+    private final List<Target> targets = new ArrayList<Target>();
+    private int succeeded;
+    private int finished;
+
+    /**
+     * @param store                 the store to replicate for
+     * @param primaryWriter         the writer onto the primary store
+     * @param secondaryWriters      writers onto the secondary stores, in store order, with
+     *                              <tt>null</tt> for stores that could not give a writer
+     * @param existingContentReader a reader of a previous version of this content
+     * @param writeAcknowledgements the number of stores that must have the content before closing
+     * @param bufferCount           the number of buffers each store may fall behind by
+     */
+    ReplicatingContentWriter(
+            ReplicatingContentStore store,
+            ContentWriter primaryWriter,
+            List<ContentWriter> secondaryWriters,
+            ContentReader existingContentReader,
+            int writeAcknowledgements,
+            int bufferCount)
+    {
+        super(primaryWriter.getContentUrl(), existingContentReader);
+        this.store = store;
+        this.primaryWriter = primaryWriter;
+        this.secondaryWriters = secondaryWriters;
+        this.writeAcknowledgements = writeAcknowledgements;
+        this.bufferCount = bufferCount;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return primaryWriter.getSize();
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return store.getReader(getContentUrl());
+    }
+
+    @Override
+    protected WritableByteChannel getDirectWritableChannel() throws ContentIOException
+    {
+        return new TeeChannel();
+    }
+
+    /**
+     * A store being written to by its own thread.
+     */
+    private class Target implements Runnable
+    {
+        /** The index of the secondary store or <tt>-1</tt> for the primary store */
+        private final int storeIndex;
+        private final ContentWriter writer;
+        private final BlockingQueue<ByteBuffer> queue;
+        private volatile boolean failed;
+        private boolean finished;
+        private boolean caughtUp;
+        private Throwable error;
+
+        private Target(int storeIndex, ContentWriter writer)
+        {
+            this.storeIndex = storeIndex;
+            this.writer = writer;
+            this.queue = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+            this.failed = (writer == null);
+        }
+
+        public void run()
+        {
+            try (WritableByteChannel channel = writer.getWritableChannel())
+            {
+                while (true)
+                {
+                    ByteBuffer buffer = queue.take();
+                    if (buffer == END_OF_CONTENT)
+                    {
+                        break;
+                    }
+                    while (buffer.hasRemaining())
+                    {
+                        channel.write(buffer);
+                    }
+                }
+            }
+            catch (Throwable e)
+            {
+                error = e;
+                failed = true;
+                queue.clear();
+            }
+            finally
+            {
+                finished(this);
+            }
+        }
+    }
+
+    /**
+     * Record the end of a target's write and schedule catch-up for failed secondary stores
+     * once the primary store has the content.
+     */
+    private void finished(Target target)
+    {
+        synchronized (lock)
+        {
+            target.finished = true;
+            finished++;
+            if (!target.failed)
+            {
+                succeeded++;
+            }
+            else if (logger.isDebugEnabled())
+            {
+                logger.debug("Replicated write failed: \n" +
+                        "   URL:   " + getContentUrl() + "\n" +
+                        "   Store: " + target.storeIndex, target.error);
+            }
+            Target primary = targets.get(0);
+            if (primary.finished && !primary.failed)
+            {
+                for (Target secondary : targets)
+                {
+                    if (secondary.finished && secondary.failed && !secondary.caughtUp)
+                    {
+                        secondary.caughtUp = true;
+                        store.catchUp(getContentUrl(), secondary.storeIndex);
+                    }
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Copies each buffer written once and hands it to every store that is still taking content.
+     */
+    private class TeeChannel implements WritableByteChannel
+    {
+        private boolean open = true;
+
+        private TeeChannel()
+        {
+            List<ContentWriter> writers = new ArrayList<ContentWriter>(secondaryWriters.size() + 1);
+            writers.add(primaryWriter);
+            writers.addAll(secondaryWriters);
+            synchronized (lock)
+            {
+                for (int i = 0; i < writers.size(); i++)
+                {
+                    ContentWriter writer = writers.get(i);
+                    if (writer != null)
+                    {
+                        writer.setMimetype(getMimetype());
+                        writer.setEncoding(getEncoding());
+                        writer.setLocale(getLocale());
+                    }
+                    targets.add(new Target(i - 1, writer));
+                }
+            }
+            for (Target target : targets)
+            {
+                if (target.failed)
+                {
+                    finished(target);
+                }
+                else
+                {
+                    store.execute(target);
+                }
+            }
+        }
+
+        public int write(ByteBuffer src) throws IOException
+        {
+            Target primary = targets.get(0);
+            if (primary.failed)
+            {
+                throw new IOException("Failed to write to the primary store", primary.error);
+            }
+            int count = src.remaining();
+            ByteBuffer buffer = ByteBuffer.allocate(count);
+            buffer.put(src);
+            buffer.flip();
+            offer(buffer);
+            return count;
+        }
+
+        private void offer(ByteBuffer buffer) throws IOException
+        {
+            for (Target target : targets)
+            {
+                // Each target reads the shared buffer through its own position
+                ByteBuffer targetBuffer = (buffer == END_OF_CONTENT) ? buffer : buffer.duplicate();
+                try
+                {
+                    while (!target.failed && !target.queue.offer(targetBuffer, 100L, TimeUnit.MILLISECONDS))
+                    {
+                        // The target is behind, so wait for it
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    throw new InterruptedIOException("Interrupted while replicating content: " + getContentUrl());
+                }
+            }
+        }
+
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        public void close() throws IOException
+        {
+            if (!open)
+            {
+                return;
+            }
+            open = false;
+            offer(END_OF_CONTENT);
+            Target primary = targets.get(0);
+            synchronized (lock)
+            {
+                while (!primary.finished || (succeeded < writeAcknowledgements && finished < targets.size()))
+                {
+                    try
+                    {
+                        lock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        throw new InterruptedIOException("Interrupted while replicating content: " + getContentUrl());
+                    }
+                }
+                if (primary.failed)
+                {
+                    throw new IOException("Failed to write to the primary store", primary.error);
+                }
+                if (succeeded < writeAcknowledgements)
+                {
+                    throw new IOException(
+                            "Content was only written to " + succeeded + " of the " + writeAcknowledgements +
+                            " stores required: " + getContentUrl());
+                }
+            }
+        }
+    }
+}
@@ -34,6 +34,9 @@ public interface ActivitiesDAO
 {
     public static final String KEY_ACTIVITY_NULL_VALUE = "@@NULL@@";
     
+    /** Feed user of the entries that make up a site's stream when feeds are fanned out on read */
+    public static final String KEY_ACTIVITY_SITE_STREAM_VALUE = "@@SITE@@";
+    
     public void startTransaction() throws SQLException;
     
     public void commitTransaction() throws SQLException;
@@ -45,6 +45,8 @@ public interface ActivityFeedDAO extends ActivitiesDAO
     
     public long insertFeedEntry(ActivityFeedEntity activityFeed) throws SQLException;
     
+    public int insertFeedEntries(List<ActivityFeedEntity> activityFeeds) throws SQLException;
+    
     public int deleteFeedEntries(Integer maxIdRange) throws SQLException;
     public int deleteFeedEntries(Date keepDate) throws SQLException;
     
@@ -62,6 +64,8 @@ public interface ActivityFeedDAO extends ActivitiesDAO
     public List<ActivityFeedEntity> selectUserFeedEntries(String feedUserId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, int maxFeedItems) throws SQLException;
 
     public List<ActivityFeedEntity> selectSiteFeedEntries(String siteUserId, int maxFeedItems) throws SQLException;
+    
+    public List<ActivityFeedEntity> selectSiteStreamEntries(String siteId, long minFeedId, int maxFeedItems) throws SQLException;
     
     public PagingResults<ActivityFeedEntity> selectPagedUserFeedEntries(String feedUserId, String networkId, String siteId, boolean excludeThisUser, boolean excludeOtherUsers, long minFeedId, PagingRequest pagingRequest) throws SQLException;
     
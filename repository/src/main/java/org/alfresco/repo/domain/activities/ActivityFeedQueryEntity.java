@@ -44,6 +44,11 @@ public class ActivityFeedQueryEntity
         return ActivitiesDAO.KEY_ACTIVITY_NULL_VALUE;
     }
     
+    public String getSiteStreamValue()
+    {
+        return ActivitiesDAO.KEY_ACTIVITY_SITE_STREAM_VALUE;
+    }
+    
     public Long getMinId()
     {
         return minId;
@@ -68,6 +68,18 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         return (id != null ? id : -1);
     }
     
+    @Override
+    public int insertFeedEntries(List<ActivityFeedEntity> activityFeeds) throws SQLException
+    {
+        if (activityFeeds.isEmpty())
+        {
+            return 0;
+        }
+        // one multi-row insert (note: generated ids are not returned) - the caller keeps the number of rows within the
+        // bind parameter and packet size limits of the database
+        return template.insert("alfresco.activities.insert.insert_activity_feeds", activityFeeds);
+    }
+    
     @Override
     public int deleteFeedEntries(Integer maxIdRange) throws SQLException
     {
@@ -480,4 +492,22 @@ public class ActivityFeedDAOImpl extends ActivitiesDAOImpl implements ActivityFe
         // for given site
         return template.selectList("alfresco.activities.select.select_activity_feed_for_site", params, rowBounds);
     }
+    
+    @Override
+    public List<ActivityFeedEntity> selectSiteStreamEntries(String siteId, long minFeedId, int maxFeedSize) throws SQLException
+    {
+        ActivityFeedQueryEntity params = new ActivityFeedQueryEntity();
+        params.setSiteNetwork(siteId);
+        
+        if (minFeedId > -1)
+        {
+            params.setMinId(minFeedId);
+        }
+        
+        int rowLimit = maxFeedSize < 0 ? RowBounds.NO_ROW_LIMIT : maxFeedSize;
+        RowBounds rowBounds = new RowBounds(RowBounds.NO_ROW_OFFSET, rowLimit);
+        
+        // for given site - all entries, whoever can read them
+        return template.selectList("alfresco.activities.select.select_activity_site_stream", params, rowBounds);
+    }
 }
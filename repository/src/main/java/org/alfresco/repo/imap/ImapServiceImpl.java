@@ -140,6 +140,10 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
     private static final String FAVORITE_SITES = "imap.favorite.sites.list";
     private static final String UIDVALIDITY_TRANSACTION_LISTENER = "imap.uidvalidity.txn.listener";
     
+    // Maximum number of folder changes to replay, and messages to reload, when updating a cached folder status
+    private static final int MAX_FOLDER_CHANGES_REPLAYED = 100;
+    private static final int MAX_MESSAGES_RELOADED = 1000;
+    
     private SysAdminParams sysAdminParams;
     private FileFolderService fileFolderService;
     private NodeService nodeService;
@@ -155,6 +159,10 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
     private Map<Pair<String, String>, FolderStatus> folderCache;
     private int folderCacheSize = 1000;
     private ReentrantReadWriteLock folderCacheLock = new ReentrantReadWriteLock();
+    // Log of the messages changed by each committed folder change, keyed by the new change token and guarded by
+    // the folder cache lock. Like the folder cache, it need not be cluster synchronized: a change made on another
+    // node is simply missing from the log and forces a full rebuild of the folder status.
+    private Map<String, FolderChange> folderChangeLog;
     private SimpleCache<NodeRef, CacheItem> messageCache;
     private Map<String, ImapConfigMountPointsBean> imapConfigMountPoints;
     private Map<String, Integer> mountPointIds;
@@ -392,6 +400,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
         PropertyCheck.mandatory(this, "namespaceService", namespaceService);
         PropertyCheck.mandatory(this, "searchService", getSearchService());
         this.folderCache = new MaxSizeMap<Pair<String,String>, FolderStatus>(folderCacheSize, false);
+        this.folderChangeLog = new MaxSizeMap<String, FolderChange>(folderCacheSize, false);
         
         // be sure that a default e-mail is correct
         try
@@ -870,6 +879,13 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
             {
                 this.folderCacheLock.readLock().unlock();
             }
+            
+            // Try to bring an older status for the folder up to date with the messages that have changed since
+            FolderStatus result = updateFolderStatus(userName, contextNodeRef, viewMode, changeToken);
+            if (result != null)
+            {
+                return cacheFolderStatus(cacheKey, result);
+            }
         }
         
         List<FileInfo> fileInfos = null;
@@ -953,6 +969,11 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
         Long uidValidity = (Long) nodeService.getProperty(contextNodeRef, ImapModel.PROP_UIDVALIDITY);
         FolderStatus result = new FolderStatus(messageCount, recentCount, firstUnseen, unseenCount,
                 uidValidity == null ? 0 : uidValidity, changeToken, currentSearch);
+        return cacheFolderStatus(cacheKey, result);
+    }
+
+    private FolderStatus cacheFolderStatus(Pair<String, String> cacheKey, FolderStatus result)
+    {
         this.folderCacheLock.writeLock().lock();
         try
         {
@@ -961,7 +982,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
             {
                 if(logger.isDebugEnabled())
                 {
-                    logger.debug("At end of getFolderStatus. Found info in cache, changeToken:" + changeToken);
+                    logger.debug("At end of getFolderStatus. Found info in cache, changeToken:" + result.changeToken);
                 }
          
                 return oldResult;
@@ -970,7 +991,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
 
             if(logger.isDebugEnabled())
             {
-                logger.debug("At end of getFolderStatus. Found files:" + currentSearch.size() + ", changeToken:" + changeToken);
+                logger.debug("At end of getFolderStatus. Found files:" + result.search.size() + ", changeToken:" + result.changeToken);
             }
             return result;
         }
@@ -980,6 +1001,124 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
         }
     }
 
+    /**
+     * Brings the most recent cached status of a folder for the user up to date by replaying the logged folder changes
+     * made since, so that only the changed messages are reloaded rather than the whole folder.
+     * 
+     * @return the up to date folder status, or <tt>null</tt> if the folder needs a full rebuild
+     */
+    private FolderStatus updateFolderStatus(final String userName, final NodeRef contextNodeRef, ImapViewMode viewMode, final String changeToken)
+    {
+        FolderStatus previous = null;
+        Set<NodeRef> changedNodes = new HashSet<NodeRef>();
+        this.folderCacheLock.readLock().lock();
+        try
+        {
+            String token = changeToken;
+            for (int i = 0; i < MAX_FOLDER_CHANGES_REPLAYED && previous == null; i++)
+            {
+                FolderChange change = this.folderChangeLog.get(token);
+                if (change == null || !change.folderNodeRef.equals(contextNodeRef))
+                {
+                    return null;
+                }
+                changedNodes.addAll(change.changedNodes);
+                token = change.previousChangeToken;
+                previous = this.folderCache.get(new Pair<String, String>(userName, token));
+            }
+        }
+        finally
+        {
+            this.folderCacheLock.readLock().unlock();
+        }
+        if (previous == null || changedNodes.size() > MAX_MESSAGES_RELOADED)
+        {
+            return null;
+        }
+        Long uidValidity = (Long) nodeService.getProperty(contextNodeRef, ImapModel.PROP_UIDVALIDITY);
+        if ((uidValidity == null ? 0 : uidValidity) != previous.uidValidity)
+        {
+            return null;
+        }
+
+        NavigableMap<Long, FileInfo> currentSearch = new TreeMap<Long, FileInfo>(previous.search);
+        if (!changedNodes.isEmpty())
+        {
+            currentSearch.values().removeIf(fileInfo -> changedNodes.contains(fileInfo.getNodeRef()));
+        }
+        for (NodeRef nodeRef : changedNodes)
+        {
+            if (!nodeService.exists(nodeRef) || permissionService.hasPermission(nodeRef, PermissionService.READ) != AccessStatus.ALLOWED
+                    || !isChildOf(nodeRef, contextNodeRef))
+            {
+                continue;
+            }
+            // Hidden messages and links are filtered by the folder listing, leave them to a full rebuild
+            if (nodeService.hasAspect(nodeRef, ContentModel.ASPECT_HIDDEN) ||
+                    !serviceRegistry.getDictionaryService().isSubClass(nodeService.getType(nodeRef), ContentModel.TYPE_CONTENT))
+            {
+                return null;
+            }
+            boolean imapContent = nodeService.hasAspect(nodeRef, ImapModel.ASPECT_IMAP_CONTENT);
+            if ((viewMode == ImapViewMode.ARCHIVE && !imapContent) || (viewMode == ImapViewMode.VIRTUAL && imapContent))
+            {
+                continue;
+            }
+            FileInfo fileInfo;
+            try
+            {
+                fileInfo = fileFolderService.getFileInfo(nodeRef);
+            }
+            catch (AccessDeniedException e)
+            {
+                continue;
+            }
+            if (fileInfo != null)
+            {
+                currentSearch.put((Long) fileInfo.getProperties().get(ContentModel.PROP_NODE_DBID), fileInfo);
+            }
+        }
+
+        // Messages that have not changed still have current properties, so count the flags without going to the node service
+        int messageCount = currentSearch.size(), recentCount = 0, unseenCount = 0, firstUnseen = 0;
+        int i = 1;
+        for (FileInfo fileInfo : currentSearch.values())
+        {
+            Flags flags = getFlags(fileInfo.getProperties());
+            if (flags.contains(Flags.Flag.RECENT))
+            {
+                recentCount++;
+            }
+            if (!flags.contains(Flags.Flag.SEEN))
+            {
+                if (firstUnseen == 0)
+                {
+                    firstUnseen = i;
+                }
+                unseenCount++;
+            }
+            i++;
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Updated folder status from changeToken:" + previous.changeToken + " to changeToken:" + changeToken
+                    + ", reloaded messages:" + changedNodes.size());
+        }
+        return new FolderStatus(messageCount, recentCount, firstUnseen, unseenCount, previous.uidValidity, changeToken, currentSearch);
+    }
+
+    private boolean isChildOf(NodeRef nodeRef, NodeRef folderNodeRef)
+    {
+        for (ChildAssociationRef parentAssoc : nodeService.getParentAssocs(nodeRef))
+        {
+            if (parentAssoc.getParentRef().equals(folderNodeRef))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void subscribe(AlfrescoImapUser user, String mailbox)
     {
         if (logger.isDebugEnabled())
@@ -1020,9 +1159,13 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
      * @return flags.
      */
     public Flags getFlags(FileInfo messageInfo)
+    {
+        return getFlags(nodeService.getProperties(messageInfo.getNodeRef()));
+    }
+
+    private Flags getFlags(Map<QName, Serializable> props)
     {
         Flags flags = new Flags();
-        Map<QName, Serializable> props = nodeService.getProperties(messageInfo.getNodeRef());
 
         for (QName key : qNameToFlag.keySet())
         {
@@ -1780,7 +1923,9 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                     long newId = (Long) nodeService.getProperty(childNodeRef, ContentModel.PROP_NODE_DBID);
                     // Keep a record of minimum and maximum node IDs in this folder in this transaction and add a listener that will
                     // update the UIDVALIDITY and MAXUID properties appropriately. Also force generation of a new change token
-                    getUidValidityTransactionListener(childAssocRef.getParentRef()).recordNewUid(newId);
+                    UidValidityTransactionListener listener = getUidValidityTransactionListener(childAssocRef.getParentRef());
+                    listener.recordNewUid(newId);
+                    listener.recordChange(childNodeRef);
                     // Flag new content as recent
                     setFlag(childNodeRef, Flags.Flag.RECENT, true);
                 }
@@ -1807,7 +1952,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                         ContentModel.TYPE_CONTENT))
                 {
                     // Force generation of a new change token
-                    getUidValidityTransactionListener(childAssocRef.getParentRef());
+                    getUidValidityTransactionListener(childAssocRef.getParentRef()).recordChange(childNodeRef);
 
                     // Remove the message from the cache
                     messageCache.remove(childNodeRef);
@@ -1879,6 +2024,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
 
                         // Force generation of a new change token for the parent folders
                         UidValidityTransactionListener listener = getUidValidityTransactionListener(folderRef);
+                        listener.recordChange(nodeRef);
                 
                         // if we have a significant change then we need to force a new uidvalidity.
                         if(hasChanged)
@@ -1913,7 +2059,9 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                 if (nodeService.hasAspect(folderRef, ImapModel.ASPECT_IMAP_FOLDER))
                 {
                     // Force generation of a new change token and updating the UIDVALIDITY 
-                    getUidValidityTransactionListener(folderRef).recordNewUid(newId);
+                    UidValidityTransactionListener listener = getUidValidityTransactionListener(folderRef);
+                    listener.recordNewUid(newId);
+                    listener.recordChange(childNodeRef);
                 }
                 return null;
             }
@@ -1936,7 +2084,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                         messageCache.remove(nodeRef);
 
                         // Force generation of a new change token
-                        getUidValidityTransactionListener(folderRef);
+                        getUidValidityTransactionListener(folderRef).recordChange(nodeRef);
                     }
                 }
                 return null;
@@ -1963,10 +2111,13 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
     {
         // Generate a unique token for each folder change with which we can validate session caches
         private String changeToken = GUID.generate();
+        private String previousChangeToken;
         private NodeRef folderNodeRef;
         private Long minUid;
         private Long maxUid;
         private boolean forceNewUidValidity = false;
+        private boolean uidValidityChanged = false;
+        private Set<NodeRef> changedNodes = new HashSet<NodeRef>();
         
         public UidValidityTransactionListener(NodeRef folderNodeRef)
         {
@@ -1978,6 +2129,11 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
             this.forceNewUidValidity = true;
         }
         
+        public void recordChange(NodeRef nodeRef)
+        {
+            this.changedNodes.add(nodeRef);
+        }
+        
         public void recordNewUid(long newUid)
         {
             if (this.minUid == null)
@@ -2021,6 +2177,7 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                         if (UidValidityTransactionListener.this.forceNewUidValidity || oldMax == null || UidValidityTransactionListener.this.minUid <= oldMax)
                         {
                             nodeService.setProperty(folderNodeRef, ImapModel.PROP_UIDVALIDITY, modifDate);                            
+                            UidValidityTransactionListener.this.uidValidityChanged = true;
                             if (logger.isDebugEnabled())
                             {
                                 logger.debug("UIDVALIDITY was modified for folder, nodeRef:" + folderNodeRef);
@@ -2035,11 +2192,48 @@ public class ImapServiceImpl implements ImapService, OnRestoreNodePolicy, OnCrea
                             }
                         }
                     }
+                    UidValidityTransactionListener.this.previousChangeToken = (String) nodeService.getProperty(folderNodeRef, ImapModel.PROP_CHANGE_TOKEN);
                     nodeService.setProperty(folderNodeRef, ImapModel.PROP_CHANGE_TOKEN, changeToken);                            
                     return null;
                 }                        
             });
         }
+
+        @Override
+        public void afterCommit()
+        {
+            // Log the changed messages so that cached folder statuses can be brought up to date incrementally
+            if (previousChangeToken == null || uidValidityChanged)
+            {
+                return;
+            }
+            folderCacheLock.writeLock().lock();
+            try
+            {
+                folderChangeLog.put(changeToken, new FolderChange(folderNodeRef, previousChangeToken, changedNodes));
+            }
+            finally
+            {
+                folderCacheLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The messages changed in a folder by a single transaction, and the change token the folder had before it.
+     */
+    private static class FolderChange
+    {
+        private final NodeRef folderNodeRef;
+        private final String previousChangeToken;
+        private final Set<NodeRef> changedNodes;
+
+        private FolderChange(NodeRef folderNodeRef, String previousChangeToken, Set<NodeRef> changedNodes)
+        {
+            this.folderNodeRef = folderNodeRef;
+            this.previousChangeToken = previousChangeToken;
+            this.changedNodes = Collections.unmodifiableSet(changedNodes);
+        }
     }
 
     public NodeRef getNodeSiteContainer(final NodeRef inputNodeRef)
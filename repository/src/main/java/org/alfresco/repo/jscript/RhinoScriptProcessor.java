@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +55,8 @@ import org.alfresco.service.cmr.repository.ScriptLocation;
 import org.alfresco.service.cmr.repository.ScriptProcessor;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.namespace.QName;
+import org.alfresco.util.MaxSizeMap;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mozilla.javascript.Context;
@@ -108,6 +111,9 @@ public class RhinoScriptProcessor extends BaseProcessor implements ScriptProcess
     /** Cache of runtime compiled script instances */
     private final Map<String, Script> scriptCache = new ConcurrentHashMap<String, Script>(256);
     
+    /** Cache of compiled repository node scripts - keyed by node and digest of the resolved script source */
+    private final Map<String, Script> nodeScriptCache = Collections.synchronizedMap(new MaxSizeMap<String, Script>(256, true));
+    
     
     /**
      * Set the default store reference
@@ -150,6 +156,7 @@ public class RhinoScriptProcessor extends BaseProcessor implements ScriptProcess
     public void reset()
     {
         this.scriptCache.clear();
+        this.nodeScriptCache.clear();
     }
     
     /**
@@ -245,16 +252,32 @@ public class RhinoScriptProcessor extends BaseProcessor implements ScriptProcess
                 throw new AlfrescoRuntimeException("Script Node content not found: " + nodeRef);
             }
             
-            // compile the script based on the node content
-            Script script;
-            Context cx = Context.enter();
-            try
+            // compile the script based on the node content - the resolved source (including any imports)
+            // is digested so an unchanged script is only compiled once, while any edit to the script or
+            // to one of its imports produces a new key and is picked up on the next execution
+            String source = resolveScriptImports(cr.getContentString());
+            String cacheKey = null;
+            Script script = null;
+            if (this.compile)
             {
-                script = cx.compileString(resolveScriptImports(cr.getContentString()), nodeRef.toString(), 1, null);
+                cacheKey = nodeRef.toString() + '/' + DigestUtils.sha256Hex(source);
+                script = this.nodeScriptCache.get(cacheKey);
             }
-            finally
+            if (script == null)
             {
-                Context.exit();
+                Context cx = Context.enter();
+                try
+                {
+                    script = cx.compileString(source, nodeRef.toString(), 1, null);
+                }
+                finally
+                {
+                    Context.exit();
+                }
+                if (cacheKey != null)
+                {
+                    this.nodeScriptCache.put(cacheKey, script);
+                }
             }
             
             return executeScriptImpl(script, model, false, nodeRef.toString());
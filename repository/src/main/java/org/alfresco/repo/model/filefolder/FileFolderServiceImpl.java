@@ -436,6 +436,11 @@ public class FileFolderServiceImpl extends AbstractBaseCopyService implements Fi
             {
                 return totalCount;
             }
+            @Override
+            public String getContinuationToken()
+            {
+                return results.getContinuationToken();
+            }
         };        
     }
 
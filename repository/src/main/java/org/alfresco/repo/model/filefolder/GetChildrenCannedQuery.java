@@ -26,6 +26,7 @@
 package org.alfresco.repo.model.filefolder;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,7 @@ import java.util.Set;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.query.CannedQueryParameters;
+import org.alfresco.query.CannedQuerySortDetails.SortOrder;
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.node.NodePropertyHelper;
 import org.alfresco.repo.domain.qname.QNameDAO;
@@ -49,6 +51,7 @@ import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.FileFilterMode;
 import org.alfresco.util.FileFilterMode.Client;
+import org.alfresco.util.Pair;
 
 /**
  * GetChidren canned query for files and folders.
@@ -102,6 +105,16 @@ public class GetChildrenCannedQuery extends org.alfresco.repo.node.getchildren.G
         return callback;
     }
     
+    @Override
+    protected ArrayList<Object> getResultCacheKey(GetChildrenCannedQueryParams paramBean, List<Pair<QName, SortOrder>> sortPairs)
+    {
+        // visibility of hidden children is relative to the client
+        ArrayList<Object> key = super.getResultCacheKey(paramBean, sortPairs);
+        key.add(FileFilterMode.getClient());
+        key.add(ignoreAspectQNames);
+        return key;
+    }
+    
     @Override
     protected FilterSortChildQueryCallback getFilterSortChildQuery(final List<FilterSortNode> children, final List<FilterProp> filterProps, GetChildrenCannedQueryParams paramBean)
     {
@@ -259,6 +259,11 @@ public class MLTranslationInterceptor implements MethodInterceptor
             {
                 return fileInfos.getTotalResultCount();
             }
+            @Override
+            public String getContinuationToken()
+            {
+                return fileInfos.getContinuationToken();
+            }
         };
         return orderedPagingResults;
     }
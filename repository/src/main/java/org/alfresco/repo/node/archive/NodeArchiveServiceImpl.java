@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -100,6 +101,8 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
     private NamedObjectRegistry<CannedQueryFactory<ArchivedNodeEntity>> cannedQueryRegistry;
     private TenantService tenantService;
     private boolean userNamesAreCaseSensitive = false;
+    private int purgeWorkerThreads = 2;
+    private int purgeBatchSize = 20;
 
     /** controls policy delegates */
     private PolicyComponent policyComponent;
@@ -165,6 +168,22 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
         this.userNamesAreCaseSensitive = userNamesAreCaseSensitive;
     }
 
+    /**
+     * @param purgeWorkerThreads    the number of threads used to purge all archived nodes (default 2)
+     */
+    public void setPurgeWorkerThreads(int purgeWorkerThreads)
+    {
+        this.purgeWorkerThreads = purgeWorkerThreads;
+    }
+
+    /**
+     * @param purgeBatchSize        the number of archived nodes purged per transaction (default 20)
+     */
+    public void setPurgeBatchSize(int purgeBatchSize)
+    {
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
     public NodeRef getArchivedNode(NodeRef originalNodeRef)
     {
         StoreRef orginalStoreRef = originalNodeRef.getStoreRef();
@@ -177,11 +196,12 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
     }
     
     /**
-     * Get all the nodes that were archived <b>from</b> the given store.
+     * Get the associations to all the nodes that were archived <b>from</b> the given store.
+     * No permission checks are applied.
      * 
      * @param originalStoreRef      the original store to process
      */
-    private List<NodeRef> getArchivedNodes(StoreRef originalStoreRef)
+    private List<ChildAssociationRef> getArchivedNodeAssocs(StoreRef originalStoreRef)
     {
         // Get the archive location
         final NodeRef archiveParentNodeRef = nodeService.getStoreArchiveNode(originalStoreRef);
@@ -202,47 +222,45 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
             }
         };
         // Fetch all children as 'system' user to bypass permission checks
-        List<ChildAssociationRef> archivedAssocs = AuthenticationUtil.runAs(runAsWork, AuthenticationUtil.getSystemUserName());
-        // Iterate and pull out NodeRefs with a permission check
-        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(archivedAssocs.size());
-        for (ChildAssociationRef childAssociationRef : archivedAssocs)
-        {
-            NodeRef nodeRef = childAssociationRef.getChildRef();
-            // Eliminate if the current user doesn't have permission to delete
-            if (permissionService.hasPermission(nodeRef, PermissionService.DELETE) == AccessStatus.ALLOWED)
-            {
-                nodeRefs.add(nodeRef);
-            }
-        }
-        return nodeRefs;
+        return AuthenticationUtil.runAs(runAsWork, AuthenticationUtil.getSystemUserName());
     }
     
     /**
+     * The archived nodes are handed out in chunks of one round of batches, with the permission check applied
+     * to each chunk as it is handed out.  Work can therefore start immediately on large archive stores, and the
+     * job lock and VM shutdown are checked between chunks, stopping the purge at a consistent point: nodes
+     * that have already been purged are gone, so re-running the purge carries on from where it stopped.
+     * <p>
+     * The batch processor stops at the first empty chunk, so nodes that the current user may not delete are
+     * skipped over until a chunk has nodes to purge: a chunk is only empty when no archived nodes are left.
+     * 
      * @return                      Returns a work provider for batch processing
      * 
      * @since 3.3.4
      */
-    private BatchProcessWorkProvider<NodeRef> getArchivedNodesWorkProvider(final StoreRef originalStoreRef, final String lockToken)
+    /* package */ BatchProcessWorkProvider<NodeRef> getArchivedNodesWorkProvider(final StoreRef originalStoreRef, final String lockToken)
     {
+        final int chunkSize = Math.max(1, purgeWorkerThreads) * Math.max(1, purgeBatchSize);
         return new BatchProcessWorkProvider<NodeRef>()
         {
             private VmShutdownListener vmShutdownLister = new VmShutdownListener("getArchivedNodesWorkProvider");
-            private List<NodeRef> nodeRefs;
-            private boolean done;
-            private synchronized List<NodeRef> getNodeRefs()
+            private List<ChildAssociationRef> archivedAssocs;
+            private Iterator<ChildAssociationRef> archivedAssocsIterator;
+            private synchronized List<ChildAssociationRef> getArchivedAssocs()
             {
-                if (nodeRefs == null)
+                if (archivedAssocs == null)
                 {
-                    nodeRefs = getArchivedNodes(originalStoreRef);
+                    archivedAssocs = getArchivedNodeAssocs(originalStoreRef);
+                    archivedAssocsIterator = archivedAssocs.iterator();
                 }
-                return nodeRefs;
+                return archivedAssocs;
             }
             /**
-             * @return              Returns 0, always
+             * @return              Returns the number of archived nodes, before permission checks
              */
             public synchronized int getTotalEstimatedWorkSize()
             {
-                return 0;
+                return getArchivedAssocs().size();
             }
             public synchronized Collection<NodeRef> getNextWork()
             {
@@ -262,15 +280,20 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
                     return Collections.emptyList();
                 }
                 
-                if (done)
-                {
-                    return Collections.emptyList();
-                }
-                else
+                getArchivedAssocs();
+                List<NodeRef> nodeRefs = new ArrayList<NodeRef>(chunkSize);
+                // Read on until the chunk is full or there is nothing left, however many nodes are eliminated:
+                // an empty chunk ends the purge
+                while (nodeRefs.size() < chunkSize && archivedAssocsIterator.hasNext())
                 {
-                    done = true;
-                    return getNodeRefs();
+                    NodeRef nodeRef = archivedAssocsIterator.next().getChildRef();
+                    // Eliminate if the current user doesn't have permission to delete
+                    if (permissionService.hasPermission(nodeRef, PermissionService.DELETE) == AccessStatus.ALLOWED)
+                    {
+                        nodeRefs.add(nodeRef);
+                    }
                 }
+                return nodeRefs;
             }
         };
     }
@@ -528,9 +551,18 @@ public class NodeArchiveServiceImpl implements NodeArchiveService
                     "ArchiveBulkPurgeOrRestore",
                     transactionService.getRetryingTransactionHelper(),
                     getArchivedNodesWorkProvider(originalStoreRef, lockToken),
-                    2, 20,
-                    null, null, 1000);
+                    purgeWorkerThreads, purgeBatchSize,
+                    null, logger, 1000);
             batchProcessor.process(worker, true);
+            
+            if (logger.isInfoEnabled() && batchProcessor.getStartTime() != null && batchProcessor.getEndTime() != null)
+            {
+                long elapsedMs = Math.max(1L, batchProcessor.getEndTime().getTime() - batchProcessor.getStartTime().getTime());
+                int processed = batchProcessor.getSuccessfullyProcessedEntries();
+                logger.info(
+                        "Bulk archive operation on " + originalStoreRef + " processed " + processed + " nodes in " + elapsedMs + " ms (" +
+                        (processed * 1000L / elapsedMs) + " nodes/s, " + batchProcessor.getTotalErrors() + " errors)");
+            }
         }
         catch (LockAcquisitionException e)
         {
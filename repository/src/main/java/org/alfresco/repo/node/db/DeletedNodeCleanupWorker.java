@@ -28,11 +28,19 @@ package org.alfresco.repo.node.db;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.node.cleanup.AbstractNodeCleanupWorker;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.util.TraceableThreadFactory;
 
 /**
  * Cleans up deleted nodes and dangling transactions that are old enough.
@@ -49,6 +57,9 @@ public class DeletedNodeCleanupWorker extends AbstractNodeCleanupWorker
     // Unused transactions will be purged in chunks determined by commit time boundaries. 'index.tracking.purgeSize' specifies the size
     // of the chunk (in ms). Default is a couple of hours.
     private int purgeSize = 7200000; // ms
+    
+    // Number of commit time windows purged concurrently. 'index.tracking.purgeThreads' has the same default.
+    private int purgeThreads = 2;
 
     /**
      * Default constructor
@@ -110,8 +121,25 @@ public class DeletedNodeCleanupWorker extends AbstractNodeCleanupWorker
         this.purgeSize = purgeSize;
     }
 
+    /**
+     * Set the number of commit time windows that are purged concurrently, each in its own transaction.
+     * The default is 2; 1 purges the windows one after the other, in the calling thread.
+     * 
+     * @param purgeThreads          the number of threads purging deleted nodes
+     */
+    public void setPurgeThreads(int purgeThreads)
+    {
+        this.purgeThreads = purgeThreads;
+    }
+
 	/**
      * Cleans up deleted nodes that are older than the given minimum age.
+     * <p>
+     * The commit time range is split into independent windows, which are purged in rounds of up to
+     * {@link #setPurgeThreads(int) purgeThreads} concurrent transactions.  The window size is doubled
+     * (up to the purge size) after each successful round and halved after a failure.  When a whole round
+     * finds nothing to purge, the range skips ahead to the oldest deleted node that still remains.
+     * Purged nodes no longer exist, so an interrupted run resumes from the oldest remaining deleted node.
      * 
      * @param minAge        the minimum age of a transaction or deleted node
      * @return              Returns log message results
@@ -133,97 +161,195 @@ public class DeletedNodeCleanupWorker extends AbstractNodeCleanupWorker
               return results;
         }
         
+        int threads = Math.max(1, purgeThreads);
+        ExecutorService executorService = null;
+        if (threads > 1)
+        {
+            TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+            threadFactory.setNamePrefix("DeletedNodeCleanup");
+            threadFactory.setThreadDaemon(true);
+            executorService = Executors.newFixedThreadPool(threads, threadFactory);
+        }
+        
         long loopPurgeSize = purgeSize;
-        Long purgeCount = new Long(0);
-        while (true)
+        try
         {
-            // Ensure we keep the lock
-            refreshLock();
-            
-            RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
-            txnHelper.setMaxRetries(5);                             // Limit number of retries
-            txnHelper.setRetryWaitIncrementMs(1000);                // 1 second to allow other cleanups time to get through
-
-            long toCommitTime = fromCommitTime + loopPurgeSize;
-            if(toCommitTime > maxCommitTime)
+            while (true)
             {
-                toCommitTime = maxCommitTime;
-            }
-            
-            try
-            {
-                DeleteNodesByTransactionsCallback purgeNodesCallback = new DeleteNodesByTransactionsCallback(nodeDAO, fromCommitTime, toCommitTime);
-                purgeCount = txnHelper.doInTransaction(purgeNodesCallback, false, true);
-
-                if (purgeCount.longValue() > 0)
+                // Ensure we keep the lock
+                refreshLock();
+                
+                // Split the next part of the range into independent windows, one per thread
+                List<DeleteNodesByTransactionsCallback> windows = new ArrayList<DeleteNodesByTransactionsCallback>(threads);
+                long roundToCommitTime = fromCommitTime;
+                while (windows.size() < threads && roundToCommitTime < maxCommitTime)
                 {
-                    String msg =
-                        "Purged old nodes: \n" +
-                        "   From commit time (ms):    " + fromCommitTime + "\n" +
-                        "   To commit time (ms):      " + toCommitTime + "\n" +
-                        "   Purge count:     " + purgeCount;
-                    results.add(msg);
+                    long toCommitTime = roundToCommitTime + loopPurgeSize;
+                    if(toCommitTime > maxCommitTime)
+                    {
+                        toCommitTime = maxCommitTime;
+                    }
+                    windows.add(new DeleteNodesByTransactionsCallback(nodeDAO, roundToCommitTime, toCommitTime));
+                    roundToCommitTime = toCommitTime;
                 }
-
-                fromCommitTime += loopPurgeSize;
                 
-                // If the delete succeeded, double the loopPurgeSize
-                loopPurgeSize *= 2L;
-                if (loopPurgeSize > purgeSize)
+                List<Future<Long>> futures = new ArrayList<Future<Long>>(windows.size());
+                if (executorService != null)
                 {
-                    loopPurgeSize = purgeSize;
+                    for (final DeleteNodesByTransactionsCallback window : windows)
+                    {
+                        futures.add(executorService.submit(new Callable<Long>()
+                        {
+                            public Long call() throws Exception
+                            {
+                                return AuthenticationUtil.runAsSystem(new RunAsWork<Long>()
+                                {
+                                    public Long doWork() throws Exception
+                                    {
+                                        return purgeWindow(window);
+                                    }
+                                });
+                            }
+                        }));
+                    }
                 }
-            }
-            catch (Throwable e)
-            {
-                String msg = 
-                    "Failed to purge nodes. \n" +
-                    "  If the purgable set is too large for the available DB resources \n" +
-                    "  then the nodes can be purged manually as well. \n" +
-                    "  Set log level to WARN for this class to get exception log: \n" +
-                    "   From commit time (ms):    " + fromCommitTime + "\n" +
-                    "   To commit time (ms):      " + toCommitTime + "\n" +
-                    "   Error:       " + e.getMessage();
-                // It failed; do a full log in WARN mode
-                if (logger.isWarnEnabled())
+                
+                // Collect the results of the round; windows are independent, so only the first failure matters
+                long roundPurgeCount = 0L;
+                DeleteNodesByTransactionsCallback failedWindow = null;
+                Throwable failure = null;
+                for (int i = 0; i < windows.size(); i++)
                 {
-                    logger.warn(msg, e);
+                    DeleteNodesByTransactionsCallback window = windows.get(i);
+                    try
+                    {
+                        Long purgeCount = (executorService == null) ? purgeWindow(window) : futures.get(i).get();
+                        roundPurgeCount += purgeCount.longValue();
+                        if (purgeCount.longValue() > 0)
+                        {
+                            String msg =
+                                "Purged old nodes: \n" +
+                                "   From commit time (ms):    " + window.fromCommitTime + "\n" +
+                                "   To commit time (ms):      " + window.toCommitTime + "\n" +
+                                "   Purge count:     " + purgeCount;
+                            results.add(msg);
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        if (e instanceof ExecutionException && e.getCause() != null)
+                        {
+                            e = e.getCause();
+                        }
+                        if (failedWindow == null)
+                        {
+                            failedWindow = window;
+                            failure = e;
+                        }
+                        if (executorService == null)
+                        {
+                            break;
+                        }
+                    }
                 }
-                else
+                
+                if (failedWindow == null)
                 {
-                    logger.error(msg);
+                    fromCommitTime = roundToCommitTime;
+                    
+                    // If the delete succeeded, double the loopPurgeSize
+                    loopPurgeSize *= 2L;
+                    if (loopPurgeSize > purgeSize)
+                    {
+                        loopPurgeSize = purgeSize;
+                    }
+                    
+                    // Skip over history without deleted nodes in one go
+                    if (roundPurgeCount == 0L && fromCommitTime < maxCommitTime)
+                    {
+                        long nextCommitTime = nodeDAO.getMinTxnCommitTimeForDeletedNodes().longValue();
+                        if (nextCommitTime == 0L)
+                        {
+                            break;
+                        }
+                        if (nextCommitTime > fromCommitTime)
+                        {
+                            fromCommitTime = nextCommitTime;
+                        }
+                    }
                 }
-                results.add(msg);
-                
-                // If delete failed, halve the loopPurgeSize and try again
-                loopPurgeSize /= 2L;
-                // If the purge size drops below 10% of the original size, the entire process must stop
-                if (loopPurgeSize < 0.1 * purgeSize)
+                else
                 {
-                    msg ="Failed to purge nodes. \n" +
-                         " The purge time interval dropped below 10% of the original size (" + purgeSize + "), so the purging process was stopped.";
+                    String msg = 
+                        "Failed to purge nodes. \n" +
+                        "  If the purgable set is too large for the available DB resources \n" +
+                        "  then the nodes can be purged manually as well. \n" +
+                        "  Set log level to WARN for this class to get exception log: \n" +
+                        "   From commit time (ms):    " + failedWindow.fromCommitTime + "\n" +
+                        "   To commit time (ms):      " + failedWindow.toCommitTime + "\n" +
+                        "   Error:       " + failure.getMessage();
+                    // It failed; do a full log in WARN mode
                     if (logger.isWarnEnabled())
                     {
-                        logger.warn(msg, e);
+                        logger.warn(msg, failure);
                     }
                     else
                     {
                         logger.error(msg);
                     }
                     results.add(msg);
+                    
+                    // Carry on from the failed window; purging any later windows of the round again is harmless
+                    fromCommitTime = failedWindow.fromCommitTime;
+                    
+                    // If delete failed, halve the loopPurgeSize and try again
+                    loopPurgeSize /= 2L;
+                    // If the purge size drops below 10% of the original size, the entire process must stop
+                    if (loopPurgeSize < 0.1 * purgeSize)
+                    {
+                        msg ="Failed to purge nodes. \n" +
+                             " The purge time interval dropped below 10% of the original size (" + purgeSize + "), so the purging process was stopped.";
+                        if (logger.isWarnEnabled())
+                        {
+                            logger.warn(msg, failure);
+                        }
+                        else
+                        {
+                            logger.error(msg);
+                        }
+                        results.add(msg);
+                        break;
+                    }
+                }
+                          
+                if(fromCommitTime >= maxCommitTime)
+                {
                     break;
                 }
             }
-                      
-            if(fromCommitTime >= maxCommitTime)
+        }
+        finally
+        {
+            if (executorService != null)
             {
-                break;
+                executorService.shutdown();
             }
         }
             
         // Done
         return results;
     }
+    
+    /**
+     * Purge the deleted nodes of a single commit time window in a new transaction.
+     */
+    private Long purgeWindow(DeleteNodesByTransactionsCallback purgeNodesCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        txnHelper.setMaxRetries(5);                             // Limit number of retries
+        txnHelper.setRetryWaitIncrementMs(1000);                // 1 second to allow other cleanups time to get through
+        return txnHelper.doInTransaction(purgeNodesCallback, false, true);
+    }
 
     /**
      * Cleans up unused transactions that are older than the given minimum age.
@@ -356,4 +482,4 @@ public class DeletedNodeCleanupWorker extends AbstractNodeCleanupWorker
             return count;
         }       
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
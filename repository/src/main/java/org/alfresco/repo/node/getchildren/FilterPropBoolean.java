@@ -25,6 +25,8 @@
  */
 package org.alfresco.repo.node.getchildren;
 
+import java.util.Objects;
+
 import org.alfresco.service.namespace.QName;
 
 /**
@@ -60,4 +62,31 @@ public class FilterPropBoolean implements FilterProp
         // There is only the one type
         return null;
     }
+    
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FilterPropBoolean))
+        {
+            return false;
+        }
+        FilterPropBoolean that = (FilterPropBoolean)obj;
+        return Objects.equals(propName, that.propName) && Objects.equals(propVal, that.propVal);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(propName, propVal);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "FilterPropBoolean [propName=" + propName + ", propVal=" + propVal + "]";
+    }
 }
@@ -25,6 +25,8 @@
  */
 package org.alfresco.repo.node.getchildren;
 
+import java.util.Objects;
+
 import org.alfresco.service.namespace.QName;
 
 /**
@@ -73,4 +75,31 @@ public class FilterPropString implements FilterProp
     {
         return filterType;
     }
+    
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof FilterPropString))
+        {
+            return false;
+        }
+        FilterPropString that = (FilterPropString)obj;
+        return Objects.equals(propName, that.propName) && Objects.equals(propVal, that.propVal) && (filterType == that.filterType);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(propName, propVal, filterType);
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "FilterPropString [propName=" + propName + ", propVal=" + propVal + ", filterType=" + filterType + "]";
+    }
 }
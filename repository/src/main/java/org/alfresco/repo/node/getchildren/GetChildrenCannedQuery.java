@@ -43,6 +43,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.query.CannedQueryParameters;
 import org.alfresco.query.CannedQuerySortDetails;
 import org.alfresco.query.CannedQuerySortDetails.SortOrder;
+import org.alfresco.query.ContinuationToken;
 import org.alfresco.repo.domain.node.AuditablePropertiesEntity;
 import org.alfresco.repo.domain.node.Node;
 import org.alfresco.repo.domain.node.NodeDAO;
@@ -53,12 +54,15 @@ import org.alfresco.repo.domain.node.NodePropertyKey;
 import org.alfresco.repo.domain.node.NodePropertyValue;
 import org.alfresco.repo.domain.node.ReferenceablePropertiesEntity;
 import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.domain.query.CannedQueryDAO;
 import org.alfresco.repo.node.getchildren.FilterPropString.FilterTypeString;
 import org.alfresco.repo.security.permissions.PermissionCheckedValue.PermissionCheckedValueMixin;
 import org.alfresco.repo.security.permissions.impl.acegi.AbstractCannedQueryPermissions;
 import org.alfresco.repo.security.permissions.impl.acegi.MethodSecurityBean;
 import org.alfresco.repo.tenant.TenantService;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.MLText;
@@ -89,6 +93,7 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
     private static final String QUERY_NAMESPACE = "alfresco.node";
     private static final String QUERY_SELECT_GET_CHILDREN_WITH_PROPS = "select_GetChildrenCannedQueryWithProps";
     private static final String QUERY_SELECT_GET_CHILDREN_WITHOUT_PROPS = "select_GetChildrenCannedQueryWithoutProps";
+    private static final String QUERY_SELECT_GET_CHILDREN_VERSION = "select_GetChildrenCannedQueryVersion";
     
     public static final int MAX_FILTER_SORT_PROPS = 3;
     
@@ -108,8 +113,13 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
     private TenantService tenantService;
     protected NodeService nodeService;
     
+    private SimpleCache<Serializable, Object> resultCache; // optional - filtered/sorted children (before permission checks) shared across requests
+    
     private boolean applyPostQueryPermissions = false; // if true, the permissions will be applied post-query (else should be applied as part of the "queryAndFilter")
     
+    private List<Pair<QName, SortOrder>> sortPairs;
+    private List<FilterSortNode> sortedChildren; // sorted results (from any continuation token onwards) - used to build the next continuation token
+    
     public GetChildrenCannedQuery(
             NodeDAO nodeDAO,
             QNameDAO qnameDAO,
@@ -142,6 +152,17 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         }
     }
     
+    /**
+     * Set the cache of filtered and/or sorted children.  The cached children are not permission checked, so they are
+     * shared by all users and revalidated against the version of the parent's children on each use.
+     * 
+     * @param resultCache       the cache or <tt>null</tt> (default) to run the query every time
+     */
+    public void setResultCache(SimpleCache<Serializable, Object> resultCache)
+    {
+        this.resultCache = resultCache;
+    }
+    
     protected FilterSortChildQueryCallback getFilterSortChildQuery(final List<FilterSortNode> children, final List<FilterProp> filterProps, GetChildrenCannedQueryParams paramBean)
     {
         Set<QName> inclusiveAspects = paramBean.getInclusiveAspects();
@@ -297,27 +318,80 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
 	        if (filterSortPropCnt > 0)
 	        {
 	            // filtered and/or sorted - note: permissions will be applied post query
-	            final List<FilterSortNode> children = new ArrayList<FilterSortNode>(100);
-	            final FilterSortChildQueryCallback c = getFilterSortChildQuery(children, filterProps, paramBean);
-	            FilterSortResultHandler resultHandler = new FilterSortResultHandler(c);
-	            cannedQueryDAO.executeQuery(QUERY_NAMESPACE, QUERY_SELECT_GET_CHILDREN_WITH_PROPS, params, 0, Integer.MAX_VALUE, resultHandler);
-	            resultHandler.done();
+	            List<FilterSortNode> children = null;
 	            
-	            if (sortPairs.size() > 0)
+	            Serializable resultCacheKey = null;
+	            Map<String, Long> childrenVersion = null;
+	            // note: only read-only transactions use the cache - a transaction that has written may list children
+	            //       that it changes again later without changing their version
+	            if ((resultCache != null) && (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_READ_ONLY))
 	            {
-	            	Long startSort = (logger.isDebugEnabled() ? System.currentTimeMillis() : null);
-	            	
-	                // sort
-	                Collections.sort(children, new PropComparatorAsc(sortPairs));
+	                // note: the version is read before the children so that a concurrent change can only make the cached entry stale
+	                resultCacheKey = getResultCacheKey(paramBean, sortPairs);
+	                childrenVersion = cannedQueryDAO.executeQueryUnique(QUERY_NAMESPACE, QUERY_SELECT_GET_CHILDREN_VERSION, params);
+	                CachedChildren cached = (CachedChildren)resultCache.get(resultCacheKey);
+	                if ((cached != null) && cached.version.equals(childrenVersion))
+	                {
+	                    children = cached.children;
+	                    
+	                    if (start != null)
+	                    {
+	                        logger.debug("Cached filtered/sorted children: "+children.size()+" for "+parentRef);
+	                    }
+	                }
+	            }
+	            
+	            PropComparatorAsc comparator = (sortPairs.size() > 0 ? new PropComparatorAsc(sortPairs) : null);
+	            
+	            if (children == null)
+	            {
+	                children = new ArrayList<FilterSortNode>(100);
+	                final FilterSortChildQueryCallback c = getFilterSortChildQuery(children, filterProps, paramBean);
+	                FilterSortResultHandler resultHandler = new FilterSortResultHandler(c);
+	                cannedQueryDAO.executeQuery(QUERY_NAMESPACE, QUERY_SELECT_GET_CHILDREN_WITH_PROPS, params, 0, Integer.MAX_VALUE, resultHandler);
+	                resultHandler.done();
 	                
-	                if (startSort != null)
+	                if (comparator != null)
 	                {
-	                    logger.debug("Post-query sort: "+children.size()+" in "+(System.currentTimeMillis()-startSort)+" msecs");
+	                    Long startSort = (logger.isDebugEnabled() ? System.currentTimeMillis() : null);
+	                    
+	                    // sort
+	                    Collections.sort(children, comparator);
+	                    
+	                    if (startSort != null)
+	                    {
+	                        logger.debug("Post-query sort: "+children.size()+" in "+(System.currentTimeMillis()-startSort)+" msecs");
+	                    }
 	                }
+	                
+	                if (resultCacheKey != null)
+	                {
+	                    resultCache.put(resultCacheKey, new CachedChildren(childrenVersion, children));
+	                }
+	            }
+	            
+	            List<FilterSortNode> pagedChildren = children;
+	            
+	            if (comparator != null)
+	            {
+	                String continuationToken = parameters.getPageDetails().getContinuationToken();
+	                if (continuationToken != null)
+	                {
+	                    // keyset paging - start after the last child of the previous page (so that earlier children are not permission checked)
+	                    int idx = Collections.binarySearch(children, decodeContinuationToken(continuationToken, sortPairs), comparator);
+	                    pagedChildren = children.subList((idx >= 0 ? idx + 1 : -(idx + 1)), children.size());
+	                }
+	                
+	                this.sortPairs = sortPairs;
+	                this.sortedChildren = pagedChildren;
+	            }
+	            else if (parameters.getPageDetails().getContinuationToken() != null)
+	            {
+	                throw new IllegalArgumentException("GetChildren: continuation token is only supported for sorted results");
 	            }
 	            
-	            result = new ArrayList<NodeRef>(children.size());
-	            for (FilterSortNode child : children)
+	            result = new ArrayList<NodeRef>(pagedChildren.size());
+	            for (FilterSortNode child : pagedChildren)
 	            {
 	                result.add(tenantService.getBaseName(child.getNodeRef()));
 	            }
@@ -326,6 +400,11 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
 	        {
 	            // unsorted (apart from any implicit order) - note: permissions are applied during result handling to allow early cutoff
 	            
+	            if (parameters.getPageDetails().getContinuationToken() != null)
+	            {
+	                throw new IllegalArgumentException("GetChildren: continuation token is only supported for sorted results");
+	            }
+	            
 	            final int requestedCount = parameters.getResultsRequired();
 	            
 	            final List<NodeRef> rawResult = new ArrayList<NodeRef>(Math.min(1000, requestedCount));
@@ -421,6 +500,141 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         return false;
     }
     
+    /**
+     * Get the key of the cached filtered and/or sorted children.  The key must cover everything that the children
+     * depend on (other than the children themselves) - sub-classes that filter further should add to it.
+     * 
+     * @param paramBean         the query parameters
+     * @param sortPairs         the sort properties
+     * @return                  the key of the cached children
+     */
+    protected ArrayList<Object> getResultCacheKey(GetChildrenCannedQueryParams paramBean, List<Pair<QName, SortOrder>> sortPairs)
+    {
+        ArrayList<Object> key = new ArrayList<Object>(11);
+        key.add(getClass().getName());
+        key.add(paramBean.getParentRef());
+        key.add(paramBean.getAssocTypeQNames());
+        key.add(paramBean.getChildTypeQNames());
+        key.add(paramBean.getInclusiveAspects());
+        key.add(paramBean.getExclusiveAspects());
+        key.add(paramBean.getFilterProps());
+        key.add(paramBean.getPattern());
+        key.add(sortPairs);
+        // locale dependent property values and collation
+        key.add(I18NUtil.getLocale());
+        key.add(I18NUtil.getContentLocale());
+        return key;
+    }
+    
+    @Override
+    protected String getContinuationToken(NodeRef lastResult)
+    {
+        if (sortedChildren == null)
+        {
+            // keyset paging is only supported for sorted results
+            return null;
+        }
+        
+        // note: the page is at the start of the sorted children
+        for (FilterSortNode child : sortedChildren)
+        {
+            if (tenantService.getBaseName(child.getNodeRef()).equals(lastResult))
+            {
+                List<String> values = new ArrayList<String>(sortPairs.size());
+                for (Pair<QName, SortOrder> sortPair : sortPairs)
+                {
+                    values.add(encodeSortValue(child.getVal(sortPair.getFirst())));
+                }
+                return new ContinuationToken(values, child.getNodeId()).encode();
+            }
+        }
+        return null;
+    }
+    
+    private FilterSortNode decodeContinuationToken(String continuationToken, List<Pair<QName, SortOrder>> sortPairs)
+    {
+        ContinuationToken token = ContinuationToken.decode(continuationToken);
+        List<String> values = token.getValues();
+        if (values.size() != sortPairs.size())
+        {
+            throw new IllegalArgumentException("GetChildren: continuation token does not match the sort properties: " + continuationToken);
+        }
+        
+        Map<QName, Serializable> propVals = new HashMap<QName, Serializable>(sortPairs.size());
+        for (int i = 0; i < sortPairs.size(); i++)
+        {
+            propVals.put(sortPairs.get(i).getFirst(), decodeSortValue(values.get(i)));
+        }
+        return new FilterSortNode(null, token.getId(), propVals);
+    }
+    
+    // note: the sort value types are those supported by the comparator
+    static String encodeSortValue(Serializable value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        else if (value instanceof String)
+        {
+            return "s" + value;
+        }
+        else if (value instanceof Date)
+        {
+            return "d" + ((Date)value).getTime();
+        }
+        else if (value instanceof Long)
+        {
+            return "l" + value;
+        }
+        else if (value instanceof Integer)
+        {
+            return "i" + value;
+        }
+        else if (value instanceof QName)
+        {
+            return "q" + value;
+        }
+        else if (value instanceof Boolean)
+        {
+            return "b" + value;
+        }
+        throw new AlfrescoRuntimeException("Unsupported sort type: "+value.getClass().getName());
+    }
+    
+    static Serializable decodeSortValue(String value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        try
+        {
+            String str = value.substring(1);
+            switch (value.charAt(0))
+            {
+                case 's':
+                    return str;
+                case 'd':
+                    return new Date(Long.parseLong(str));
+                case 'l':
+                    return Long.valueOf(str);
+                case 'i':
+                    return Integer.valueOf(str);
+                case 'q':
+                    return QName.createQName(str);
+                case 'b':
+                    return Boolean.valueOf(str);
+                default:
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new IllegalArgumentException("GetChildren: invalid continuation token value: " + value, e);
+        }
+        throw new IllegalArgumentException("GetChildren: invalid continuation token value: " + value);
+    }
+    
     private class PropComparatorAsc implements Comparator<FilterSortNode>
     {
         private List<Pair<QName, SortOrder>> sortProps;
@@ -435,7 +649,13 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         
         public int compare(FilterSortNode n1, FilterSortNode n2)
         {
-            return compareImpl(n1, n2, sortProps);
+            int result = compareImpl(n1, n2, sortProps);
+            if ((result == 0) && (n1.getNodeId() != null) && (n2.getNodeId() != null))
+            {
+                // ties are ordered by node id - to give a stable position for keyset paging
+                result = n1.getNodeId().compareTo(n2.getNodeId());
+            }
+            return result;
         }
         
         private int compareImpl(FilterSortNode node1In, FilterSortNode node2In, List<Pair<QName, SortOrder>> sortProps)
@@ -875,7 +1095,7 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
                 }
                 
                 // Call back
-                boolean more = resultsCallback.handle(new FilterSortNode(nodeRef, propVals));
+                boolean more = resultsCallback.handle(new FilterSortNode(nodeRef, node.getId(), propVals));
                 if (!more)
                 {
                     this.more = false;
@@ -887,21 +1107,30 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         }
     }
     
-    protected class FilterSortNode
+    protected static class FilterSortNode implements Serializable
     {
+        private static final long serialVersionUID = -5278734617925438361L;
+        
         private NodeRef nodeRef;
+        private Long nodeId;
         private Map<QName, Serializable> propVals; // subset of nodes properties - used for filtering and/or sorting
         
         public FilterSortNode(NodeRef nodeRef, Map<QName, Serializable> propVals)
+        {
+            this(nodeRef, null, propVals);
+        }
+        
+        public FilterSortNode(NodeRef nodeRef, Long nodeId, Map<QName, Serializable> propVals)
         {
             this.nodeRef = nodeRef;
+            this.nodeId = nodeId;
             this.propVals = propVals;
         }
         
         @Override
         public String toString()
         {
-            return "FilterSortNode [nodeRef=" + nodeRef + ", propVals=" + propVals + "]";
+            return "FilterSortNode [nodeRef=" + nodeRef + ", nodeId=" + nodeId + ", propVals=" + propVals + "]";
         }
 
         public NodeRef getNodeRef()
@@ -909,6 +1138,11 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
             return nodeRef;
         }
         
+        public Long getNodeId()
+        {
+            return nodeId;
+        }
+        
         public Serializable getVal(QName prop)
         {
             return propVals.get(prop);
@@ -920,6 +1154,23 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         }
     }
     
+    /**
+     * Filtered and/or sorted children (not permission checked) along with the version of the parent's children that they were read at
+     */
+    private static class CachedChildren implements Serializable
+    {
+        private static final long serialVersionUID = 2418236975536164071L;
+        
+        private final Map<String, Long> version;
+        private final List<FilterSortNode> children;
+        
+        private CachedChildren(Map<String, Long> version, List<FilterSortNode> children)
+        {
+            this.version = version;
+            this.children = children;
+        }
+    }
+    
     private class UnsortedResultHandler implements CannedQueryDAO.ResultHandler<NodeEntity>
     {
         private final UnsortedChildQueryCallback resultsCallback;
@@ -25,6 +25,7 @@
  */
 package org.alfresco.repo.node.getchildren;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -36,6 +37,7 @@ import org.alfresco.query.CannedQueryParameters;
 import org.alfresco.query.CannedQuerySortDetails;
 import org.alfresco.query.CannedQuerySortDetails.SortOrder;
 import org.alfresco.query.PagingRequest;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
 import org.alfresco.repo.domain.locale.LocaleDAO;
 import org.alfresco.repo.domain.node.NodeDAO;
@@ -71,6 +73,9 @@ public class GetChildrenCannedQueryFactory extends AbstractCannedQueryFactory<No
     
     protected MethodSecurityBean<NodeRef> methodSecurity;
     
+    protected SimpleCache<Serializable, Object> resultCache;
+    protected boolean resultCacheEnabled = false;
+    
     public void setDictionaryService(DictionaryService dictionaryService)
     {
         this.dictionaryService = dictionaryService;
@@ -115,13 +120,40 @@ public class GetChildrenCannedQueryFactory extends AbstractCannedQueryFactory<No
     {
         this.methodSecurity = methodSecurity;
     }
+    
+    /**
+     * @param resultCache           cache of filtered and/or sorted children, shared by all users (permissions are applied per query)
+     *                              and only used by read-only transactions
+     */
+    public void setResultCache(SimpleCache<Serializable, Object> resultCache)
+    {
+        this.resultCache = resultCache;
+    }
+    
+    /**
+     * @param resultCacheEnabled    <tt>true</tt> to use the {@link #setResultCache(SimpleCache) result cache} for filtered and/or sorted queries (default <tt>false</tt>)
+     */
+    public void setResultCacheEnabled(boolean resultCacheEnabled)
+    {
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+    
+    /**
+     * @return                      the result cache to give to queries or <tt>null</tt> if results are not cached
+     */
+    protected SimpleCache<Serializable, Object> getResultCache()
+    {
+        return (resultCacheEnabled ? resultCache : null);
+    }
 
     @Override
     public CannedQuery<NodeRef> getCannedQuery(CannedQueryParameters parameters)
     {
         NodePropertyHelper nodePropertyHelper = new NodePropertyHelper(dictionaryService, qnameDAO, localeDAO, contentDataDAO);
         
-        return (CannedQuery<NodeRef>) new GetChildrenCannedQuery(nodeDAO, qnameDAO, cannedQueryDAO, nodePropertyHelper, tenantService, nodeService, methodSecurity, parameters);
+        GetChildrenCannedQuery query = new GetChildrenCannedQuery(nodeDAO, qnameDAO, cannedQueryDAO, nodePropertyHelper, tenantService, nodeService, methodSecurity, parameters);
+        query.setResultCache(getResultCache());
+        return (CannedQuery<NodeRef>) query;
     }
     
     /**
@@ -172,7 +204,7 @@ public class GetChildrenCannedQueryFactory extends AbstractCannedQueryFactory<No
         GetChildrenCannedQueryParams paramBean = new GetChildrenCannedQueryParams(tenantService.getName(parentRef), assocTypeQNames, childTypeQNames, inclusiveAspects, exclusiveAspects, filterProps, pattern);
 
         // page details
-        CannedQueryPageDetails cqpd = new CannedQueryPageDetails(pagingRequest.getSkipCount(), pagingRequest.getMaxItems(), CannedQueryPageDetails.DEFAULT_PAGE_NUMBER, CannedQueryPageDetails.DEFAULT_PAGE_COUNT);
+        CannedQueryPageDetails cqpd = new CannedQueryPageDetails(pagingRequest);
         
         // sort details
         CannedQuerySortDetails cqsd = null;
@@ -224,5 +256,9 @@ public class GetChildrenCannedQueryFactory extends AbstractCannedQueryFactory<No
         PropertyCheck.mandatory(this, "contentDataDAO", contentDataDAO);
         PropertyCheck.mandatory(this, "cannedQueryDAO", cannedQueryDAO);
         PropertyCheck.mandatory(this, "methodSecurityInterceptor", methodSecurity);
+        if (resultCacheEnabled)
+        {
+            PropertyCheck.mandatory(this, "resultCache", resultCache);
+        }
     }
 }
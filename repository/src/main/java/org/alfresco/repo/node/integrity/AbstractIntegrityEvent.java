@@ -178,6 +178,27 @@ public abstract class AbstractIntegrityEvent implements IntegrityEvent
         return qname;
     }
     
+    /**
+     * Override if another event performs all of this event's checks, so that this event
+     * need not be evaluated when both are raised in the same transaction.
+     * 
+     * @return Returns an event equal to the one that covers this event, or <tt>null</tt>
+     */
+    protected AbstractIntegrityEvent getCoveringEvent()
+    {
+        return null;
+    }
+    
+    /**
+     * The reverse of {@link #getCoveringEvent()}.
+     * 
+     * @return Returns an event equal to the one that this event covers, or <tt>null</tt>
+     */
+    protected AbstractIntegrityEvent getCoveredEvent()
+    {
+        return null;
+    }
+    
     /**
      * Gets the association definition from the dictionary.  If the source node type is
      * provided then the association particular to the subtype is attempted.
@@ -77,6 +77,22 @@ public class AssocSourceMultiplicityIntegrityEvent extends AbstractIntegrityEven
         return this.isDelete == that.isDelete;
     }
     
+    /**
+     * The check made for a deletion is a subset of the check made otherwise, which is also
+     * strict about the association type.
+     */
+    @Override
+    protected AbstractIntegrityEvent getCoveringEvent()
+    {
+        return isDelete ? new AssocSourceMultiplicityIntegrityEvent(nodeService, dictionaryService, getNodeRef(), getTypeQName(), false) : null;
+    }
+    
+    @Override
+    protected AbstractIntegrityEvent getCoveredEvent()
+    {
+        return isDelete ? null : new AssocSourceMultiplicityIntegrityEvent(nodeService, dictionaryService, getNodeRef(), getTypeQName(), true);
+    }
+    
     public void checkIntegrity(List<IntegrityRecord> eventResults)
     {
         QName assocTypeQName = getTypeQName();
@@ -29,9 +29,12 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.alfresco.repo.node.NodeBulkLoader;
 import org.alfresco.repo.node.NodeServicePolicies;
 import org.alfresco.repo.policy.JavaBehaviour;
 import org.alfresco.repo.policy.PolicyComponent;
@@ -107,6 +110,8 @@ public class IntegrityChecker
     private DictionaryService dictionaryService;
     private NodeService nodeService;
     private TenantService tenantService;
+    private NodeBulkLoader nodeBulkLoader;
+    private int bulkLoadThreshold;
     private boolean enabled;
     private boolean failOnViolation;
     private int maxErrorsPerTransaction;
@@ -151,6 +156,7 @@ public class IntegrityChecker
         this.failOnViolation = false;
         this.maxErrorsPerTransaction = 10;
         this.traceOn = false;
+        this.bulkLoadThreshold = 100;
     }
 
     /**
@@ -182,6 +188,24 @@ public class IntegrityChecker
         this.tenantService = tenantService;
     }
 
+    /**
+     * @param nodeBulkLoader optional loader used to pre-cache the nodes touched by large
+     *      transactions before their events are checked
+     */
+    public void setNodeBulkLoader(NodeBulkLoader nodeBulkLoader)
+    {
+        this.nodeBulkLoader = nodeBulkLoader;
+    }
+
+    /**
+     * @param bulkLoadThreshold the number of nodes with events above which the nodes
+     *      are pre-cached in bulk (default <tt>100</tt>)
+     */
+    public void setBulkLoadThreshold(int bulkLoadThreshold)
+    {
+        this.bulkLoadThreshold = bulkLoadThreshold;
+    }
+
     /**
      * @param enabled set to false to disable integrity checking completely
      */
@@ -311,6 +335,26 @@ public class IntegrityChecker
         }
         // check if the event is present
         IntegrityEvent existingEvent = events.get(event);
+        if (existingEvent == null && event instanceof AbstractIntegrityEvent)
+        {
+            AbstractIntegrityEvent abstractEvent = (AbstractIntegrityEvent) event;
+            // an event that performs the same checks counts as being present
+            AbstractIntegrityEvent coveringEvent = abstractEvent.getCoveringEvent();
+            if (coveringEvent != null)
+            {
+                existingEvent = events.get(coveringEvent);
+            }
+            // and this event replaces any whose checks it performs
+            AbstractIntegrityEvent coveredEvent = abstractEvent.getCoveredEvent();
+            if (existingEvent == null && coveredEvent != null)
+            {
+                IntegrityEvent removedEvent = events.remove(coveredEvent);
+                if (removedEvent != null && traceOn)
+                {
+                    event.getTraces().addAll(removedEvent.getTraces());
+                }
+            }
+        }
         if (existingEvent != null)
         {
             // the event (or its equivalent is already present - transfer the trace
@@ -701,6 +745,9 @@ public class IntegrityChecker
             return allIntegrityResults;
         }
 
+        // load the nodes in bulk rather than one at a time during the checks
+        cacheNodes(events.keySet());
+
         // failure results for the event
         List<IntegrityRecord> integrityRecords = new ArrayList<IntegrityRecord>(0);
 
@@ -765,6 +812,33 @@ public class IntegrityChecker
         return allIntegrityResults;
     }
 
+    /**
+     * Pre-caches the nodes that the events will check, if there are enough of them
+     */
+    private void cacheNodes(Set<IntegrityEvent> events)
+    {
+        if (nodeBulkLoader == null || events.size() <= bulkLoadThreshold)
+        {
+            return;
+        }
+        Set<NodeRef> nodeRefs = new LinkedHashSet<NodeRef>(events.size());
+        for (IntegrityEvent event : events)
+        {
+            if (event instanceof AbstractIntegrityEvent)
+            {
+                NodeRef nodeRef = ((AbstractIntegrityEvent) event).getNodeRef();
+                if (nodeRef != null)
+                {
+                    nodeRefs.add(nodeRef);
+                }
+            }
+        }
+        if (nodeRefs.size() > bulkLoadThreshold)
+        {
+            nodeBulkLoader.cacheNodes(new ArrayList<NodeRef>(nodeRefs));
+        }
+    }
+
 	@Override
     public void beforeCommit(boolean readOnly)
     {
@@ -31,10 +31,14 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import net.sf.acegisecurity.AccessDeniedException;
 import net.sf.acegisecurity.Authentication;
@@ -42,6 +46,7 @@ import net.sf.acegisecurity.ConfigAttribute;
 import net.sf.acegisecurity.ConfigAttributeDefinition;
 import net.sf.acegisecurity.afterinvocation.AfterInvocationProvider;
 
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.opencmis.search.CMISResultSet;
 import org.alfresco.repo.search.SimpleResultSetMetaData;
 import org.alfresco.repo.search.impl.lucene.PagingLuceneResultSet;
@@ -53,8 +58,13 @@ import org.alfresco.repo.security.permissions.PermissionCheckValue;
 import org.alfresco.repo.security.permissions.PermissionCheckedCollection.PermissionCheckedCollectionMixin;
 import org.alfresco.repo.security.permissions.PermissionCheckedValue;
 import org.alfresco.repo.security.permissions.impl.SimplePermissionReference;
+import org.alfresco.repo.tenant.TenantContextHolder;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.StoreRef;
@@ -66,6 +76,8 @@ import org.alfresco.service.cmr.security.AccessStatus;
 import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.namespace.NamespacePrefixResolver;
 import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.EqualsHelper;
 import org.alfresco.util.Pair;
 import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.logging.Log;
@@ -85,6 +97,9 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
 
     private static final String AFTER_ACL_PARENT = "AFTER_ACL_PARENT";
 
+    /** The largest number of values checked by one parallel task */
+    private static final int PERMISSION_CHECK_TASK_SIZE = 100;
+
     private PermissionService permissionService;
 
     private NamespacePrefixResolver nspr;
@@ -103,6 +118,11 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
 	private int optimisePermissionsBulkFetchSize;
     private boolean anyDenyDenies = false;
     private boolean postProcessDenies = false;
+    
+    private TransactionService transactionService;
+    private ExecutorService permissionCheckExecutor;
+    private boolean parallelPermissionChecks = false;
+    private int parallelPermissionCheckThreshold = 1000;
     /**
      * Default constructor
      */
@@ -215,6 +235,14 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         {
             throw new IllegalArgumentException("There must be a node service");
         }
+        if (parallelPermissionChecks && ((transactionService == null) || (permissionCheckExecutor == null)))
+        {
+            throw new IllegalArgumentException("There must be a transaction service and an executor to check permissions in parallel");
+        }
+        if (parallelPermissionCheckThreshold < 1)
+        {
+            throw new IllegalArgumentException("The parallel permission check threshold must be at least 1");
+        }
         if(unfilteredFor != null)
         {
             for(String qnameString : unfilteredFor)
@@ -528,6 +556,47 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         this.postProcessDenies = postProcessDenies;
     }
     
+    /**
+     * Set the transaction service, used to check permissions on other threads
+     * 
+     * @param transactionService TransactionService
+     */
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+    
+    /**
+     * Set the executor for checking the permissions of large collections in parallel
+     * 
+     * @param permissionCheckExecutor ExecutorService
+     */
+    public void setPermissionCheckExecutor(ExecutorService permissionCheckExecutor)
+    {
+        this.permissionCheckExecutor = permissionCheckExecutor;
+    }
+    
+    /**
+     * Check the permissions of large collections in parallel, grouped by ACL.  This is only done in read-only
+     * transactions, as the other threads cannot see uncommitted changes.
+     * 
+     * @param parallelPermissionChecks <tt>true</tt> to check in parallel (default <tt>false</tt>)
+     */
+    public void setParallelPermissionChecks(boolean parallelPermissionChecks)
+    {
+        this.parallelPermissionChecks = parallelPermissionChecks;
+    }
+    
+    /**
+     * Set the smallest collection that is checked in parallel.  This is also the smallest batch checked in parallel.
+     * 
+     * @param parallelPermissionCheckThreshold int
+     */
+    public void setParallelPermissionCheckThreshold(int parallelPermissionCheckThreshold)
+    {
+        this.parallelPermissionCheckThreshold = parallelPermissionCheckThreshold;
+    }
+    
 	private ResultSet decide(Authentication authentication, Object object, ConfigAttributeDefinition config, ResultSet returnedObject) throws AccessDeniedException
     {
         if (returnedObject == null)
@@ -807,6 +876,11 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         // Keep values explicitly
         List<Object> keepValues = new ArrayList<Object>(returnedObject.size());
         
+        // Large collections may be checked in batches, in parallel
+        List<Object> candidates = (isParallelPermissionChecks(returnedObject.size()) ? new ArrayList<Object>(returnedObject) : null);
+        boolean[] batchAllowed = null;
+        int batchStart = 0;
+        
         for (Object nextObject : returnedObject)
         {
             // if the maximum result size or time has been exceeded, then we have to remove only
@@ -838,90 +912,22 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
                 break;
             }
             
-            boolean allowed = true;
-            for (ConfigAttributeDefintion cad : supportedDefinitions)
+            boolean allowed;
+            if (candidates != null)
             {
-                NodeRef testNodeRef = null;
-                if (cad.typeString.equals(AFTER_ACL_NODE))
-                {
-                    if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = nodeService.getRootNode((StoreRef) nextObject);
-                    }
-                    else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) nextObject;
-                    }
-                    else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((ChildAssociationRef) nextObject).getChildRef();
-                    }
-                    else if (Pair.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
-                    }
-                    else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
-                    }
-                    else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((AssociationRef) nextObject).getTargetRef();
-                    }
-                    else
-                    {
-                        throw new ACLEntryVoterException("The specified parameter is not recognized: " + nextObject.getClass());
-                    }
-                }
-                else if (cad.typeString.equals(AFTER_ACL_PARENT))
-                {
-                    if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        // Will be allowed
-                        testNodeRef = null;
-                    }
-                    else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = nodeService.getPrimaryParent((NodeRef) nextObject).getParentRef();
-                    }
-                    else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((ChildAssociationRef) nextObject).getParentRef();
-                    }
-                    else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((AssociationRef) nextObject).getSourceRef();
-                    }
-                    else if (Pair.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
-                    }
-                    else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        NodeRef nodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
-                        testNodeRef = nodeService.getPrimaryParent(nodeRef).getParentRef();
-                    }
-                    else
-                    {
-                        throw new ACLEntryVoterException("The specified parameter is recognized: " + nextObject.getClass());
-                    }
-                }
-                
-                if (log.isDebugEnabled())
-                {
-                    log.debug("\t" + cad.typeString + " test on " + testNodeRef + " from " + nextObject.getClass().getName());
-                }
-                
-                if (isUnfiltered(testNodeRef))      // Null allows
+                if ((batchAllowed == null) || (count >= batchStart + batchAllowed.length))
                 {
-                    continue;                       // Continue to next ConfigAttributeDefintion
-                }
-                
-                if (allowed && (testNodeRef != null) && (permissionService.hasPermission(testNodeRef, cad.required.toString()) == AccessStatus.DENIED))
-                {
-                    allowed = false;
-                    break;                          // No point evaluating more ConfigAttributeDefintions
+                    // Check the next batch - only as many as could be needed to reach the target or the cut-off
+                    long needed = Math.max(targetResultCount - keepValues.size(), parallelPermissionCheckThreshold);
+                    int batchEnd = (int) Math.min(candidates.size(), Math.min(count + needed, (long) maxPermissionChecks));
+                    batchStart = count;
+                    batchAllowed = isAllowedInParallel(candidates.subList(batchStart, batchEnd), supportedDefinitions);
                 }
+                allowed = batchAllowed[count - batchStart];
+            }
+            else
+            {
+                allowed = isAllowed(nextObject, supportedDefinitions);
             }
             
             // Failure or success, increase the count
@@ -955,6 +961,251 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         return PermissionCheckedCollectionMixin.create(returnedObject, cutoff, checksRemaining, sizeOriginal);
     }
 
+    /**
+     * Check the permissions of a single value of a collection
+     * 
+     * @return                  <tt>true</tt> if the value passes all the definitions
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean isAllowed(Object nextObject, List<ConfigAttributeDefintion> supportedDefinitions)
+    {
+        boolean allowed = true;
+        for (ConfigAttributeDefintion cad : supportedDefinitions)
+        {
+            NodeRef testNodeRef = null;
+            if (cad.typeString.equals(AFTER_ACL_NODE))
+            {
+                if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = nodeService.getRootNode((StoreRef) nextObject);
+                }
+                else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = (NodeRef) nextObject;
+                }
+                else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = ((ChildAssociationRef) nextObject).getChildRef();
+                }
+                else if (Pair.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
+                }
+                else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
+                }
+                else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = ((AssociationRef) nextObject).getTargetRef();
+                }
+                else
+                {
+                    throw new ACLEntryVoterException("The specified parameter is not recognized: " + nextObject.getClass());
+                }
+            }
+            else if (cad.typeString.equals(AFTER_ACL_PARENT))
+            {
+                if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    // Will be allowed
+                    testNodeRef = null;
+                }
+                else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = nodeService.getPrimaryParent((NodeRef) nextObject).getParentRef();
+                }
+                else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = ((ChildAssociationRef) nextObject).getParentRef();
+                }
+                else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = ((AssociationRef) nextObject).getSourceRef();
+                }
+                else if (Pair.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
+                }
+                else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
+                {
+                    NodeRef nodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
+                    testNodeRef = nodeService.getPrimaryParent(nodeRef).getParentRef();
+                }
+                else
+                {
+                    throw new ACLEntryVoterException("The specified parameter is recognized: " + nextObject.getClass());
+                }
+            }
+            
+            if (log.isDebugEnabled())
+            {
+                log.debug("\t" + cad.typeString + " test on " + testNodeRef + " from " + nextObject.getClass().getName());
+            }
+            
+            if (isUnfiltered(testNodeRef))      // Null allows
+            {
+                continue;                       // Continue to next ConfigAttributeDefintion
+            }
+            
+            if (allowed && (testNodeRef != null) && (permissionService.hasPermission(testNodeRef, cad.required.toString()) == AccessStatus.DENIED))
+            {
+                allowed = false;
+                break;                          // No point evaluating more ConfigAttributeDefintions
+            }
+        }
+        return allowed;
+    }
+    
+    /**
+     * @return                  <tt>true</tt> if a collection of the given size should be checked in parallel
+     */
+    private boolean isParallelPermissionChecks(int size)
+    {
+        // Other threads can only see what has been committed, so the current transaction must not have written anything
+        return parallelPermissionChecks &&
+               (size >= parallelPermissionCheckThreshold) &&
+               (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_READ_ONLY) &&
+               !AuthenticationUtil.isRunAsUserTheSystemUser();
+    }
+    
+    /**
+     * Check the permissions of a batch of values in parallel.  The values are grouped by the ACL of their node so that
+     * the values sharing an ACL are checked together and distinct ACLs are checked on different threads.
+     * 
+     * @return                  whether each value passes all the definitions, in the order of the values
+     */
+    private boolean[] isAllowedInParallel(final List<Object> candidates, final List<ConfigAttributeDefintion> supportedDefinitions)
+    {
+        long start = System.currentTimeMillis();
+        
+        Map<Long, List<Integer>> candidatesByAcl = new LinkedHashMap<Long, List<Integer>>();
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            Long aclId = getAclId(candidates.get(i));
+            List<Integer> aclCandidates = candidatesByAcl.get(aclId);
+            if (aclCandidates == null)
+            {
+                aclCandidates = new ArrayList<Integer>();
+                candidatesByAcl.put(aclId, aclCandidates);
+            }
+            aclCandidates.add(i);
+        }
+        
+        final boolean[] allowed = new boolean[candidates.size()];
+        final Authentication fullAuthentication = AuthenticationUtil.getFullAuthentication();
+        final String runAsUser = AuthenticationUtil.getRunAsUser();
+        final String tenantDomain = TenantContextHolder.getTenantDomain();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (List<Integer> aclCandidates : candidatesByAcl.values())
+        {
+            // Large groups (such as the children of a folder that all inherit its ACL) are split up
+            for (int i = 0; i < aclCandidates.size(); i += PERMISSION_CHECK_TASK_SIZE)
+            {
+                final List<Integer> indexes = aclCandidates.subList(i, Math.min(i + PERMISSION_CHECK_TASK_SIZE, aclCandidates.size()));
+                futures.add(permissionCheckExecutor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        // Note: this may run on the calling thread, if the executor is busy
+                        AuthenticationUtil.pushAuthentication();
+                        try
+                        {
+                            AuthenticationUtil.setFullAuthentication(fullAuthentication);
+                            if (!EqualsHelper.nullSafeEquals(runAsUser, AuthenticationUtil.getFullyAuthenticatedUser()))
+                            {
+                                AuthenticationUtil.setRunAsUser(runAsUser);
+                            }
+                            TenantContextHolder.setTenantDomain(tenantDomain);
+                            transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+                            {
+                                public Void execute() throws Throwable
+                                {
+                                    for (Integer index : indexes)
+                                    {
+                                        allowed[index] = isAllowed(candidates.get(index), supportedDefinitions);
+                                    }
+                                    return null;
+                                }
+                            }, true, true);
+                        }
+                        finally
+                        {
+                            AuthenticationUtil.popAuthentication();
+                        }
+                    }
+                }));
+            }
+        }
+        
+        for (Future<?> future : futures)
+        {
+            try
+            {
+                future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new AlfrescoRuntimeException("Interrupted while checking permissions", e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+                throw new AlfrescoRuntimeException("Failed to check permissions", cause);
+            }
+        }
+        
+        if (log.isDebugEnabled())
+        {
+            log.debug("decide (collection) checked " + candidates.size() + " values with " + candidatesByAcl.size() + " distinct ACLs in " +
+                    futures.size() + " parallel tasks in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return allowed;
+    }
+    
+    /**
+     * @return                  the ACL of the node of a value or <tt>null</tt> if there is none
+     */
+    @SuppressWarnings("rawtypes")
+    private Long getAclId(Object value)
+    {
+        NodeRef nodeRef = null;
+        if (value instanceof NodeRef)
+        {
+            nodeRef = (NodeRef) value;
+        }
+        else if (value instanceof ChildAssociationRef)
+        {
+            nodeRef = ((ChildAssociationRef) value).getChildRef();
+        }
+        else if (value instanceof PermissionCheckValue)
+        {
+            nodeRef = ((PermissionCheckValue) value).getNodeRef();
+        }
+        else if ((value instanceof Pair) && (((Pair) value).getSecond() instanceof NodeRef))
+        {
+            nodeRef = (NodeRef) ((Pair) value).getSecond();
+        }
+        if (nodeRef == null)
+        {
+            return null;
+        }
+        try
+        {
+            return nodeService.getNodeAclId(nodeRef);
+        }
+        catch (InvalidNodeRefException e)
+        {
+            // Checked (and allowed) along with the other values without an ACL
+            return null;
+        }
+    }
+
     @SuppressWarnings("rawtypes")
     private Object[] decide(Authentication authentication, Object object, ConfigAttributeDefinition config, Object[] returnedObject) throws AccessDeniedException
     {
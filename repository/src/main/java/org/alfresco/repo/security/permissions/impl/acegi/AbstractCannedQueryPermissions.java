@@ -87,7 +87,22 @@ public abstract class AbstractCannedQueryPermissions<R> extends AbstractCannedQu
         }
         Authentication authentication = (((SecureContext) context).getAuthentication());
         
+        long start = (logger.isDebugEnabled() ? System.currentTimeMillis() : 0L);
         List<R> resultsOut = (List<R>) methodSecurity.applyPermissions(results, authentication, requestedCount);
+        if (logger.isDebugEnabled())
+        {
+            // Report the cost of the filtering for this query
+            int checked = resultsOut.size();
+            boolean cutOff = false;
+            if (resultsOut instanceof PermissionCheckedCollection)
+            {
+                PermissionCheckedCollection<?> pcc = (PermissionCheckedCollection<?>) resultsOut;
+                checked = pcc.sizeOriginal() - pcc.sizeUnchecked();
+                cutOff = pcc.isCutOff();
+            }
+            logger.debug("Post-query permissions: kept " + resultsOut.size() + " of " + checked + " checked (" + results.size() + " requested " + requestedCount +
+                    (cutOff ? ", cut-off" : "") + ") in " + (System.currentTimeMillis() - start) + " msecs: " + this);
+        }
         // Done
         return resultsOut;
     }
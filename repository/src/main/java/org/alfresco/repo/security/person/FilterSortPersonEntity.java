@@ -55,6 +55,11 @@ public class FilterSortPersonEntity
     private List<Long> includeAspectIds;
     private List<Long> excludeAspectIds;
     
+    private String seekProp1;
+    private String seekProp2;
+    private String seekProp3;
+    private Long seekNodeId;
+    
     
     /**
      * Default constructor
@@ -210,4 +215,39 @@ public class FilterSortPersonEntity
     {
         this.excludeAspectIds = excludeAspectIds;
     }
+    
+    public String getSeekProp1()
+    {
+        return seekProp1;
+    }
+    
+    public String getSeekProp2()
+    {
+        return seekProp2;
+    }
+    
+    public String getSeekProp3()
+    {
+        return seekProp3;
+    }
+    
+    public Long getSeekNodeId()
+    {
+        return seekNodeId;
+    }
+    
+    /**
+     * Only select the people after the given position in the sort order (keyset paging)
+     * 
+     * @param sortVals              the values of the sorted properties of the last person of the previous page
+     * @param nodeId                the node id of the last person of the previous page
+     * @since 7.0
+     */
+    public void setSeek(List<String> sortVals, Long nodeId)
+    {
+        this.seekProp1 = (sortVals.size() > 0 ? sortVals.get(0) : null);
+        this.seekProp2 = (sortVals.size() > 1 ? sortVals.get(1) : null);
+        this.seekProp3 = (sortVals.size() > 2 ? sortVals.get(2) : null);
+        this.seekNodeId = nodeId;
+    }
 }
\ No newline at end of file
@@ -25,6 +25,7 @@
  */
 package org.alfresco.repo.security.person;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +38,7 @@ import org.alfresco.query.AbstractCannedQuery;
 import org.alfresco.query.CannedQueryParameters;
 import org.alfresco.query.CannedQuerySortDetails;
 import org.alfresco.query.CannedQuerySortDetails.SortOrder;
+import org.alfresco.query.ContinuationToken;
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.domain.query.CannedQueryDAO;
@@ -79,6 +81,8 @@ public class GetPeopleCannedQuery extends AbstractCannedQuery<NodeRef>
     private NodeService nodeService;
     private AuthorityService authorityService;
     
+    private List<QName> sortQNames = new ArrayList<QName>(MAX_FILTER_SORT_PROPS); // sort props applied by the query
+    
     public GetPeopleCannedQuery(
             NodeDAO nodeDAO,
             QNameDAO qnameDAO,
@@ -198,6 +202,26 @@ public class GetPeopleCannedQuery extends AbstractCannedQuery<NodeRef>
         
         filterSortPropCnt = setFilterSortParams(sortFilterProps, sortAsc, params);
         
+        for (QName sortQName : sortFilterProps.subList(0, filterSortPropCnt))
+        {
+            if (sortAsc.get(sortQName) != null)
+            {
+                sortQNames.add(sortQName);
+            }
+        }
+        
+        String continuationToken = parameters.getPageDetails().getContinuationToken();
+        if (continuationToken != null)
+        {
+            // keyset paging - select from the last person of the previous page (rather than walking the earlier people)
+            ContinuationToken token = ContinuationToken.decode(continuationToken);
+            if (sortQNames.isEmpty() || (token.getValues().size() != sortQNames.size()) || (token.getId() == null))
+            {
+                throw new IllegalArgumentException("GetPeople: continuation token does not match the sort properties: " + continuationToken);
+            }
+            params.setSeek(token.getValues(), token.getId());
+        }
+        
         // filtered and/or sorted - note: permissions not applicable for getPeople
         List<NodeRef> result = new ArrayList<NodeRef>(100);
         final PersonQueryCallback c = new DefaultPersonQueryCallback(result, paramBean.getIncludeAdministrators());
@@ -310,6 +334,31 @@ public class GetPeopleCannedQuery extends AbstractCannedQuery<NodeRef>
         return false;
     }
     
+    @Override
+    protected String getContinuationToken(NodeRef lastResult)
+    {
+        if (sortQNames.isEmpty())
+        {
+            // keyset paging is only supported for sorted results (ordered by node id within the sort values)
+            return null;
+        }
+        
+        Pair<Long, NodeRef> nodePair = nodeDAO.getNodePair(tenantService.getName(lastResult));
+        if (nodePair == null)
+        {
+            return null;
+        }
+        
+        // note: the query sorts by the string value column (null for other types of value)
+        List<String> values = new ArrayList<String>(sortQNames.size());
+        for (QName sortQName : sortQNames)
+        {
+            Serializable value = nodeDAO.getNodeProperty(nodePair.getFirst(), sortQName);
+            values.add(value instanceof String ? (String)value : null);
+        }
+        return new ContinuationToken(values, nodePair.getFirst()).encode();
+    }
+    
     @Override
     protected boolean isApplyPostQueryPermissions()
     {
@@ -126,7 +126,7 @@ public class GetPeopleCannedQueryFactory extends AbstractCannedQueryFactory<Node
         GetPeopleCannedQueryParams paramBean = new GetPeopleCannedQueryParams(tenantService.getName(parentRef), filterProps, pattern, inclusiveAspects, exclusiveAspects, includeAdministrators);
 
         // page details
-        CannedQueryPageDetails cqpd = new CannedQueryPageDetails(pagingRequest.getSkipCount(), pagingRequest.getMaxItems(), CannedQueryPageDetails.DEFAULT_PAGE_NUMBER, CannedQueryPageDetails.DEFAULT_PAGE_COUNT);
+        CannedQueryPageDetails cqpd = new CannedQueryPageDetails(pagingRequest);
         
         // sort details
         CannedQuerySortDetails cqsd = null;
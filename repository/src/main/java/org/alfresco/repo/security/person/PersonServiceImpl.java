@@ -27,6 +27,7 @@ package org.alfresco.repo.security.person;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -49,6 +50,7 @@ import org.alfresco.query.PagingResults;
 import org.alfresco.repo.action.executer.MailActionExecuter;
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.permissions.AclDAO;
 import org.alfresco.sync.repo.events.EventPreparator;
 import org.alfresco.sync.repo.events.EventPublisher;
@@ -62,6 +64,7 @@ import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.search.SearcherException;
 import org.alfresco.repo.security.authentication.AuthenticationException;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.permissions.AccessDeniedException;
 import org.alfresco.repo.security.permissions.PermissionServiceSPI;
 import org.alfresco.repo.tenant.TenantDomainMismatchException;
 import org.alfresco.repo.tenant.TenantService;
@@ -165,6 +168,11 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
     /** a transactionally-safe cache to be injected */
     private SimpleCache<String, Set<NodeRef>> personCache;
     
+    /** a transactionally-safe cache of the user name and names of each person node */
+    private SimpleCache<NodeRef, PersonInfo> personInfoCache;
+    
+    private NodeDAO nodeDAO;
+    
     // note: cache is tenant-aware (if using EhCacheAdapter shared cache)
     private SimpleCache<String, Object> singletonCache; // eg. for peopleContainerNodeRef
     private final String KEY_PEOPLECONTAINER_NODEREF = "key.peoplecontainer.noderef";
@@ -216,6 +224,8 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
         PropertyCheck.mandatory(this, "namespacePrefixResolver", namespacePrefixResolver);
         PropertyCheck.mandatory(this, "policyComponent", policyComponent);
         PropertyCheck.mandatory(this, "personCache", personCache);
+        PropertyCheck.mandatory(this, "personInfoCache", personInfoCache);
+        PropertyCheck.mandatory(this, "nodeDAO", nodeDAO);
         PropertyCheck.mandatory(this, "aclDao", aclDao);
         PropertyCheck.mandatory(this, "homeFolderManager", homeFolderManager);
         PropertyCheck.mandatory(this, "repoAdminService", repoAdminService);
@@ -409,6 +419,19 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
         this.personCache = personCache;
     }
     
+    /**
+     * Set the person node to {@link PersonInfo} cache.
+     */
+    public void setPersonInfoCache(SimpleCache<NodeRef, PersonInfo> personInfoCache)
+    {
+        this.personInfoCache = personInfoCache;
+    }
+    
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.nodeDAO = nodeDAO;
+    }
+    
     /**
      * Avoid injection issues: Look it up from the Service Registry as required
      */
@@ -446,6 +469,12 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
      */
     public PersonInfo getPerson(NodeRef personRef) throws NoSuchPersonException
     {
+        PersonInfo personInfo = personInfoCache.get(personRef);
+        if (personInfo != null)
+        {
+            return personInfo;
+        }
+        
         Map<QName, Serializable> props = null;
         try
         {
@@ -462,10 +491,56 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
             throw new NoSuchPersonException(personRef.toString());
         }
         
-        return new PersonInfo(personRef, 
-                              username, 
-                              (String)props.get(ContentModel.PROP_FIRSTNAME),
-                              (String)props.get(ContentModel.PROP_LASTNAME));
+        personInfo = new PersonInfo(personRef, 
+                                    username, 
+                                    (String)props.get(ContentModel.PROP_FIRSTNAME),
+                                    (String)props.get(ContentModel.PROP_LASTNAME));
+        personInfoCache.put(personRef, personInfo);
+        return personInfo;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public List<PersonInfo> getPeople(Collection<String> userNames)
+    {
+        ParameterCheck.mandatory("userNames", userNames);
+        
+        Set<String> searchUserNames = new LinkedHashSet<String>(userNames.size() * 2);
+        List<NodeRef> cachedRefs = new ArrayList<NodeRef>(userNames.size());
+        for (String userName : userNames)
+        {
+            if (userName == null || userName.length() == 0 || isSystemUserName(userName) || !searchUserNames.add(userName))
+            {
+                continue;
+            }
+            Set<NodeRef> refs = getFromCache(userName);
+            if (refs != null)
+            {
+                cachedRefs.addAll(refs);
+            }
+        }
+        // Load the person nodes we already know about in one go, rather than one user at a time below
+        nodeDAO.cacheNodes(cachedRefs);
+        
+        List<PersonInfo> people = new ArrayList<PersonInfo>(searchUserNames.size());
+        Set<NodeRef> personRefs = new HashSet<NodeRef>(searchUserNames.size() * 2);
+        for (String userName : searchUserNames)
+        {
+            try
+            {
+                NodeRef personRef = getPersonOrNullImpl(userName);
+                if (personRef != null && personRefs.add(personRef))
+                {
+                    people.add(getPerson(personRef));
+                }
+            }
+            catch (NoSuchPersonException | AccessDeniedException e)
+            {
+                // Leave the user out
+            }
+        }
+        return people;
     }
     
     /**
@@ -1433,6 +1508,11 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
             {
                 return totalCount;
             }
+            @Override
+            public String getContinuationToken()
+            {
+                return results.getContinuationToken();
+            }
         };
     }
     
@@ -1851,6 +1931,8 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
     
     public void beforeDeleteNode(NodeRef nodeRef)
     {
+        personInfoCache.remove(nodeRef);
+        
         String userName = (String) this.nodeService.getProperty(nodeRef, ContentModel.PROP_USERNAME);
         if (this.authorityService.isGuestAuthority(userName) && !this.tenantService.isTenantUser(userName))
         {
@@ -2000,6 +2082,8 @@ public class PersonServiceImpl extends TransactionListenerAdapter implements Per
      */
     public void onUpdateProperties(NodeRef nodeRef, Map<QName, Serializable> before, Map<QName, Serializable> after)
     {
+        personInfoCache.remove(nodeRef);
+        
         String uidBefore = DefaultTypeConverter.INSTANCE.convert(String.class, before.get(ContentModel.PROP_USERNAME));
         if (uidBefore == null)
         {
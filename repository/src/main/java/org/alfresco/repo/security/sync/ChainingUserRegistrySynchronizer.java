@@ -45,6 +45,7 @@ import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.cmr.attributes.AttributeService.AttributeQueryCallback;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.security.AuthorityService;
 import org.alfresco.service.cmr.security.AuthorityType;
@@ -55,6 +56,7 @@ import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.util.PropertyCheck;
 import org.alfresco.util.PropertyMap;
 import org.alfresco.util.TraceableThreadFactory;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationContext;
@@ -73,9 +75,15 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A <code>ChainingUserRegistrySynchronizer</code> is responsible for synchronizing Alfresco's local user (person) and
@@ -128,6 +136,9 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
     /** The label under which the last user modification timestamp is stored for each zone. */
     private static final String PERSON_LAST_MODIFIED_ATTRIBUTE = "PERSON";
     
+    /** The path in the attribute service below which we persist the digest of each group for each zone. */
+    private static final String GROUP_SNAPSHOT_ATTRIBUTE_PATH = ROOT_ATTRIBUTE_PATH + ".GroupSnapshot";
+    
     /** The label under which the status is stored for each zone. */
     private static final String STATUS_ATTRIBUTE = "STATUS";
     
@@ -192,6 +203,9 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
     
     /** Controls whether to query for users and groups that have been deleted in LDAP */
     private boolean syncDelete = true;
+    
+    /** Skip groups that have not changed since they were last synchronized? */
+    private boolean groupSnapshotEnabled = false;
 
     /** Validates person names over cm:filename constraint **/
     private NameChecker nameChecker;
@@ -401,6 +415,20 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
         this.syncDelete = syncDelete;
     }
     
+    /**
+     * Controls whether a snapshot of the groups of each zone is kept between synchronizations. Groups with the same
+     * display name and members as in the snapshot are then not compared with their local counterparts, which saves
+     * most of the work of a full synchronization of a large directory. Changes made locally to such groups are not
+     * undone until the group changes in the user registry. By default is set to false.
+     * 
+     * @param groupSnapshotEnabled
+     *            If <b>true</b> then unchanged groups are skipped.
+     */
+    public void setGroupSnapshotEnabled(boolean groupSnapshotEnabled)
+    {
+        this.groupSnapshotEnabled = groupSnapshotEnabled;
+    }
+    
     @Override
     public SynchronizeDiagnostic testSynchronize(String authenticatorName)
     {
@@ -985,6 +1013,9 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
             }
         }
 
+        // Get the digests of the groups as they were last synchronized, so that unchanged groups can be skipped
+        final Map<String, String> groupSnapshot = getGroupSnapshot(zoneId, splitTxns);
+
         // First, analyze the group structure. Create maps of authorities to their parents for associations to create
         // and delete. Also deal with 'overlaps' with other zones in the authentication chain.
         final BatchProcessor<NodeDescription> groupProcessor = new BatchProcessor<NodeDescription>(
@@ -998,26 +1029,44 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                 this.loggingInterval);
         class Analyzer extends BaseBatchProcessWorker<NodeDescription>
         {
-            private final Map<String, String> groupsToCreate = new TreeMap<String, String>();
+            // The maps are shared by the worker threads, so they are all concurrent
+            private final Map<String, String> groupsToCreate = new ConcurrentSkipListMap<String, String>();
             private final Map<String, Set<String>> personParentAssocsToCreate = newPersonMap();
             private final Map<String, Set<String>> personParentAssocsToDelete = newPersonMap();
-            private Map<String, Set<String>> groupParentAssocsToCreate = new TreeMap<String, Set<String>>();
-            private final Map<String, Set<String>> groupParentAssocsToDelete = new TreeMap<String, Set<String>>();
-            private final Map<String, Set<String>> finalGroupChildAssocs = new TreeMap<String, Set<String>>();
-            private List<String> personsProcessed = new LinkedList<String>();
+            private Map<String, Set<String>> groupParentAssocsToCreate = new ConcurrentSkipListMap<String, Set<String>>();
+            private final Map<String, Set<String>> groupParentAssocsToDelete = new ConcurrentSkipListMap<String, Set<String>>();
+            private final Map<String, Set<String>> finalGroupChildAssocs = new ConcurrentSkipListMap<String, Set<String>>();
+            private final Collection<String> personsProcessed = new ConcurrentLinkedQueue<String>();
             private Set<String> allZonePersons = Collections.emptySet();
             private Set<String> deletionCandidates;
 
-            private long latestTime;
+            // The digests of the groups analyzed, to go in the snapshot once the whole zone has been synchronized
+            private final Map<String, String> groupDigests = new ConcurrentHashMap<String, String>();
+            // The groups with members that could not all be associated, which must be analyzed again next time
+            private final Set<String> incompleteGroups = new ConcurrentSkipListSet<String>();
+            private final AtomicInteger unchangedGroupCount = new AtomicInteger();
+            private int errorCount;
+
+            private final AtomicLong latestTime;
 
             public Analyzer(final long latestTime)
             {
-                this.latestTime = latestTime;
+                this.latestTime = new AtomicLong(latestTime);
             }
 
             public long getLatestTime()
             {
-                return this.latestTime;
+                return this.latestTime.get();
+            }
+
+            public int getUnchangedGroupCount()
+            {
+                return this.unchangedGroupCount.get();
+            }
+
+            public int getErrorCount()
+            {
+                return this.errorCount;
             }
 
             public Set<String> getDeletionCandidates()
@@ -1054,8 +1103,15 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
 
                     if (groupZones.contains(zoneId))
                     {
-                        // The group already existed in this zone: update the group
-                        updateGroup(group, true);
+                        // The group already existed in this zone: update the group if it has changed
+                        if (isUnchanged(group))
+                        {
+                            this.unchangedGroupCount.incrementAndGet();
+                        }
+                        else
+                        {
+                            updateGroup(group, true);
+                        }
                     }
                     else if (!visited.isEmpty())
                     {
@@ -1094,15 +1150,26 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                     }
                 }
 
-                synchronized (this)
+                // Maintain the last modified date
+                Date groupLastModified = group.getLastModified();
+                if (groupLastModified != null)
                 {
-                    // Maintain the last modified date
-                    Date groupLastModified = group.getLastModified();
-                    if (groupLastModified != null)
-                    {
-                        this.latestTime = Math.max(this.latestTime, groupLastModified.getTime());
-                    }
+                    this.latestTime.accumulateAndGet(groupLastModified.getTime(), Math::max);
+                }
+            }
+
+            /**
+             * Checks whether a group has the same display name and members as when it was last synchronized.
+             */
+            private boolean isUnchanged(NodeDescription group)
+            {
+                if (!groupSnapshotEnabled)
+                {
+                    return false;
                 }
+                String groupName = (String) group.getProperties().get(ContentModel.PROP_AUTHORITY_NAME);
+                String digest = groupSnapshot.get(groupName);
+                return digest != null && digest.equals(getGroupDigest(group));
             }
 
             // Recursively walks and caches the authorities relating to and from this group so that we can later detect potential cycles
@@ -1135,10 +1202,14 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                     return children;
                 }
 
-                // Descend on unprocessed parents.
-                children = ChainingUserRegistrySynchronizer.this.authorityService.getContainedAuthorities(null,
-                        groupName, true);
-                this.finalGroupChildAssocs.put(groupName, children);
+                // Descend on unprocessed parents. Another worker may get there first, in which case its set is kept.
+                children = new ConcurrentSkipListSet<String>(ChainingUserRegistrySynchronizer.this.authorityService
+                        .getContainedAuthorities(null, groupName, true));
+                Set<String> cachedChildren = this.finalGroupChildAssocs.putIfAbsent(groupName, children);
+                if (cachedChildren != null)
+                {
+                    return cachedChildren;
+                }
 
                 for (String child : children)
                 {
@@ -1150,7 +1221,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                 return children;
             }
 
-            private synchronized void updateGroup(NodeDescription group, boolean existed)
+            private void updateGroup(NodeDescription group, boolean existed)
             {
                 PropertyMap groupProperties = group.getProperties();
                 String groupName = (String) groupProperties.get(ContentModel.PROP_AUTHORITY_NAME);
@@ -1223,6 +1294,11 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                     recordParentAssociationDeletion(child, null);
                     recordParentAssociationCreation(child, groupName);
                 }
+
+                if (groupSnapshotEnabled)
+                {
+                    this.groupDigests.put(groupName, getGroupDigest(group));
+                }
             }
 
             private void recordParentAssociationDeletion(String child, String parent)
@@ -1242,12 +1318,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                         children.remove(child);
                     }
                 }
-                Set<String> parents = parentAssocs.get(child);
-                if (parents == null)
-                {
-                    parents = new TreeSet<String>();
-                    parentAssocs.put(child, parents);
-                }
+                Set<String> parents = parentAssocs.computeIfAbsent(child, key -> new ConcurrentSkipListSet<String>());
                 if (parent != null)
                 {
                     parents.add(parent);
@@ -1257,12 +1328,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
             private void recordParentAssociationCreation(String child, String parent)
             {
                 Map<String, Set<String>> parentAssocs = AuthorityType.getAuthorityType(child) == AuthorityType.USER ? this.personParentAssocsToCreate : this.groupParentAssocsToCreate;
-                Set<String> parents = parentAssocs.get(child);
-                if (parents == null)
-                {
-                    parents = new TreeSet<String>();
-                    parentAssocs.put(child, parents);
-                }
+                Set<String> parents = parentAssocs.computeIfAbsent(child, key -> new ConcurrentSkipListSet<String>());
                 if (parent != null)
                 {
                     parents.add(parent);
@@ -1305,6 +1371,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                                         + ChainingUserRegistrySynchronizer.this.authorityService.getShortName(parent)
                                         + "' as this creates a cyclic relationship");
                             }
+                            this.incompleteGroups.add(parent);
                             j.remove();
                         }
                         visited.removeLast();
@@ -1418,8 +1485,8 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
 
             private Map<String, Set<String>> newPersonMap()
             {
-                return ChainingUserRegistrySynchronizer.this.personService.getUserNamesAreCaseSensitive() ? new TreeMap<String, Set<String>>()
-                        : new TreeMap<String, Set<String>>(String.CASE_INSENSITIVE_ORDER);
+                return ChainingUserRegistrySynchronizer.this.personService.getUserNamesAreCaseSensitive() ? new ConcurrentSkipListMap<String, Set<String>>()
+                        : new ConcurrentSkipListMap<String, Set<String>>(String.CASE_INSENSITIVE_ORDER);
             }
 
             private void logRetainParentAssociations(Map<String, Set<String>> parentAssocs, Set<String> toRetain)
@@ -1432,6 +1499,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                     String child = entry.getKey();
                     if (!toRetain.contains(child))
                     {
+                        this.incompleteGroups.addAll(entry.getValue());
                         if (ChainingUserRegistrySynchronizer.logger.isDebugEnabled())
                         {
                             if (groupList == null)
@@ -1544,12 +1612,12 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                                           Collections.singleton(AuthorityService.ZONE_AUTH_ALFRESCO));
                                 }
                             }, splitTxns);
+                            this.errorCount += groupScanner.getTotalErrors();
                         }
 
                     }
 
                     // Prune the group associations now that we have complete information
-                    this.groupParentAssocsToCreate.keySet().retainAll(allZoneGroups);
                     logRetainParentAssociations(this.groupParentAssocsToCreate, allZoneGroups);
                     this.finalGroupChildAssocs.keySet().retainAll(allZoneGroups);
 
@@ -1603,6 +1671,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                                 }
                             }
                         }, splitTxns);
+                        this.errorCount += groupCreator.getTotalErrors();
                     }
                 }
             }
@@ -1636,6 +1705,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                             maintainAssociationCreations(entry.getKey());
                         }
                     }, splitTxns);
+                    this.errorCount += groupCreator.getTotalErrors();
                 }
 
                 // Remove all the associations we have already dealt with
@@ -1669,6 +1739,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                             maintainAssociationCreations(entry.getKey());
                         }
                     }, splitTxns);
+                    this.errorCount += groupCreator.getTotalErrors();
                 }
             }
 
@@ -1736,10 +1807,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                 // Remember that this person's associations have been maintained
                 if (isPerson)
                 {
-                    synchronized (this)
-                    {
-                        this.personsProcessed.add(authorityName);
-                    }
+                    this.personsProcessed.add(authorityName);
                 }
             }
         } // end of Analyzer class
@@ -1747,6 +1815,12 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
         // Run the first process the Group Analyzer
         final Analyzer groupAnalyzer = new Analyzer(lastModifiedMillis);
         int groupProcessedCount = groupProcessor.process(groupAnalyzer, splitTxns);
+        int errorCount = groupProcessor.getTotalErrors();
+        if (groupAnalyzer.getUnchangedGroupCount() > 0 && ChainingUserRegistrySynchronizer.logger.isInfoEnabled())
+        {
+            ChainingUserRegistrySynchronizer.logger.info("Skipped " + groupAnalyzer.getUnchangedGroupCount()
+                    + " groups unchanged since their last synchronization with user registry '" + zone + "'");
+        }
 
         groupAnalyzer.processGroups(userRegistry, isFullSync, splitTxns);
 
@@ -1921,6 +1995,7 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
 
         PersonWorker persons = new PersonWorker(lastModifiedMillis);
         int personProcessedCount = personProcessor.process(persons, splitTxns);
+        errorCount += personProcessor.getTotalErrors();
 
         // Process those associations to persons who themselves have not been updated
         groupAnalyzer.finalizeAssociations(userRegistry, splitTxns);
@@ -1975,6 +2050,18 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
 
                 public void process(String authority) throws Throwable
                 {
+                    if (groupSnapshotEnabled)
+                    {
+                        // The groups the authority is removed from no longer match their snapshot
+                        for (String parent : ChainingUserRegistrySynchronizer.this.authorityService
+                                .getContainingAuthorities(AuthorityType.GROUP, authority, true))
+                        {
+                            ChainingUserRegistrySynchronizer.this.attributeService.removeAttribute(
+                                    GROUP_SNAPSHOT_ATTRIBUTE_PATH, zoneId, parent);
+                        }
+                        ChainingUserRegistrySynchronizer.this.attributeService.removeAttribute(
+                                GROUP_SNAPSHOT_ATTRIBUTE_PATH, zoneId, authority);
+                    }
                     if (AuthorityType.getAuthorityType(authority) == AuthorityType.USER)
                     {
                         if (ChainingUserRegistrySynchronizer.logger.isDebugEnabled())
@@ -2005,10 +2092,28 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
             }
             AuthorityDeleter authorityDeleter = new AuthorityDeleter();
             authorityDeletionProcessor.process(authorityDeleter, splitTxns);
+            errorCount += authorityDeletionProcessor.getTotalErrors();
             groupProcessedCount += authorityDeleter.getGroupProcessedCount();
             personProcessedCount += authorityDeleter.getPersonProcessedCount();
         }
 
+        // Only snapshot the groups once all their changes have been applied
+        if (groupSnapshotEnabled)
+        {
+            errorCount += groupAnalyzer.getErrorCount();
+            if (errorCount == 0)
+            {
+                Map<String, String> groupDigests = new TreeMap<String, String>(groupAnalyzer.groupDigests);
+                groupDigests.keySet().removeAll(groupAnalyzer.incompleteGroups);
+                setGroupSnapshot(zone, zoneId, groupDigests, splitTxns);
+            }
+            else if (ChainingUserRegistrySynchronizer.logger.isWarnEnabled())
+            {
+                ChainingUserRegistrySynchronizer.logger.warn("Not updating the group snapshot of user registry '" + zone
+                        + "' as " + errorCount + " errors occurred. Changed groups will be synchronized again.");
+            }
+        }
+
         // Remember we have visited this zone
         visitedZoneIds.add(zoneId);
         
@@ -2027,6 +2132,115 @@ public class ChainingUserRegistrySynchronizer extends AbstractLifecycleBean
                
     } // syncWithPlugin
 
+    /**
+     * Gets the digests of the groups of a zone as they were last synchronized. When group snapshots are disabled, any
+     * snapshot left by an earlier batch synchronization is removed, as it can no longer be relied on.
+     * 
+     * @param zoneId
+     *            the zone id
+     * @param splitTxns
+     *            split transactions, if true run this in a separate transaction
+     * @return the digests keyed by group name
+     */
+    private Map<String, String> getGroupSnapshot(final String zoneId, boolean splitTxns)
+    {
+        final Map<String, String> groupSnapshot = new HashMap<String, String>();
+        if (!this.groupSnapshotEnabled)
+        {
+            if (splitTxns)
+            {
+                this.transactionService.getRetryingTransactionHelper().doInTransaction(
+                        new RetryingTransactionCallback<Void>()
+                        {
+                            public Void execute() throws Throwable
+                            {
+                                ChainingUserRegistrySynchronizer.this.attributeService.removeAttributes(
+                                        GROUP_SNAPSHOT_ATTRIBUTE_PATH, zoneId);
+                                return null;
+                            }
+                        }, false, true);
+            }
+            return groupSnapshot;
+        }
+        this.transactionService.getRetryingTransactionHelper().doInTransaction(
+                new RetryingTransactionCallback<Void>()
+                {
+                    public Void execute() throws Throwable
+                    {
+                        groupSnapshot.clear();
+                        ChainingUserRegistrySynchronizer.this.attributeService.getAttributes(new AttributeQueryCallback()
+                        {
+                            public boolean handleAttribute(Long id, Serializable value, Serializable[] keys)
+                            {
+                                groupSnapshot.put((String) keys[2], (String) value);
+                                return true;
+                            }
+                        }, GROUP_SNAPSHOT_ATTRIBUTE_PATH, zoneId);
+                        return null;
+                    }
+                }, true, splitTxns);
+        return groupSnapshot;
+    }
+
+    /**
+     * Persists the digests of the groups of a zone that changed during a synchronization.
+     * 
+     * @param zone
+     *            the zone
+     * @param zoneId
+     *            the zone id
+     * @param groupDigests
+     *            the digests keyed by group name
+     * @param splitTxns
+     *            Can the modifications to Alfresco be split across multiple transactions for maximum performance?
+     */
+    private void setGroupSnapshot(String zone, final String zoneId, Map<String, String> groupDigests, boolean splitTxns)
+    {
+        if (groupDigests.isEmpty())
+        {
+            return;
+        }
+        BatchProcessor<Map.Entry<String, String>> snapshotProcessor = new BatchProcessor<Map.Entry<String, String>>(
+                zone + " Group Snapshot",
+                this.transactionService.getRetryingTransactionHelper(),
+                groupDigests.entrySet(),
+                this.workerThreads, 100,
+                this.applicationEventPublisher,
+                ChainingUserRegistrySynchronizer.logger,
+                this.loggingInterval);
+        snapshotProcessor.process(new BaseBatchProcessWorker<Map.Entry<String, String>>()
+        {
+            public String getIdentifier(Map.Entry<String, String> entry)
+            {
+                return entry.getKey();
+            }
+
+            public void process(Map.Entry<String, String> entry) throws Throwable
+            {
+                ChainingUserRegistrySynchronizer.this.attributeService.setAttribute(entry.getValue(),
+                        GROUP_SNAPSHOT_ATTRIBUTE_PATH, zoneId, entry.getKey());
+            }
+        }, splitTxns);
+    }
+
+    /**
+     * Gets a digest of the display name and members of a group, as given by the user registry.
+     * 
+     * @param group
+     *            the group
+     * @return the digest
+     */
+    private String getGroupDigest(NodeDescription group)
+    {
+        StringBuilder content = new StringBuilder(256);
+        content.append(group.getProperties().get(ContentModel.PROP_AUTHORITY_DISPLAY_NAME));
+        for (String child : new TreeSet<String>(group.getChildAssociations()))
+        {
+            content.append('\n').append(child);
+        }
+        return DigestUtils.sha256Hex(content.toString());
+    }
+
     /**
      * Gets the persisted most recent update time for a label and zone.
      * 
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.site;
+
+import java.io.Serializable;
+
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.site.SiteInfo;
+import org.alfresco.service.cmr.site.SiteVisibility;
+
+/**
+ * An entry of the user to site membership index kept by the {@link SiteServiceImpl}.
+ * <p>
+ * Holds just enough of the site to sort, filter and page a user's memberships without
+ * going back to the site node.
+ *
+ * @since 7.0
+ */
+public class SiteMembershipIndexEntry implements Serializable
+{
+    private static final long serialVersionUID = 2952127036734781652L;
+
+    private final NodeRef nodeRef;
+    private final String shortName;
+    private final String title;
+    private final SiteVisibility visibility;
+    private final String role;
+
+    public SiteMembershipIndexEntry(SiteInfo siteInfo, String role)
+    {
+        this.nodeRef = siteInfo.getNodeRef();
+        this.shortName = siteInfo.getShortName();
+        this.title = siteInfo.getTitle();
+        this.visibility = siteInfo.getVisibility();
+        this.role = role;
+    }
+
+    public NodeRef getNodeRef()
+    {
+        return nodeRef;
+    }
+
+    public String getShortName()
+    {
+        return shortName;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public SiteVisibility getVisibility()
+    {
+        return visibility;
+    }
+
+    public String getRole()
+    {
+        return role;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SiteMembershipIndexEntry[shortName=" + shortName + ", role=" + role + "]";
+    }
+}
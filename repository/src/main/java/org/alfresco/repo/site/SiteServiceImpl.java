@@ -81,6 +81,7 @@ import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.security.authentication.AuthenticationContext;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
+import org.alfresco.repo.security.authority.AuthorityServicePolicies;
 import org.alfresco.repo.security.permissions.AccessDeniedException;
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.repo.tenant.TenantUtil;
@@ -137,7 +138,8 @@ import org.springframework.extensions.surf.util.ParameterCheck;
  * 
  * @author Roy Wetherall
  */
-public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServiceInternal, SiteModel, NodeArchiveServicePolicies.BeforePurgeNodePolicy, NodeServicePolicies.OnRestoreNodePolicy, NodeArchiveServicePolicies.BeforeRestoreArchivedNodePolicy, NodeArchiveServicePolicies.OnRestoreArchivedNodePolicy
+public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServiceInternal, SiteModel, NodeArchiveServicePolicies.BeforePurgeNodePolicy, NodeServicePolicies.OnRestoreNodePolicy, NodeArchiveServicePolicies.BeforeRestoreArchivedNodePolicy, NodeArchiveServicePolicies.OnRestoreArchivedNodePolicy,
+    AuthorityServicePolicies.OnAuthorityAddedToGroup, AuthorityServicePolicies.OnAuthorityRemovedFromGroup, NodeServicePolicies.BeforeDeleteNodePolicy, NodeServicePolicies.OnUpdatePropertiesPolicy
 {
     /** Logger */
     protected static Log logger = LogFactory.getLog(SiteServiceImpl.class);
@@ -166,6 +168,8 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
     
     private SimpleCache<String, NodeRef> siteNodeRefCache; // for site shortname to nodeRef lookup
     
+    private SimpleCache<String, List<SiteMembershipIndexEntry>> siteMembershipCache; // for user name to site memberships lookup
+    
     private String sitesXPath;
     
     /** Messages */
@@ -345,6 +349,16 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
         this.siteNodeRefCache = siteNodeRefCache;
     }
     
+    /**
+     * Set the index of the sites that each user is a member of, kept up to date as authorities
+     * are added to and removed from groups.  Without it memberships are resolved from the
+     * user's groups on every call.
+     */
+    public void setSiteMembershipCache(SimpleCache<String, List<SiteMembershipIndexEntry>> siteMembershipCache)
+    {
+        this.siteMembershipCache = siteMembershipCache;
+    }
+    
     /**
      * Sets helper that provides transaction callbacks
      */
@@ -442,6 +456,26 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
                 OnRestoreArchivedNodePolicy.QNAME,
                 SiteModel.TYPE_SITE,
                 new JavaBehaviour(this, "onRestoreArchivedNode"));
+        this.policyComponent.bindClassBehaviour(
+                AuthorityServicePolicies.OnAuthorityAddedToGroup.QNAME,
+                ContentModel.TYPE_AUTHORITY,
+                new JavaBehaviour(this, "onAuthorityAddedToGroup"));
+        this.policyComponent.bindClassBehaviour(
+                AuthorityServicePolicies.OnAuthorityRemovedFromGroup.QNAME,
+                ContentModel.TYPE_AUTHORITY,
+                new JavaBehaviour(this, "onAuthorityRemovedFromGroup"));
+        this.policyComponent.bindClassBehaviour(
+                NodeServicePolicies.BeforeDeleteNodePolicy.QNAME,
+                ContentModel.TYPE_AUTHORITY_CONTAINER,
+                new JavaBehaviour(this, "beforeDeleteNode"));
+        this.policyComponent.bindClassBehaviour(
+                NodeServicePolicies.BeforeDeleteNodePolicy.QNAME,
+                ContentModel.TYPE_PERSON,
+                new JavaBehaviour(this, "beforeDeleteNode"));
+        this.policyComponent.bindClassBehaviour(
+                NodeServicePolicies.OnUpdatePropertiesPolicy.QNAME,
+                ContentModel.TYPE_PERSON,
+                new JavaBehaviour(this, "onUpdateProperties"));
     }
 
     /* (non-Javadoc)
@@ -1606,6 +1640,9 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
         
         // Set the updated properties back onto the site node reference
         this.nodeService.setProperties(siteNodeRef, properties);
+        
+        // The title and visibility held by the membership index may have changed
+        invalidateSiteMembershipIndexForSite(shortName);
                
         final SiteVisibility visibility = siteInfo.getVisibility();
         final String sitePreset			= siteInfo.getSitePreset();
@@ -1657,6 +1694,7 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
 
         // Delete the cached reference
         siteNodeRefCache.remove(shortName);
+        invalidateSiteMembershipIndexForSite(shortName);
         
         // no need to retain the membership of the site as we postpone delete of authorities until purge from the trashcan 
         
@@ -1894,11 +1932,13 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
     {
         // regenerate the groups for the site when it is restored from the Archive store
         NodeRef siteRef = childAssocRef.getChildRef();
+        String shortName = (String)directNodeService.getProperty(siteRef, ContentModel.PROP_NAME);
         setupSitePermissions(
                 siteRef,
-                (String)directNodeService.getProperty(siteRef, ContentModel.PROP_NAME),
+                shortName,
                 getSiteVisibility(siteRef),
                 (Map<String, Set<String>>)directNodeService.getProperty(siteRef, QName.createQName(null, "memberships")), true);
+        invalidateSiteMembershipIndexForSite(shortName);
     }
 
     /**
@@ -3089,15 +3129,67 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
     @Override
     public List<SiteMembership> listSiteMemberships(String userName, int size)
     {
-        final List<String> siteNames = new LinkedList<String>();
-        Map<String, String> roleSitePairs = new HashMap<String, String>();
-        
         String actualUserName = personService.getUserIdentifier(userName);
         if(actualUserName == null)
         {
             return Collections.emptyList();
         }
         
+        boolean checkAccess = isSiteMembershipAccessChecked(actualUserName);
+        List<SiteMembershipIndexEntry> entries = new ArrayList<SiteMembershipIndexEntry>();
+        for (SiteMembershipIndexEntry entry : getSiteMembershipIndex(actualUserName))
+        {
+            /* if we found enough sites ignore the others */
+            if (size > 0 && entries.size() >= size)
+            {
+                break;
+            }
+            if (checkAccess && entry.getVisibility() == SiteVisibility.PRIVATE)
+            {
+                continue;
+            }
+            entries.add(entry);
+        }
+        return createSiteMemberships(userName, entries, checkAccess);
+    }
+    
+    /**
+     * (MNT-19035) When querying the site memberships for users other than the authenticated user or site admins,
+     * an extra check on the site visibility is enforced.
+     */
+    private boolean isSiteMembershipAccessChecked(String actualUserName)
+    {
+        String currentUserName = authenticationContext.getCurrentUserName();
+        boolean isMe = currentUserName.equals(actualUserName);
+        return !isMe && !isSiteAdmin(currentUserName);
+    }
+    
+    /**
+     * Gets the sites that a user is a member of along with the user's role in each, from the
+     * membership index if it has them, or by resolving the user's site groups otherwise.
+     * 
+     * @param actualUserName        the user name, as stored
+     * @return                      the user's memberships, in no particular order
+     */
+    private List<SiteMembershipIndexEntry> getSiteMembershipIndex(String actualUserName)
+    {
+        List<SiteMembershipIndexEntry> entries = (siteMembershipCache == null) ? null : siteMembershipCache.get(actualUserName);
+        if (entries == null)
+        {
+            entries = buildSiteMembershipIndex(actualUserName);
+            if (siteMembershipCache != null)
+            {
+                siteMembershipCache.put(actualUserName, entries);
+            }
+        }
+        return entries;
+    }
+    
+    private List<SiteMembershipIndexEntry> buildSiteMembershipIndex(String actualUserName)
+    {
+        final List<String> siteNames = new LinkedList<String>();
+        Map<String, String> roleSitePairs = new HashMap<String, String>();
+        
         /* Get the site names and the map between the site name and the role
            MNT-13198 - use the bridge table */
         Set<String> containingAuthorities = authorityService.getContainingAuthorities(AuthorityType.GROUP, actualUserName, false);
@@ -3109,25 +3201,6 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
                     continue;
                 }
                 
-                /* if the size is not 0 check site existence */
-                if(size > 0)
-                {
-                    /* if we found enough sites ignore the others */
-                    if(siteNames.size() >= size)
-                    {
-                        break;
-                    }
-                    
-                    /* MNT-10836 fix, after MNT-10109 we should also check site existence.
-                       A simple exists check would be better than getting the site properties etc - profiling suggests x2 faster.
-                       If size = -1 the sites that don't exist will be removed when getting the child associations. */
-                    if(!hasSite(siteName))
-                    {
-                        // if the site doesn't exist skip the current authority
-                        continue;
-                    }
-                }
-                
                 /* resolve the role */
                 String role = resolveRole(authority);
                 if (role != null)
@@ -3142,7 +3215,7 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
             return Collections.emptyList();
         }
         
-        /* Get the child associations */
+        /* Get the child associations, which skips the sites that no longer exist */
         List<ChildAssociationRef> assocs = getSitesAssocsByName(siteNames);
         
         /* Get the node refs and preload the nodes to get the properties faster */
@@ -3153,28 +3226,13 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
         }
         nodeDAO.cacheNodes(siteNodes);
 
-        // (MNT-19035) When querying the site memberships for users other than the authenticated user or site admins, an extra check on the site visibility is enforced.
-        boolean isMe = authenticationContext.getCurrentUserName().equals(actualUserName);
-        boolean isSiteAdmin = isSiteAdmin(authenticationContext.getCurrentUserName());
-        boolean checkAccess = !isMe && !isSiteAdmin;
-
-        /* Compute the site membership objects */
-        List<SiteMembership> result = new LinkedList<>();
+        List<SiteMembershipIndexEntry> entries = new ArrayList<SiteMembershipIndexEntry>(siteNodes.size());
         for (NodeRef site : siteNodes)
         {
             /* Ignore any node that is not a "site" type */
             QName siteClassName = this.directNodeService.getType(site);
             if (this.dictionaryService.isSubClass(siteClassName, SiteModel.TYPE_SITE))
             {
-                if (checkAccess)
-                {
-                    // Private sites are dismissed.
-                    SiteVisibility visibility = getSiteVisibility(site);
-                    if (visibility == SiteVisibility.PRIVATE)
-                    {
-                        continue;
-                    }
-                }
                 SiteInfo siteInfo = createSiteInfo(site);
                 String role = roleSitePairs.get(siteInfo.getShortName());
 
@@ -3182,14 +3240,156 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
                    This will fix cases where there is a site in trashcan with different case than an existing site. */
                 if (role != null)
                 {
-                    result.add(new SiteMembership(siteInfo, userName, role));
+                    entries.add(new SiteMembershipIndexEntry(siteInfo, role));
                 }
             }
         }
+        return Collections.unmodifiableList(entries);
+    }
+    
+    /**
+     * Loads the sites of the given membership index entries.
+     */
+    private List<SiteMembership> createSiteMemberships(String userName, List<SiteMembershipIndexEntry> entries, boolean checkAccess)
+    {
+        if (entries.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        
+        List<NodeRef> siteNodes = new ArrayList<NodeRef>(entries.size());
+        for (SiteMembershipIndexEntry entry : entries)
+        {
+            siteNodes.add(entry.getNodeRef());
+        }
+        nodeDAO.cacheNodes(siteNodes);
         
+        /* Compute the site membership objects */
+        List<SiteMembership> result = new ArrayList<SiteMembership>(entries.size());
+        for (SiteMembershipIndexEntry entry : entries)
+        {
+            NodeRef site = entry.getNodeRef();
+            if (!this.directNodeService.exists(site))
+            {
+                continue;
+            }
+            SiteInfo siteInfo = createSiteInfo(site);
+            if (checkAccess && siteInfo.getVisibility() == SiteVisibility.PRIVATE)
+            {
+                // Private sites are dismissed.
+                continue;
+            }
+            result.add(new SiteMembership(siteInfo, userName, entry.getRole()));
+        }
         return result;
     }
     
+    /**
+     * Drops the site memberships indexed for the members of a site, whose title, visibility or
+     * existence may have changed.
+     */
+    private void invalidateSiteMembershipIndexForSite(String shortName)
+    {
+        if (siteMembershipCache == null)
+        {
+            return;
+        }
+        String siteGroup = getSiteGroup(shortName);
+        if (authorityService.authorityExists(siteGroup))
+        {
+            invalidateSiteMembershipIndex(siteGroup);
+        }
+    }
+    
+    /**
+     * Drops the site memberships indexed for the given authority.  For a group the memberships
+     * of all the users it contains, directly or not, are dropped as any of them may have joined
+     * or left sites with it.
+     */
+    private void invalidateSiteMembershipIndex(String authorityName)
+    {
+        if (siteMembershipCache == null || authorityName == null)
+        {
+            return;
+        }
+        if (AuthorityType.getAuthorityType(authorityName) == AuthorityType.USER)
+        {
+            siteMembershipCache.remove(authorityName);
+            String actualUserName = personService.getUserIdentifier(authorityName);
+            if (actualUserName != null && !actualUserName.equals(authorityName))
+            {
+                siteMembershipCache.remove(actualUserName);
+            }
+        }
+        else if (authorityService.authorityExists(authorityName))
+        {
+            for (String userName : authorityService.getContainedAuthorities(AuthorityType.USER, authorityName, false))
+            {
+                siteMembershipCache.remove(userName);
+            }
+        }
+    }
+    
+    @Override
+    public void onAuthorityAddedToGroup(String parentGroup, String childAuthority)
+    {
+        invalidateSiteMembershipIndex(childAuthority);
+    }
+    
+    @Override
+    public void onAuthorityRemovedFromGroup(String parentGroup, String childAuthority)
+    {
+        invalidateSiteMembershipIndex(childAuthority);
+    }
+    
+    /**
+     * Drops the site memberships indexed for a person or for the members of a group that is
+     * about to be deleted, while the group's members can still be found.
+     */
+    @Override
+    public void beforeDeleteNode(NodeRef nodeRef)
+    {
+        if (siteMembershipCache == null)
+        {
+            return;
+        }
+        QName type = directNodeService.getType(nodeRef);
+        if (dictionaryService.isSubClass(type, ContentModel.TYPE_PERSON))
+        {
+            String userName = (String)directNodeService.getProperty(nodeRef, ContentModel.PROP_USERNAME);
+            if (userName != null)
+            {
+                siteMembershipCache.remove(userName);
+            }
+        }
+        else
+        {
+            invalidateSiteMembershipIndex((String)directNodeService.getProperty(nodeRef, ContentModel.PROP_AUTHORITY_NAME));
+        }
+    }
+    
+    /**
+     * Drops the site memberships indexed for a person whose user name changes.
+     */
+    @Override
+    public void onUpdateProperties(NodeRef nodeRef, Map<QName, Serializable> before, Map<QName, Serializable> after)
+    {
+        if (siteMembershipCache == null)
+        {
+            return;
+        }
+        Serializable userNameBefore = before.get(ContentModel.PROP_USERNAME);
+        Serializable userNameAfter = after.get(ContentModel.PROP_USERNAME);
+        if (userNameBefore != null && !userNameBefore.equals(userNameAfter))
+        {
+            siteMembershipCache.remove((String)userNameBefore);
+            if (userNameAfter != null)
+            {
+                siteMembershipCache.remove((String)userNameAfter);
+            }
+        }
+    }
+    
     /**
      * Retrieves the child associations for requested site names 
      * @param siteNames names of the sites to be retrieved
@@ -3230,53 +3430,74 @@ public class SiteServiceImpl extends AbstractLifecycleBean implements SiteServic
         return assocs;
     }
         
-	public PagingResults<SiteMembership> listSitesPaged(final String userName, List<Pair<SiteService.SortFields, Boolean>> sortProps, final PagingRequest pagingRequest)
-	{
-		List<SiteMembership> siteMembers = listSiteMemberships (userName, 0);
-	    final int totalSize = siteMembers.size();
-	 	final PageDetails pageDetails = PageDetails.getPageDetails(pagingRequest, totalSize);
-	 	final List<SiteMembership> resultList;
-	 	if (sortProps == null)
-	 	{
-	 		resultList = siteMembers;
-	 	}
-	 	else
-	 	{
-	 		List<Pair<? extends Object, SortOrder>> sortPairs = new ArrayList<Pair<? extends Object, SortOrder>>(sortProps.size());
+    public PagingResults<SiteMembership> listSitesPaged(final String userName, List<Pair<SiteService.SortFields, Boolean>> sortProps, final PagingRequest pagingRequest)
+    {
+        String actualUserName = personService.getUserIdentifier(userName);
+        List<SiteMembershipIndexEntry> entries = (actualUserName == null) ?
+                    Collections.<SiteMembershipIndexEntry>emptyList() : getSiteMembershipIndex(actualUserName);
+        boolean checkAccess = (actualUserName != null) && isSiteMembershipAccessChecked(actualUserName);
+        
+        /* Sort and page the index entries so that only the sites on the requested page are loaded */
+        List<SiteMembership> siteMembers = new ArrayList<SiteMembership>(entries.size());
+        for (SiteMembershipIndexEntry entry : entries)
+        {
+            if (checkAccess && entry.getVisibility() == SiteVisibility.PRIVATE)
+            {
+                continue;
+            }
+            SiteInfo siteInfo = new SiteInfoImpl(null, entry.getShortName(), entry.getTitle(), null, entry.getVisibility(), null, entry.getNodeRef());
+            siteMembers.add(new SiteMembership(siteInfo, userName, entry.getRole()));
+        }
+        final int totalSize = siteMembers.size();
+        final PageDetails pageDetails = PageDetails.getPageDetails(pagingRequest, totalSize);
+        if (sortProps != null)
+        {
+            List<Pair<? extends Object, SortOrder>> sortPairs = new ArrayList<Pair<? extends Object, SortOrder>>(sortProps.size());
             for (Pair<SiteService.SortFields, Boolean> sortProp : sortProps)
             {
                 sortPairs.add(new Pair<SiteService.SortFields, SortOrder>(sortProp.getFirst(), (sortProp.getSecond() ? SortOrder.ASCENDING : SortOrder.DESCENDING)));
             }
-	 		TreeSet<SiteMembership> sortedSet = new TreeSet<SiteMembership>(new SiteMembershipComparator(sortPairs, SiteMembershipComparator.Type.SITES));
-	 		sortedSet.addAll(siteMembers);
-	 		resultList = new ArrayList<SiteMembership>(sortedSet);
-	 	}
-		
-	 	PagingResults<SiteMembership> res = new PagingResults<SiteMembership>() {
-			
-			@Override
-			public boolean hasMoreItems() {
-				return pageDetails.hasMoreItems();
-			}
-			
-			@Override
-			public Pair<Integer, Integer> getTotalResultCount() {
-				Integer size = totalSize;
-				return new Pair<Integer, Integer>(size, size);
-			}
-			
-			@Override
-			public String getQueryExecutionId() {
-				return GUID.generate();
-			}
-			
-			@Override
-			public List<SiteMembership> getPage() {
-				return resultList;
-			}
-		};
-
-	    return res;
+            Collections.sort(siteMembers, new SiteMembershipComparator(sortPairs, SiteMembershipComparator.Type.SITES));
+        }
+        
+        List<SiteMembershipIndexEntry> pageEntries = new ArrayList<SiteMembershipIndexEntry>(Math.max(pageDetails.getPageSize(), 0));
+        if (pageDetails.getPageSize() > 0)
+        {
+            for (SiteMembership siteMember : siteMembers.subList(pageDetails.getSkipCount(), pageDetails.getEnd()))
+            {
+                SiteInfo siteInfo = siteMember.getSiteInfo();
+                pageEntries.add(new SiteMembershipIndexEntry(siteInfo, siteMember.getRole()));
+            }
+        }
+        final List<SiteMembership> resultList = createSiteMemberships(userName, pageEntries, checkAccess);
+        
+        return new PagingResults<SiteMembership>()
+        {
+            @Override
+            public boolean hasMoreItems()
+            {
+                return pageDetails.hasMoreItems();
+            }
+            
+            @Override
+            public Pair<Integer, Integer> getTotalResultCount()
+            {
+                Integer size = totalSize;
+                return new Pair<Integer, Integer>(size, size);
+            }
+            
+            @Override
+            public String getQueryExecutionId()
+            {
+                return GUID.generate();
+            }
+            
+            @Override
+            public List<SiteMembership> getPage()
+            {
+                return resultList;
+            }
+        };
     }
 
     private <T extends Object> PagingResults<T> getPagingResults(PagingRequest pagingRequest, final CannedQueryResults<T> results)
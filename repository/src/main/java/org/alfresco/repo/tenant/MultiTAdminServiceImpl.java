@@ -32,6 +32,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.transaction.UserTransaction;
@@ -43,6 +45,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.repo.admin.RepoModelDefinition;
 import org.alfresco.repo.content.ContentStore;
 import org.alfresco.repo.content.ContentStoreCaps;
+import org.alfresco.repo.dictionary.CompiledModelsCache;
 import org.alfresco.repo.dictionary.DictionaryComponent;
 import org.alfresco.repo.domain.tenant.TenantAdminDAO;
 import org.alfresco.repo.domain.tenant.TenantEntity;
@@ -112,6 +115,14 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
     private List<WorkflowDeployer> workflowDeployers = new ArrayList<WorkflowDeployer>();
     
     private String baseAdminUsername = null; 
+    
+    private CompiledModelsCache compiledModelsCache;
+    private boolean lazyStartup = false;
+    private int idleTimeoutMinutes = 0;
+    
+    // metrics
+    private volatile long startupTime = -1;
+    private volatile int evictedTenantCount = 0;
 
     // Experimental: Thor
     private TenantRoutingDataSource trds;
@@ -242,6 +253,55 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
         this.contentRootContainerPath = contentRootContainerPath;
     }
     
+    public void setCompiledModelsCache(CompiledModelsCache compiledModelsCache)
+    {
+        this.compiledModelsCache = compiledModelsCache;
+    }
+    
+    /**
+     * @param lazyStartup           <tt>true</tt> to leave the dictionary and content store of each enabled tenant
+     *                              to be initialised when the tenant is first used, rather than at startup
+     */
+    public void setLazyStartup(boolean lazyStartup)
+    {
+        this.lazyStartup = lazyStartup;
+    }
+    
+    /**
+     * @param idleTimeoutMinutes    the number of minutes after which the dictionary and content store of an unused
+     *                              tenant are dropped, to be initialised again when the tenant is next used.
+     *                              Zero or less (default) keeps them for as long as the tenant is enabled.
+     */
+    public void setIdleTimeoutMinutes(int idleTimeoutMinutes)
+    {
+        this.idleTimeoutMinutes = idleTimeoutMinutes;
+    }
+    
+    /**
+     * @return the time taken, in milliseconds, to start the tenants or <tt>-1</tt> if they have not been started
+     */
+    public long getStartupTime()
+    {
+        return startupTime;
+    }
+    
+    /**
+     * @return the number of tenants, including the default domain, with a dictionary currently in memory
+     *         or <tt>-1</tt> if this is not known
+     */
+    public int getWarmTenantCount()
+    {
+        return (compiledModelsCache == null) ? -1 : compiledModelsCache.getLiveCount();
+    }
+    
+    /**
+     * @return the number of times an idle tenant has been dropped from memory
+     */
+    public int getEvictedTenantCount()
+    {
+        return evictedTenantCount;
+    }
+    
     public static final String PROTOCOL_STORE_USER = "user";
     public static final String PROTOCOL_STORE_WORKSPACE = "workspace";
     public static final String PROTOCOL_STORE_SYSTEM = "system";
@@ -307,6 +367,7 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
             register(tenantDeployer(tenantFileContentStore), 0);
         }
         
+        long startTime = System.currentTimeMillis();
         UserTransaction userTransaction = transactionService.getUserTransaction();
         
         try
@@ -332,8 +393,12 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
                 
                 if (tenant.isEnabled())
                 {
-                    // notify tenant deployers registered so far ...
-                    notifyAfterEnableTenant(tenantDomain);
+                    if (! lazyStartup)
+                    {
+                        // notify tenant deployers registered so far ...
+                        notifyAfterEnableTenant(tenantDomain);
+                    }
+                    // else the dictionary and content store are initialised on first use
                     enabledCount++;
                 }
                 else
@@ -354,15 +419,17 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
                 AuthenticationUtil.setMtEnabled(false); // explicitly disable if there are no tenants
             }
             
+            startupTime = System.currentTimeMillis() - startTime;
+            
             if (logger.isInfoEnabled() && ((enabledCount+disabledCount) > 0))
             {
-                logger.info(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants",
-                                          enabledCount, disabledCount));
+                logger.info(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants (%s, %d ms)",
+                                          enabledCount, disabledCount, (lazyStartup ? "lazy" : "eager"), startupTime));
             }
             else if (logger.isDebugEnabled())
             {
-                logger.debug(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants",
-                             enabledCount, disabledCount));
+                logger.debug(String.format("Alfresco Multi-Tenant startup - %d enabled tenants, %d disabled tenants (%s, %d ms)",
+                             enabledCount, disabledCount, (lazyStartup ? "lazy" : "eager"), startupTime));
             }
         }
         catch(Throwable e)
@@ -377,6 +444,71 @@ public class MultiTAdminServiceImpl implements TenantAdminService, ApplicationCo
         }
     }
     
+    /**
+     * Drop the dictionary and content store of the enabled tenants that have not been used for the
+     * {@link #setIdleTimeoutMinutes(int) idle timeout}.  They are initialised again when the tenant is next used.
+     * 
+     * @return the number of tenants dropped
+     */
+    public int evictIdleTenants()
+    {
+        if ((idleTimeoutMinutes <= 0) || (compiledModelsCache == null) || (! tenantService.isEnabled()))
+        {
+            return 0;
+        }
+        
+        Set<String> idleTenants = compiledModelsCache.getIdleTenants(TimeUnit.MINUTES.toMillis(idleTimeoutMinutes));
+        if (idleTenants.isEmpty())
+        {
+            return 0;
+        }
+        
+        List<Tenant> tenants = transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<List<Tenant>>()
+        {
+            public List<Tenant> execute() throws Throwable
+            {
+                return getTenants(true);
+            }
+        }, true, false);
+        
+        int count = 0;
+        for (Tenant tenant : tenants)
+        {
+            final String tenantDomain = tenant.getTenantDomain();
+            if (! idleTenants.contains(tenantDomain))
+            {
+                continue;
+            }
+            
+            TenantUtil.runAsSystemTenant(new TenantRunAsWork<Object>()
+            {
+                public Object doWork()
+                {
+                    compiledModelsCache.evict(tenantDomain);
+                    if (isTenantDeployer(tenantFileContentStore))
+                    {
+                        tenantDeployer(tenantFileContentStore).destroy();
+                    }
+                    return null;
+                }
+            }, tenantDomain);
+            count++;
+            
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Tenant evicted after being idle for " + idleTimeoutMinutes + " minutes: " + tenantDomain);
+            }
+        }
+        
+        evictedTenantCount += count;
+        if ((count > 0) && logger.isInfoEnabled())
+        {
+            logger.info(String.format("Alfresco Multi-Tenant - evicted %d idle tenants, %d tenants in memory",
+                                      count, getWarmTenantCount()));
+        }
+        return count;
+    }
+    
     @Override
     public void stopTenants()
     {
@@ -70,6 +70,7 @@ import org.alfresco.traitextender.Extend;
 import org.alfresco.traitextender.ExtendedTrait;
 import org.alfresco.traitextender.Extensible;
 import org.alfresco.traitextender.Trait;
+import org.alfresco.util.MaxSizeMap;
 import org.alfresco.util.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -87,6 +88,9 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
 
     private ExtendedTrait<VersionServiceTrait> versionServiceTrait;
     
+    /** Versions already read from each version history node, see {@link #getCachedVersions(NodeRef)} */
+    private Map<NodeRef, CachedVersions> versionsCache = null;
+    
     public Version2ServiceImpl()
     {
         versionServiceTrait=new ExtendedTrait<VersionServiceTrait>(AJProxyTrait.create(this, VersionServiceTrait.class));
@@ -97,6 +101,23 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
         this.permissionService = permissionService;
     }
     
+    /**
+     * Set the maximum number of version histories for which the read versions are kept between calls.
+     * 
+     * @param versionHistoryCacheSize   the number of version histories to cache, <tt>0</tt> to disable the cache
+     */
+    public void setVersionHistoryCacheSize(int versionHistoryCacheSize)
+    {
+        if (versionHistoryCacheSize > 0)
+        {
+            this.versionsCache = Collections.synchronizedMap(new MaxSizeMap<NodeRef, CachedVersions>(versionHistoryCacheSize, true));
+        }
+        else
+        {
+            this.versionsCache = null;
+        }
+    }
+    
     /**
      * Initialise method
      */
@@ -719,6 +740,95 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
         return dbNodeService.getChildAssocs(versionHistoryRef, Version2Model.CHILD_QNAME_VERSIONS, RegexQNamePattern.MATCH_ALL, preLoad);
     }
     
+    /**
+     * Gets all the versions in the version history, reusing the versions read by a previous call where possible.
+     * <p>
+     * Each cached version is tagged with the transaction that last changed its version node. The cached versions
+     * are reused for as long as they match the start of the current version list, so creating a new version only
+     * requires the new version to be read rather than the whole history.  Deleted or modified versions invalidate
+     * the cached versions from that point onwards.
+     * 
+     * @param versionHistoryRef  the version history node reference
+     * @return list of all versions (new instances that the caller is free to modify)
+     */
+    protected List<Version> getCachedVersions(NodeRef versionHistoryRef)
+    {
+        Map<NodeRef, CachedVersions> cache = this.versionsCache;
+        if (cache == null)
+        {
+            return getAllVersions(versionHistoryRef);
+        }
+        
+        List<ChildAssociationRef> versionAssocs = getVersionAssocs(versionHistoryRef, true);
+        int versionCount = versionAssocs.size();
+        
+        List<Pair<NodeRef, Long>> versionNodes = new ArrayList<Pair<NodeRef, Long>>(versionCount);
+        for (ChildAssociationRef versionAssoc : versionAssocs)
+        {
+            NodeRef versionRef = versionAssoc.getChildRef();
+            NodeRef.Status status = dbNodeService.getNodeStatus(versionRef);
+            versionNodes.add(new Pair<NodeRef, Long>(versionRef, (status == null ? null : status.getDbTxnId())));
+        }
+        
+        CachedVersions cached = cache.get(versionHistoryRef);
+        int reusable = (cached == null ? 0 : cached.getMatchingCount(versionNodes));
+        
+        List<Version> versions = new ArrayList<Version>(versionCount);
+        for (int i = 0; i < versionCount; i++)
+        {
+            versions.add(i < reusable ? cached.versions.get(i) : getVersion(versionNodes.get(i).getFirst()));
+        }
+        if (cached == null || reusable < versionCount || versionCount < cached.versions.size())
+        {
+            cache.put(versionHistoryRef, new CachedVersions(versionNodes, versions));
+        }
+        
+        if (logger.isTraceEnabled())
+        {
+            logger.trace("Read " + (versionCount - reusable) + " of " + versionCount + " versions for " + versionHistoryRef);
+        }
+        
+        // hand out copies - version properties may be modified by the caller
+        List<Version> result = new ArrayList<Version>(versionCount);
+        for (Version version : versions)
+        {
+            result.add(new VersionImpl(new HashMap<String, Serializable>(version.getVersionProperties()), version.getFrozenStateNodeRef()));
+        }
+        return result;
+    }
+    
+    /**
+     * Immutable snapshot of the versions read from a version history node, with the version node references and
+     * transaction IDs that were current when they were read.
+     */
+    private static class CachedVersions
+    {
+        private final List<Pair<NodeRef, Long>> versionNodes;
+        private final List<Version> versions;
+        
+        private CachedVersions(List<Pair<NodeRef, Long>> versionNodes, List<Version> versions)
+        {
+            this.versionNodes = versionNodes;
+            this.versions = versions;
+        }
+        
+        /**
+         * @return the number of leading cached versions that are unchanged in the given version node list
+         */
+        private int getMatchingCount(List<Pair<NodeRef, Long>> currentVersionNodes)
+        {
+            int count = Math.min(versionNodes.size(), currentVersionNodes.size());
+            for (int i = 0; i < count; i++)
+            {
+                if (!versionNodes.get(i).equals(currentVersionNodes.get(i)))
+                {
+                    return i;
+                }
+            }
+            return count;
+        }
+    }
+    
     /**
      * Builds a version history object from the version history reference.
      * <p>
@@ -735,7 +845,7 @@ public class Version2ServiceImpl extends VersionServiceImpl implements VersionSe
         VersionHistory versionHistory = null;
         
         // List of versions with current one last and root one first.
-        List<Version> versions = getAllVersions(versionHistoryRef);
+        List<Version> versions = getCachedVersions(versionHistoryRef);
         
         if (versionComparatorDesc != null)
         {
@@ -29,10 +29,12 @@ package org.alfresco.repo.virtual.ref;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.alfresco.repo.version.common.VersionUtil;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.util.MaxSizeMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -58,6 +60,18 @@ public class Reference
 
     private static final Character VIRTUAL_TOKEN = 'v';
 
+    private static final int PARSED_REFERENCES_CACHE_SIZE = 1024;
+
+    /**
+     * Parsed references keyed by the {@link NodeRef} id they were decoded
+     * from. References are immutable so the same instance can be handed out
+     * to every caller decoding the same id, saving the re-parsing of hashed
+     * reference strings on each smart folder access.
+     */
+    private static final Map<String, Reference> parsedReferences = Collections
+                .synchronizedMap(new MaxSizeMap<String, Reference>(PARSED_REFERENCES_CACHE_SIZE,
+                                                                   true));
+
     /**
      * Quick Reference compliance check of a {@link NodeRef}.<br>
      * NodeRef Reference representations validated by this method should produce
@@ -119,6 +133,11 @@ public class Reference
         if (nodeRef != null)
         {
             String id = nodeRef.getId();
+            Reference parsedReference = parsedReferences.get(id);
+            if (parsedReference != null)
+            {
+                return parsedReference.propagateNodeRefMutations(nodeRef);
+            }
             if (id.startsWith("" + VIRTUAL_TOKEN) && (id.length() > 1)) // belts-and-braces
             {
                 char token = id.charAt(1);
@@ -133,6 +152,8 @@ public class Reference
                             referenceString = new String(org.apache.commons.codec.binary.Base64.decodeBase64(referenceString));
                         }
                         Reference reference = encoding.parser.parse(referenceString);
+                        parsedReferences.put(id,
+                                             reference);
                         return reference.propagateNodeRefMutations(nodeRef);
                     }
                     catch (ReferenceParseException rpe)
@@ -245,7 +266,7 @@ public class Reference
 
     public List<Parameter> getParameters()
     {
-        return parameters;
+        return Collections.unmodifiableList(parameters);
     }
 
     /**
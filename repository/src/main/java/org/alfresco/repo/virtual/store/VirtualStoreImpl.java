@@ -42,6 +42,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.query.ListBackedPagingResults;
 import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
+import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.permissions.NodePermissionEntry;
 import org.alfresco.repo.security.permissions.PermissionReference;
@@ -92,7 +93,9 @@ import org.alfresco.service.namespace.NamespacePrefixResolver;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.namespace.QNamePattern;
 import org.alfresco.service.namespace.RegexQNamePattern;
+import org.alfresco.util.MaxSizeMap;
 import org.alfresco.util.Pair;
+import org.alfresco.util.Triple;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -102,6 +105,12 @@ public class VirtualStoreImpl implements VirtualStore, VirtualFolderDefinitionRe
 
     private static final String VIRTUAL_FOLDER_DEFINITION = "virtualfolder.definition";
 
+    /**
+     * Time allowed for a transaction to commit once its commit time has been
+     * recorded - see {@link #sharedDefinitionKey(NodeRef)}
+     */
+    private static final long COMMIT_SETTLE_MS = 5000L;
+
     private List<VirtualizationMethod> virtualizationMethods = null;
 
     private ActualEnvironment environment;
@@ -109,11 +118,48 @@ public class VirtualStoreImpl implements VirtualStore, VirtualFolderDefinitionRe
     /** User permissions */
     private VirtualUserPermissions userPermissions;
 
+    private NodeDAO nodeDAO;
+
+    /**
+     * Cross transaction cache of evaluated folder definitions keyed by
+     * (reference node, user, last transaction commit time).
+     */
+    private Map<Triple<NodeRef, String, Long>, VirtualFolderDefinition> sharedDefinitionsCache = null;
+
     public void setVirtualizationMethods(List<VirtualizationMethod> methdods)
     {
         this.virtualizationMethods = methdods;
     }
 
+    /**
+     * @param nodeDAO used to obtain the repository commit time watermark that
+     *            keys the shared folder definitions cache - the shared cache
+     *            is disabled when not set
+     */
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.nodeDAO = nodeDAO;
+    }
+
+    /**
+     * @param definitionsCacheSize maximum number of evaluated virtual folder
+     *            definitions shared between transactions - <code>0</code>
+     *            disables the shared cache
+     */
+    public void setDefinitionsCacheSize(int definitionsCacheSize)
+    {
+        if (definitionsCacheSize > 0)
+        {
+            this.sharedDefinitionsCache = Collections
+                        .synchronizedMap(new MaxSizeMap<Triple<NodeRef, String, Long>, VirtualFolderDefinition>(definitionsCacheSize,
+                                                                                                                 true));
+        }
+        else
+        {
+            this.sharedDefinitionsCache = null;
+        }
+    }
+
     public void setEnvironment(ActualEnvironment environment)
     {
         this.environment = environment;
@@ -425,9 +471,23 @@ public class VirtualStoreImpl implements VirtualStore, VirtualFolderDefinitionRe
 
                                                          if (virtualFolderDefinition == null)
                                                          {
-
-                                                             virtualFolderDefinition = reference
-                                                                         .execute(new ApplyTemplateMethod(environment));
+                                                             Triple<NodeRef, String, Long> sharedKey = sharedDefinitionKey(key);
+                                                             if (sharedKey != null)
+                                                             {
+                                                                 virtualFolderDefinition = sharedDefinitionsCache
+                                                                             .get(sharedKey);
+                                                             }
+
+                                                             if (virtualFolderDefinition == null)
+                                                             {
+                                                                 virtualFolderDefinition = reference
+                                                                             .execute(new ApplyTemplateMethod(environment));
+                                                                 if (sharedKey != null)
+                                                                 {
+                                                                     sharedDefinitionsCache.put(sharedKey,
+                                                                                                virtualFolderDefinition);
+                                                                 }
+                                                             }
                                                              definitionsCache.put(key,
                                                                                   virtualFolderDefinition);
                                                          }
@@ -439,6 +499,47 @@ public class VirtualStoreImpl implements VirtualStore, VirtualFolderDefinitionRe
                                                  false);
     }
 
+    /**
+     * Template evaluation depends on the current user and on committed
+     * repository state (the template content and the actual node
+     * properties), so a definition can be shared for as long as no other
+     * transaction has been committed. Transactions that have already
+     * modified nodes see uncommitted state and bypass the shared cache.
+     * <p>
+     * The watermark is the latest transaction commit time rather than the
+     * latest transaction id: ids are allocated when a transaction first
+     * writes, so a transaction with a lower id may commit after one with a
+     * higher id without moving <code>max(id)</code>. The commit time is
+     * recorded just before the commit. A commit recorded no later than the
+     * watermark may therefore still be in progress for a moment, so
+     * definitions are not shared until the watermark has settled for
+     * {@link #COMMIT_SETTLE_MS}.
+     * 
+     * @param referenceNodeRef
+     * @return the shared definitions cache key or <code>null</code> if the
+     *         shared cache can not be used
+     */
+    private Triple<NodeRef, String, Long> sharedDefinitionKey(NodeRef referenceNodeRef)
+    {
+        if (sharedDefinitionsCache == null || nodeDAO == null || nodeDAO.getCurrentTransactionId(false) != null)
+        {
+            return null;
+        }
+        String user = AuthenticationUtil.getRunAsUser();
+        if (user == null)
+        {
+            return null;
+        }
+        long lastCommitTime = nodeDAO.getMaxTxnCommitTime();
+        if (System.currentTimeMillis() - lastCommitTime < COMMIT_SETTLE_MS)
+        {
+            return null;
+        }
+        return new Triple<NodeRef, String, Long>(referenceNodeRef,
+                                                 user,
+                                                 lastCommitTime);
+    }
+
     @Override
     public PagingResults<Reference> list(final Reference ref, boolean actual, boolean virtual, final boolean files,
                 final boolean folders, final String pattern, final Set<QName> searchTypeQNames,
@@ -26,6 +26,7 @@
 package org.alfresco.service.cmr.security;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -122,6 +123,17 @@ public interface PersonService
     @Auditable(parameters = {"personRef"})
     public PersonInfo getPerson(NodeRef personRef) throws NoSuchPersonException;
     
+    /**
+     * Retrieve the person info for many users at once, loading their person nodes together
+     * rather than one user at a time.  Users that don't exist are left out.
+     * 
+     * @param userNames the user names to look up
+     * @return PersonInfo (username, firstname, lastname) for each existing user, in the order given
+     * @since 7.0
+     */
+    @Auditable(parameters = {"userNames"})
+    public List<PersonInfo> getPeople(Collection<String> userNames);
+    
     /**
      * Check if a person exists.
      * 
@@ -278,8 +290,10 @@ public interface PersonService
      * @since 4.0
      */
     @AlfrescoPublicApi
-    public class PersonInfo implements PermissionCheckValue
+    public class PersonInfo implements PermissionCheckValue, Serializable
     {
+        private static final long serialVersionUID = -7392427586462738163L;
+        
         private final NodeRef nodeRef;
         private final String userName;
         private final String firstName;
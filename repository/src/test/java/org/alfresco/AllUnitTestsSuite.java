@@ -42,7 +42,12 @@ import org.junit.runners.Suite;
     org.alfresco.encryption.EncryptorTest.class,
     org.alfresco.encryption.KeyStoreKeyProviderTest.class,
     org.alfresco.filesys.config.ServerConfigurationBeanTest.class,
+    org.alfresco.filesys.repo.FolderSnapshotCacheTest.class,
     org.alfresco.filesys.repo.rules.ShuffleTest.class,
+    org.alfresco.opencmis.CMISConnectorTest.class,
+    org.alfresco.repo.activities.feed.FeedRunContextTest.class,
+    org.alfresco.repo.activities.feed.FeedTaskProcessorTest.class,
+    org.alfresco.repo.activities.feed.local.LocalFeedGeneratorTest.class,
     org.alfresco.repo.admin.Log4JHierarchyInitTest.class,
     org.alfresco.repo.attributes.PropTablesCleanupJobTest.class,
     org.alfresco.repo.cache.DefaultCacheFactoryTest.class,
@@ -63,6 +68,8 @@ import org.junit.runners.Suite;
     org.alfresco.repo.module.tool.ModuleManagementToolTest.class,
     org.alfresco.repo.module.tool.WarHelperImplTest.class,
     org.alfresco.repo.module.tool.ModuleServiceImplTest.class,
+    org.alfresco.repo.node.archive.NodeArchiveServiceImplTest.class,
+    org.alfresco.repo.node.db.DeletedNodeCleanupWorkerTest.class,
     org.alfresco.repo.policy.MTPolicyComponentTest.class,
     org.alfresco.repo.policy.PolicyComponentTest.class,
     org.alfresco.repo.rendition.RenditionNodeManagerTest.class,
@@ -180,6 +187,7 @@ import org.junit.runners.Suite;
     org.alfresco.repo.security.authentication.AlfrescoSSLSocketFactoryTest.class,
     org.alfresco.repo.security.authentication.AuthorizationTest.class,
     org.alfresco.repo.security.permissions.impl.acegi.FilteringResultSetTest.class,
+    org.alfresco.repo.security.permissions.impl.acegi.ACLEntryAfterInvocationProviderParallelTest.class,
     org.alfresco.repo.security.authentication.ChainingAuthenticationServiceTest.class,
     org.alfresco.repo.security.authentication.NameBasedUserNameGeneratorTest.class,
     org.alfresco.repo.version.common.VersionImplTest.class,
@@ -61,8 +61,10 @@ import org.junit.runners.Suite;
     org.alfresco.repo.configuration.ConfigurableServiceImplTest.class,
     org.alfresco.repo.content.GuessMimetypeTest.class,
     org.alfresco.repo.content.filestore.FileContentStoreTest.class,
+    org.alfresco.repo.content.filestore.DeduplicatingFileContentStoreTest.class,
     org.alfresco.repo.content.filestore.NoRandomAccessFileContentStoreTest.class,
     org.alfresco.repo.content.filestore.ReadOnlyFileContentStoreTest.class,
+    org.alfresco.repo.content.compression.CompressingContentStoreTest.class,
     org.alfresco.repo.content.RoutingContentStoreTest.class,
 
     org.alfresco.encryption.EncryptionTests.class,
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.filesys.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.jlan.server.filesys.FileInfo;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link FolderSnapshotCache}
+ */
+public class FolderSnapshotCacheTest
+{
+    private static final NodeRef FOLDER1 = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "folder1");
+    private static final NodeRef FOLDER2 = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "folder2");
+    private static final NodeRef FOLDER3 = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "folder3");
+
+    @Test
+    public void testSnapshotIsHeldPerUser()
+    {
+        FolderSnapshotCache cache = new FolderSnapshotCache(10, 60000L);
+
+        cache.putSnapshot(FOLDER1, "user1", createEntries(3), cache.getGeneration());
+
+        List<FolderSnapshotCache.SnapshotEntry> entries = cache.getSnapshot(FOLDER1, "user1");
+        assertNotNull(entries);
+        assertEquals(3, entries.size());
+        assertEquals("file0.txt", entries.get(0).getFileName());
+        assertNull(cache.getSnapshot(FOLDER1, "user2"));
+    }
+
+    @Test
+    public void testInvalidateRemovesAllUsers()
+    {
+        FolderSnapshotCache cache = new FolderSnapshotCache(10, 60000L);
+
+        cache.putSnapshot(FOLDER1, "user1", createEntries(1), cache.getGeneration());
+        cache.putSnapshot(FOLDER1, "user2", createEntries(1), cache.getGeneration());
+        cache.putSnapshot(FOLDER2, "user1", createEntries(1), cache.getGeneration());
+
+        cache.invalidate(FOLDER1);
+
+        assertNull(cache.getSnapshot(FOLDER1, "user1"));
+        assertNull(cache.getSnapshot(FOLDER1, "user2"));
+        assertNotNull(cache.getSnapshot(FOLDER2, "user1"));
+    }
+
+    @Test
+    public void testSnapshotLoadedDuringInvalidationIsDiscarded()
+    {
+        FolderSnapshotCache cache = new FolderSnapshotCache(10, 60000L);
+
+        long generation = cache.getGeneration();
+        cache.invalidate(FOLDER1);
+
+        assertFalse(cache.putSnapshot(FOLDER1, "user1", createEntries(1), generation));
+        assertNull(cache.getSnapshot(FOLDER1, "user1"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFolderIsEvicted()
+    {
+        FolderSnapshotCache cache = new FolderSnapshotCache(2, 60000L);
+
+        cache.putSnapshot(FOLDER1, "user1", createEntries(1), cache.getGeneration());
+        cache.putSnapshot(FOLDER2, "user1", createEntries(1), cache.getGeneration());
+        cache.getSnapshot(FOLDER1, "user1");
+        cache.putSnapshot(FOLDER3, "user1", createEntries(1), cache.getGeneration());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getSnapshot(FOLDER1, "user1"));
+        assertNull(cache.getSnapshot(FOLDER2, "user1"));
+        assertNotNull(cache.getSnapshot(FOLDER3, "user1"));
+    }
+
+    @Test
+    public void testExpiredSnapshotIsNotReturned() throws Exception
+    {
+        FolderSnapshotCache cache = new FolderSnapshotCache(10, 0L);
+
+        assertTrue(cache.putSnapshot(FOLDER1, "user1", createEntries(1), cache.getGeneration()));
+        Thread.sleep(5L);
+
+        assertNull(cache.getSnapshot(FOLDER1, "user1"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEntryCopiesFileInformation()
+    {
+        FolderSnapshotCache.SnapshotEntry entry = createEntries(1).get(0);
+
+        FileInfo info = new FileInfo();
+        entry.copyTo(info);
+
+        assertEquals("file0.txt", info.getFileName());
+        assertEquals(1024L, info.getSize());
+        assertEquals(1000L, info.getModifyDateTime());
+        assertEquals(42, info.getFileId());
+    }
+
+    private List<FolderSnapshotCache.SnapshotEntry> createEntries(int count)
+    {
+        List<FolderSnapshotCache.SnapshotEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            ContentFileInfo info = new ContentFileInfo(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "file" + i));
+            info.setFileName("file" + i + ".txt");
+            info.setSize(1024L);
+            info.setCreationDateTime(1000L);
+            info.setModifyDateTime(1000L);
+            info.setFileId(42 + i);
+            entries.add(new FolderSnapshotCache.SnapshotEntry(info));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.opencmis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how the connector parses the property filters of the objects of a listing.
+ *
+ * @since 7.0
+ */
+public class CMISConnectorTest
+{
+    private CMISConnector connector;
+
+    @Before
+    public void setUp()
+    {
+        connector = new CMISConnector();
+    }
+
+    @Test
+    public void testFilterParsedOncePerListing()
+    {
+        Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>();
+
+        Set<String> first = connector.splitFilter("cmis:name, cmis:createdBy", parsedFilters);
+        assertEquals(Set.of("cmis:name", "cmis:createdBy", "cmis:objectId", "cmis:objectTypeId", "cmis:baseTypeId"), first);
+
+        // Every other object of the listing reuses the parsed filter
+        for (int i = 0; i < 10; i++)
+        {
+            assertSame(first, connector.splitFilter("cmis:name, cmis:createdBy", parsedFilters));
+        }
+        assertEquals(1, parsedFilters.size());
+
+        // A listing with a different filter parses its own
+        Map<String, Set<String>> otherParsedFilters = new HashMap<String, Set<String>>();
+        Set<String> other = connector.splitFilter("cmis:description", otherParsedFilters);
+        assertEquals(Set.of("cmis:description", "cmis:objectId", "cmis:objectTypeId", "cmis:baseTypeId"), other);
+        assertSame(first, connector.splitFilter("cmis:name, cmis:createdBy", parsedFilters));
+        assertEquals(Set.of("cmis:name", "cmis:createdBy", "cmis:objectId", "cmis:objectTypeId", "cmis:baseTypeId"), first);
+    }
+
+    @Test
+    public void testDifferentFiltersInOneListing()
+    {
+        Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>();
+
+        Set<String> names = connector.splitFilter("cmis:name", parsedFilters);
+        Set<String> descriptions = connector.splitFilter("cmis:description", parsedFilters);
+        assertTrue(names.contains("cmis:name"));
+        assertFalse(names.contains("cmis:description"));
+        assertTrue(descriptions.contains("cmis:description"));
+        assertFalse(descriptions.contains("cmis:name"));
+
+        assertSame(names, connector.splitFilter("cmis:name", parsedFilters));
+        assertSame(descriptions, connector.splitFilter("cmis:description", parsedFilters));
+    }
+
+    @Test
+    public void testAllProperties()
+    {
+        Map<String, Set<String>> parsedFilters = new HashMap<String, Set<String>>();
+
+        assertNull(connector.splitFilter(null, parsedFilters));
+        assertNull(connector.splitFilter("*", parsedFilters));
+        assertNull(connector.splitFilter("cmis:name,*", parsedFilters));
+        assertNull(connector.splitFilter(" ", parsedFilters));
+
+        // "All properties" is remembered as well
+        assertTrue(parsedFilters.containsKey("*"));
+        assertNull(connector.splitFilter("*", parsedFilters));
+    }
+
+    @Test
+    public void testFilterParsedEachTimeOutsideAListing()
+    {
+        Set<String> first = connector.splitFilter("cmis:name", null);
+        Set<String> second = connector.splitFilter("cmis:name", null);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+    }
+}
@@ -27,13 +27,19 @@ package org.alfresco.repo.activities;
 
 import static org.junit.Assert.*;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.activities.feed.FeedGenerator;
 import org.alfresco.repo.activities.feed.local.LocalFeedTaskProcessor;
 import org.alfresco.repo.activities.post.lookup.PostLookup;
+import org.alfresco.repo.domain.activities.ActivityFeedEntity;
 import org.alfresco.repo.management.subsystems.ChildApplicationContextFactory;
 import org.alfresco.repo.node.archive.NodeArchiveService;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
@@ -41,11 +47,16 @@ import org.alfresco.repo.security.permissions.AccessDeniedException;
 import org.alfresco.repo.site.SiteModel;
 import org.alfresco.service.cmr.activities.ActivityService;
 import org.alfresco.service.cmr.activities.FeedControl;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.security.MutableAuthenticationService;
+import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.cmr.security.PersonService;
 import org.alfresco.service.cmr.site.SiteInfo;
 import org.alfresco.service.cmr.site.SiteService;
 import org.alfresco.service.cmr.site.SiteVisibility;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
 import org.alfresco.util.ApplicationContextHelper;
 import org.alfresco.util.PropertyMap;
 import org.apache.commons.logging.Log;
@@ -75,6 +86,10 @@ public abstract class AbstractSiteActivityTest
     private PostLookup postLookup;
     private FeedGenerator feedGenerator;
     private NodeArchiveService nodeArchiveService;
+    private NodeService nodeService;
+    private PermissionService permissionService;
+    private LocalFeedTaskProcessor feedProcessor;
+    private ActivityServiceImpl activityServiceImpl;
     
     //
     // Test config & data
@@ -127,8 +142,8 @@ public abstract class AbstractSiteActivityTest
         this.authenticationService = (MutableAuthenticationService)applicationContext.getBean("AuthenticationService");
         this.personService = (PersonService)applicationContext.getBean("PersonService");
         this.nodeArchiveService = (NodeArchiveService)applicationContext.getBean("nodeArchiveService");
-        
-        LocalFeedTaskProcessor feedProcessor = null;
+        this.nodeService = (NodeService)applicationContext.getBean("NodeService");
+        this.permissionService = (PermissionService)applicationContext.getBean("PermissionService");
         
         // alternative: would need to add subsystem context to config location (see above)
         //this.postLookup = (PostLookup)applicationContext.getBean("postLookup");
@@ -140,6 +155,7 @@ public abstract class AbstractSiteActivityTest
         this.postLookup = (PostLookup)activitiesFeedCtx.getBean("postLookup");
         this.feedGenerator = (FeedGenerator)activitiesFeedCtx.getBean("feedGenerator");
         feedProcessor = (LocalFeedTaskProcessor)activitiesFeedCtx.getBean("feedTaskProcessor");
+        activityServiceImpl = (ActivityServiceImpl)activitiesFeedCtx.getBean("activityService");
         
         
         List<String> templateSearchPaths = new ArrayList<String>(1);
@@ -231,6 +247,91 @@ public abstract class AbstractSiteActivityTest
         getUserFeed(user4, site1, false, false, true, 1);
     }
     
+    @Test
+    public void testUserActivitiesOnSiteFannedOutOnRead() throws Exception
+    {
+        feedProcessor.setFanOutOnRead(true);
+        activityServiceImpl.setFanOutOnRead(true);
+        try
+        {
+            login(ADMIN_USER, ADMIN_PW);
+            
+            addMembership(site1, user3, SiteModel.SITE_CONSUMER);
+            addMembership(site1, user4, SiteModel.SITE_CONSUMER);
+            addMembership(site2, user3, SiteModel.SITE_CONSUMER);
+            addMembership(site2, user4, SiteModel.SITE_CONSUMER);
+            
+            // a document in site 1 that only user 3 may read
+            Map<QName, Serializable> props = new HashMap<QName, Serializable>(1);
+            props.put(ContentModel.PROP_NAME, "restricted.txt");
+            NodeRef restrictedNodeRef = nodeService.createNode(
+                    siteService.getSite(site1).getNodeRef(),
+                    ContentModel.ASSOC_CONTAINS,
+                    QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "restricted.txt"),
+                    ContentModel.TYPE_CONTENT,
+                    props).getChildRef();
+            permissionService.setInheritParentPermissions(restrictedNodeRef, false);
+            permissionService.setPermission(restrictedNodeRef, user3, PermissionService.CONSUMER, true);
+            activityService.postActivity("org.alfresco.testActivityType1", site1, appToolId, "{\"nodeRef\" : \"" + restrictedNodeRef + "\"}");
+            
+            generateFeed();
+            
+            // each member's feed is merged from the streams of the member's sites - 2 joins in each site and the
+            // document activity, which only user 3 may read
+            login(user3, USER_PW);
+            
+            getUserFeed(user3, site1, false, false, true, 1);
+            getUserFeed(user3, site1, false, false, false, 3);
+            getUserFeed(user3, site2, false, false, false, 2);
+            assertMergedFeed(user3, 5, site1, site2);
+            
+            login(user4, USER_PW);
+            
+            getUserFeed(user4, site1, false, false, true, 1);
+            getUserFeed(user4, site1, false, false, false, 2);
+            getUserFeed(user4, site2, false, false, false, 2);
+            assertMergedFeed(user4, 4, site1, site2);
+            
+            // user 4 opts out of site 2
+            addFeedControl(site2, null);
+            
+            getUserFeed(user4, site2, false, false, false, 0);
+            assertMergedFeed(user4, 2, site1);
+        }
+        finally
+        {
+            feedProcessor.setFanOutOnRead(false);
+            activityServiceImpl.setFanOutOnRead(false);
+        }
+    }
+    
+    /**
+     * Check that the user feed is merged from the streams of the given sites, newest first, with the details of each post
+     */
+    private void assertMergedFeed(String userId, int expectedCount, String... siteIds) throws Exception
+    {
+        List<ActivityFeedEntity> feedEntries = activityService.getUserFeedEntries(userId, null, false, false, -1L);
+        assertEquals(expectedCount, feedEntries.size());
+        
+        Set<String> feedSiteIds = new HashSet<String>();
+        ActivityFeedEntity previous = null;
+        for (ActivityFeedEntity feedEntry : feedEntries)
+        {
+            assertTrue(userId.equalsIgnoreCase(feedEntry.getFeedUserId()));
+            assertTrue(feedEntry.getPostId() > 0);
+            assertNotNull(feedEntry.getFeedDate());
+            assertNotNull(feedEntry.getPostDate());
+            if (previous != null)
+            {
+                int compare = previous.getPostDate().compareTo(feedEntry.getPostDate());
+                assertTrue("Newest first", (compare > 0) || ((compare == 0) && (previous.getId() > feedEntry.getId())));
+            }
+            feedSiteIds.add(feedEntry.getSiteNetwork());
+            previous = feedEntry;
+        }
+        assertEquals(Set.of(siteIds), feedSiteIds);
+    }
+    
     @Test
     public void testGetSiteFeedsBefore() throws Exception
     {
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.activities.feed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Checks the totals that the feed jobs of one run add to the run's context.
+ *
+ * @since 7.0
+ */
+public class FeedRunContextTest
+{
+    @Test
+    public void testTotalsAddedByConcurrentJobs() throws Exception
+    {
+        final FeedRunContext runCtx = new FeedRunContext();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> jobs = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++)
+        {
+            Thread job = new Thread(() ->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < 1000; j++)
+                {
+                    runCtx.addProcessed(1, 3);
+                }
+            });
+            job.start();
+            jobs.add(job);
+        }
+        start.countDown();
+        for (Thread job : jobs)
+        {
+            job.join();
+        }
+
+        assertEquals(4000, runCtx.getPostCount());
+        assertEquals(12000, runCtx.getFeedEntryCount());
+        String summary = runCtx.getSummary();
+        assertTrue(summary, summary.startsWith("Generated 12000 activity feed entries for 4000 activity posts in "));
+    }
+
+    @Test
+    public void testEmptyRun()
+    {
+        FeedRunContext runCtx = new FeedRunContext();
+        assertEquals(0, runCtx.getPostCount());
+        assertEquals(0, runCtx.getFeedEntryCount());
+        assertTrue(runCtx.getSiteConnectedUsers().isEmpty());
+        assertTrue(runCtx.getSummary().startsWith("Generated 0 activity feed entries for 0 activity posts in "));
+    }
+}
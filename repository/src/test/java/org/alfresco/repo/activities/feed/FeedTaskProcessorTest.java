@@ -0,0 +1,299 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.activities.feed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.repo.admin.SysAdminParamsImpl;
+import org.alfresco.repo.domain.activities.ActivityFeedEntity;
+import org.alfresco.repo.domain.activities.ActivityPostEntity;
+import org.alfresco.repo.domain.activities.FeedControlEntity;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how the feed task processor batches the feed entries of activity posts and shares site members across a run.
+ *
+ * @since 7.0
+ */
+public class FeedTaskProcessorTest
+{
+    private static final String SITE = "site1";
+    private static final String POSTER = "user0";
+
+    private TestFeedTaskProcessor processor;
+    private RepoCtx ctx;
+
+    @Before
+    public void setUp()
+    {
+        processor = new TestFeedTaskProcessor();
+        processor.setFeedInsertBatchSize(10);
+        ctx = new RepoCtx(new SysAdminParamsImpl(), "/service");
+    }
+
+    @Test
+    public void testLargeFanOutInsertedInChunks() throws Exception
+    {
+        // One post fans out to far more entries than a batch
+        processor.addSiteMembers(SITE, 95);
+        processor.addPosts(1);
+
+        processor.process(1, 1, 1, ctx);
+
+        // The site members (including the poster) and the site feed
+        assertEquals(96, processor.inserted.size());
+        List<String> expected = new ArrayList<String>();
+        expected.add("start");
+        for (int i = 0; i < 9; i++)
+        {
+            expected.add("insert 10");
+        }
+        expected.add("insert 6");
+        expected.add("PROCESSED 1");
+        expected.add("commit");
+        expected.add("end");
+        assertEquals("The entries of the post go in chunks, in the transaction that marks the post processed", expected, processor.events);
+
+        Set<String> feedUserIds = new HashSet<String>();
+        for (ActivityFeedEntity feed : processor.inserted)
+        {
+            feedUserIds.add(feed.getFeedUserId());
+            assertEquals(1L, feed.getPostId());
+        }
+        assertEquals(96, feedUserIds.size());
+    }
+
+    @Test
+    public void testEntriesCollectedAcrossPosts() throws Exception
+    {
+        // Each post has 4 entries: 3 site members (including the poster) and the site feed
+        processor.addSiteMembers(SITE, 3);
+        processor.addPosts(7);
+
+        processor.process(1, 1, 7, ctx);
+
+        assertEquals(28, processor.inserted.size());
+        assertEquals(List.of(
+                "start", "insert 10", "insert 2", "PROCESSED 1", "PROCESSED 2", "PROCESSED 3", "commit", "end",
+                "start", "insert 10", "insert 2", "PROCESSED 4", "PROCESSED 5", "PROCESSED 6", "commit", "end",
+                "start", "insert 4", "PROCESSED 7", "commit", "end"), processor.events);
+    }
+
+    @Test
+    public void testFailedInsertLeavesPostsPosted() throws Exception
+    {
+        processor.addSiteMembers(SITE, 95);
+        processor.addPosts(1);
+        processor.failOnInsert = 2;
+
+        try
+        {
+            processor.process(1, 1, 1, ctx);
+            fail("The insert failure should be reported");
+        }
+        catch (SQLException e)
+        {
+            // expected
+        }
+        assertEquals("The post is not marked processed", List.of("start", "insert 10", "end"), processor.events);
+    }
+
+    @Test
+    public void testSiteMembersSharedByTheJobsOfARun() throws Exception
+    {
+        processor.addSiteMembers(SITE, 3);
+        processor.addPosts(2);
+
+        // Jobs of the same run look the site members up once ...
+        FeedRunContext runCtx = new FeedRunContext();
+        processor.process(1, 1, 2, ctx, runCtx);
+        processor.process(2, 1, 2, ctx, runCtx);
+        assertEquals(1, processor.siteMemberLookups);
+        assertTrue(runCtx.getSiteConnectedUsers().get(SITE).contains(""));
+        assertEquals(4, runCtx.getPostCount());
+        assertEquals(16, runCtx.getFeedEntryCount());
+
+        // ... but not across runs
+        processor.process(1, 1, 2, ctx);
+        processor.process(2, 1, 2, ctx);
+        assertEquals(3, processor.siteMemberLookups);
+    }
+
+    @Test
+    public void testBatchSizeOfOne() throws Exception
+    {
+        processor.setFeedInsertBatchSize(1);
+        processor.addSiteMembers(SITE, 1);
+        processor.addPosts(2);
+
+        processor.process(1, 1, 2, ctx);
+
+        // The poster's and the site feed's entries, post by post, one row per statement
+        assertEquals(List.of(
+                "start", "insert 1", "insert 1", "PROCESSED 1", "commit", "end",
+                "start", "insert 1", "insert 1", "PROCESSED 2", "commit", "end"), processor.events);
+        assertFalse(processor.inserted.isEmpty());
+    }
+
+    /**
+     * Records the transactions, inserts and status updates of the processor
+     */
+    private static class TestFeedTaskProcessor extends FeedTaskProcessor
+    {
+        private final List<ActivityPostEntity> posts = new ArrayList<ActivityPostEntity>();
+        private final Map<String, Set<String>> siteMembers = new HashMap<String, Set<String>>();
+        private final List<String> events = new ArrayList<String>();
+        private final List<ActivityFeedEntity> inserted = new ArrayList<ActivityFeedEntity>();
+        private int siteMemberLookups;
+        private int inserts;
+        private int failOnInsert = -1;
+
+        void addSiteMembers(String siteId, int count)
+        {
+            Set<String> members = new HashSet<String>();
+            for (int i = 0; i < count; i++)
+            {
+                members.add("user" + i);
+            }
+            siteMembers.put(siteId, members);
+        }
+
+        void addPosts(int count)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                ActivityPostEntity post = new ActivityPostEntity();
+                post.setId((long) posts.size() + 1);
+                post.setUserId(POSTER);
+                post.setSiteNetwork(SITE);
+                post.setActivityType("org.alfresco.test.activity");
+                post.setActivityData("{}");
+                post.setAppTool("test");
+                post.setPostDate(new Date());
+                posts.add(post);
+            }
+        }
+
+        @Override
+        public void startTransaction()
+        {
+            events.add("start");
+        }
+
+        @Override
+        public void commitTransaction()
+        {
+            events.add("commit");
+        }
+
+        @Override
+        public void rollbackTransaction()
+        {
+            events.add("rollback");
+        }
+
+        @Override
+        public void endTransaction()
+        {
+            events.add("end");
+        }
+
+        @Override
+        public List<ActivityPostEntity> selectPosts(ActivityPostEntity selector)
+        {
+            return new ArrayList<ActivityPostEntity>(posts);
+        }
+
+        @Override
+        public List<FeedControlEntity> selectUserFeedControls(String userId)
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long insertFeedEntry(ActivityFeedEntity feed)
+        {
+            throw new UnsupportedOperationException("Feed entries are inserted together");
+        }
+
+        @Override
+        public void insertFeedEntries(List<ActivityFeedEntity> feeds) throws SQLException
+        {
+            if (++inserts == failOnInsert)
+            {
+                throw new SQLException("Packet too large");
+            }
+            events.add("insert " + feeds.size());
+            inserted.addAll(feeds);
+        }
+
+        @Override
+        public int updatePostStatus(long id, ActivityPostEntity.STATUS status)
+        {
+            events.add(status + " " + id);
+            return 1;
+        }
+
+        @Override
+        protected Set<String> getSiteMembers(RepoCtx ctx, String siteId, String tenantDomain)
+        {
+            siteMemberLookups++;
+            return new HashSet<String>(siteMembers.get(siteId));
+        }
+
+        @Override
+        protected Set<String> getFollowers(String userId, String tenantDomain)
+        {
+            return Collections.emptySet();
+        }
+
+        @Override
+        protected boolean canReadSite(RepoCtx ctx, String siteIdIn, String connectedUser, String tenantDomain)
+        {
+            return true;
+        }
+
+        @Override
+        protected boolean canRead(RepoCtx ctx, String connectedUser, Map<String, Object> model)
+        {
+            return true;
+        }
+    }
+}
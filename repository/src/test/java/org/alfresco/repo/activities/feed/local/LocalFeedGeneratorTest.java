@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.activities.feed.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.alfresco.repo.activities.feed.JobSettings;
+import org.alfresco.repo.batch.BatchProcessWorkProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the sequence ranges that the local feed generator hands out to its feed jobs.
+ *
+ * @since 7.0
+ */
+public class LocalFeedGeneratorTest
+{
+    private static final int NUM_THREADS = 4;
+    private static final int BATCH_SIZE = 100;
+
+    private LocalFeedGenerator feedGenerator;
+
+    @Before
+    public void setUp()
+    {
+        feedGenerator = new LocalFeedGenerator();
+        feedGenerator.setNumThreads(NUM_THREADS);
+        feedGenerator.setBatchSize(BATCH_SIZE);
+    }
+
+    @Test
+    public void testRangesShrinkWithTheRemainingRange()
+    {
+        List<JobSettings> jobs = getAllJobs(1, 1000, 5);
+
+        long next = 1;
+        long previousSize = Long.MAX_VALUE;
+        for (JobSettings job : jobs)
+        {
+            assertEquals("The ranges follow each other", next, job.getMinSeq());
+            assertEquals(5, job.getJobTaskNode());
+
+            long size = job.getMaxSeq() - job.getMinSeq() + 1;
+            long remaining = 1000 - job.getMinSeq() + 1;
+            assertTrue("No more than the batch size", size <= BATCH_SIZE);
+            assertTrue("No more than a thread's share of the remaining range", size <= (remaining + NUM_THREADS - 1) / NUM_THREADS);
+            assertTrue("The ranges never grow", size <= previousSize);
+
+            previousSize = size;
+            next = job.getMaxSeq() + 1;
+        }
+        assertEquals("The whole range is covered", 1001, next);
+
+        // Full batches while there is plenty left, single posts at the very end
+        assertEquals(BATCH_SIZE, jobs.get(0).getMaxSeq() - jobs.get(0).getMinSeq() + 1);
+        JobSettings last = jobs.get(jobs.size() - 1);
+        assertEquals(last.getMinSeq(), last.getMaxSeq());
+    }
+
+    @Test
+    public void testSmallRangeSharedByAllThreads()
+    {
+        // A range smaller than a batch still gives each thread a job
+        List<JobSettings> jobs = getAllJobs(11, 20, 0);
+        assertTrue(jobs.size() >= NUM_THREADS);
+        assertEquals(11, jobs.get(0).getMinSeq());
+        assertEquals(3, jobs.get(0).getMaxSeq() - jobs.get(0).getMinSeq() + 1);
+        assertEquals(20, jobs.get(jobs.size() - 1).getMaxSeq());
+    }
+
+    @Test
+    public void testSinglePost()
+    {
+        List<JobSettings> jobs = getAllJobs(7, 7, 0);
+        assertEquals(1, jobs.size());
+        assertEquals(7, jobs.get(0).getMinSeq());
+        assertEquals(7, jobs.get(0).getMaxSeq());
+    }
+
+    /**
+     * Take work the way the batch processor does: until there is none
+     */
+    private List<JobSettings> getAllJobs(long minSequence, long maxSequence, int maxNodeHash)
+    {
+        BatchProcessWorkProvider<JobSettings> provider = feedGenerator.getJobSettingsProvider(minSequence, maxSequence, maxNodeHash);
+        List<JobSettings> jobs = new ArrayList<JobSettings>();
+        Collection<JobSettings> work;
+        while (!(work = provider.getNextWork()).isEmpty())
+        {
+            assertEquals("One job at a time", 1, work.size());
+            jobs.addAll(work);
+        }
+        return jobs;
+    }
+}
@@ -30,6 +30,8 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.alfresco.repo.content.cleanup.ContentStoreCleanerTest;
+import org.alfresco.repo.content.compression.CompressingContentStoreTest;
+import org.alfresco.repo.content.filestore.DeduplicatingFileContentStoreTest;
 import org.alfresco.repo.content.filestore.FileContentStoreTest;
 import org.alfresco.repo.content.filestore.NoRandomAccessFileContentStoreTest;
 import org.alfresco.repo.content.filestore.ReadOnlyFileContentStoreTest;
@@ -54,8 +56,10 @@ public class ContentFullContextTestSuite extends TestSuite
         //suite.addTestSuite(CharsetFinderTest.class);
         suite.addTest(new JUnit4TestAdapter(SpoofedTextContentReaderTest.class));
         suite.addTest(new JUnit4TestAdapter(FileContentStoreTest.class));
+        suite.addTest(new JUnit4TestAdapter(DeduplicatingFileContentStoreTest.class));
         suite.addTest(new JUnit4TestAdapter(NoRandomAccessFileContentStoreTest.class));
         suite.addTest(new JUnit4TestAdapter(ReadOnlyFileContentStoreTest.class));
+        suite.addTest(new JUnit4TestAdapter(CompressingContentStoreTest.class));
         suite.addTestSuite(ContentDataTest.class);
         //suite.addTestSuite(MimetypeMapTest.class);
         suite.addTestSuite(RoutingContentServiceTest.class);
@@ -111,7 +111,7 @@ public class ContentStoreCleanerTest extends TestCase
         listeners.add(listener);
         listeners.add(new DummyUnsupportiveCleanerListener());
         // initialise record of deleted URLs
-        deletedUrls = new ArrayList<String>(5);
+        deletedUrls = Collections.synchronizedList(new ArrayList<String>(5));
         
         // Construct the test cleaners
         eagerCleaner = (EagerContentStoreCleaner) ctx.getBean("eagerContentStoreCleaner");
@@ -394,6 +394,63 @@ public class ContentStoreCleanerTest extends TestCase
         assertTrue("Content listener was not called", deletedUrls.contains(reader.getContentUrl()));
     }
     
+    public void testConcurrentRemoval() throws Exception
+    {
+        eagerCleaner.setEagerOrphanCleanup(false);
+        
+        final StoreRef storeRef = nodeService.createStore("test", getName() + "-" + GUID.generate());
+        RetryingTransactionCallback<List<ContentData>> testCallback = new RetryingTransactionCallback<List<ContentData>>()
+        {
+            public List<ContentData> execute() throws Throwable
+            {
+                List<ContentData> contentDatas = new ArrayList<ContentData>(10);
+                NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+                for (int i = 0; i < 10; i++)
+                {
+                    // Create some content
+                    Map<QName, Serializable> properties = new HashMap<QName, Serializable>(13);
+                    properties.put(ContentModel.PROP_NAME, (Serializable)("test" + i + ".txt"));
+                    NodeRef contentNodeRef = nodeService.createNode(
+                            rootNodeRef,
+                            ContentModel.ASSOC_CHILDREN,
+                            ContentModel.ASSOC_CHILDREN,
+                            ContentModel.TYPE_CONTENT,
+                            properties).getChildRef();
+                    ContentWriter writer = contentService.getWriter(contentNodeRef, ContentModel.PROP_CONTENT, true);
+                    writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+                    writer.putContent("INITIAL CONTENT " + i);
+                    contentDatas.add(writer.getContentData());
+                    
+                    // Delete the node, bypassing archive
+                    nodeService.addAspect(contentNodeRef, ContentModel.ASPECT_TEMPORARY, null);
+                    nodeService.deleteNode(contentNodeRef);
+                }
+                return contentDatas;
+            }
+        };
+        List<ContentData> contentDatas = transactionService.getRetryingTransactionHelper().doInTransaction(testCallback);
+        
+        // fire the cleaner with several deletion threads
+        cleaner.setProtectDays(0);
+        cleaner.setDeletionThreads(3);
+        try
+        {
+            cleaner.execute();
+        }
+        finally
+        {
+            cleaner.setDeletionThreads(1);
+        }
+        
+        for (ContentData contentData : contentDatas)
+        {
+            ContentReader reader = contentService.getRawReader(contentData.getContentUrl());
+            assertFalse("Unprotected content was not deleted", reader.exists());
+            assertTrue("Content listener was not called", deletedUrls.contains(contentData.getContentUrl()));
+        }
+        assertTrue("Cleanup metrics not recorded", cleaner.getLastRunDeletedCount() >= contentDatas.size());
+    }
+    
     /**
      * Test forced and immediate shredding of content
      * <p/>
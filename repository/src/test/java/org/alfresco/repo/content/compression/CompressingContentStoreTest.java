@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.compression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.alfresco.repo.content.AbstractWritableContentStoreTest;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.test_category.OwnJVMTestsCategory;
+import org.alfresco.util.TempFileProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the store that compresses content of selected mimetypes in a backing file store.
+ *
+ * @see org.alfresco.repo.content.compression.CompressingContentStore
+ */
+@Category(OwnJVMTestsCategory.class)
+public class CompressingContentStoreTest extends AbstractWritableContentStoreTest
+{
+    private FileContentStore backingStore;
+    private CompressingContentStore store;
+
+    @Before
+    public void before() throws Exception
+    {
+        // create a store that uses a subdirectory of the temp directory
+        File tempDir = TempFileProvider.getTempDir();
+        backingStore = new FileContentStore(ctx,
+                tempDir.getAbsolutePath() +
+                File.separatorChar +
+                getName());
+        store = new CompressingContentStore(backingStore, Arrays.asList("text/*", MimetypeMap.MIMETYPE_JSON));
+        // Do not need super class's transactions
+    }
+
+    @After
+    public void after()
+    {
+        // Do not need super class's transactions
+    }
+
+    @Override
+    protected ContentStore getStore()
+    {
+        return store;
+    }
+
+    private static String makeText()
+    {
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        for (int i = 0; sb.length() < 16 * 1024; i++)
+        {
+            sb.append("Line ").append(i).append(" of some highly compressible text\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testMimetypeSelection() throws Exception
+    {
+        assertTrue(store.isCompressed(MimetypeMap.MIMETYPE_TEXT_PLAIN));
+        assertTrue(store.isCompressed(MimetypeMap.MIMETYPE_XML));
+        assertTrue(store.isCompressed(MimetypeMap.MIMETYPE_JSON));
+        assertFalse(store.isCompressed(MimetypeMap.MIMETYPE_PDF));
+        assertFalse(store.isCompressed(null));
+    }
+
+    /**
+     * Checks that compressed content takes less space in the backing store but reads back,
+     * with its original size, through the compressing store.
+     */
+    @Test
+    public void testCompressedRoundTrip() throws Exception
+    {
+        String content = makeText();
+        ContentWriter writer = getWriter();
+        writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        writer.setEncoding("UTF-8");
+        writer.putContent(content);
+        long originalSize = content.getBytes("UTF-8").length;
+        assertEquals(originalSize, writer.getSize());
+        assertEquals(originalSize, writer.getContentData().getSize());
+
+        String contentUrl = writer.getContentUrl();
+        assertEquals(originalSize, CompressingContentStore.getOriginalSize(contentUrl));
+        assertEquals(writer.getContentUrl(), writer.getContentData().getContentUrl());
+        long storedSize = backingStore.getReader(CompressingContentStore.getBackingContentUrl(contentUrl)).getSize();
+        assertTrue("Content was not compressed: " + storedSize, storedSize < originalSize / 4);
+        assertTrue(store.exists(contentUrl));
+
+        ContentReader reader = store.getReader(contentUrl);
+        reader.setEncoding("UTF-8");
+        assertEquals(originalSize, reader.getSize());
+        assertEquals(content, reader.getContentString());
+        // Readers remain reusable through getReader()
+        assertEquals(content, reader.getReader().getContentString());
+    }
+
+    /**
+     * Checks that content of other mimetypes, and content written straight to the backing
+     * store, is left alone.
+     */
+    @Test
+    public void testUncompressedPassThrough() throws Exception
+    {
+        String content = makeText();
+        ContentWriter writer = getWriter();
+        writer.setMimetype(MimetypeMap.MIMETYPE_PDF);
+        writer.putContent(content);
+        String contentUrl = writer.getContentUrl();
+        assertEquals(backingStore.getReader(contentUrl).getSize(), store.getReader(contentUrl).getSize());
+        assertEquals(content, store.getReader(contentUrl).getContentString());
+
+        ContentWriter backingWriter = backingStore.getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        backingWriter.putContent(content);
+        assertEquals(content, store.getReader(backingWriter.getContentUrl()).getContentString());
+    }
+
+    /**
+     * Checks that uploaded content that happens to be GZIP compressed is returned as it was
+     * written, as only the content URL marks content as compressed by the store.
+     */
+    @Test
+    public void testGzipUploadIsNotDecompressed() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(bytes))
+        {
+            os.write(makeText().getBytes("UTF-8"));
+        }
+        byte[] gzipped = bytes.toByteArray();
+
+        ContentWriter writer = getWriter();
+        writer.setMimetype(MimetypeMap.MIMETYPE_ZIP);
+        writer.putContent(new ByteArrayInputStream(gzipped));
+        String contentUrl = writer.getContentUrl();
+        assertEquals(-1L, CompressingContentStore.getOriginalSize(contentUrl));
+
+        ContentReader reader = store.getReader(contentUrl);
+        assertEquals(gzipped.length, reader.getSize());
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        reader.getContent(read);
+        assertTrue(Arrays.equals(gzipped, read.toByteArray()));
+    }
+
+    /**
+     * Checks that deleting compressed content removes it from the backing store.
+     */
+    @Test
+    public void testDeleteCompressed() throws Exception
+    {
+        ContentWriter writer = getWriter();
+        writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        writer.putContent(makeText());
+        String contentUrl = writer.getContentUrl();
+        String backingContentUrl = CompressingContentStore.getBackingContentUrl(contentUrl);
+        assertTrue(backingStore.exists(backingContentUrl));
+
+        assertTrue(store.delete(contentUrl));
+        assertFalse(backingStore.exists(backingContentUrl));
+        assertFalse(store.exists(contentUrl));
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.filestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.alfresco.repo.content.AbstractWritableContentStoreTest;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.cleanup.FileWipingContentCleanerListener;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.test_category.OwnJVMTestsCategory;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests the file-based store that shares identical binaries between content URLs.
+ *
+ * @see org.alfresco.repo.content.filestore.DeduplicatingFileContentStore
+ */
+@Category(OwnJVMTestsCategory.class)
+public class DeduplicatingFileContentStoreTest extends AbstractWritableContentStoreTest
+{
+    private DeduplicatingFileContentStore store;
+
+    @Before
+    public void before() throws Exception
+    {
+        // create a store that uses a subdirectory of the temp directory
+        File tempDir = TempFileProvider.getTempDir();
+        store = new DeduplicatingFileContentStore(ctx,
+                tempDir.getAbsolutePath() +
+                File.separatorChar +
+                getName());
+        // Do not need super class's transactions
+    }
+
+    @After
+    public void after()
+    {
+        // Do not need super class's transactions
+    }
+
+    @Override
+    protected ContentStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Deduplication needs hard link counts and user-defined file attributes
+     */
+    private void assumeDeduplicationSupported() throws Exception
+    {
+        assumeDeduplicationSupported();
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(
+                store.getBlobDirectory().getParentFile().toPath(), UserDefinedFileAttributeView.class);
+        Assume.assumeTrue(view != null && Files.getFileStore(store.getBlobDirectory().getParentFile().toPath())
+                .supportsFileAttributeView(UserDefinedFileAttributeView.class));
+    }
+
+    private File[] listBlobs()
+    {
+        File[] blobs = store.getBlobDirectory().listFiles();
+        return blobs == null ? new File[0] : blobs;
+    }
+
+    private String write(String content)
+    {
+        ContentWriter writer = getWriter();
+        writer.putContent(content);
+        return writer.getContentUrl();
+    }
+
+    /**
+     * Checks that identical content written to different URLs shares one file on disk and that the
+     * shared blob only goes once the last URL has been deleted.
+     */
+    @Test
+    public void testDuplicateContentShared() throws Exception
+    {
+        assumeDeduplicationSupported();
+
+        String content = "Duplicate content " + GUID.generate();
+        String firstUrl = write(content);
+        String secondUrl = write(content);
+        String otherUrl = write("Other content " + GUID.generate());
+
+        File firstFile = store.makeFile(firstUrl);
+        File secondFile = store.makeFile(secondUrl);
+        assertTrue("Identical content must share a blob", Files.isSameFile(firstFile.toPath(), secondFile.toPath()));
+        assertFalse("Different content must not share a blob", Files.isSameFile(firstFile.toPath(), store.makeFile(otherUrl).toPath()));
+        assertTrue(DeduplicatingFileContentStore.isShared(firstFile));
+
+        // Deleting one reference leaves the content for the other
+        assertTrue(store.delete(firstUrl));
+        assertFalse(store.exists(firstUrl));
+        assertEquals(content, store.getReader(secondUrl).getContentString());
+
+        // Deleting the last reference releases the blob
+        assertTrue(store.delete(secondUrl));
+        assertEquals(content, store.getReader(otherUrl).getContentString());
+        assertTrue(store.delete(otherUrl));
+        assertEquals("Unreferenced blobs must be deleted", 0, listBlobs().length);
+    }
+
+    /**
+     * Checks that URLs sharing a blob that are deleted at the same time do not leave the blob behind.
+     */
+    @Test
+    public void testConcurrentDeletesReleaseBlob() throws Exception
+    {
+        assumeDeduplicationSupported();
+
+        String content = "Concurrently deleted content " + GUID.generate();
+        final String firstUrl = write(content);
+        final String secondUrl = write(content);
+
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<Boolean> first = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws Exception
+                {
+                    barrier.await();
+                    return store.delete(firstUrl);
+                }
+            });
+            Future<Boolean> second = executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call() throws Exception
+                {
+                    barrier.await();
+                    return store.delete(secondUrl);
+                }
+            });
+            assertTrue(first.get());
+            assertTrue(second.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals("Unreferenced blobs must be deleted", 0, listBlobs().length);
+    }
+
+    /**
+     * Checks that the file wiper leaves content that other URLs still reference, and wipes the data
+     * once the last URL referencing it goes.
+     */
+    @Test
+    public void testWipingSharedContent() throws Exception
+    {
+        assumeDeduplicationSupported();
+
+        String content = "Wiped content " + GUID.generate();
+        String firstUrl = write(content);
+        String secondUrl = write(content);
+        File secondFile = store.makeFile(secondUrl);
+        FileWipingContentCleanerListener wiper = new FileWipingContentCleanerListener();
+
+        wiper.beforeDelete(store, firstUrl);
+        assertTrue(store.delete(firstUrl));
+        assertEquals("Shared content must not be wiped", content, store.getReader(secondUrl).getContentString());
+
+        wiper.beforeDelete(store, secondUrl);
+        byte[] wiped = Files.readAllBytes(secondFile.toPath());
+        assertEquals(content.length(), wiped.length);
+        for (byte b : wiped)
+        {
+            assertEquals("The last reference must be wiped", 0, b);
+        }
+        assertTrue(store.delete(secondUrl));
+        assertEquals("Unreferenced blobs must be deleted", 0, listBlobs().length);
+
+        // New content is not matched with the wiped data
+        String thirdUrl = write(content);
+        assertEquals(content, store.getReader(thirdUrl).getContentString());
+    }
+
+    /**
+     * Checks that content that was not deduplicated against anything is wiped too.
+     */
+    @Test
+    public void testWipingUniqueContent() throws Exception
+    {
+        assumeDeduplicationSupported();
+
+        String url = write("Unique content " + GUID.generate());
+        File file = store.makeFile(url);
+        assertFalse(DeduplicatingFileContentStore.isShared(file));
+
+        new FileWipingContentCleanerListener().beforeDelete(store, url);
+        for (byte b : Files.readAllBytes(file.toPath()))
+        {
+            assertEquals(0, b);
+        }
+        assertTrue(store.delete(url));
+        assertEquals(0, listBlobs().length);
+    }
+
+    /**
+     * Checks that content arriving through a random-access channel is matched with the same
+     * content written as a stream.
+     */
+    @Test
+    public void testRandomAccessContentShared() throws Exception
+    {
+        assumeDeduplicationSupported();
+
+        String content = "Random access content " + GUID.generate();
+        String streamedUrl = write(content);
+
+        ContentWriter writer = getWriter();
+        FileChannel channel = writer.getFileChannel(true);
+        channel.write(ByteBuffer.wrap(content.getBytes("UTF-8")));
+        channel.close();
+
+        assertTrue(Files.isSameFile(
+                store.makeFile(streamedUrl).toPath(),
+                store.makeFile(writer.getContentUrl()).toPath()));
+    }
+}
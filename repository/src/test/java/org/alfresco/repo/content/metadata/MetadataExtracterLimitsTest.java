@@ -221,6 +221,103 @@ public class MetadataExtracterLimitsTest
         assertEquals("value1", properties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
     }
 
+    /**
+     * Tests that a second concurrent extraction is rejected once the concurrent documents
+     * size limit is reached, while the first completes.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentDocumentsSizeLimit() throws Exception
+    {
+        MetadataExtracterLimits limits = new MetadataExtracterLimits();
+        limits.setMaxConcurrentDocumentsSizeMB(0.000001);
+        HashMap<String, MetadataExtracterLimits> mimetypeLimits =
+                new HashMap<String, MetadataExtracterLimits>(1);
+        mimetypeLimits.put(MimetypeMap.MIMETYPE_TEXT_PLAIN, limits);
+        ((MockDelayedMetadataExtracter) getExtracter()).setMimetypeLimits(mimetypeLimits);
+
+        final File file = AbstractContentTransformerTest.loadNamedQuickTestFile("quick.txt");
+
+        final Map<QName, Serializable> firstProperties = new HashMap<QName, Serializable>();
+        Thread extractThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                firstProperties.putAll(extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN));
+            }
+        });
+        extractThread.start();
+        Thread.sleep(500);
+
+        // The first document takes up all of the allowed size
+        long startTime = (new Date()).getTime();
+        Map<QName, Serializable> properties = extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        long extractionTime = (new Date()).getTime() - startTime;
+        assertNull(properties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
+        assertTrue("Metadata extraction took (" + extractionTime + "ms) but should have been rejected",
+                extractionTime < 500);
+
+        extractThread.join();
+        assertEquals("value1", firstProperties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
+
+        // Once the first has finished the size is available again
+        properties = extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        assertEquals("value1", properties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
+    }
+
+    /**
+     * Tests that content with the same URL is only extracted once when the cache is enabled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExtractedMetadataCached() throws Exception
+    {
+        extracter = new MockDelayedMetadataExtracter(1500);
+        extracter.setExtractedMetadataCacheSize(10);
+        extracter.init();
+
+        File file = AbstractContentTransformerTest.loadNamedQuickTestFile("quick.txt");
+
+        Map<QName, Serializable> properties = extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        assertEquals("value1", properties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
+
+        long startTime = (new Date()).getTime();
+        properties = extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        long extractionTime = (new Date()).getTime() - startTime;
+        assertEquals("value1", properties.get(QName.createQName("http://DummyMappingMetadataExtracter", "a1")));
+        assertTrue("Metadata extraction took (" + extractionTime + "ms) but should have been cached",
+                extractionTime < 500);
+    }
+
+    /**
+     * Tests that subclasses overriding the original extractRawThreadFinished() are still told
+     * when each extraction ends.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExtractRawThreadFinishedCalled() throws Exception
+    {
+        final int[] finished = new int[1];
+        extracter = new MockDelayedMetadataExtracter(100)
+        {
+            @Override
+            protected void extractRawThreadFinished()
+            {
+                super.extractRawThreadFinished();
+                finished[0]++;
+            }
+        };
+        extracter.init();
+
+        File file = AbstractContentTransformerTest.loadNamedQuickTestFile("quick.txt");
+        extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        extractFromFile(file, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        assertEquals(2, finished[0]);
+    }
+
     /**
      * Mock metadata extracter that simply delays by the time specified in
      * its constructor and returns default properties regardless of the content
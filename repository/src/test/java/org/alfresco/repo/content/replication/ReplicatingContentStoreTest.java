@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.repo.content.AbstractWritableContentStoreTest;
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.test_category.OwnJVMTestsCategory;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Tests read and write functionality for the replicating store.
+ *
+ * @see org.alfresco.repo.content.replication.ReplicatingContentStore
+ */
+@Category(OwnJVMTestsCategory.class)
+public class ReplicatingContentStoreTest extends AbstractWritableContentStoreTest
+{
+    private static final String SOME_CONTENT = "The No. 1 Ladies' Detective Agency";
+
+    private ReplicatingContentStore replicatingStore;
+    private ContentStore primaryStore;
+    private List<ContentStore> secondaryStores;
+    private final AtomicInteger failedWrites = new AtomicInteger();
+
+    @Before
+    public void before() throws Exception
+    {
+        File tempDir = TempFileProvider.getTempDir();
+        // create a primary file store
+        String storeDir = tempDir.getAbsolutePath() + File.separatorChar + GUID.generate();
+        primaryStore = new FileContentStore(ctx, storeDir);
+        // create some secondary file stores
+        secondaryStores = new ArrayList<ContentStore>(3);
+        for (int i = 0; i < 2; i++)
+        {
+            storeDir = tempDir.getAbsolutePath() + File.separatorChar + GUID.generate();
+            secondaryStores.add(new FileContentStore(ctx, storeDir));
+        }
+        // and one that fails to give writers while told to
+        storeDir = tempDir.getAbsolutePath() + File.separatorChar + GUID.generate();
+        secondaryStores.add(new FileContentStore(ctx, storeDir)
+        {
+            @Override
+            public ContentWriter getWriter(ContentContext context)
+            {
+                if (failedWrites.get() > 0)
+                {
+                    failedWrites.decrementAndGet();
+                    throw new ContentIOException("Store unavailable");
+                }
+                return super.getWriter(context);
+            }
+        });
+        // Create the replicating store
+        replicatingStore = new ReplicatingContentStore();
+        replicatingStore.setPrimaryStore(primaryStore);
+        replicatingStore.setSecondaryStores(secondaryStores);
+        replicatingStore.setWriteAcknowledgements(secondaryStores.size() + 1);
+        replicatingStore.setBufferCount(2);
+    }
+
+    @After
+    public void after()
+    {
+        replicatingStore.shutdown();
+    }
+
+    @Override
+    public ContentStore getStore()
+    {
+        return replicatingStore;
+    }
+
+    @Test
+    public void testContentWrittenToAllStores() throws Exception
+    {
+        ContentWriter writer = getWriter();
+        writer.putContent(SOME_CONTENT);
+        String contentUrl = writer.getContentUrl();
+
+        assertEquals(SOME_CONTENT, primaryStore.getReader(contentUrl).getContentString());
+        for (ContentStore store : secondaryStores)
+        {
+            assertEquals(SOME_CONTENT, store.getReader(contentUrl).getContentString());
+        }
+
+        // Deletes go to all stores too
+        assertTrue(replicatingStore.delete(contentUrl));
+        for (ContentStore store : secondaryStores)
+        {
+            assertFalse(store.exists(contentUrl));
+        }
+    }
+
+    @Test
+    public void testFailedStoreCaughtUp() throws Exception
+    {
+        replicatingStore.setWriteAcknowledgements(1);
+        failedWrites.set(1);
+
+        ContentWriter writer = getWriter();
+        writer.putContent(SOME_CONTENT);
+        String contentUrl = writer.getContentUrl();
+        assertEquals(SOME_CONTENT, primaryStore.getReader(contentUrl).getContentString());
+
+        // The failed store gets the content in the background
+        ContentStore failedStore = secondaryStores.get(secondaryStores.size() - 1);
+        for (int i = 0; i < 100 && failedStore.getReader(contentUrl).getSize() < SOME_CONTENT.length(); i++)
+        {
+            Thread.sleep(100L);
+        }
+        assertEquals(SOME_CONTENT, failedStore.getReader(contentUrl).getContentString());
+    }
+
+    @Test
+    public void testTooFewAcknowledgements() throws Exception
+    {
+        failedWrites.set(2);
+
+        ContentWriter writer = getWriter();
+        try
+        {
+            writer.putContent(SOME_CONTENT);
+            fail("Write must fail when too few stores take the content");
+        }
+        catch (ContentIOException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -25,6 +25,13 @@
  */
 package org.alfresco.repo.copy;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
@@ -52,6 +59,8 @@ import org.alfresco.repo.dictionary.M2ChildAssociation;
 import org.alfresco.repo.dictionary.M2Model;
 import org.alfresco.repo.dictionary.M2Property;
 import org.alfresco.repo.dictionary.M2Type;
+import org.alfresco.repo.policy.JavaBehaviour;
+import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.node.integrity.IntegrityChecker;
 import org.alfresco.repo.rule.RuleModel;
 import org.alfresco.repo.security.authentication.AuthenticationComponent;
@@ -92,6 +101,7 @@ import org.alfresco.util.ApplicationContextHelper;
 import org.alfresco.util.Pair;
 import org.alfresco.util.PropertyMap;
 import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.extensions.surf.util.I18NUtil;
 
@@ -865,6 +875,94 @@ public class CopyServiceImplTest extends TestCase
         //         NodeStoreInspector.dumpNodeStore(nodeService, storeRef));
     }
     
+    /**
+     * A copy behaviour that only delegates to the test's behaviour while the test runs, as behaviours
+     * cannot be unbound from the shared policy component
+     */
+    public static class DelegatingCopyBehaviour implements CopyServicePolicies.OnCopyNodePolicy
+    {
+        private volatile CopyServicePolicies.OnCopyNodePolicy delegate;
+        
+        public CopyBehaviourCallback getCopyCallback(QName classRef, CopyDetails copyDetails)
+        {
+            CopyServicePolicies.OnCopyNodePolicy policy = delegate;
+            return (policy == null ? DefaultCopyBehaviourCallback.getInstance() : policy.getCopyCallback(classRef, copyDetails));
+        }
+    }
+    
+    private static DelegatingCopyBehaviour delegatingCopyBehaviour;
+    
+    /**
+     * Check that the copy callback of a class is fetched for each node of a hierarchy copy, with that node's details
+     */
+    public void testCopyCallbackFetchedPerNode()
+    {
+        synchronized (CopyServiceImplTest.class)
+        {
+            if (delegatingCopyBehaviour == null)
+            {
+                delegatingCopyBehaviour = new DelegatingCopyBehaviour();
+                PolicyComponent policyComponent = (PolicyComponent) ctx.getBean("policyComponent");
+                policyComponent.bindClassBehaviour(
+                        CopyServicePolicies.OnCopyNodePolicy.QNAME,
+                        TEST_ASPECT_QNAME,
+                        new JavaBehaviour(delegatingCopyBehaviour, "getCopyCallback"));
+            }
+        }
+        CopyServicePolicies.OnCopyNodePolicy policy = mock(CopyServicePolicies.OnCopyNodePolicy.class);
+        when(policy.getCopyCallback(eq(TEST_ASPECT_QNAME), any(CopyDetails.class)))
+                .thenReturn(DefaultCopyBehaviourCallback.getInstance());
+        delegatingCopyBehaviour.delegate = policy;
+        try
+        {
+            // Both the source and its child have the aspect
+            Map<QName, Serializable> aspectProperties = new HashMap<QName, Serializable>();
+            aspectProperties.put(PROP3_QNAME_MANDATORY, TEST_VALUE_1);
+            nodeService.addAspect(childNodeRef, TEST_ASPECT_QNAME, aspectProperties);
+            
+            NodeRef copy = copyService.copy(
+                    sourceNodeRef,
+                    rootNodeRef,
+                    ContentModel.ASSOC_CHILDREN,
+                    QName.createQName("{test}copyCallbackCopy"),
+                    true);
+            
+            ArgumentCaptor<CopyDetails> copyDetails = ArgumentCaptor.forClass(CopyDetails.class);
+            verify(policy, times(2)).getCopyCallback(eq(TEST_ASPECT_QNAME), copyDetails.capture());
+            assertEquals(sourceNodeRef, copyDetails.getAllValues().get(0).getSourceNodeRef());
+            assertEquals(childNodeRef, copyDetails.getAllValues().get(1).getSourceNodeRef());
+            assertTrue(nodeService.hasAspect(copy, TEST_ASPECT_QNAME));
+            List<ChildAssociationRef> children = nodeService.getChildAssocs(
+                    copy, TEST_CHILD_ASSOC_TYPE_QNAME, RegexQNamePattern.MATCH_ALL);
+            assertEquals(1, children.size());
+            assertTrue(nodeService.hasAspect(children.get(0).getChildRef(), TEST_ASPECT_QNAME));
+        }
+        finally
+        {
+            delegatingCopyBehaviour.delegate = null;
+        }
+    }
+    
+    /**
+     * Check that copying onto an existing node, which does not copy <b>sys:temporary</b> onto that node,
+     * still copies it onto the new copies of the children
+     */
+    public void testCopyToExistingNodeKeepsTemporaryAspectOfNewChildren()
+    {
+        nodeService.addAspect(sourceNodeRef, ContentModel.ASPECT_TEMPORARY, null);
+        nodeService.addAspect(childNodeRef, ContentModel.ASPECT_TEMPORARY, null);
+        
+        copyService.copy(sourceNodeRef, destinationNodeRef);
+        
+        assertFalse(nodeService.hasAspect(destinationNodeRef, ContentModel.ASPECT_TEMPORARY));
+        List<ChildAssociationRef> children = nodeService.getChildAssocs(
+                destinationNodeRef, TEST_CHILD_ASSOC_TYPE_QNAME, TEST_CHILD_ASSOC_QNAME);
+        assertEquals(1, children.size());
+        NodeRef childCopy = children.get(0).getChildRef();
+        assertFalse(childNodeRef.equals(childCopy));
+        assertTrue(nodeService.hasAspect(childCopy, ContentModel.ASPECT_TEMPORARY));
+    }
+    
     /**
      * Tests copying a folder that contains both a node and a copy of that node.
      */
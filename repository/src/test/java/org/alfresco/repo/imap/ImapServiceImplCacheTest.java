@@ -32,7 +32,11 @@ import java.util.List;
 
 import junit.framework.TestCase;
 
+import javax.mail.Flags;
+
 import org.alfresco.model.ContentModel;
+import org.alfresco.repo.imap.AlfrescoImapConst.ImapViewMode;
+import org.alfresco.repo.imap.ImapService.FolderStatus;
 import org.alfresco.repo.management.subsystems.ChildApplicationContextFactory;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.model.FileFolderService;
@@ -238,6 +242,35 @@ public class ImapServiceImplCacheTest extends TestCase
         
     }
     
+    public void testFolderStatusUpdatedFromChanges() throws Exception
+    {
+        FileInfo localRootFolder = fileFolderService.create(testImapFolderNodeRef, "folderStatusChanges", ContentModel.TYPE_FOLDER);
+        createTestContent(localRootFolder, 3);
+        NodeRef folderNodeRef = localRootFolder.getNodeRef();
+
+        // Load the folder status once, so that later statuses can be built from the changes since
+        FolderStatus status = imapService.getFolderStatus(USER_NAME, folderNodeRef, ImapViewMode.MIXED);
+        assertEquals(3, status.messageCount);
+        assertEquals(3, status.unseenCount);
+
+        // Add a message, mark one as seen and delete another
+        FileInfo added = fileFolderService.create(folderNodeRef, "content_added", ContentModel.TYPE_CONTENT);
+        FileInfo first = status.search.firstEntry().getValue();
+        FileInfo last = status.search.lastEntry().getValue();
+        imapService.setFlag(first, Flags.Flag.SEEN, true);
+        fileFolderService.delete(last.getNodeRef());
+
+        FolderStatus updated = imapService.getFolderStatus(USER_NAME, folderNodeRef, ImapViewMode.MIXED);
+        assertFalse(status.changeToken.equals(updated.changeToken));
+        assertEquals(3, updated.messageCount);
+        assertEquals(2, updated.unseenCount);
+        assertEquals(2, updated.firstUnseen);
+        assertTrue(updated.search.containsKey(nodeService.getProperty(added.getNodeRef(), ContentModel.PROP_NODE_DBID)));
+        assertFalse(updated.search.containsKey(nodeService.getProperty(last.getNodeRef(), ContentModel.PROP_NODE_DBID)));
+
+        fileFolderService.delete(folderNodeRef);
+    }
+
     private List<FileInfo> createTestContent(FileInfo parent, int count)
     {
         List<FileInfo> result = new ArrayList<FileInfo>(count);
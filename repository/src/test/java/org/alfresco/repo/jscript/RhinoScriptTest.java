@@ -267,6 +267,43 @@ public class RhinoScriptTest extends TestCase
             });
     }
     
+    public void testNodeScriptRecompiledOnContentChange()
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(
+            new RetryingTransactionCallback<Object>()
+            {
+                public Object execute() throws Exception
+                {
+                    StoreRef store = nodeService.createStore(StoreRef.PROTOCOL_WORKSPACE, "rhino_" + System.currentTimeMillis());
+                    NodeRef root = nodeService.getRootNode(store);
+                    
+                    ChildAssociationRef childRef = nodeService.createNode(
+                            root,
+                            BaseNodeServiceTest.ASSOC_TYPE_QNAME_TEST_CHILDREN,
+                            QName.createQName(BaseNodeServiceTest.NAMESPACE, "script_content"),
+                            BaseNodeServiceTest.TYPE_QNAME_TEST_CONTENT,
+                            null);
+                    NodeRef contentNodeRef = childRef.getChildRef();
+                    ContentWriter writer = contentService.getWriter(contentNodeRef, BaseNodeServiceTest.PROP_QNAME_TEST_CONTENT, true);
+                    writer.setMimetype("application/x-javascript");
+                    writer.putContent("var result = 'first'; result;");
+                    
+                    // repeated executions of the same content are served from the compiled script cache
+                    Map<String, Object> model = new HashMap<String, Object>();
+                    assertEquals("first", scriptService.executeScript(contentNodeRef, BaseNodeServiceTest.PROP_QNAME_TEST_CONTENT, model));
+                    assertEquals("first", scriptService.executeScript(contentNodeRef, BaseNodeServiceTest.PROP_QNAME_TEST_CONTENT, model));
+                    
+                    // changing the content must not execute the stale compiled script
+                    writer = contentService.getWriter(contentNodeRef, BaseNodeServiceTest.PROP_QNAME_TEST_CONTENT, true);
+                    writer.setMimetype("application/x-javascript");
+                    writer.putContent("var result = 'second'; result;");
+                    assertEquals("second", scriptService.executeScript(contentNodeRef, BaseNodeServiceTest.PROP_QNAME_TEST_CONTENT, model));
+                    
+                    return null;
+                }
+            });
+    }
+    
     public void testScriptActions()
     {
         transactionService.getRetryingTransactionHelper().doInTransaction(
@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.node.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.batch.BatchProcessWorkProvider;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.QName;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks how the bulk purge hands out the archived nodes that the current user may delete.
+ *
+ * @since 7.0
+ */
+public class NodeArchiveServiceImplTest
+{
+    private static final StoreRef WORK_STORE = new StoreRef(StoreRef.PROTOCOL_WORKSPACE, "work");
+    private static final StoreRef ARCHIVE_STORE = new StoreRef(StoreRef.PROTOCOL_ARCHIVE, "archive");
+    private static final NodeRef ARCHIVE_ROOT = new NodeRef(ARCHIVE_STORE, "archive-root");
+    private static final String LOCK_TOKEN = "lock";
+    private static final String USER = "bob";
+    private static final int CHUNK_SIZE = 10;
+
+    private NodeService nodeService;
+    private PermissionService permissionService;
+    private JobLockService jobLockService;
+    private NodeArchiveServiceImpl nodeArchiveService;
+
+    private List<ChildAssociationRef> archivedAssocs;
+    private Set<NodeRef> deletable;
+
+    @Before
+    public void setUp()
+    {
+        archivedAssocs = new ArrayList<ChildAssociationRef>();
+        deletable = new HashSet<NodeRef>();
+
+        nodeService = mock(NodeService.class);
+        when(nodeService.getStoreArchiveNode(WORK_STORE)).thenReturn(ARCHIVE_ROOT);
+        when(nodeService.getChildAssocs(ARCHIVE_ROOT, ContentModel.ASSOC_CHILDREN, NodeArchiveService.QNAME_ARCHIVED_ITEM)).thenReturn(archivedAssocs);
+
+        permissionService = mock(PermissionService.class);
+        when(permissionService.hasPermission(any(NodeRef.class), eq(PermissionService.DELETE))).thenAnswer(invocation ->
+                deletable.contains(invocation.getArgument(0)) ? AccessStatus.ALLOWED : AccessStatus.DENIED);
+
+        jobLockService = mock(JobLockService.class);
+
+        nodeArchiveService = new NodeArchiveServiceImpl();
+        nodeArchiveService.setNodeService(nodeService);
+        nodeArchiveService.setPermissionService(permissionService);
+        nodeArchiveService.setJobLockService(jobLockService);
+        nodeArchiveService.setPurgeWorkerThreads(2);
+        nodeArchiveService.setPurgeBatchSize(CHUNK_SIZE / 2);
+
+        AuthenticationUtil.setFullyAuthenticatedUser(USER);
+    }
+
+    @After
+    public void tearDown()
+    {
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Test
+    public void testSkipsChunksTheUserCannotDelete()
+    {
+        // More than a full chunk of nodes that the user cannot delete comes first
+        addArchivedNodes(CHUNK_SIZE * 2 + 5, false);
+        List<NodeRef> expected = addArchivedNodes(CHUNK_SIZE + 2, true);
+        addArchivedNodes(3, false);
+
+        BatchProcessWorkProvider<NodeRef> workProvider = nodeArchiveService.getArchivedNodesWorkProvider(WORK_STORE, LOCK_TOKEN);
+        assertEquals(archivedAssocs.size(), workProvider.getTotalEstimatedWorkSize());
+
+        List<Collection<NodeRef>> chunks = getAllWork(workProvider);
+        assertEquals("Only the last chunk may be empty", 3, chunks.size());
+        assertEquals(CHUNK_SIZE, chunks.get(0).size());
+        assertEquals(2, chunks.get(1).size());
+        assertTrue(chunks.get(2).isEmpty());
+
+        List<NodeRef> purged = new ArrayList<NodeRef>();
+        for (Collection<NodeRef> chunk : chunks)
+        {
+            purged.addAll(chunk);
+        }
+        assertEquals(expected, purged);
+
+        // Every archived node is checked once
+        for (ChildAssociationRef archivedAssoc : archivedAssocs)
+        {
+            verify(permissionService, times(1)).hasPermission(archivedAssoc.getChildRef(), PermissionService.DELETE);
+        }
+        verify(jobLockService, times(3)).refreshLock(eq(LOCK_TOKEN), any(QName.class), anyLong());
+    }
+
+    @Test
+    public void testNothingTheUserCanDelete()
+    {
+        addArchivedNodes(CHUNK_SIZE * 3, false);
+
+        BatchProcessWorkProvider<NodeRef> workProvider = nodeArchiveService.getArchivedNodesWorkProvider(WORK_STORE, LOCK_TOKEN);
+        assertTrue(workProvider.getNextWork().isEmpty());
+        verify(permissionService, times(CHUNK_SIZE * 3)).hasPermission(any(NodeRef.class), anyString());
+        assertTrue(workProvider.getNextWork().isEmpty());
+    }
+
+    @Test
+    public void testStopsWhenTheLockIsLost()
+    {
+        addArchivedNodes(CHUNK_SIZE * 2, true);
+
+        BatchProcessWorkProvider<NodeRef> workProvider = nodeArchiveService.getArchivedNodesWorkProvider(WORK_STORE, LOCK_TOKEN);
+        assertEquals(CHUNK_SIZE, workProvider.getNextWork().size());
+
+        doThrow(new LockAcquisitionException(QName.createQName("test", "lock"), LOCK_TOKEN))
+            .when(jobLockService).refreshLock(eq(LOCK_TOKEN), any(QName.class), anyLong());
+        assertTrue(workProvider.getNextWork().isEmpty());
+    }
+
+    private List<NodeRef> addArchivedNodes(int count, boolean canDelete)
+    {
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(count);
+        for (int i = 0; i < count; i++)
+        {
+            NodeRef nodeRef = new NodeRef(ARCHIVE_STORE, "archived-" + archivedAssocs.size());
+            archivedAssocs.add(new ChildAssociationRef(ContentModel.ASSOC_CHILDREN, ARCHIVE_ROOT, NodeArchiveService.QNAME_ARCHIVED_ITEM, nodeRef));
+            if (canDelete)
+            {
+                deletable.add(nodeRef);
+            }
+            nodeRefs.add(nodeRef);
+        }
+        return nodeRefs;
+    }
+
+    /**
+     * Take work the way the batch processor does: until there is none
+     */
+    private List<Collection<NodeRef>> getAllWork(BatchProcessWorkProvider<NodeRef> workProvider)
+    {
+        List<Collection<NodeRef>> chunks = new ArrayList<Collection<NodeRef>>();
+        Collection<NodeRef> chunk;
+        do
+        {
+            chunk = workProvider.getNextWork();
+            chunks.add(chunk);
+        }
+        while (!chunk.isEmpty());
+        return chunks;
+    }
+}
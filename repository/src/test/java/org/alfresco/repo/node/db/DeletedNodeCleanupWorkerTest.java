@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.node.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.transaction.TransactionService;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the deleted node cleanup purges all of the old deleted nodes, and only them, across commit time
+ * windows purged by several threads.
+ *
+ * @since 7.0
+ */
+public class DeletedNodeCleanupWorkerTest
+{
+    private static final long HOUR = 3600L * 1000L;
+    private static final long DAY = 24L * HOUR;
+
+    /** deleted node id -> commit time of its transaction */
+    private Map<Long, Long> deletedNodes;
+    /** the windows purged, as [from, to) commit times */
+    private List<long[]> purgedWindows;
+    private Set<String> purgeThreadNames;
+    private AtomicBoolean failNextPurge;
+
+    private DeletedNodeCleanupWorker worker;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        deletedNodes = new ConcurrentHashMap<Long, Long>();
+        purgedWindows = Collections.synchronizedList(new ArrayList<long[]>());
+        purgeThreadNames = Collections.synchronizedSet(new HashSet<String>());
+        failNextPurge = new AtomicBoolean();
+
+        NodeDAO nodeDAO = mock(NodeDAO.class);
+        when(nodeDAO.getMinTxnCommitTimeForDeletedNodes()).thenAnswer(invocation ->
+        {
+            long min = 0L;
+            for (Long commitTime : deletedNodes.values())
+            {
+                min = (min == 0L) ? commitTime : Math.min(min, commitTime);
+            }
+            return min;
+        });
+        when(nodeDAO.purgeNodes(anyLong(), anyLong())).thenAnswer(invocation ->
+        {
+            long from = invocation.getArgument(0);
+            long to = invocation.getArgument(1);
+            if (failNextPurge.compareAndSet(true, false))
+            {
+                throw new RuntimeException("Purge failed");
+            }
+            purgedWindows.add(new long[] {from, to});
+            purgeThreadNames.add(Thread.currentThread().getName());
+            int count = 0;
+            for (Map.Entry<Long, Long> deletedNode : deletedNodes.entrySet())
+            {
+                if (deletedNode.getValue() >= from && deletedNode.getValue() < to && deletedNodes.remove(deletedNode.getKey()) != null)
+                {
+                    count++;
+                }
+            }
+            return count;
+        });
+        // No unused transactions to purge
+        when(nodeDAO.getMinUnusedTxnCommitTime()).thenAnswer(invocation -> System.currentTimeMillis());
+
+        RetryingTransactionHelper txnHelper = mock(RetryingTransactionHelper.class);
+        when(txnHelper.doInTransaction(any(RetryingTransactionCallback.class), anyBoolean(), anyBoolean())).thenAnswer(invocation ->
+                ((RetryingTransactionCallback<?>) invocation.getArgument(0)).execute());
+        TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(txnHelper);
+
+        worker = new DeletedNodeCleanupWorker();
+        worker.setNodeDAO(nodeDAO);
+        worker.setTransactionService(transactionService);
+        worker.setJobLockService(mock(JobLockService.class));
+        worker.setMinPurgeAgeDays(1);
+        worker.setPurgeSize((int) HOUR);
+    }
+
+    @Test
+    public void testPurgeAcrossWindowsWithSeveralThreads() throws Throwable
+    {
+        worker.setPurgeThreads(3);
+        Map<Long, Long> recentNodes = addDeletedNodes();
+
+        worker.doCleanInternal();
+
+        assertEquals("Only the deleted nodes that are old enough are purged", recentNodes, new HashMap<Long, Long>(deletedNodes));
+        assertTrue("Purged by several threads: " + purgeThreadNames, purgeThreadNames.size() > 1);
+        for (String threadName : purgeThreadNames)
+        {
+            assertTrue(threadName, threadName.startsWith("DeletedNodeCleanup"));
+        }
+        assertWindows();
+    }
+
+    @Test
+    public void testPurgeAfterFailedWindow() throws Throwable
+    {
+        worker.setPurgeThreads(3);
+        Map<Long, Long> recentNodes = addDeletedNodes();
+        failNextPurge.set(true);
+
+        worker.doCleanInternal();
+
+        assertEquals("The failed window is purged again", recentNodes, new HashMap<Long, Long>(deletedNodes));
+    }
+
+    @Test
+    public void testPurgeWithOneThread() throws Throwable
+    {
+        worker.setPurgeThreads(1);
+        Map<Long, Long> recentNodes = addDeletedNodes();
+
+        worker.doCleanInternal();
+
+        assertEquals(recentNodes, new HashMap<Long, Long>(deletedNodes));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), purgeThreadNames);
+        assertWindows();
+    }
+
+    /**
+     * Add old deleted nodes over several windows, with a gap of several days, and some recent deleted nodes
+     * 
+     * @return              the recent deleted nodes
+     */
+    private Map<Long, Long> addDeletedNodes()
+    {
+        long now = System.currentTimeMillis();
+        long nodeId = 1L;
+        for (int i = 0; i < 40; i++)
+        {
+            deletedNodes.put(nodeId++, now - 10L * DAY + i * 20L * 60L * 1000L);
+        }
+        for (int i = 0; i < 10; i++)
+        {
+            deletedNodes.put(nodeId++, now - 3L * DAY + i * 30L * 60L * 1000L);
+        }
+        Map<Long, Long> recentNodes = new HashMap<Long, Long>();
+        for (int i = 0; i < 5; i++)
+        {
+            recentNodes.put(nodeId++, now - HOUR + i * 1000L);
+        }
+        deletedNodes.putAll(recentNodes);
+        return recentNodes;
+    }
+
+    /**
+     * Check that no window is bigger than the purge size, reaches past the minimum age or overlaps another
+     */
+    private void assertWindows()
+    {
+        List<long[]> windows = new ArrayList<long[]>(purgedWindows);
+        windows.sort((w1, w2) -> Long.compare(w1[0], w2[0]));
+        for (int i = 0; i < windows.size(); i++)
+        {
+            long[] window = windows.get(i);
+            assertTrue(window[0] < window[1]);
+            assertTrue(window[1] - window[0] <= HOUR);
+            assertTrue(window[1] <= System.currentTimeMillis() - DAY);
+            if (i > 0)
+            {
+                assertTrue("Windows do not overlap", windows.get(i - 1)[1] <= window[0]);
+            }
+        }
+    }
+}
@@ -40,14 +40,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.model.ContentModel;
 import org.alfresco.model.RenditionModel;
 import org.alfresco.query.CannedQueryFactory;
 import org.alfresco.query.CannedQueryResults;
+import org.alfresco.query.ContinuationToken;
 import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
+import org.alfresco.repo.cache.MemoryCache;
 import org.alfresco.repo.dictionary.DictionaryBootstrap;
 import org.alfresco.repo.dictionary.DictionaryDAO;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
@@ -151,6 +154,10 @@ public class GetChildrenCannedQueryTest extends TestCase
     @SuppressWarnings({ "rawtypes" })
     private NamedObjectRegistry<CannedQueryFactory> cannedQueryRegistry;
     private static final String CQ_FACTORY_NAME = "fileFolderGetChildrenCannedQueryFactory";
+    private static final String CQ_FACTORY_NAME_CACHED = "fileFolderGetChildrenCannedQueryFactoryCached";
+    
+    private MemoryCache<Serializable, Object> resultCache;
+    private final AtomicInteger resultCachePuts = new AtomicInteger();
     
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
@@ -195,6 +202,37 @@ public class GetChildrenCannedQueryTest extends TestCase
         
         getChildrenCannedQueryFactory.afterPropertiesSet();
         
+        // same again - with the result cache
+        resultCache = new MemoryCache<Serializable, Object>()
+        {
+            @Override
+            public void put(Serializable key, Object value)
+            {
+                resultCachePuts.incrementAndGet();
+                super.put(key, value);
+            }
+        };
+        
+        GetChildrenCannedQueryFactory cachedGetChildrenCannedQueryFactory = new GetChildrenCannedQueryFactory();
+        
+        cachedGetChildrenCannedQueryFactory.setBeanName(CQ_FACTORY_NAME_CACHED);
+        cachedGetChildrenCannedQueryFactory.setRegistry(cannedQueryRegistry);
+        
+        cachedGetChildrenCannedQueryFactory.setCannedQueryDAO((CannedQueryDAO)ctx.getBean("cannedQueryDAO"));
+        cachedGetChildrenCannedQueryFactory.setContentDataDAO((ContentDataDAO)ctx.getBean("contentDataDAO"));
+        cachedGetChildrenCannedQueryFactory.setDictionaryService((DictionaryService)ctx.getBean("dictionaryService"));
+        cachedGetChildrenCannedQueryFactory.setTenantService((TenantService)ctx.getBean("tenantService"));
+        cachedGetChildrenCannedQueryFactory.setLocaleDAO((LocaleDAO)ctx.getBean("localeDAO"));
+        cachedGetChildrenCannedQueryFactory.setNodeDAO((NodeDAO)ctx.getBean("nodeDAO"));
+        cachedGetChildrenCannedQueryFactory.setNodeService(nodeService);
+        cachedGetChildrenCannedQueryFactory.setQnameDAO((QNameDAO)ctx.getBean("qnameDAO"));
+        cachedGetChildrenCannedQueryFactory.setHiddenAspect((HiddenAspect)ctx.getBean("hiddenAspect"));
+        cachedGetChildrenCannedQueryFactory.setMethodSecurity((MethodSecurityBean<NodeRef>)ctx.getBean("FileFolderService_security_list"));
+        cachedGetChildrenCannedQueryFactory.setResultCache(resultCache);
+        cachedGetChildrenCannedQueryFactory.setResultCacheEnabled(true);
+        
+        cachedGetChildrenCannedQueryFactory.afterPropertiesSet();
+        
         fiveStarRatingScheme = ratingService.getRatingScheme("fiveStarRatingScheme");
         assertNotNull(fiveStarRatingScheme);
         likesRatingScheme = ratingService.getRatingScheme("likesRatingScheme");
@@ -1513,6 +1551,370 @@ public class GetChildrenCannedQueryTest extends TestCase
         }
     }
 
+    public void testResultCache() throws Exception
+    {
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        try
+        {
+            NodeRef parentFolder = createFolder(repositoryHelper.getCompanyHome(), "testResultCache-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            
+            NodeRef nodeRef1 = createContent(parentFolder, "cache-b", ContentModel.TYPE_CONTENT);
+            NodeRef nodeRef2 = createContent(parentFolder, "cache-c", ContentModel.TYPE_CONTENT);
+            
+            List<Pair<QName, Boolean>> sortPairs = new ArrayList<Pair<QName, Boolean>>(1);
+            sortPairs.add(new Pair<QName, Boolean>(ContentModel.PROP_NAME, true));
+            
+            assertEquals(Arrays.asList(nodeRef1, nodeRef2), listCached(parentFolder, sortPairs));
+            assertEquals(1, resultCache.getKeys().size());
+            int puts = resultCachePuts.get();
+            
+            // served from the cache
+            assertEquals(Arrays.asList(nodeRef1, nodeRef2), listCached(parentFolder, sortPairs));
+            assertEquals("Children were not served from the cache", puts, resultCachePuts.get());
+            
+            // new child
+            NodeRef nodeRef3 = createContent(parentFolder, "cache-a", ContentModel.TYPE_CONTENT);
+            assertEquals(Arrays.asList(nodeRef3, nodeRef1, nodeRef2), listCached(parentFolder, sortPairs));
+            
+            // changed sort property of a child
+            nodeService.setProperty(nodeRef3, ContentModel.PROP_NAME, "cache-d");
+            assertEquals(Arrays.asList(nodeRef1, nodeRef2, nodeRef3), listCached(parentFolder, sortPairs));
+            
+            // deleted child
+            nodeService.deleteNode(nodeRef1);
+            assertEquals(Arrays.asList(nodeRef2, nodeRef3), listCached(parentFolder, sortPairs));
+            
+            // different sort
+            sortPairs.set(0, new Pair<QName, Boolean>(ContentModel.PROP_NAME, false));
+            assertEquals(Arrays.asList(nodeRef3, nodeRef2), listCached(parentFolder, sortPairs));
+            assertEquals(2, resultCache.getKeys().size());
+        }
+        finally
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+    }
+    
+    /**
+     * A transaction that lists children, and then changes one of them again, must not leave a listing in the cache
+     * that still matches the version of the children once it has committed
+     */
+    public void testResultCacheChangeTwiceInTransaction() throws Exception
+    {
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        try
+        {
+            final NodeRef parentFolder = createFolder(repositoryHelper.getCompanyHome(), "testResultCacheTxn-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            
+            final NodeRef nodeRef1 = createContent(parentFolder, "cache-a", ContentModel.TYPE_CONTENT);
+            final NodeRef nodeRef2 = createContent(parentFolder, "cache-b", ContentModel.TYPE_CONTENT);
+            
+            final List<Pair<QName, Boolean>> sortPairs = new ArrayList<Pair<QName, Boolean>>(1);
+            sortPairs.add(new Pair<QName, Boolean>(ContentModel.PROP_NAME, true));
+            
+            assertEquals(Arrays.asList(nodeRef1, nodeRef2), listCached(parentFolder, sortPairs));
+            
+            final int puts = resultCachePuts.get();
+            transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+            {
+                @Override
+                public Void execute() throws Throwable
+                {
+                    nodeService.setProperty(nodeRef1, ContentModel.PROP_NAME, "cache-c");
+                    assertEquals(Arrays.asList(nodeRef2, nodeRef1), getCachedQuery(parentFolder, sortPairs).execute().getPage());
+                    // change the same child again
+                    nodeService.setProperty(nodeRef1, ContentModel.PROP_NAME, "cache-a");
+                    assertEquals(Arrays.asList(nodeRef1, nodeRef2), getCachedQuery(parentFolder, sortPairs).execute().getPage());
+                    return null;
+                }
+            }, false, true);
+            assertEquals("A read-write transaction filled the cache", puts, resultCachePuts.get());
+            
+            assertEquals(Arrays.asList(nodeRef1, nodeRef2), listCached(parentFolder, sortPairs));
+            
+            // changed twice within a transaction that did not list the children
+            transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+            {
+                @Override
+                public Void execute() throws Throwable
+                {
+                    nodeService.setProperty(nodeRef1, ContentModel.PROP_NAME, "cache-d");
+                    nodeService.setProperty(nodeRef1, ContentModel.PROP_NAME, "cache-e");
+                    return null;
+                }
+            }, false, true);
+            assertEquals(Arrays.asList(nodeRef2, nodeRef1), listCached(parentFolder, sortPairs));
+        }
+        finally
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+    }
+    
+    /**
+     * Paging with continuation tokens must return the same pages as paging with skip counts, including where
+     * children share a sort value (ties are broken by node id) or have no sort value at all.
+     */
+    public void testContinuationTokenPaging() throws Exception
+    {
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        try
+        {
+            NodeRef parentFolder = createFolder(repositoryHelper.getCompanyHome(), "testContinuationToken-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            
+            String[] titles = new String[] {"b", "a", "b", null, "a", "b", null, "c", "a"};
+            for (int i = 0; i < titles.length; i++)
+            {
+                NodeRef nodeRef = createContent(parentFolder, "token-"+i, ContentModel.TYPE_CONTENT);
+                if (titles[i] == null)
+                {
+                    nodeService.removeProperty(nodeRef, ContentModel.PROP_TITLE);
+                }
+                else
+                {
+                    nodeService.setProperty(nodeRef, ContentModel.PROP_TITLE, titles[i]);
+                }
+            }
+            
+            for (boolean sortAscending : new boolean[] {true, false})
+            {
+                List<Pair<QName, Boolean>> sortPairs = new ArrayList<Pair<QName, Boolean>>(1);
+                sortPairs.add(new Pair<QName, Boolean>(ContentModel.PROP_TITLE, sortAscending));
+                
+                List<NodeRef> expected = list(parentFolder, 0, 100, 0, null, null, sortPairs).getPage();
+                assertEquals(titles.length, expected.size());
+                
+                // ties are broken by node id
+                for (int i = 1; i < expected.size(); i++)
+                {
+                    Serializable prevTitle = nodeService.getProperty(expected.get(i-1), ContentModel.PROP_TITLE);
+                    Serializable title = nodeService.getProperty(expected.get(i), ContentModel.PROP_TITLE);
+                    if (prevTitle == null ? title == null : prevTitle.equals(title))
+                    {
+                        assertTrue("Tied children are not in node id order",
+                                   getNodeId(expected.get(i-1)) < getNodeId(expected.get(i)));
+                    }
+                }
+                
+                for (int pageSize = 1; pageSize <= 3; pageSize++)
+                {
+                    List<NodeRef> tokenPaged = new ArrayList<NodeRef>(titles.length);
+                    String continuationToken = null;
+                    int skipCount = 0;
+                    boolean hasMore = true;
+                    while (hasMore)
+                    {
+                        PagingResults<NodeRef> skipPage = list(parentFolder, skipCount, pageSize, 0, null, null, sortPairs);
+                        CannedQueryResults<NodeRef> tokenPage = listFrom(parentFolder, continuationToken, pageSize, sortPairs);
+                        
+                        assertEquals(skipPage.getPage(), tokenPage.getPage());
+                        assertEquals(skipPage.hasMoreItems(), tokenPage.hasMoreItems());
+                        
+                        tokenPaged.addAll(tokenPage.getPage());
+                        continuationToken = tokenPage.getContinuationToken();
+                        hasMore = tokenPage.hasMoreItems();
+                        assertEquals(hasMore, continuationToken != null);
+                        skipCount += pageSize;
+                    }
+                    assertEquals(expected, tokenPaged);
+                }
+            }
+        }
+        finally
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+    }
+    
+    /**
+     * A continuation token must resume after its position in the sort order (found by binary search), even if the
+     * child it was taken from has since been deleted, or children with the same sort value have been added
+     */
+    public void testContinuationTokenResume() throws Exception
+    {
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        try
+        {
+            NodeRef parentFolder = createFolder(repositoryHelper.getCompanyHome(), "testContinuationTokenResume-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            
+            // all children have the same title, so they are in node id order
+            List<NodeRef> children = new ArrayList<NodeRef>(6);
+            for (int i = 0; i < 6; i++)
+            {
+                NodeRef nodeRef = createContent(parentFolder, "resume-"+i, ContentModel.TYPE_CONTENT);
+                nodeService.setProperty(nodeRef, ContentModel.PROP_TITLE, "same");
+                children.add(nodeRef);
+            }
+            
+            List<Pair<QName, Boolean>> sortPairs = new ArrayList<Pair<QName, Boolean>>(1);
+            sortPairs.add(new Pair<QName, Boolean>(ContentModel.PROP_TITLE, true));
+            
+            CannedQueryResults<NodeRef> page = listFrom(parentFolder, null, 2, sortPairs);
+            assertEquals(children.subList(0, 2), page.getPage());
+            String continuationToken = page.getContinuationToken();
+            assertNotNull(continuationToken);
+            
+            // unchanged
+            assertEquals(children.subList(2, 4), listFrom(parentFolder, continuationToken, 2, sortPairs).getPage());
+            
+            // the last child of the previous page has been deleted
+            nodeService.deleteNode(children.get(1));
+            assertEquals(children.subList(2, 4), listFrom(parentFolder, continuationToken, 2, sortPairs).getPage());
+            
+            // the first child has been deleted (before the token) and a new tied child has been added (after the token)
+            nodeService.deleteNode(children.get(0));
+            NodeRef nodeRef = createContent(parentFolder, "resume-new", ContentModel.TYPE_CONTENT);
+            nodeService.setProperty(nodeRef, ContentModel.PROP_TITLE, "same");
+            
+            List<NodeRef> expected = new ArrayList<NodeRef>(children.subList(2, 6));
+            expected.add(nodeRef);
+            assertEquals(expected, listFrom(parentFolder, continuationToken, 10, sortPairs).getPage());
+            
+            // a child with a lower sort value (before the token) is not returned again
+            nodeService.setProperty(children.get(2), ContentModel.PROP_TITLE, "earlier");
+            assertEquals(expected.subList(1, expected.size()), listFrom(parentFolder, continuationToken, 10, sortPairs).getPage());
+        }
+        finally
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+    }
+    
+    public void testContinuationTokenRejected() throws Exception
+    {
+        AuthenticationUtil.pushAuthentication();
+        AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+        try
+        {
+            NodeRef parentFolder = createFolder(repositoryHelper.getCompanyHome(), "testContinuationTokenRejected-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            createContent(parentFolder, "rejected", ContentModel.TYPE_CONTENT);
+            
+            List<Pair<QName, Boolean>> sortPairs = new ArrayList<Pair<QName, Boolean>>(1);
+            sortPairs.add(new Pair<QName, Boolean>(ContentModel.PROP_NAME, true));
+            
+            // number of values does not match the sort
+            String continuationToken = new ContinuationToken(Arrays.asList("sa", "sb"), 1L).encode();
+            try
+            {
+                listFrom(parentFolder, continuationToken, 10, sortPairs);
+                fail("Token with the wrong number of sort values should be rejected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+            
+            // sort value of unknown type
+            continuationToken = new ContinuationToken(Arrays.asList("xa"), 1L).encode();
+            try
+            {
+                listFrom(parentFolder, continuationToken, 10, sortPairs);
+                fail("Token with an invalid sort value should be rejected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+            
+            // unsorted
+            continuationToken = new ContinuationToken(Arrays.asList("sa"), 1L).encode();
+            try
+            {
+                listFrom(parentFolder, continuationToken, 10, null);
+                fail("Token for unsorted results should be rejected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            AuthenticationUtil.popAuthentication();
+        }
+    }
+    
+    public void testContinuationTokenSortValues() throws Exception
+    {
+        Serializable[] values = new Serializable[] {
+                "some text", "", new Date(1234567890123L), Long.valueOf(-42L), Integer.valueOf(7),
+                Boolean.TRUE, Boolean.FALSE, ContentModel.TYPE_FOLDER, null };
+        for (Serializable value : values)
+        {
+            Serializable decoded = GetChildrenCannedQuery.decodeSortValue(GetChildrenCannedQuery.encodeSortValue(value));
+            assertEquals(value, decoded);
+            if (value != null)
+            {
+                assertEquals(value.getClass(), decoded.getClass());
+            }
+        }
+        
+        for (String invalid : new String[] {"", "x1", "dnotadate", "lnotalong", "i1.5"})
+        {
+            try
+            {
+                GetChildrenCannedQuery.decodeSortValue(invalid);
+                fail("Invalid sort value should be rejected: "+invalid);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+    
+    // test helper method - page of sorted children after the given continuation token (if any)
+    private CannedQueryResults<NodeRef> listFrom(NodeRef parentNodeRef, String continuationToken, int maxItems, List<Pair<QName, Boolean>> sortProps)
+    {
+        PagingRequest pagingRequest = new PagingRequest(0, maxItems, null);
+        pagingRequest.setContinuationToken(continuationToken);
+        
+        GetChildrenCannedQueryFactory getChildrenCannedQueryFactory = (GetChildrenCannedQueryFactory)cannedQueryRegistry.getNamedObject(CQ_FACTORY_NAME);
+        final GetChildrenCannedQuery cq = (GetChildrenCannedQuery)getChildrenCannedQueryFactory.getCannedQuery(parentNodeRef, null, null, null, null, null, null, sortProps, pagingRequest);
+        
+        RetryingTransactionCallback<CannedQueryResults<NodeRef>> callback = new RetryingTransactionCallback<CannedQueryResults<NodeRef>>()
+        {
+            @Override
+            public CannedQueryResults<NodeRef> execute() throws Throwable
+            {
+                return cq.execute();
+            }
+        };
+        return transactionService.getRetryingTransactionHelper().doInTransaction(callback, true);
+    }
+    
+    private long getNodeId(NodeRef nodeRef)
+    {
+        return (Long)nodeService.getProperty(nodeRef, ContentModel.PROP_NODE_DBID);
+    }
+    
+    private GetChildrenCannedQuery getCachedQuery(NodeRef parentNodeRef, List<Pair<QName, Boolean>> sortProps)
+    {
+        PagingRequest pagingRequest = new PagingRequest(0, 100, null);
+        
+        GetChildrenCannedQueryFactory getChildrenCannedQueryFactory = (GetChildrenCannedQueryFactory)cannedQueryRegistry.getNamedObject(CQ_FACTORY_NAME_CACHED);
+        return (GetChildrenCannedQuery)getChildrenCannedQueryFactory.getCannedQuery(parentNodeRef, null, null, null, null, null, null, sortProps, pagingRequest);
+    }
+    
+    private List<NodeRef> listCached(NodeRef parentNodeRef, List<Pair<QName, Boolean>> sortProps)
+    {
+        final GetChildrenCannedQuery cq = getCachedQuery(parentNodeRef, sortProps);
+        
+        RetryingTransactionCallback<List<NodeRef>> callback = new RetryingTransactionCallback<List<NodeRef>>()
+        {
+            @Override
+            public List<NodeRef> execute() throws Throwable
+            {
+                return cq.execute().getPage();
+            }
+        };
+        return transactionService.getRetryingTransactionHelper().doInTransaction(callback, true);
+    }
+    
     // REPO-1204 / MNT-16742 (fallout from MNT-12894)
     public void testPagingGetChildrenCannedQueryWithoutProps() throws Exception
     {
@@ -68,6 +68,27 @@ public class IntegrityEventTest extends TestCase
         assertFalse(added);
     }
     
+    public void testMultiplicityEventsCovered() throws Exception
+    {
+        AbstractIntegrityEvent deleteEvent = new AssocTargetMultiplicityIntegrityEvent(null, null, nodeRef, typeQName, true);
+        AbstractIntegrityEvent createEvent = new AssocTargetMultiplicityIntegrityEvent(null, null, nodeRef, typeQName, false);
+        assertFalse(deleteEvent.equals(createEvent));
+        // The delete check is covered by the strict one
+        assertEquals(createEvent, deleteEvent.getCoveringEvent());
+        assertEquals(deleteEvent, createEvent.getCoveredEvent());
+        assertNull(createEvent.getCoveringEvent());
+        assertNull(deleteEvent.getCoveredEvent());
+        
+        deleteEvent = new AssocSourceMultiplicityIntegrityEvent(null, null, nodeRef, typeQName, true);
+        createEvent = new AssocSourceMultiplicityIntegrityEvent(null, null, nodeRef, typeQName, false);
+        assertEquals(createEvent, deleteEvent.getCoveringEvent());
+        assertEquals(deleteEvent, createEvent.getCoveredEvent());
+        
+        // Other events are not covered
+        assertNull(((AbstractIntegrityEvent) event).getCoveringEvent());
+        assertNull(((AbstractIntegrityEvent) event).getCoveredEvent());
+    }
+    
     private static class TestIntegrityEvent extends AbstractIntegrityEvent
     {
         public TestIntegrityEvent(
@@ -0,0 +1,385 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2020 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl.acegi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.acegisecurity.ConfigAttribute;
+import net.sf.acegisecurity.ConfigAttributeDefinition;
+
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.permissions.PermissionCheckCollection.PermissionCheckCollectionMixin;
+import org.alfresco.repo.security.permissions.PermissionCheckedCollection;
+import org.alfresco.repo.tenant.TenantContextHolder;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.NamespacePrefixResolver;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.transaction.TransactionService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Checks that the parallel permission checks of {@link ACLEntryAfterInvocationProvider} give exactly the same
+ * results as the serial checks, including the cut-offs, and only check what the serial checks would (give or take
+ * the last batch).
+ *
+ * @since 7.0
+ */
+public class ACLEntryAfterInvocationProviderParallelTest
+{
+    private static final int NODE_COUNT = 250;
+    private static final int ACL_COUNT = 7;
+    private static final int THRESHOLD = 10;
+    private static final String ADMIN = "admin";
+    private static final String RUN_AS_USER = "andy";
+    private static final String TENANT = "acme.test";
+    private static final String TENANT_USER = "bob@" + TENANT;
+
+    private List<NodeRef> nodeRefs;
+    private Map<NodeRef, AtomicInteger> checks;
+    private Set<String> checkThreads;
+    private Set<String> checkIdentities;
+    private volatile long checkDelayMs;
+
+    private NodeService nodeService;
+    private PermissionService permissionService;
+    private NamespacePrefixResolver namespacePrefixResolver;
+    private TransactionService transactionService;
+    private ConfigAttributeDefinition config;
+    private ExecutorService executor;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception
+    {
+        nodeRefs = new ArrayList<NodeRef>(NODE_COUNT);
+        for (int i = 0; i < NODE_COUNT; i++)
+        {
+            nodeRefs.add(new NodeRef(new StoreRef("workspace", "parallel"), "node-" + i));
+        }
+        checks = new ConcurrentHashMap<NodeRef, AtomicInteger>();
+        checkThreads = ConcurrentHashMap.newKeySet();
+        checkIdentities = ConcurrentHashMap.newKeySet();
+        checkDelayMs = 0;
+
+        nodeService = mock(NodeService.class);
+        when(nodeService.exists(any(NodeRef.class))).thenReturn(true);
+        when(nodeService.getNodeAclId(any(NodeRef.class))).thenAnswer(invocation ->
+                Long.valueOf(getIndex(invocation.getArgument(0)) % ACL_COUNT));
+
+        permissionService = mock(PermissionService.class);
+        when(permissionService.hasPermission(any(NodeRef.class), anyString())).thenAnswer(invocation ->
+        {
+            NodeRef nodeRef = invocation.getArgument(0);
+            checks.computeIfAbsent(nodeRef, key -> new AtomicInteger()).incrementAndGet();
+            checkThreads.add(Thread.currentThread().getName());
+            String user = AuthenticationUtil.getRunAsUser();
+            checkIdentities.add(user + "|" + TenantContextHolder.getTenantDomain());
+            if (checkDelayMs > 0)
+            {
+                Thread.sleep(checkDelayMs);
+            }
+            return isAllowed(user, getIndex(nodeRef)) ? AccessStatus.ALLOWED : AccessStatus.DENIED;
+        });
+
+        namespacePrefixResolver = mock(NamespacePrefixResolver.class);
+        when(namespacePrefixResolver.getNamespaceURI(NamespaceService.SYSTEM_MODEL_PREFIX)).thenReturn(NamespaceService.SYSTEM_MODEL_1_0_URI);
+
+        RetryingTransactionHelper retryingTransactionHelper = mock(RetryingTransactionHelper.class);
+        when(retryingTransactionHelper.doInTransaction(any(RetryingTransactionCallback.class), anyBoolean(), anyBoolean())).thenAnswer(invocation ->
+                ((RetryingTransactionCallback<Object>) invocation.getArgument(0)).execute());
+        transactionService = mock(TransactionService.class);
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(retryingTransactionHelper);
+
+        config = new ConfigAttributeDefinition();
+        config.addConfigAttribute(new ConfigAttribute()
+        {
+            private static final long serialVersionUID = 1L;
+
+            public String getAttribute()
+            {
+                return "AFTER_ACL_NODE.sys:base.Read";
+            }
+        });
+
+        executor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+        // Parallel checks are only done in read-only transactions
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        AuthenticationUtil.clearCurrentSecurityContext();
+        TenantContextHolder.clearTenantDomain();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRunAsUserMatchesSerial() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(ADMIN);
+        AuthenticationUtil.setRunAsUser(RUN_AS_USER);
+        String identity = RUN_AS_USER + "|" + TenantContextHolder.getTenantDomain();
+
+        // Everything, targets smaller than a batch and spanning several batches, and cut-offs by count
+        assertSameAsSerial(0, 0);
+        assertSameAsSerial(5, 0);
+        assertSameAsSerial(40, 0);
+        assertSameAsSerial(160, 0);
+        assertSameAsSerial(40, 50);
+        assertSameAsSerial(0, 33);
+        assertSameAsSerial(0, 5);
+        assertSameAsSerial(0, NODE_COUNT);
+
+        assertEquals("Checks must run as the run-as user", Set.of(identity), checkIdentities);
+        assertTrue("Checks should have run on the executor", checkThreads.size() > 1);
+    }
+
+    @Test
+    public void testTenantUserMatchesSerial() throws Exception
+    {
+        TenantContextHolder.setTenantDomain(TENANT);
+        AuthenticationUtil.setFullyAuthenticatedUser(TENANT_USER);
+
+        // Most values are denied, so the batches shrink to the threshold
+        assertSameAsSerial(0, 0);
+        assertSameAsSerial(20, 0);
+        assertSameAsSerial(20, 60);
+
+        assertEquals("Checks must run as the tenant user", Set.of(TENANT_USER + "|" + TENANT), checkIdentities);
+        assertEquals(TENANT, TenantContextHolder.getTenantDomain());
+        assertEquals(TENANT_USER, AuthenticationUtil.getFullyAuthenticatedUser());
+    }
+
+    @Test
+    public void testCutOffByTime() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(ADMIN);
+        AuthenticationUtil.setRunAsUser(RUN_AS_USER);
+        checkDelayMs = 2;
+
+        for (ACLEntryAfterInvocationProvider provider : List.of(createProvider(false, executor), createProvider(true, executor)))
+        {
+            PermissionCheckedCollection<?> result = (PermissionCheckedCollection<?>) decide(provider, 0, 50, 0);
+            assertTrue(result.isCutOff());
+            assertTrue(result.sizeUnchecked() > 0);
+            assertEquals(NODE_COUNT, result.sizeOriginal());
+            // Whatever was checked before the cut-off is filtered just as the serial checks would
+            int checked = result.sizeOriginal() - result.sizeUnchecked();
+            assertEquals(getAllowed(RUN_AS_USER, checked), new ArrayList<Object>((Collection<?>) result));
+        }
+    }
+
+    @Test
+    public void testCallerRunsWhenExecutorIsBusy() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(ADMIN);
+        AuthenticationUtil.setRunAsUser(RUN_AS_USER);
+        String tenantDomain = TenantContextHolder.getTenantDomain();
+        checkDelayMs = 1;
+
+        // A single thread without a queue: all but the first task are rejected to the calling thread
+        executor.shutdownNow();
+        executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        Collection<?> serial = decide(createProvider(false, executor), 0, 0);
+        checks.clear();
+        checkThreads.clear();
+        Collection<?> parallel = decide(createProvider(true, executor), 0, 0);
+
+        assertEquals(new ArrayList<Object>(serial), new ArrayList<Object>(parallel));
+        assertEquals(getAllowed(RUN_AS_USER, NODE_COUNT), new ArrayList<Object>(parallel));
+        assertTrue("Some checks should have run on the calling thread", checkThreads.contains(Thread.currentThread().getName()));
+        assertTrue("Some checks should have run on the executor", checkThreads.size() > 1);
+        assertEquals(Set.of(RUN_AS_USER + "|" + tenantDomain), checkIdentities);
+
+        // The calling thread's authentication is left as it was
+        assertEquals(ADMIN, AuthenticationUtil.getFullyAuthenticatedUser());
+        assertEquals(RUN_AS_USER, AuthenticationUtil.getRunAsUser());
+        assertEquals(tenantDomain, TenantContextHolder.getTenantDomain());
+    }
+
+    @Test
+    public void testSerialWhenNotApplicable() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(ADMIN);
+        AuthenticationUtil.setRunAsUser(RUN_AS_USER);
+        ACLEntryAfterInvocationProvider provider = createProvider(true, executor);
+        Set<String> callingThread = Set.of(Thread.currentThread().getName());
+
+        // Below the threshold
+        Collection<?> result = decide(provider, new ArrayList<Object>(nodeRefs.subList(0, THRESHOLD - 1)), 0, 0, 0);
+        assertEquals(getAllowed(RUN_AS_USER, THRESHOLD - 1), new ArrayList<Object>(result));
+        assertEquals(callingThread, checkThreads);
+
+        // Read-write transactions may have changes that other threads cannot see
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        checkThreads.clear();
+        result = decide(provider, 0, 0);
+        assertEquals(getAllowed(RUN_AS_USER, NODE_COUNT), new ArrayList<Object>(result));
+        assertEquals(callingThread, checkThreads);
+    }
+
+    /**
+     * Compare the parallel checks to the serial checks of all the nodes
+     */
+    private void assertSameAsSerial(int targetResultCount, int cutOffAfterCount) throws Exception
+    {
+        checks.clear();
+        Collection<?> serial = decide(createProvider(false, executor), targetResultCount, cutOffAfterCount);
+        int serialChecks = checks.size();
+
+        checks.clear();
+        Collection<?> parallel = decide(createProvider(true, executor), targetResultCount, cutOffAfterCount);
+        int parallelChecks = checks.size();
+
+        String msg = "target " + targetResultCount + ", cut-off after " + cutOffAfterCount + ": ";
+        assertEquals(msg + "results", new ArrayList<Object>(serial), new ArrayList<Object>(parallel));
+        PermissionCheckedCollection<?> serialChecked = (PermissionCheckedCollection<?>) serial;
+        PermissionCheckedCollection<?> parallelChecked = (PermissionCheckedCollection<?>) parallel;
+        assertEquals(msg + "cut-off", serialChecked.isCutOff(), parallelChecked.isCutOff());
+        assertEquals(msg + "unchecked", serialChecked.sizeUnchecked(), parallelChecked.sizeUnchecked());
+        assertEquals(msg + "original", serialChecked.sizeOriginal(), parallelChecked.sizeOriginal());
+
+        // The batches are contiguous from the start, each value is checked once and no batch goes past the cut-off
+        for (Map.Entry<NodeRef, AtomicInteger> entry : checks.entrySet())
+        {
+            assertEquals(msg + "checks of " + entry.getKey(), 1, entry.getValue().get());
+        }
+        assertEquals(msg + "checked", new HashSet<NodeRef>(nodeRefs.subList(0, parallelChecks)), checks.keySet());
+        if (cutOffAfterCount > 0)
+        {
+            assertTrue(msg + parallelChecks + " checks", parallelChecks <= cutOffAfterCount);
+        }
+        // Only the last batch may check more than the serial checks, and then by less than the threshold
+        assertTrue(msg + parallelChecks + " vs " + serialChecks + " checks", parallelChecks >= serialChecks);
+        assertTrue(msg + parallelChecks + " vs " + serialChecks + " checks", parallelChecks < serialChecks + THRESHOLD);
+    }
+
+    private ACLEntryAfterInvocationProvider createProvider(boolean parallel, ExecutorService executor) throws Exception
+    {
+        ACLEntryAfterInvocationProvider provider = new ACLEntryAfterInvocationProvider();
+        provider.setPermissionService(permissionService);
+        provider.setNamespacePrefixResolver(namespacePrefixResolver);
+        provider.setNodeService(nodeService);
+        provider.setTransactionService(transactionService);
+        provider.setPermissionCheckExecutor(executor);
+        provider.setParallelPermissionChecks(parallel);
+        provider.setParallelPermissionCheckThreshold(THRESHOLD);
+        provider.afterPropertiesSet();
+        return provider;
+    }
+
+    private Collection<?> decide(ACLEntryAfterInvocationProvider provider, int targetResultCount, int cutOffAfterCount)
+    {
+        return decide(provider, new ArrayList<Object>(nodeRefs), targetResultCount, 0, cutOffAfterCount);
+    }
+
+    private Collection<?> decide(ACLEntryAfterInvocationProvider provider, int targetResultCount, long cutOffAfterTimeMs, int cutOffAfterCount)
+    {
+        return decide(provider, new ArrayList<Object>(nodeRefs), targetResultCount, cutOffAfterTimeMs, cutOffAfterCount);
+    }
+
+    private Collection<?> decide(ACLEntryAfterInvocationProvider provider, List<Object> values, int targetResultCount, long cutOffAfterTimeMs, int cutOffAfterCount)
+    {
+        if (targetResultCount <= 0)
+        {
+            targetResultCount = values.size();
+        }
+        Collection<Object> returnedObject = PermissionCheckCollectionMixin.create(values, targetResultCount, cutOffAfterTimeMs, cutOffAfterCount);
+        return (Collection<?>) provider.decide(null, null, config, returnedObject);
+    }
+
+    /**
+     * @return                  the first nodes that the user may read, in order
+     */
+    private List<Object> getAllowed(String user, int count)
+    {
+        List<Object> allowed = new ArrayList<Object>();
+        for (int i = 0; i < count; i++)
+        {
+            if (isAllowed(user, i))
+            {
+                allowed.add(nodeRefs.get(i));
+            }
+        }
+        return allowed;
+    }
+
+    private static boolean isAllowed(String user, int index)
+    {
+        if (RUN_AS_USER.equals(user))
+        {
+            return (index % 3) != 0;
+        }
+        else if (TENANT_USER.equals(user))
+        {
+            return (index % 5) == 0;
+        }
+        return false;
+    }
+
+    private static int getIndex(NodeRef nodeRef)
+    {
+        return Integer.parseInt(nodeRef.getId().substring("node-".length()));
+    }
+}
@@ -27,6 +27,7 @@ package org.alfresco.repo.security.person;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -654,6 +655,30 @@ public class PersonTest extends TestCase
         }
     }
 
+    public void testGetPeopleByUserNames()
+    {
+        personService.setCreateMissingPeople(false);
+        NodeRef derekRef = personService.createPerson(createDefaultProperties("derek", "Derek", "Hulley", "dh@dh", "alfresco", rootNodeRef));
+        NodeRef andyRef = personService.createPerson(createDefaultProperties("andy", "Andy", "Hind", "andy@hind", "alfresco", rootNodeRef));
+
+        List<PersonInfo> people = personService.getPeople(Arrays.asList("andy", "nobody", null, "derek", "andy", AuthenticationUtil.getSystemUserName()));
+        assertEquals(2, people.size());
+        assertEquals(andyRef, people.get(0).getNodeRef());
+        assertEquals("Andy", people.get(0).getFirstName());
+        assertEquals(derekRef, people.get(1).getNodeRef());
+        assertEquals("Hulley", people.get(1).getLastName());
+
+        // Changes to the person are seen straight away
+        personService.setPersonProperties("derek", createDefaultProperties("derek", "Derek_", "Hulley_", "dh@dh", "alfresco", rootNodeRef));
+        people = personService.getPeople(Arrays.asList("derek"));
+        assertEquals(1, people.size());
+        assertEquals("Derek_", people.get(0).getFirstName());
+        assertEquals("Derek_", personService.getPerson(derekRef).getFirstName());
+
+        personService.deletePerson("derek");
+        assertEquals(0, personService.getPeople(Arrays.asList("derek")).size());
+    }
+
     public void testPersonCRUD()
     {
         personService.setCreateMissingPeople(false);
@@ -861,6 +886,107 @@ public class PersonTest extends TestCase
         assertEquals(expectedResultCount, ppr.getTotalResultCount());
     }
     
+    /**
+     * Paging with continuation tokens (keyset paging in the query) must return the same pages as paging with skip
+     * counts, including for tied and missing (null) sort values - in ascending and descending order
+     */
+    public void testPeopleSortingPaging_continuationToken()
+    {
+        personService.setCreateMissingPeople(false);
+        
+        assertEquals(2, getPeopleCount());
+        
+        // tied first names, missing organisations
+        personService.createPerson(createDefaultProperties("aa", "Same", "Cc", "aa@aa", "org2", rootNodeRef));
+        personService.createPerson(createDefaultProperties("bb", "Same", "Aa", "bb@bb", null, rootNodeRef));
+        personService.createPerson(createDefaultProperties("cc", "Other", "Bb", "cc@cc", "org1", rootNodeRef));
+        personService.createPerson(createDefaultProperties("dd", "Same", "Aa", "dd@dd", null, rootNodeRef));
+        personService.createPerson(createDefaultProperties("ee", "Other", "Cc", "ee@ee", "org2", rootNodeRef));
+        personService.createPerson(createDefaultProperties("ff", "Same", "Bb", "ff@ff", null, rootNodeRef));
+        
+        int expectedTotalCount = 8;
+        assertEquals(expectedTotalCount, getPeopleCount());
+        
+        List<List<Pair<QName, Boolean>>> sorts = new ArrayList<List<Pair<QName, Boolean>>>();
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_FIRSTNAME, true)));
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_FIRSTNAME, false)));
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_ORGID, true)));
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_ORGID, false)));
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_ORGID, true),
+                                new Pair<QName, Boolean>(ContentModel.PROP_LASTNAME, false)));
+        sorts.add(Arrays.asList(new Pair<QName, Boolean>(ContentModel.PROP_FIRSTNAME, false),
+                                new Pair<QName, Boolean>(ContentModel.PROP_ORGID, true),
+                                new Pair<QName, Boolean>(ContentModel.PROP_LASTNAME, true)));
+        
+        for (List<Pair<QName, Boolean>> sort : sorts)
+        {
+            List<NodeRef> expected = getNodeRefs(personService.getPeople(null, null, sort, new PagingRequest(0, 100, null)).getPage());
+            assertEquals(expectedTotalCount, expected.size());
+            
+            for (int pageSize = 1; pageSize <= 3; pageSize++)
+            {
+                List<NodeRef> tokenPaged = new ArrayList<NodeRef>(expectedTotalCount);
+                String continuationToken = null;
+                int skipCount = 0;
+                boolean hasMore = true;
+                while (hasMore)
+                {
+                    PagingResults<PersonInfo> skipPage = personService.getPeople(null, null, sort, new PagingRequest(skipCount, pageSize, null));
+                    
+                    PagingRequest pr = new PagingRequest(0, pageSize, null);
+                    pr.setContinuationToken(continuationToken);
+                    PagingResults<PersonInfo> tokenPage = personService.getPeople(null, null, sort, pr);
+                    
+                    assertEquals("Sort "+sort+", skip "+skipCount, getNodeRefs(skipPage.getPage()), getNodeRefs(tokenPage.getPage()));
+                    assertEquals(skipPage.hasMoreItems(), tokenPage.hasMoreItems());
+                    
+                    tokenPaged.addAll(getNodeRefs(tokenPage.getPage()));
+                    continuationToken = tokenPage.getContinuationToken();
+                    hasMore = tokenPage.hasMoreItems();
+                    assertEquals(hasMore, continuationToken != null);
+                    skipCount += pageSize;
+                }
+                assertEquals("Sort "+sort, expected, tokenPaged);
+            }
+        }
+        
+        // unsorted
+        PagingRequest pr = new PagingRequest(0, 2, null);
+        PagingResults<PersonInfo> ppr = personService.getPeople(null, null, null, pr);
+        assertNull(ppr.getContinuationToken());
+        
+        pr.setContinuationToken(personService.getPeople(null, null, sorts.get(0), pr).getContinuationToken());
+        assertNotNull(pr.getContinuationToken());
+        try
+        {
+            personService.getPeople(null, null, null, pr);
+            fail("Token for unsorted people should be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            personService.getPeople(null, null, sorts.get(4), pr);
+            fail("Token for a different number of sort properties should be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+    
+    private List<NodeRef> getNodeRefs(List<PersonInfo> personInfos)
+    {
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(personInfos.size());
+        for (PersonInfo personInfo : personInfos)
+        {
+            nodeRefs.add(personInfo.getNodeRef());
+        }
+        return nodeRefs;
+    }
+    
     // note: this test can be removed as and when we remove the deprecated "getPeople" impl
     public void testPeopleSortingPaging_deprecatedCQ_via_getChildren()
     {
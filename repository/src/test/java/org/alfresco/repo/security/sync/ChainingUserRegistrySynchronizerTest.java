@@ -373,6 +373,55 @@ public class ChainingUserRegistrySynchronizerTest extends TestCase
         tearDownTestUsersAndGroups();
     }
 
+    /**
+     * Tests that, with group snapshots enabled, a forced update only updates the groups whose display name or members
+     * changed in the user registry since the last synchronization. A local change to an unchanged group is therefore
+     * left alone.
+     * 
+     * @throws Exception
+     *             the exception
+     */
+    public void testForcedUpdateSkipsUnchangedGroups() throws Exception
+    {
+        ChainingUserRegistrySynchronizer chainingSynchronizer = (ChainingUserRegistrySynchronizer) this.synchronizer;
+        chainingSynchronizer.setGroupSnapshotEnabled(true);
+        try
+        {
+            setUpTestUsersAndGroups();
+            this.retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Object>()
+            {
+                public Object execute() throws Throwable
+                {
+                    ChainingUserRegistrySynchronizerTest.this.authorityService.removeAuthority(longName("G3"),
+                            longName("U2"));
+                    return null;
+                }
+            });
+            this.applicationContextManager.updateZone("Z1", new NodeDescription[] {}, new NodeDescription[]
+            {
+                newGroupWithDisplayName("G5", "Amazing Group", "U1")
+            });
+            this.synchronizer.synchronize(true, true);
+            this.retryingTransactionHelper.doInTransaction(new RetryingTransactionCallback<Object>()
+            {
+                public Object execute() throws Throwable
+                {
+                    // G3 is unchanged in Z1, so its local change remains
+                    assertExists("Z1", "G3", "G4", "G5");
+                    assertExists("Z1", "G5", "U1");
+                    assertGroupDisplayNameEquals("G5", "Amazing Group");
+                    assertExists("Z1", "G2", "U1", "G3");
+                    return null;
+                }
+            }, false, true);
+        }
+        finally
+        {
+            chainingSynchronizer.setGroupSnapshotEnabled(false);
+        }
+        tearDownTestUsersAndGroups();
+    }
+
     /**
      * Tests a forced update of the test users and groups. Also tests that groups and users that previously existed in
      * Z2 get moved when they appear in Z1. Also tests that 'dangling references' to removed users (U4, U5) do not cause
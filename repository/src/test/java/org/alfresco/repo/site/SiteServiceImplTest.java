@@ -44,6 +44,7 @@ import org.alfresco.query.PagingRequest;
 import org.alfresco.query.PagingResults;
 import org.alfresco.repo.admin.SysAdminParams;
 import org.alfresco.repo.admin.SysAdminParamsImpl;
+import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.dictionary.DictionaryDAO;
 import org.alfresco.repo.dictionary.M2Model;
 import org.alfresco.repo.dictionary.M2Property;
@@ -93,6 +94,7 @@ import org.alfresco.test_category.BaseSpringTestsCategory;
 import org.alfresco.util.ApplicationContextHelper;
 import org.alfresco.util.BaseAlfrescoSpringTest;
 import org.alfresco.util.GUID;
+import org.alfresco.util.Pair;
 import org.alfresco.util.testing.category.LuceneTests;
 import org.alfresco.util.testing.category.RedundantTests;
 import org.junit.After;
@@ -1668,6 +1670,143 @@ public class SiteServiceImplTest extends BaseAlfrescoSpringTest
         };
         transactionService.getRetryingTransactionHelper().doInTransaction(work);
     }
+
+    /**
+     * Checks that paged site memberships are sorted and paged from the membership index and
+     * that the index follows membership changes.
+     */
+    @Test
+    public void testListSitesPagedFromMembershipIndex()
+    {
+        final String siteNameA = "testMembershipIndexA" + UUID.randomUUID();
+        final String siteNameB = "testMembershipIndexB" + UUID.randomUUID();
+        final String siteNameC = "testMembershipIndexC" + UUID.randomUUID();
+        final List<Pair<SiteService.SortFields, Boolean>> sortProps = new ArrayList<Pair<SiteService.SortFields, Boolean>>();
+        sortProps.add(new Pair<SiteService.SortFields, Boolean>(SiteService.SortFields.SiteTitle, Boolean.TRUE));
+
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authenticationComponent.setCurrentUser(USER_ONE);
+                siteService.createSite(TEST_SITE_PRESET, siteNameC, "C title", TEST_DESCRIPTION, SiteVisibility.PUBLIC);
+                siteService.createSite(TEST_SITE_PRESET, siteNameA, "A title", TEST_DESCRIPTION, SiteVisibility.PUBLIC);
+                siteService.createSite(TEST_SITE_PRESET, siteNameB, "B title", TEST_DESCRIPTION, SiteVisibility.PUBLIC);
+                siteService.setMembership(siteNameB, USER_TWO, SiteModel.SITE_CONSUMER);
+                return null;
+            }
+        });
+
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authenticationComponent.setCurrentUser(USER_ONE);
+                PagingResults<SiteMembership> page = siteService.listSitesPaged(USER_ONE, sortProps, new PagingRequest(1, 1));
+                assertEquals(1, page.getPage().size());
+                assertEquals(siteNameB, page.getPage().get(0).getSiteInfo().getShortName());
+                assertEquals(SiteModel.SITE_MANAGER, page.getPage().get(0).getRole());
+                assertEquals(Integer.valueOf(3), page.getTotalResultCount().getFirst());
+                assertTrue(page.hasMoreItems());
+
+                // Listed a second time, from the index
+                assertEquals(3, siteService.listSiteMemberships(USER_ONE, 0).size());
+                assertEquals(1, siteService.listSiteMemberships(USER_TWO, 0).size());
+                
+                // Changes to the membership are picked up
+                siteService.removeMembership(siteNameB, USER_TWO);
+                assertEquals(0, siteService.listSiteMemberships(USER_TWO, 0).size());
+                siteService.setMembership(siteNameC, USER_TWO, SiteModel.SITE_COLLABORATOR);
+                List<SiteMembership> memberships = siteService.listSiteMemberships(USER_TWO, 0);
+                assertEquals(1, memberships.size());
+                assertEquals(siteNameC, memberships.get(0).getSiteInfo().getShortName());
+                assertEquals(SiteModel.SITE_COLLABORATOR, memberships.get(0).getRole());
+                return null;
+            }
+        });
+
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authenticationComponent.setSystemUserAsCurrentUser();
+                siteService.deleteSite(siteNameA);
+                siteService.deleteSite(siteNameB);
+                siteService.deleteSite(siteNameC);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Checks that group and person changes only drop the indexed memberships of the users
+     * concerned.
+     */
+    @Test
+    public void testSiteMembershipIndexInvalidation()
+    {
+        @SuppressWarnings("unchecked")
+        final SimpleCache<String, List<SiteMembershipIndexEntry>> siteMembershipCache =
+                    (SimpleCache<String, List<SiteMembershipIndexEntry>>) applicationContext.getBean("siteMembershipCache");
+        final String siteName = "testMembershipIndexInvalidation" + UUID.randomUUID();
+        final String otherSiteName = "testMembershipIndexOther" + UUID.randomUUID();
+        final String userName = "UserIndex_" + GUID.generate();
+
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                authenticationComponent.setSystemUserAsCurrentUser();
+                createUser(userName);
+                String group = authorityService.createAuthority(AuthorityType.GROUP, "GrpIndex_" + GUID.generate());
+                authorityService.addAuthority(group, userName);
+
+                authenticationComponent.setCurrentUser(USER_ONE);
+                siteService.createSite(TEST_SITE_PRESET, siteName, TEST_TITLE, TEST_DESCRIPTION, SiteVisibility.PUBLIC);
+                assertEquals(0, siteService.listSiteMemberships(userName, 0).size());
+                assertEquals(1, siteService.listSiteMemberships(USER_ONE, 0).size());
+                assertNotNull(siteMembershipCache.get(USER_ONE));
+
+                // A group joining a site drops its members only
+                siteService.setMembership(siteName, group, SiteModel.SITE_CONSUMER);
+                assertNotNull(siteMembershipCache.get(USER_ONE));
+                assertNull(siteMembershipCache.get(userName));
+                assertEquals(1, siteService.listSiteMemberships(userName, 0).size());
+
+                // Creating a site does not drop the memberships of other users
+                authenticationComponent.setCurrentUser(USER_TWO);
+                siteService.createSite(TEST_SITE_PRESET, otherSiteName, TEST_TITLE, TEST_DESCRIPTION, SiteVisibility.PUBLIC);
+                assertNotNull(siteMembershipCache.get(USER_ONE));
+                assertNotNull(siteMembershipCache.get(userName));
+
+                // A user leaving the group
+                authenticationComponent.setSystemUserAsCurrentUser();
+                authorityService.removeAuthority(group, userName);
+                assertEquals(0, siteService.listSiteMemberships(userName, 0).size());
+                authorityService.addAuthority(group, userName);
+                assertEquals(1, siteService.listSiteMemberships(userName, 0).size());
+
+                // The group being deleted
+                authorityService.deleteAuthority(group);
+                assertNull(siteMembershipCache.get(userName));
+                assertNotNull(siteMembershipCache.get(USER_ONE));
+                assertEquals(0, siteService.listSiteMemberships(userName, 0).size());
+                assertNotNull(siteMembershipCache.get(userName));
+
+                // The person being deleted
+                deleteUser(userName);
+                assertNull(siteMembershipCache.get(userName));
+
+                siteService.deleteSite(siteName);
+                siteService.deleteSite(otherSiteName);
+                return null;
+            }
+        });
+    }
     
     
 
@@ -26,23 +26,129 @@
 package org.alfresco.repo.tenant;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.UserTransaction;
 
 import org.alfresco.repo.content.AbstractContentStore;
 import org.alfresco.repo.content.ContentStore;
 import org.alfresco.repo.content.ContentStoreCaps;
+import org.alfresco.repo.dictionary.CompiledModelsCache;
+import org.alfresco.repo.dictionary.DictionaryComponent;
+import org.alfresco.repo.dictionary.DictionaryDAOImpl;
+import org.alfresco.repo.dictionary.DictionaryRegistry;
+import org.alfresco.repo.domain.tenant.TenantAdminDAO;
+import org.alfresco.repo.domain.tenant.TenantEntity;
+import org.alfresco.repo.security.authentication.AuthenticationContext;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.transaction.TransactionService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 public class MultiTAdminServiceImplTest
 {
+    private static final String IDLE_TENANT = "idle.test";
+    private static final String ACTIVE_TENANT = "active.test";
+    private static final String DISABLED_TENANT = "disabled.test";
+    private static final long IDLE_TIME = TimeUnit.MINUTES.toMillis(30);
+    
     private MultiTAdminServiceImpl tenantAdmin;
     
+    private DictionaryDAOImpl dictionaryDAO;
+    private DictionaryComponent dictionaryComponent;
+    private ContentStore tenantFileContentStore;
+    private CompiledModelsCache compiledModelsCache;
+    private ThreadPoolExecutor cacheExecutor;
+    
     @Before
     public void setUp() throws Exception
     {
         tenantAdmin = new MultiTAdminServiceImpl();
     }
+    
+    @After
+    public void tearDown()
+    {
+        AuthenticationUtil.setMtEnabled(false);
+        AuthenticationUtil.clearCurrentSecurityContext();
+        TenantContextHolder.clearTenantDomain();
+        if (cacheExecutor != null)
+        {
+            cacheExecutor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Wire the tenant admin service with two enabled tenants and a disabled one, and a dictionary cache that
+     * builds an empty dictionary for each tenant.
+     */
+    @SuppressWarnings("unchecked")
+    private void setUpTenants()
+    {
+        MultiTServiceImpl tenantService = mock(MultiTServiceImpl.class);
+        when(tenantService.isEnabled()).thenReturn(true);
+        when(tenantService.getDomainUser(anyString(), anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        dictionaryDAO = mock(DictionaryDAOImpl.class);
+        when(dictionaryDAO.initDictionaryRegistry(anyString())).thenAnswer(invocation -> mock(DictionaryRegistry.class));
+        
+        cacheExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        compiledModelsCache = new CompiledModelsCache();
+        compiledModelsCache.setDictionaryDAO(dictionaryDAO);
+        compiledModelsCache.setTenantService(tenantService);
+        compiledModelsCache.setThreadPoolExecutor(cacheExecutor);
+        
+        TenantAdminDAO tenantAdminDAO = mock(TenantAdminDAO.class);
+        when(tenantAdminDAO.listTenants(false)).thenReturn(List.of(
+                newTenantEntity(IDLE_TENANT, true), newTenantEntity(ACTIVE_TENANT, true), newTenantEntity(DISABLED_TENANT, false)));
+        when(tenantAdminDAO.listTenants(true)).thenReturn(List.of(
+                newTenantEntity(IDLE_TENANT, true), newTenantEntity(ACTIVE_TENANT, true)));
+        
+        RetryingTransactionHelper retryingTransactionHelper = mock(RetryingTransactionHelper.class);
+        when(retryingTransactionHelper.doInTransaction(any(RetryingTransactionCallback.class), anyBoolean(), anyBoolean())).thenAnswer(invocation ->
+                ((RetryingTransactionCallback<Object>) invocation.getArgument(0)).execute());
+        TransactionService transactionService = mock(TransactionService.class);
+        when(transactionService.getUserTransaction()).thenReturn(mock(UserTransaction.class));
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(retryingTransactionHelper);
+        
+        dictionaryComponent = mock(DictionaryComponent.class);
+        tenantFileContentStore = mock(ContentStore.class, withSettings().extraInterfaces(TenantRoutingContentStore.class));
+        
+        tenantAdmin.setTenantService(tenantService);
+        tenantAdmin.setTenantAdminDAO(tenantAdminDAO);
+        tenantAdmin.setTransactionService(transactionService);
+        tenantAdmin.setAuthenticationContext(mock(AuthenticationContext.class));
+        tenantAdmin.setDictionaryComponent(dictionaryComponent);
+        tenantAdmin.setTenantFileContentStore(tenantFileContentStore);
+        tenantAdmin.setCompiledModelsCache(compiledModelsCache);
+    }
+    
+    private static TenantEntity newTenantEntity(String tenantDomain, boolean enabled)
+    {
+        TenantEntity tenantEntity = new TenantEntity(tenantDomain);
+        tenantEntity.setEnabled(enabled);
+        return tenantEntity;
+    }
 
     @Test
     public void testTenantDeployer()
@@ -110,9 +216,108 @@ public class MultiTAdminServiceImplTest
         assertNull(router);
     }
     
-
+    @Test
+    public void testIdleEvictionDisabledByDefault()
+    {
+        assertEquals(0, tenantAdmin.evictIdleTenants());
+        assertEquals(-1, tenantAdmin.getStartupTime());
+        assertEquals(-1, tenantAdmin.getWarmTenantCount());
+        assertEquals(0, tenantAdmin.getEvictedTenantCount());
+    }
     
+    @Test
+    public void testEagerStartup()
+    {
+        setUpTenants();
+        tenantAdmin.startTenants();
+        
+        // The dictionary and content store of each enabled tenant are initialised at startup
+        verify(dictionaryComponent, times(2)).onEnableTenant();
+        verify((TenantDeployer) tenantFileContentStore, times(2)).onEnableTenant();
+        assertTrue(tenantAdmin.getStartupTime() >= 0);
+    }
     
+    @Test
+    public void testLazyStartup()
+    {
+        setUpTenants();
+        tenantAdmin.setLazyStartup(true);
+        tenantAdmin.startTenants();
+        
+        // Nothing is initialised for the tenants at startup ...
+        verify(dictionaryComponent, never()).onEnableTenant();
+        verify((TenantDeployer) tenantFileContentStore, never()).onEnableTenant();
+        verify(dictionaryDAO, never()).initDictionaryRegistry(anyString());
+        assertTrue(tenantAdmin.getStartupTime() >= 0);
+        assertEquals(0, tenantAdmin.getWarmTenantCount());
+        
+        // ... but when the tenant is first used
+        assertNotNull(compiledModelsCache.get(ACTIVE_TENANT));
+        verify(dictionaryDAO).initDictionaryRegistry(ACTIVE_TENANT);
+        assertEquals(1, tenantAdmin.getWarmTenantCount());
+        
+        // ... and only then
+        assertNotNull(compiledModelsCache.get(ACTIVE_TENANT));
+        verify(dictionaryDAO, times(1)).initDictionaryRegistry(ACTIVE_TENANT);
+        assertEquals(1, tenantAdmin.getWarmTenantCount());
+    }
+    
+    @Test
+    public void testCompiledModelsCacheTracksAccess() throws Exception
+    {
+        setUpTenants();
+        compiledModelsCache.forceInChangesForThisUncommittedTransaction(IDLE_TENANT);
+        compiledModelsCache.forceInChangesForThisUncommittedTransaction(ACTIVE_TENANT);
+        
+        // Built but not yet used
+        assertEquals(Set.of(IDLE_TENANT, ACTIVE_TENANT), compiledModelsCache.getIdleTenants(IDLE_TIME));
+        
+        compiledModelsCache.get(ACTIVE_TENANT);
+        assertEquals(Set.of(IDLE_TENANT), compiledModelsCache.getIdleTenants(IDLE_TIME));
+        
+        // The access is recorded with the time it happened
+        Thread.sleep(50);
+        assertEquals(Set.of(IDLE_TENANT, ACTIVE_TENANT), compiledModelsCache.getIdleTenants(10));
+        
+        // Evicted tenants are no longer live, so not idle either
+        assertTrue(compiledModelsCache.evict(IDLE_TENANT));
+        assertFalse(compiledModelsCache.evict(IDLE_TENANT));
+        assertEquals(Set.of(ACTIVE_TENANT), compiledModelsCache.getIdleTenants(10));
+        assertEquals(1, compiledModelsCache.getLiveCount());
+    }
+    
+    @Test
+    public void testEvictIdleTenants()
+    {
+        setUpTenants();
+        tenantAdmin.setIdleTimeoutMinutes(30);
+        List<String> destroyed = new ArrayList<String>();
+        doAnswer(invocation -> destroyed.add(TenantContextHolder.getTenantDomain())).when((TenantDeployer) tenantFileContentStore).destroy();
+        
+        compiledModelsCache.forceInChangesForThisUncommittedTransaction(TenantService.DEFAULT_DOMAIN);
+        compiledModelsCache.forceInChangesForThisUncommittedTransaction(IDLE_TENANT);
+        compiledModelsCache.forceInChangesForThisUncommittedTransaction(ACTIVE_TENANT);
+        compiledModelsCache.get(ACTIVE_TENANT);
+        assertEquals(3, tenantAdmin.getWarmTenantCount());
+        
+        // Only the idle tenant is evicted: the active tenant is kept, as is the (idle) default domain
+        assertEquals(1, tenantAdmin.evictIdleTenants());
+        assertEquals(1, tenantAdmin.getEvictedTenantCount());
+        assertEquals(2, tenantAdmin.getWarmTenantCount());
+        assertEquals(Set.of(TenantService.DEFAULT_DOMAIN), compiledModelsCache.getIdleTenants(IDLE_TIME));
+        assertEquals(List.of(IDLE_TENANT), destroyed);
+        
+        // Nothing more to evict
+        assertEquals(0, tenantAdmin.evictIdleTenants());
+        assertEquals(1, tenantAdmin.getEvictedTenantCount());
+        
+        // The evicted tenant is reloaded when it is next used
+        assertNotNull(compiledModelsCache.get(IDLE_TENANT));
+        verify(dictionaryDAO, times(2)).initDictionaryRegistry(IDLE_TENANT);
+        verify(dictionaryDAO, times(1)).initDictionaryRegistry(ACTIVE_TENANT);
+        assertEquals(3, tenantAdmin.getWarmTenantCount());
+        assertEquals(Set.of(TenantService.DEFAULT_DOMAIN), compiledModelsCache.getIdleTenants(IDLE_TIME));
+    }
     
 
     // This is implemented by the CryptodocSubsystemProxyFactory in real life.
@@ -73,6 +73,7 @@ import org.alfresco.service.cmr.security.AccessStatus;
 import org.alfresco.service.cmr.security.PermissionService;
 import org.alfresco.service.cmr.security.PersonService;
 import org.alfresco.service.cmr.version.Version;
+import org.alfresco.service.cmr.version.VersionDoesNotExistException;
 import org.alfresco.service.cmr.version.VersionHistory;
 import org.alfresco.service.cmr.version.VersionService;
 import org.alfresco.service.cmr.version.VersionServiceException;
@@ -227,6 +228,44 @@ public class VersionServiceImplTest extends BaseVersionStoreTest
         assertFalse(isCommentExist(versionableNode, V1_COMMENT));
     }
     
+    /**
+     * Test that version histories read after versions have been added or deleted reflect those changes, and that
+     * changes made by a caller to the returned versions are not seen by later callers.
+     */
+    @Test
+    public void testVersionHistoryReflectsChanges()
+    {
+        NodeRef versionableNode = createNewVersionableNode();
+        Version v1 = createVersion(versionableNode);
+        Version v2 = createVersion(versionableNode);
+        
+        VersionHistory vh = this.versionService.getVersionHistory(versionableNode);
+        assertEquals(2, vh.getAllVersions().size());
+        assertEquals(v2.getVersionLabel(), vh.getHeadVersion().getVersionLabel());
+        vh.getHeadVersion().getVersionProperties().put("transientValue", "modified by caller");
+        
+        Version v3 = createVersion(versionableNode);
+        vh = this.versionService.getVersionHistory(versionableNode);
+        assertEquals(3, vh.getAllVersions().size());
+        assertEquals(v3.getVersionLabel(), vh.getHeadVersion().getVersionLabel());
+        assertNull(vh.getVersion(v2.getVersionLabel()).getVersionProperty("transientValue"));
+        
+        this.versionService.deleteVersion(versionableNode, v2);
+        vh = this.versionService.getVersionHistory(versionableNode);
+        assertEquals(2, vh.getAllVersions().size());
+        try
+        {
+            vh.getVersion(v2.getVersionLabel());
+            fail("Deleted version should not be in the version history");
+        }
+        catch (VersionDoesNotExistException e)
+        {
+            // expected
+        }
+        assertEquals(v1.getVersionLabel(), vh.getRootVersion().getVersionLabel());
+        assertEquals(v3.getVersionLabel(), vh.getHeadVersion().getVersionLabel());
+    }
+    
     private NodeRef addComment(NodeRef nr, String comment, boolean suppressRollups)
     {
         // There is no CommentService, so we have to create the node structure by hand.
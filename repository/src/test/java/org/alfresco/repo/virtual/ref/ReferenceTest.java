@@ -73,6 +73,19 @@ public class ReferenceTest extends TestCase
                      fromNodeRef.toString());
     }
 
+    @Test
+    public void testFromNodeRefReusesParsedReferences() throws Exception
+    {
+        Reference r1 = Reference.fromNodeRef(new NodeRef(TEST_NODE_REF_1));
+        Reference r2 = Reference.fromNodeRef(new NodeRef(TEST_NODE_REF_1));
+
+        assertNotNull(r1);
+        assertSame(r1,
+                   r2);
+        assertEquals(TEST_REFERENCE,
+                     Reference.fromNodeRef(new NodeRef(TEST_NODE_REF)));
+    }
+
     @Test
     public void testExecute() throws Exception
     {